@@ -561,6 +561,7 @@ public class Console {
 			engine.put("links", linkPrefs);
 			engine.put("memberships", membershipPrefs);
 			engine.put("general", generalPrefs);
+			engine.put("positions", (scene == null) ? null : scene.getPositionQuery());
 			try {
 				engine.eval(inputArea.getText());
 			} catch (ScriptException e) {
@@ -0,0 +1,191 @@
+package cz.filipekt.jdcv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+import cz.filipekt.jdcv.util.BigFilesSearch.ElementTooLargeException;
+import cz.filipekt.jdcv.util.BigFilesSearch.SelectionTooBigException;
+
+/**
+ * Runs the individual steps of a scene import (parsing the network definition, preparing
+ * and parsing the event log, parsing the ensemble event log) on a pool of worker threads,
+ * so that the steps which do not depend on each other are carried out concurrently.
+ * The dependencies between the steps are expressed by {@link ImportScheduler#join(Future)},
+ * which waits for the result of a step and rethrows any exception the step has thrown,
+ * in its original type. The steps opening a resource, e.g. a stream on an event log, are
+ * submitted by {@link ImportScheduler#submitResource(Callable)}, so that the resource is
+ * closed together with the scheduler unless it has been claimed by the importing thread.
+ */
+class ImportScheduler implements AutoCloseable {
+
+	/**
+	 * The worker threads carrying out the submitted import steps
+	 */
+	private final ExecutorService pool;
+	
+	/**
+	 * The resources opened by the steps submitted by {@link ImportScheduler#submitResource(Callable)},
+	 * which have not been claimed by {@link ImportScheduler#claim(Future)} yet
+	 */
+	private final List<Closeable> unclaimed = new ArrayList<>();
+	
+	/**
+	 * Set when the scheduler has been closed. Guarded by {@link ImportScheduler#unclaimed}.
+	 */
+	private boolean closed = false;
+
+	/**
+	 * @param threads Number of the worker threads. Should be equal to the number
+	 * of the import steps that may run at the same time.
+	 */
+	ImportScheduler(int threads) {
+		this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "scene-import");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Starts the given import step on one of the worker threads
+	 * @param step The import step
+	 * @return Handle to the result of the import step, to be passed to
+	 * {@link ImportScheduler#join(Future)}
+	 */
+	<T> Future<T> submit(Callable<T> step){
+		return pool.submit(step);
+	}
+
+	/**
+	 * Starts the given import step, which opens a resource, on one of the worker threads.
+	 * Unless the resource is claimed by {@link ImportScheduler#claim(Future)}, it is closed 
+	 * by {@link ImportScheduler#close()}, even if the step finishes only after the scheduler
+	 * has been closed, e.g. because another step has failed in the meantime.
+	 * @param step The import step, returning the opened resource
+	 * @return Handle to the result of the import step, to be passed to
+	 * {@link ImportScheduler#claim(Future)}
+	 */
+	<T extends Closeable> Future<T> submitResource(final Callable<T> step){
+		return pool.submit(new Callable<T>() {
+
+			@Override
+			public T call() throws Exception {
+				T resource = step.call();
+				if (resource == null){
+					return null;
+				}
+				synchronized (unclaimed){
+					if (!closed){
+						unclaimed.add(resource);
+						return resource;
+					}
+				}
+				resource.close();
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Waits until the given import step finishes and takes over its resulting resource.
+	 * From then on, the caller is responsible for closing the resource.
+	 * @param step Handle to the import step, as returned by {@link ImportScheduler#submitResource(Callable)}
+	 * @return The resource opened by the import step
+	 * @throws IOException If the step could not read from its input file, or if the
+	 * waiting thread has been interrupted
+	 * @throws SAXException If the step encountered a problem when parsing an XML document
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SelectionTooBigException If the selected time interval is too large to handle
+	 * @throws ElementTooLargeException If an event element in the event log is too large
+	 * @see ImportScheduler#join(Future)
+	 */
+	<T extends Closeable> T claim(Future<T> step) throws IOException, SAXException, 
+			ParserConfigurationException, SelectionTooBigException, ElementTooLargeException {
+		T resource = join(step);
+		synchronized (unclaimed){
+			unclaimed.remove(resource);
+		}
+		return resource;
+	}
+
+	/**
+	 * Waits until the given import step finishes and returns its result. If the step
+	 * has thrown an exception, the exception is rethrown here, so that it can be reported
+	 * in the same way as if the step has been run in the calling thread.
+	 * @param step Handle to the import step, as returned by {@link ImportScheduler#submit(Callable)}
+	 * @return The result of the import step
+	 * @throws IOException If the step could not read from its input file, or if the
+	 * waiting thread has been interrupted
+	 * @throws SAXException If the step encountered a problem when parsing an XML document
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SelectionTooBigException If the selected time interval is too large to handle
+	 * @throws ElementTooLargeException If an event element in the event log is too large
+	 */
+	<T> T join(Future<T> step) throws IOException, SAXException, ParserConfigurationException,
+			SelectionTooBigException, ElementTooLargeException {
+		try {
+			return step.get();
+		} catch (InterruptedException ex){
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("The scene import has been interrupted.");
+		} catch (ExecutionException ex){
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException){
+				throw (IOException)cause;
+			} else if (cause instanceof SAXException){
+				throw (SAXException)cause;
+			} else if (cause instanceof ParserConfigurationException){
+				throw (ParserConfigurationException)cause;
+			} else if (cause instanceof SelectionTooBigException){
+				throw (SelectionTooBigException)cause;
+			} else if (cause instanceof ElementTooLargeException){
+				throw (ElementTooLargeException)cause;
+			} else if (cause instanceof RuntimeException){
+				throw (RuntimeException)cause;
+			} else if (cause instanceof Error){
+				throw (Error)cause;
+			} else {
+				throw new IllegalStateException(cause);
+			}
+		}
+	}
+
+	/**
+	 * Stops the worker threads. The steps which are still running are interrupted.
+	 * The resources opened by the steps and not claimed by the importing thread are closed.
+	 */
+	@Override
+	public void close() {
+		pool.shutdownNow();
+		List<Closeable> resources;
+		synchronized (unclaimed){
+			closed = true;
+			resources = new ArrayList<>(unclaimed);
+			unclaimed.clear();
+		}
+		for (Closeable resource : resources){
+			try {
+				resource.close();
+			} catch (IOException ex){
+				// The import has failed already, the original failure is the one reported
+			}
+		}
+	}
+}
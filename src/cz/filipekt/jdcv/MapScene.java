@@ -8,8 +8,8 @@ import java.io.InputStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -23,9 +23,9 @@ import javax.imageio.stream.FileImageOutputStream;
 
 import cz.filipekt.jdcv.SceneImportHandler.ImageProvider;
 import cz.filipekt.jdcv.SceneImportHandler.ShapeProvider;
-import cz.filipekt.jdcv.checkpoints.CheckPoint;
 import cz.filipekt.jdcv.checkpoints.CheckPoint.Type;
 import cz.filipekt.jdcv.checkpoints.CheckPointDatabase;
+import cz.filipekt.jdcv.checkpoints.PositionQuery;
 import cz.filipekt.jdcv.corridors.Background;
 import cz.filipekt.jdcv.corridors.CorridorLoader;
 import cz.filipekt.jdcv.corridors.LinkCorridor;
@@ -40,6 +40,7 @@ import cz.filipekt.jdcv.network.MyLink;
 import cz.filipekt.jdcv.network.MyNode;
 import cz.filipekt.jdcv.plugins.InfoPanel;
 import cz.filipekt.jdcv.prefs.PreferencesBuilder;
+import cz.filipekt.jdcv.util.SymbolTable;
 import javafx.animation.Animation.Status;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
@@ -541,9 +542,38 @@ public class MapScene {
 	}
 	
 	/**
-	 * Maps each person's ID to the person's graphical representation
+	 * Maps each person, as given by its symbol assigned by {@link CheckPointDatabase#getPersons()}, 
+	 * to the person's graphical representation. Null for the people that have no representation.
 	 */
-	private final Map<String,Node> personShapes = new HashMap<>();
+	private final Node[] personShapes;
+	
+	/**
+	 * @param personID ID of a person
+	 * @return The graphical representation of the person. Null if the person has no representation.
+	 */
+	private Node getPersonShape(String personID){
+		if (checkpointDb == null){
+			return null;
+		}
+		int person = checkpointDb.getPersons().find(personID);
+		if ((person == SymbolTable.noSymbol) || (person >= personShapes.length)){
+			return null;
+		}
+		return personShapes[person];
+	}
+	
+	/**
+	 * @return The graphical representations of all the people that have one
+	 */
+	private List<Node> getPersonShapes(){
+		List<Node> res = new ArrayList<>();
+		for (Node shape : personShapes){
+			if (shape != null){
+				res.add(shape);
+			}
+		}
+		return res;
+	}
 	
 	/**
 	 * Timeline used for animation of the simulation output 
@@ -557,12 +587,108 @@ public class MapScene {
 	public Timeline getTimeLine() {
 		return timeLine;
 	}
-	
+
+	/**
+	 * Switches the visualization to the neighbouring time windows of the event logs,
+	 * when the scene shows just one window of them
+	 */
+	static interface WindowSwitch {
+
+		/**
+		 * @return The lowest simulation time the visualization can be switched to,
+		 * i.e. the start of the preceding time window
+		 */
+		double getRangeStart();
+
+		/**
+		 * @return The highest simulation time the visualization can be switched to,
+		 * i.e. the end of the following time window
+		 */
+		double getRangeEnd();
+
+		/**
+		 * Starts switching the visualization to the time window containing the given time.
+		 * The scene of that window is prepared in the background and shown once it is ready.
+		 * Called from the JavaFX application thread.
+		 * @param simulationTime A simulation time outside of the time window of this scene
+		 */
+		void switchTo(double simulationTime);
+
+		/**
+		 * Continues the playback in the time window following this one, or preceding it if the
+		 * timeline has been running backwards. Called from the JavaFX application thread
+		 * when the timeline of this scene has reached its end.
+		 * @param forward True iff the timeline has been running forward
+		 */
+		void continuePlayback(boolean forward);
+	}
+
+	/**
+	 * Switches the visualization to the neighbouring time windows of the event logs.
+	 * Null if the scene shows all the selected events at once.
+	 */
+	private WindowSwitch windowSwitch = null;
+
+	/**
+	 * @return Switches the visualization to the neighbouring time windows of the event logs.
+	 * Null if the scene shows all the selected events at once.
+	 * @see {@link MapScene#windowSwitch}
+	 */
+	WindowSwitch getWindowSwitch() {
+		return windowSwitch;
+	}
+
+	/**
+	 * @param windowSwitch Switches the visualization to the neighbouring time windows of the event logs.
+	 * Null if the scene shows all the selected events at once.
+	 * @see {@link MapScene#windowSwitch}
+	 */
+	void setWindowSwitch(final WindowSwitch windowSwitch) {
+		this.windowSwitch = windowSwitch;
+		if (windowSwitch == null){
+			timeLine.setOnFinished(null);
+		} else {
+			timeLine.setOnFinished(new EventHandler<ActionEvent>() {
+
+				@Override
+				public void handle(ActionEvent event) {
+					windowSwitch.continuePlayback(timeLine.getRate() > 0);
+				}
+			});
+		}
+	}
+
 	/**
 	 * Maps each link ID to the corresponding link visualization
 	 */
 	private final Map<String,LinkCorridor> linkCorridors = new HashMap<>();	
 	
+	/**
+	 * Maps each link, as given by its symbol assigned by {@link CheckPointDatabase#getLinks()},
+	 * to the corresponding link visualization. It is kept in sync with {@link MapScene#linkCorridors}.
+	 */
+	private LinkCorridor[] corridorsBySymbol = new LinkCorridor[0];
+	
+	/**
+	 * Maps each link, as given by its symbol assigned by {@link CheckPointDatabase#getLinks()},
+	 * to the corresponding link. It is filled in when the scene is created.
+	 */
+	private final MyLink[] linksBySymbol;
+	
+	/**
+	 * Fills the {@link MapScene#corridorsBySymbol} using the {@link MapScene#linkCorridors}
+	 */
+	private void indexLinkCorridors(){
+		if (checkpointDb == null){
+			return;
+		}
+		SymbolTable linkSymbols = checkpointDb.getLinks();
+		corridorsBySymbol = new LinkCorridor[linkSymbols.size()];
+		for (int i = 0; i < corridorsBySymbol.length; i++){
+			corridorsBySymbol[i] = linkCorridors.get(linkSymbols.decode(i));
+		}
+	}
+	
 	/**
 	 * Updates the collections of node instances that represent the map elements,
 	 * both mobile (agents, ensemble memberships) and immobile (nodes,links).
@@ -586,6 +712,7 @@ public class MapScene {
 			Map<String,LinkCorridor> newCorridors = generateLinkCorridors();
 			linkCorridors.clear();
 			linkCorridors.putAll(newCorridors);
+			indexLinkCorridors();
 		}
 		for (LinkCorridor corridor : linkCorridors.values()){
 			mapContainer.getChildren().add(corridor.getVisualization());
@@ -593,7 +720,7 @@ public class MapScene {
 		produceShapes(shapeProvider, selectedPeople);
 		addRecordingFrames();
 		mapContainer.getChildren().addAll(circles.keySet());
-		mapContainer.getChildren().addAll(personShapes.values());
+		mapContainer.getChildren().addAll(getPersonShapes());
 		mapContainer.getChildren().addAll(ensembleShapes.values());
 		moveShapesToFront();
 	}
@@ -692,7 +819,7 @@ public class MapScene {
 		for (Node node : circles.keySet()){	
 			node.toFront();
 		}
-		for (Node person : personShapes.values()){
+		for (Node person : getPersonShapes()){
 			person.toFront();
 		}
 	}
@@ -797,44 +924,49 @@ public class MapScene {
 	private Collection<KeyFrame> buildFramesForPeople(SceneImportHandler.ShapeProvider shapeProvider, 
 			String[] selectedPeople) throws IOException{
 		Collection<KeyFrame> frames = new ArrayList<>();
-		Collection<String> selectedPeopleCol = null;
+		boolean[] selected = null;
 		if ((selectedPeople != null) && (selectedPeople.length != 0)){
-			selectedPeopleCol = Arrays.<String>asList(selectedPeople);
+			selected = new boolean[personShapes.length];
+			for (String personID : selectedPeople){
+				int person = checkpointDb.getPersons().find(personID);
+				if ((person != SymbolTable.noSymbol) && (person < selected.length)){
+					selected[person] = true;
+				}
+			}
 		}
-		for (String personID : checkpointDb.getKeys()){
-			if ((selectedPeople == null) || (selectedPeople.length == 0) || 
-					(selectedPeopleCol.contains(personID))){				
-				List<CheckPoint> positionCheckpoints = checkpointDb.getPositionsList(personID);
-				if ((positionCheckpoints != null) && (!positionCheckpoints.isEmpty())){
+		for (int person = 0; person < personShapes.length; person++){
+			if ((selected == null) || selected[person]){				
+				int positionsStart = checkpointDb.getPositionsStart(person);
+				int positionsEnd = checkpointDb.getPositionsEnd(person);
+				if (positionsStart < positionsEnd){
 					try {
-						Node personShape = buildPersonShape(positionCheckpoints, shapeProvider);
-						personShape.setOnMouseClicked(new InfoPanelSetter(personID, checkpointDb));
+						Node personShape = buildPersonShape(positionsStart, positionsEnd, shapeProvider);
+						personShape.setOnMouseClicked(new InfoPanelSetter(person, checkpointDb));
 						personShape.setVisible(false);
 						Collection<KeyFrame> personFrames = new ArrayList<>();
 						prepareInitialFrame(personFrames, personShape);
-						for (int i = 0; i < positionCheckpoints.size(); i++){
-							CheckPoint cp = positionCheckpoints.get(i);
-							CheckPoint nextCp;
-							if ((i+1) < positionCheckpoints.size()){
-								nextCp = positionCheckpoints.get(i+1);
+						for (int cp = positionsStart; cp < positionsEnd; cp++){
+							int nextCp;
+							if ((cp+1) < positionsEnd){
+								nextCp = cp + 1;
 							} else {
-								nextCp = null;
+								nextCp = -1;
 							}
 							processPositionCheckPoint(cp, nextCp, personFrames, personShape);
 						}
-						List<CheckPoint> otherCheckpoints = checkpointDb.getOthersList(personID);
-						for (CheckPoint cp : otherCheckpoints){
+						int othersEnd = checkpointDb.getOthersEnd(person);
+						for (int cp = checkpointDb.getOthersStart(person); cp < othersEnd; cp++){
 							processOtherCheckPoint(cp, personFrames, personShape);
 						}
-						personShapes.put(personID, personShape);
+						personShapes[person] = personShape;
 						frames.addAll(personFrames);
-						keyFramesForPeople.put(personID, personFrames);
+						keyFramesForPeople.set(person, personFrames);
 					} catch (InitialPositionNotFoundException | IllegalArgumentException ex){
 //						should not happen; prevented by the "if" statement just before the "try" block
 					}
 				}
-			} else {
-				frames.addAll(keyFramesForPeople.get(personID));
+			} else if (keyFramesForPeople.get(person) != null){
+				frames.addAll(keyFramesForPeople.get(person));
 			}
 		}
 		return frames;
@@ -861,20 +993,23 @@ public class MapScene {
 	 * Given a checkpoint which determines a person's position, this method creates
 	 * corresponding keyframes (used by the JavaFX timeline) and adds them to the provided 
 	 * collection of keyframes.
-	 * @param cp Checkpoint to be processed. Determines a person's position.
-	 * @param nextCp The following checkpoint, presumably to be processed in the next call to this method.
+	 * @param cp Index of the checkpoint to be processed in {@link MapScene#checkpointDb}. 
+	 * Determines a person's position.
+	 * @param nextCp Index of the following checkpoint, presumably to be processed in the next call 
+	 * to this method. -1 if there is no following checkpoint.
 	 * @param personFrames Keyframes associated with the person to whom the checkpoint belongs to
 	 * @param personShape Visualization of the person to whom the checkpoint belongs to
 	 */
-	private void processPositionCheckPoint(CheckPoint cp, CheckPoint nextCp, 
+	private void processPositionCheckPoint(int cp, int nextCp, 
 			Collection<KeyFrame> personFrames, Node personShape){
 		DoubleProperty xProperty = personShape.translateXProperty();
 		DoubleProperty yProperty = personShape.translateYProperty();
 		BooleanProperty visibleProperty = personShape.visibleProperty();
-		Duration actualTime = new Duration(convertToVisualizationTime(cp.getTime()));
-		LinkCorridor corridor = linkCorridors.get(cp.getLinkID());
+		Duration actualTime = new Duration(convertToVisualizationTime(checkpointDb.getTime(cp)));
+		LinkCorridor corridor = corridorsBySymbol[checkpointDb.getLink(cp)];
+		Type type = checkpointDb.getType(cp);
 		Point2D point;
-		if (cp.getType() == Type.LINK_ENTERED){
+		if (type == Type.LINK_ENTERED){
 			point = corridor.getFromPoint();
 		} else {
 			point = corridor.getToPoint();
@@ -884,8 +1019,8 @@ public class MapScene {
 		KeyValue visibleVal = new KeyValue(visibleProperty, true);
 		KeyFrame frame = new KeyFrame(actualTime, xVal, yVal, visibleVal);
 		personFrames.add(frame);
-		if ((nextCp != null) && (cp.getType() == Type.LINK_ENTERED)){
-			Duration nextCpTime = new Duration(convertToVisualizationTime(nextCp.getTime()));
+		if ((nextCp >= 0) && (type == Type.LINK_ENTERED)){
+			Duration nextCpTime = new Duration(convertToVisualizationTime(checkpointDb.getTime(nextCp)));
 			double difference = nextCpTime.subtract(actualTime).toMillis();
 			double[] relativeDistances = corridor.getRelativeDistances();
 			List<Duration> intermediateTimes = new ArrayList<>();
@@ -910,19 +1045,21 @@ public class MapScene {
 	 * Given a checkpoint which does not determine a person's position, this method creates
 	 * corresponding keyframes (used by the JavaFX timeline) and adds them to the provided 
 	 * collection of keyframes.
-	 * @param cp Checkpoint to be processed. Does not determine a person's position.
+	 * @param cp Index of the checkpoint to be processed in {@link MapScene#checkpointDb}. 
+	 * Does not determine a person's position.
 	 * @param personFrames Keyframes associated with the person to whom the checkpoint belongs to
 	 * @param personShape Visualization of the person to whom the checkpoint belongs to
 	 */
-	private void processOtherCheckPoint(CheckPoint cp, Collection<KeyFrame> personFrames,
+	private void processOtherCheckPoint(int cp, Collection<KeyFrame> personFrames,
 			Node personShape){
 		BooleanProperty visibleProperty = personShape.visibleProperty();
-		Duration actualTime = new Duration(convertToVisualizationTime(cp.getTime()));
+		Duration actualTime = new Duration(convertToVisualizationTime(checkpointDb.getTime(cp)));
+		Type type = checkpointDb.getType(cp);
 		KeyFrame frame;
-		if (cp.getType() == Type.PERSON_ENTERS){
+		if (type == Type.PERSON_ENTERS){
 			KeyValue visibleVal = new KeyValue(visibleProperty, true);
 			frame = new KeyFrame(actualTime, visibleVal);
-		} else if (cp.getType() == Type.PERSON_LEAVES){
+		} else if (type == Type.PERSON_LEAVES){
 			KeyValue visibleVal = new KeyValue(visibleProperty, false);
 			frame = new KeyFrame(actualTime, visibleVal);
 		} else {
@@ -932,10 +1069,11 @@ public class MapScene {
 	}
 	
 	/**
-	 * For each person ID, stores a collection of all the key frames that capture the
-	 * movements of the person visualization
+	 * For each person, as given by its symbol assigned by {@link CheckPointDatabase#getPersons()}, 
+	 * stores a collection of all the key frames that capture the movements of the person visualization.
+	 * Null for the people that have no visualization.
 	 */
-	private final Map<String,Collection<KeyFrame>> keyFramesForPeople = new HashMap<>();
+	private final List<Collection<KeyFrame>> keyFramesForPeople;
 	
 	/**
 	 * It is thrown when the initial position of a person could not be determined
@@ -945,20 +1083,22 @@ public class MapScene {
 
 	/**
 	 * Builds a {@link Node} that represents a moving person/vehicle on the map.
-	 * @param positionCheckPoints Checkpoints of the person/vehicle, defining his/its position
+	 * @param positionsStart Index of the first checkpoint of the person/vehicle defining his/its position,
+	 * in {@link MapScene#checkpointDb}
+	 * @param positionsEnd Index following the last checkpoint of the person/vehicle defining his/its position
 	 * @param provider Used for generating the visualizations of people
 	 * @return A {@link Shape} that represents a moving person/vehicle on the map.
 	 * @throws IOException When the shape could not be loaded for any reason
-	 * @throws InitialPositionNotFoundException When the checkpoints provided by the first parameter
-	 * are an empty collection
-	 * @throws IllegalArgumentException When either of the method parameters are null
+	 * @throws InitialPositionNotFoundException When the range of the checkpoints given by the first
+	 * two parameters is empty
+	 * @throws IllegalArgumentException When the provider is null
 	 */
-	private Node buildPersonShape(List<CheckPoint> positionCheckPoints, SceneImportHandler.ShapeProvider provider) 
+	private Node buildPersonShape(int positionsStart, int positionsEnd, SceneImportHandler.ShapeProvider provider) 
 			throws IOException, InitialPositionNotFoundException, IllegalArgumentException {
 		if (provider == null){
 			throw new IllegalArgumentException("Non-null ShapeProvider must be specified.");
 		}
-		Point2D initialPosition = getInitialPosition(positionCheckPoints);
+		Point2D initialPosition = getInitialPosition(positionsStart, positionsEnd);
 		double x = initialPosition.getX();
 		double y = initialPosition.getY();
 		Node shape = provider.getNewShape();
@@ -970,30 +1110,27 @@ public class MapScene {
 	}
 	
 	/**
-	 * Given a list of checkpoints defining the position of a person, this method
+	 * Given a range of checkpoints defining the position of a person, this method
 	 * returns the initial position of the person.
-	 * @param positionCheckPoints Checkpoints defining the position of a person
+	 * @param positionsStart Index of the first checkpoint defining the position of a person,
+	 * in {@link MapScene#checkpointDb}
+	 * @param positionsEnd Index following the last checkpoint defining the position of the person
 	 * @return The initial position of the person
-	 * @throws InitialPositionNotFoundException When the list provided as a parameter is empty
+	 * @throws InitialPositionNotFoundException When the range given by the parameters is empty
 	 */
-	private Point2D getInitialPosition(List<CheckPoint> positionCheckPoints) 
+	private Point2D getInitialPosition(int positionsStart, int positionsEnd) 
 			throws InitialPositionNotFoundException{
-		if (positionCheckPoints == null){
-			throw new IllegalArgumentException("Non-null list of checkpoints must be supplied");
+		if (positionsStart >= positionsEnd){
+			throw new InitialPositionNotFoundException();
 		} else {
-			CheckPoint cp = positionCheckPoints.get(0);
-			if (cp == null){
-				throw new InitialPositionNotFoundException();
+			MyLink link = linksBySymbol[checkpointDb.getLink(positionsStart)];
+			MyNode node;
+			if (checkpointDb.getType(positionsStart) == Type.LINK_ENTERED){
+				node = link.getFrom();
 			} else {
-				MyLink link = links.get(cp.getLinkID());
-				MyNode node;
-				if (cp.getType() == Type.LINK_ENTERED){
-					node = link.getFrom();
-				} else {
-					node = link.getTo();
-				}
-				return new Point2D(node.getX(), node.getY());
+				node = link.getTo();
 			}
+			return new Point2D(node.getX(), node.getY());
 		}
 	}
 	
@@ -1032,9 +1169,9 @@ public class MapScene {
 			double timeVal = convertToVisualizationTime(eev.getTime());
 			Duration time = new Duration(timeVal);
 			final String coord = eev.getCoordinator();
-			Node coordShape = personShapes.get(coord);
+			Node coordShape = getPersonShape(coord);
 			final String member = eev.getMember();
-			Node memberShape = personShapes.get(member);
+			Node memberShape = getPersonShape(member);
 			if ((coordShape != null) && (memberShape != null)){  						
 				Node ensembleShape = edb.getEnsembleShape(eev.getEnsemble(), coord, member, coordShape, memberShape);				
 				KeyValue kv = new KeyValue(ensembleShape.visibleProperty(), eev.getMembership());
@@ -1063,6 +1200,20 @@ public class MapScene {
 	 */
 	private final CheckPointDatabase checkpointDb;
 	
+	/**
+	 * Finds the positions of people at given simulation times directly in the {@link MapScene#checkpointDb},
+	 * without the {@link MapScene#timeLine}. Null if no Matsim events are visualized.
+	 */
+	private final PositionQuery positionQuery;
+	
+	/**
+	 * @return Finds the positions of people at given simulation times, without the timeline
+	 * of the scene. Null if no Matsim events are visualized.
+	 */
+	public PositionQuery getPositionQuery() {
+		return positionQuery;
+	}
+	
 	/**
 	 * The ensemble events as parsed from the ensemble event log file.
 	 */
@@ -1185,6 +1336,20 @@ public class MapScene {
 		this.duration = duration;
 		this.nodes = nodes;
 		this.links.putAll(links);
+		int personsCount = (checkpointDb == null) ? 0 : checkpointDb.getPersonsCount();
+		this.personShapes = new Node[personsCount];
+		this.keyFramesForPeople = new ArrayList<>(Collections.<Collection<KeyFrame>>nCopies(personsCount, null));
+		if (checkpointDb == null){
+			this.linksBySymbol = new MyLink[0];
+			this.positionQuery = null;
+		} else {
+			this.positionQuery = new PositionQuery(checkpointDb, links);
+			SymbolTable linkSymbols = checkpointDb.getLinks();
+			this.linksBySymbol = new MyLink[linkSymbols.size()];
+			for (int i = 0; i < linksBySymbol.length; i++){
+				linksBySymbol[i] = links.get(linkSymbols.decode(i));
+			}
+		}
 		double[] borders = getMapBorders();
 		double minx,miny,maxx,maxy;
 		if ((background == null) || (background.getImage() == null)){
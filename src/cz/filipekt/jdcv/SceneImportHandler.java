@@ -1,9 +1,11 @@
 package cz.filipekt.jdcv;
 
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -11,6 +13,9 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
 
 import javafx.animation.Animation.Status;
 import javafx.application.Platform;
@@ -30,31 +35,46 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
 import javafx.scene.shape.Circle;
+import javafx.util.Duration;
 
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.xml.sax.SAXException;
 
-import cz.filipekt.jdcv.checkpoints.CheckPoint;
+import cz.filipekt.jdcv.WindowPrefetcher.EventWindow;
+import cz.filipekt.jdcv.checkpoints.CheckPointBuilder;
+import cz.filipekt.jdcv.checkpoints.CheckPointBuilder.EventLimitExceededException;
 import cz.filipekt.jdcv.checkpoints.CheckPointDatabase;
-import cz.filipekt.jdcv.checkpoints.CheckPoint.Type;
+import cz.filipekt.jdcv.checkpoints.EventLogCache;
+import cz.filipekt.jdcv.checkpoints.EventLogCacheWriter;
+import cz.filipekt.jdcv.corridors.Background;
 import cz.filipekt.jdcv.events.EnsembleEvent;
-import cz.filipekt.jdcv.events.EnteredOrLeftLink;
-import cz.filipekt.jdcv.events.EntersOrLeavesVehicle;
-import cz.filipekt.jdcv.events.EventType;
-import cz.filipekt.jdcv.events.MatsimEvent;
+import cz.filipekt.jdcv.events.MatsimEventSink;
+import cz.filipekt.jdcv.exceptions.TooManyEvents;
 import cz.filipekt.jdcv.network.MyLink;
+import cz.filipekt.jdcv.network.MyNode;
 import cz.filipekt.jdcv.util.BigFilesSearch;
+import cz.filipekt.jdcv.util.BlockCompressedLog;
+import cz.filipekt.jdcv.util.BlockFilesSearch;
 import cz.filipekt.jdcv.util.Dialog;
+import cz.filipekt.jdcv.util.EventLogIndex;
+import cz.filipekt.jdcv.util.EventLogProfile;
+import cz.filipekt.jdcv.util.InputFiles;
 import cz.filipekt.jdcv.util.Resources;
+import cz.filipekt.jdcv.util.SequentialSearch;
 import cz.filipekt.jdcv.util.BigFilesSearch.ElementTooLargeException;
 import cz.filipekt.jdcv.util.BigFilesSearch.SelectionTooBigException;
 import cz.filipekt.jdcv.xml.BackgroundHandler;
 import cz.filipekt.jdcv.xml.CorridorHandler;
 import cz.filipekt.jdcv.xml.EnsembleHandler;
+import cz.filipekt.jdcv.xml.EventLogTokenizer;
 import cz.filipekt.jdcv.xml.LinkHandler;
 import cz.filipekt.jdcv.xml.MatsimEventHandler;
+import cz.filipekt.jdcv.xml.MultiplexingHandler;
 import cz.filipekt.jdcv.xml.NodeHandler;
+import cz.filipekt.jdcv.xml.ParallelEventParser;
+import cz.filipekt.jdcv.xml.ReorderingSink;
+import cz.filipekt.jdcv.xml.ShardMerger;
 import cz.filipekt.jdcv.xml.XMLextractor;
 
 /**
@@ -273,6 +293,11 @@ class SceneImportHandler implements EventHandler<ActionEvent>{
 					} catch (ElementTooLargeException e) {
 						reportError("An event element in the Matsim event log is too large.",
 								"Contact the application developer.");
+					} catch (CancellationException ex){
+						reportError("The import of the scene has been stopped before it could finish.");
+					} catch (RuntimeException ex){
+						reportError("An unexpected problem has been encountered while importing the scene:", 
+								ex.toString());
 					}
 				}
 				
@@ -380,6 +405,14 @@ class SceneImportHandler implements EventHandler<ActionEvent>{
 	 */
 	private final double mapScrollMargin = 0.95;
 	
+	/**
+	 * If true, the network definition file is read in a single parsing pass, with the nodes, 
+	 * links, corridors and background being collected at once by a {@link MultiplexingHandler}.
+	 * Otherwise, the original approach is used as a fallback, i.e. the file is parsed once 
+	 * for each of these element kinds, in the order of their mutual dependencies.
+	 */
+	private final boolean singlePassNetwork = true;
+	
 	/**
 	 * Minimum time value shown at the application timeline. It is computed as the
 	 * maximum of values (minimal time in the event logs, "from time" input value)
@@ -402,6 +435,35 @@ class SceneImportHandler implements EventHandler<ActionEvent>{
 	 */
 	private List<EnsembleEvent> ensembleEvents;
 	
+	/**
+	 * If true, the input files are parsed concurrently by an {@link ImportScheduler}.
+	 * Otherwise they are parsed one after another in the calling thread.
+	 */
+	private volatile boolean concurrentImport = true;
+	
+	/**
+	 * Number of the worker threads used when {@link SceneImportHandler#concurrentImport} holds.
+	 * There are three import steps that may run at the same time: parsing the network definition, 
+	 * selecting the relevant part of the Matsim event log and parsing the ensemble event log.
+	 */
+	private final int importThreads = 3;
+	
+	/**
+	 * @param concurrentImport If true, the input files will be parsed concurrently.
+	 * Otherwise they will be parsed one after another, in a single thread.
+	 */
+	public void setConcurrentImport(boolean concurrentImport) {
+		this.concurrentImport = concurrentImport;
+	}
+	
+	/**
+	 * @return If true, the input files are parsed concurrently.
+	 * Otherwise they are parsed one after another, in a single thread.
+	 */
+	public boolean isConcurrentImport() {
+		return concurrentImport;
+	}
+	
 	/**
 	 * Creates a {@link MapScene} representation of the data provided by the input
 	 * files. The instance is then given to the {@link Visualizer} instance which
@@ -415,30 +477,85 @@ class SceneImportHandler implements EventHandler<ActionEvent>{
 	 * It is generally used as a wrapper for other kinds of exceptions.
 	 * @throws IOException If the source XML file, specified by a method parameter, 
 	 * does not exist or is inaccessible.
-	 * @throws ElementTooLargeException If an event element in the Matsim event log is too large
+	 * @throws ElementTooLargeException If an event element in the Matsim or ensemble event log is too large
 	 * @throws SelectionTooBigException If the selected time interval is too large to handle 
 	 */
 	private void prepareNewScene(boolean onlyAgents, Double startAt, Double endAt, int duration) 
 			throws ParserConfigurationException, SAXException, IOException, SelectionTooBigException, 
 			ElementTooLargeException {
+		if (windowPrefetcher != null){
+			windowPrefetcher.close();
+			windowPrefetcher = null;
+		}
+		boolean windowed = windowPrefetch && matsimEventsPresent && (startAt != null) && (endAt != null) && 
+				(endAt > startAt);
+		checkPointBudgetShare = windowed ? (checkPointMemoryBudget / (prefetchedWindows + 1)) : checkPointMemoryBudget;
 		TextField networkField = pathFields.get(0);
 		TextField eventField = pathFields.get(1);
 		TextField ensembleField = pathFields.get(2);	
 		Path networkFile = Paths.get(networkField.getText());
 		String networkFileEncoding = charsetBoxes.get(0).getSelectionModel().getSelectedItem();
-		NodeHandler nodeHandler = new NodeHandler();
-		XMLextractor.run(networkFile, networkFileEncoding, nodeHandler);
-		LinkHandler linkHandler = new LinkHandler(nodeHandler.getNodes());
-		XMLextractor.run(networkFile, networkFileEncoding, linkHandler);
-		CorridorHandler corridorHandler = new CorridorHandler(linkHandler.getLinks());
-		XMLextractor.run(networkFile, networkFileEncoding, corridorHandler);
-		BackgroundHandler backgroundHandler = new BackgroundHandler();
-		XMLextractor.run(networkFile, networkFileEncoding, backgroundHandler);
-		retrieveEventsData(onlyAgents, startAt, endAt, eventField, ensembleField, linkHandler.getLinks());
+		NetworkData network;
+		if (concurrentImport && matsimEventsPresent){
+			network = importConcurrently(onlyAgents, startAt, endAt, networkFile, networkFileEncoding, 
+					eventField, ensembleField);
+		} else {
+			network = parseNetwork(networkFile, networkFileEncoding);
+			retrieveEventsData(onlyAgents, startAt, endAt, eventField, ensembleField, network.links);
+		}
+		final MapScene scene = buildScene(network, cdb, ensembleEvents, minTime, maxTime, duration);
+		WindowPrefetcher windows = null;
+		final CheckPointDatabase database = cdb;
+		if (windowed){
+			windows = createPrefetcher(onlyAgents, startAt, endAt, eventField, ensembleField, network.links);
+			windows.put(0, new EventWindow(cdb, ensembleEvents, minTime, maxTime));
+			scene.setWindowSwitch(new WindowSwitcher(windows, 0, cdb, network, duration));
+			// The window is held by the prefetcher from now on, which evicts it once it is left behind
+			cdb = null;
+			ensembleEvents = null;
+		}
+		windowPrefetcher = windows;
+		final WindowPrefetcher prefetcher = windows;
+		Platform.runLater(new Runnable() {
+			
+			@Override
+			public void run() {
+				WindowPrefetcher previousPrefetcher = shownPrefetcher;
+				CheckPointDatabase previousDatabase = shownDatabase;
+				shownPrefetcher = prefetcher;
+				shownDatabase = (prefetcher == null) ? database : null;
+				visualizer.setScene(scene, matsimEventsPresent);
+				if ((previousDatabase != null) && (previousDatabase != database)){
+					previousDatabase.release();
+				}
+				if ((previousPrefetcher != null) && !windowSwitching){
+					// Otherwise released when the switching finishes
+					previousPrefetcher.release(null);
+				}
+			}
+		});
+		if (windows != null){
+			windows.prefetchAround(0);
+		}
+	}
+	
+	/**
+	 * Creates the {@link MapScene} visualizing the given data
+	 * @param network The data parsed from the network definition file
+	 * @param database The partially parsed data from the Matsim event log
+	 * @param ensembleEvents Parsed event elements from the ensemble event log
+	 * @param minTime Minimum time value shown at the application timeline
+	 * @param maxTime Maximum time value shown at the application timeline
+	 * @param duration Value of the field specifying the total duration of the visualization
+	 * @return The created scene, filled with the shapes and keyframes
+	 * @throws IOException When a person shape could not be loaded for any reason
+	 */
+	private MapScene buildScene(NetworkData network, CheckPointDatabase database, 
+			List<EnsembleEvent> ensembleEvents, double minTime, double maxTime, int duration) throws IOException {
 		ShapeProvider circleProvider = new CircleProvider(personCircleRadius, personCircleColor);
 		MapSceneBuilder sceneBuilder = new MapSceneBuilder();
-		sceneBuilder.setNodes(nodeHandler.getNodes());
-		sceneBuilder.setLinks(linkHandler.getLinks());
+		sceneBuilder.setNodes(network.nodes);
+		sceneBuilder.setLinks(network.links);
 		sceneBuilder.setMapWidth(visualizer.getMapWidth() * mapScrollMargin);
 		sceneBuilder.setMapHeight(visualizer.getMapHeight() * mapScrollMargin);
 		sceneBuilder.setTimeLineStatus(timeLineStatus);
@@ -446,24 +563,526 @@ class SceneImportHandler implements EventHandler<ActionEvent>{
 		sceneBuilder.setMinTime(minTime);
 		sceneBuilder.setMaxTime(maxTime);
 		sceneBuilder.setDuration(duration);
-		sceneBuilder.setCheckpointDb(cdb);
+		sceneBuilder.setCheckpointDb(database);
 		sceneBuilder.setEnsembleEvents(ensembleEvents);
 		sceneBuilder.setControlsBar(visualizer.getControlsBar());
 		sceneBuilder.setMatsimEventsPresent(matsimEventsPresent);
 		sceneBuilder.setEnsembleEventsPresent(ensembleEventsPresent);
 		sceneBuilder.setPersonImageWidth(8 * personCircleRadius);
 		sceneBuilder.setCircleProvider(circleProvider);
-		sceneBuilder.setBackground(backgroundHandler.getResult());
+		sceneBuilder.setBackground(network.background);
 		sceneBuilder.setBackgroundColorPicker(visualizer.getBackgroundColorPicker());
-		final MapScene scene = sceneBuilder.build();
+		MapScene scene = sceneBuilder.build();
 		scene.update(circleProvider, false, null);
-		Platform.runLater(new Runnable() {
+		return scene;
+	}
+	
+	/**
+	 * If true and both ends of the visualized time interval are specified, the neighbouring
+	 * time windows of the event logs are parsed in the background by a {@link WindowPrefetcher},
+	 * so that the timeline slider can be dragged past the ends of the interval, switching 
+	 * the scene to the neighbouring windows without a blocking reload.
+	 */
+	private final boolean windowPrefetch = true;
+	
+	/**
+	 * Maximum number of the time windows held by {@link SceneImportHandler#windowPrefetcher}, i.e. 
+	 * the shown one, its two neighbours and a few recently shown ones
+	 */
+	private final int prefetchedWindows = 5;
+	
+	/**
+	 * If true and the scene shows a time window loaded by a {@link WindowPrefetcher}, the playback 
+	 * continues in the following time window when the timeline reaches its end, so that the whole 
+	 * event logs can be played through in chunks as long as the selected time interval. Only the
+	 * shown window and its two neighbours are kept in memory, the ones left behind the playhead
+	 * are evicted. The windows without any Matsim events, i.e. the quiet intervals of the simulation,
+	 * are stepped over. The playback stops past the end of the Matsim event log, as estimated by
+	 * {@link SceneImportHandler#getEventLogTimeRange(List, String)}.
+	 */
+	private final boolean streamingPlayback = true;
+	
+	/**
+	 * If an end of the Matsim event log is not known, e.g. because the event log is compressed,
+	 * at most this many consecutive time windows without any Matsim events are stepped over 
+	 * when switching the time windows in its direction
+	 */
+	private final int maxSkippedWindows = 16;
+	
+	/**
+	 * Number of the positions where each Matsim event log file is probed when estimating
+	 * its time range, see {@link BigFilesSearch#getProfile(int)}. The first and the last
+	 * samples of the file are enough.
+	 */
+	private final int timeRangeSamples = 2;
+	
+	/**
+	 * Loads the time windows of the event logs of the current scene, or null if the scene
+	 * shows the whole selection at once
+	 */
+	private volatile WindowPrefetcher windowPrefetcher = null;
+	
+	/**
+	 * True while the scene is being switched to another time window
+	 */
+	private volatile boolean windowSwitching = false;
+	
+	/**
+	 * The prefetcher whose time window is shown by the current scene, null if the scene shows the
+	 * whole selection at once. Only accessed in the JavaFX application thread, so it is replaced 
+	 * together with the scene, unlike {@link SceneImportHandler#windowPrefetcher}.
+	 */
+	private WindowPrefetcher shownPrefetcher = null;
+	
+	/**
+	 * The database shown by the current scene, if it is not held by a {@link WindowPrefetcher}.
+	 * Only accessed in the JavaFX application thread. It is released when the scene is replaced.
+	 */
+	private CheckPointDatabase shownDatabase = null;
+	
+	/**
+	 * Creates the {@link WindowPrefetcher} loading the time windows of the event logs, 
+	 * as long as the selected time interval
+	 * @param onlyAgents Value of the checkbox specifying whether only JDEECo agents should be shown
+	 * @param startAt Value of the field specifying the simulation time at which visualization should start
+	 * @param endAt Value of the field specifying the simulation time at which visualization should end
+	 * @param eventField The GUI input field for entering the Matsim event log file path
+	 * @param ensembleField The GUI input field for entering the ensemble event log file path
+	 * @param links The parsed link elements, indexed by their link IDs
+	 * @return The created prefetcher
+	 * @throws IOException If some of the glob patterns listing the shards of the Matsim event log
+	 * does not match any file, or if it is impossible to read from the Matsim event log
+	 */
+	private WindowPrefetcher createPrefetcher(final boolean onlyAgents, double startAt, double endAt,
+			TextField eventField, TextField ensembleField, final Map<String,MyLink> links) throws IOException {
+		final List<Path> eventsFiles = getEventsFiles(eventField);
+		final String eventsFileEncoding = charsetBoxes.get(1).getSelectionModel().getSelectedItem();
+		final Path ensembleFile = ensembleEventsPresent ? Paths.get(ensembleField.getText()) : null;
+		final String ensembleFileEncoding = charsetBoxes.get(2).getSelectionModel().getSelectedItem();
+		WindowPrefetcher.WindowLoader loader = new WindowPrefetcher.WindowLoader() {
 			
 			@Override
-			public void run() {					
-				visualizer.setScene(scene, matsimEventsPresent);					
+			public EventWindow load(double from, double to) throws IOException, SelectionTooBigException, 
+					ElementTooLargeException, ParserConfigurationException, SAXException {
+				return loadEventWindow(eventsFiles, eventsFileEncoding, ensembleFile, ensembleFileEncoding, 
+						onlyAgents, from, to, links);
+			}
+		};
+		double[] range = getEventLogTimeRange(eventsFiles, eventsFileEncoding);
+		return new WindowPrefetcher(loader, startAt, endAt - startAt, prefetchedWindows, range[0], range[1]);
+	}
+	
+	/**
+	 * Estimates the time range covered by the given Matsim event log, or by its shards, 
+	 * from the first and the last samples of each file, see {@link BigFilesSearch#getProfile(int)}.
+	 * The compressed event logs can not be probed, so their time range is not known.
+	 * @param eventsFiles The Matsim event log file, or its shards
+	 * @param encoding Character encoding set used by the Matsim event log files
+	 * @return The lowest and the highest time of the Matsim events. An end which is not known
+	 * is infinite.
+	 * @throws IOException If it is impossible to read from the Matsim event log files
+	 */
+	private double[] getEventLogTimeRange(List<Path> eventsFiles, String encoding) throws IOException {
+		List<EventLogProfile> profiles = new ArrayList<>();
+		for (Path eventsFile : eventsFiles){
+			if (BlockCompressedLog.isBlockCompressed(eventsFile) || InputFiles.isGzip(eventsFile)){
+				return new double[]{Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+			}
+			profiles.add(new BigFilesSearch(eventsFile, Charset.forName(encoding)).getProfile(timeRangeSamples));
+		}
+		EventLogProfile profile = EventLogProfile.merge(profiles);
+		if (profile.isEmpty()){
+			return new double[]{Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+		}
+		return new double[]{profile.getMinTime(), profile.getMaxTime()};
+	}
+	
+	/**
+	 * Parses the given time window of the event logs. The {@link EventLogCache} of the Matsim
+	 * event log is used if it covers the window, but it is not overwritten, because it 
+	 * is meant to hold the time interval selected by the user.
+	 * @param eventsFiles The Matsim event log file, or its shards
+	 * @param eventsFileEncoding Character encoding set used by the Matsim event log files
+	 * @param ensembleFile The ensemble event log file, or null if there is none
+	 * @param ensembleFileEncoding Character encoding set used by the ensemble event log file
+	 * @param onlyAgents Value of the checkbox specifying whether only JDEECo agents should be shown
+	 * @param from Start of the time window
+	 * @param to End of the time window
+	 * @param links The parsed link elements, indexed by their link IDs
+	 * @return The events of the time window
+	 * @throws IOException If some of the event logs does not exist or is inaccessible.
+	 * @throws SelectionTooBigException If the time window is too large to handle 
+	 * @throws ElementTooLargeException If an event element in the Matsim or ensemble event log is too large
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SAXException When there is any problem when parsing the XML document. 
+	 * It is generally used as a wrapper for other kinds of exceptions.
+	 */
+	private EventWindow loadEventWindow(List<Path> eventsFiles, String eventsFileEncoding, Path ensembleFile, 
+			String ensembleFileEncoding, boolean onlyAgents, double from, double to, Map<String,MyLink> links) 
+					throws IOException, SelectionTooBigException, ElementTooLargeException, 
+					ParserConfigurationException, SAXException {
+		CheckPointDatabase database = loadMatsimEvents(eventsFiles, eventsFileEncoding, links, 
+				onlyAgents, from, to, false);
+		List<EnsembleEvent> ensembles = null;
+		if (ensembleFile != null){
+			ensembles = parseEnsembleEvents(ensembleFile, ensembleFileEncoding, from, to);
+		}
+		return new EventWindow(database, ensembles, Math.max(from, database.getMinTime()), 
+				Math.min(to, database.getMaxTime()));
+	}
+	
+	/**
+	 * Switches the visualization between the time windows of the event logs loaded by
+	 * a {@link WindowPrefetcher}. It is attached to the scene of a single time window.
+	 */
+	private class WindowSwitcher implements MapScene.WindowSwitch {
+		
+		/**
+		 * Loads the time windows of the event logs
+		 */
+		private final WindowPrefetcher windows;
+		
+		/**
+		 * Index of the time window shown by the scene
+		 */
+		private final int index;
+		
+		/**
+		 * The partially parsed data from the Matsim event log shown by the scene
+		 */
+		private final CheckPointDatabase database;
+		
+		/**
+		 * The data parsed from the network definition file
+		 */
+		private final NetworkData network;
+		
+		/**
+		 * Value of the field specifying the total duration of the visualization of each time window
+		 */
+		private final int duration;
+
+		/**
+		 * @param windows Loads the time windows of the event logs
+		 * @param index Index of the time window shown by the scene
+		 * @param database The partially parsed data from the Matsim event log shown by the scene
+		 * @param network The data parsed from the network definition file
+		 * @param duration Value of the field specifying the total duration of the visualization 
+		 * of each time window
+		 */
+		public WindowSwitcher(WindowPrefetcher windows, int index, CheckPointDatabase database, 
+				NetworkData network, int duration) {
+			this.windows = windows;
+			this.index = index;
+			this.database = database;
+			this.network = network;
+			this.duration = duration;
+		}
+
+		@Override
+		public double getRangeStart() {
+			return windows.getStart(index - 1);
+		}
+
+		@Override
+		public double getRangeEnd() {
+			return windows.getEnd(index + 1);
+		}
+
+		@Override
+		public void switchTo(final double simulationTime) {
+			if (windowSwitching){
+				return;
+			}
+			final int target = Math.max(index - 1, Math.min(index + 1, windows.getIndex(simulationTime)));
+			if (target == index){
+				visualizer.resetSlider();
+				return;
+			}
+			startSwitching(target, simulationTime, false);
+		}
+		
+		@Override
+		public void continuePlayback(boolean forward) {
+			if (!streamingPlayback || windowSwitching){
+				return;
+			}
+			int target = forward ? (index + 1) : (index - 1);
+			double simulationTime = forward ? windows.getStart(target) : windows.getEnd(target);
+			startSwitching(target, simulationTime, true);
+		}
+		
+		/**
+		 * Starts switching the visualization to the given time window in a background thread
+		 * @param target Index of the time window
+		 * @param simulationTime The simulation time the visualization is switched to
+		 * @param play If true, the new timeline is started even if the previous one has not been running
+		 */
+		private void startSwitching(final int target, final double simulationTime, final boolean play){
+			windowSwitching = true;
+			new Thread(){
+
+				@Override
+				public void run() {
+					try {
+						switchWindow(target, simulationTime, play);
+					} catch (CancellationException ex){
+						// A new scene has been imported in the meantime
+						finishSwitching(null, null, simulationTime, false);
+					} catch (IOException | SelectionTooBigException | ElementTooLargeException | 
+							ParserConfigurationException | SAXException | RuntimeException ex){
+						windows.forget(target);
+						finishSwitching(null, null, simulationTime, false);
+						if (windows == windowPrefetcher){
+							reportError("Could not load the neighbouring time window of the event logs:", 
+									String.valueOf(ex.getMessage()));
+						}
+					}
+				}
+			}.start();
+		}
+		
+		/**
+		 * Loads the given time window, unless it has been prefetched, and shows its scene. If the time
+		 * window does not contain any Matsim events, the following ones in the same direction are tried,
+		 * until the end of the Matsim event log is passed.
+		 * @param target Index of the time window
+		 * @param simulationTime The simulation time the visualization is switched to
+		 * @param play If true, the new timeline is started even if the previous one has not been running
+		 * @throws IOException If some of the event logs does not exist or is inaccessible,
+		 * or if a person shape could not be loaded
+		 * @throws SelectionTooBigException If the time window is too large to handle 
+		 * @throws ElementTooLargeException If an event element in the event logs is too large
+		 * @throws ParserConfigurationException Should never happen
+		 * @throws SAXException When there is any problem when parsing the event logs
+		 */
+		private void switchWindow(int target, double simulationTime, boolean play) throws IOException, 
+				SelectionTooBigException, ElementTooLargeException, ParserConfigurationException, SAXException {
+			int direction = (target > index) ? 1 : -1;
+			boolean bounded = windows.isLogBounded(direction > 0);
+			EventWindow window = windows.join(target);
+			for (int skipped = 0; window.isEmpty() && (windows == windowPrefetcher) && 
+					!windows.isOutsideLog(target + direction) && (bounded || (skipped < maxSkippedWindows)); skipped++){
+				target += direction;
+				simulationTime = (direction > 0) ? windows.getStart(target) : windows.getEnd(target);
+				window = windows.join(target);
+			}
+			if (window.isEmpty() || (windows != windowPrefetcher)){
+				finishSwitching(null, null, simulationTime, false);
+				return;
+			}
+			MapScene scene = buildScene(network, window.getDatabase(), window.getEnsembleEvents(), 
+					window.getMinTime(), window.getMaxTime(), duration);
+			scene.setWindowSwitch(new WindowSwitcher(windows, target, window.getDatabase(), network, duration));
+			finishSwitching(scene, window.getDatabase(), simulationTime, play);
+			if (streamingPlayback){
+				windows.retainAround(target);
+			}
+			windows.prefetchAround(target);
+		}
+		
+		/**
+		 * Shows the scene of the time window which the visualization has been switched to,
+		 * in the JavaFX application thread. The new timeline continues from the given time at the
+		 * rate of the previous one, running if the previous one has been running. Then, the databases
+		 * of the time windows evicted by the prefetcher are released, except for the shown one.
+		 * @param scene The scene of the time window, or null if the visualization could not be switched
+		 * @param sceneDatabase The partially parsed data from the Matsim event log shown by the scene,
+		 * or null if there is no scene
+		 * @param simulationTime The simulation time the visualization is switched to
+		 * @param play If true, the new timeline is started even if the previous one has not been running
+		 */
+		private void finishSwitching(final MapScene scene, final CheckPointDatabase sceneDatabase, 
+				final double simulationTime, final boolean play){
+			Platform.runLater(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						boolean shown = showScene();
+						if (windows != shownPrefetcher){
+							// The scene has been replaced by a new import
+							windows.release(null);
+						} else {
+							windows.release(shown ? sceneDatabase : database);
+						}
+					} finally {
+						windowSwitching = false;
+					}
+				}
+				
+				/**
+				 * Shows the scene of the time window, or resets the slider if there is none
+				 * @return True iff the scene has been shown
+				 */
+				private boolean showScene(){
+					if ((scene == null) || (windows != windowPrefetcher)){
+						visualizer.resetSlider();
+						return false;
+					} else {
+						MapScene previous = visualizer.getScene();
+						boolean running = play || ((previous != null) && 
+								(previous.getTimeLine().getStatus() == Status.RUNNING));
+						visualizer.setScene(scene, true);
+						if (previous != null){
+							scene.getTimeLine().setRate(previous.getTimeLine().getRate());
+						}
+						double time = Math.max(scene.getMinTime(), Math.min(scene.getMaxTime(), simulationTime));
+						Duration position = new Duration(scene.convertToVisualizationTime(time));
+						if (running){
+							scene.getTimeLine().playFrom(position);
+						} else {
+							scene.getTimeLine().jumpTo(position);
+						}
+						return true;
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * The data parsed from the network definition file
+	 */
+	private static class NetworkData {
+		
+		/**
+		 * The parsed node elements, indexed by their node IDs
+		 */
+		private final Map<String,MyNode> nodes;
+		
+		/**
+		 * The parsed link elements, indexed by their link IDs
+		 */
+		private final Map<String,MyLink> links;
+		
+		/**
+		 * The parsed background of the visualization, may be null
+		 */
+		private final Background background;
+
+		/**
+		 * @param nodes The parsed node elements, indexed by their node IDs
+		 * @param links The parsed link elements, indexed by their link IDs
+		 * @param background The parsed background of the visualization, may be null
+		 */
+		public NetworkData(Map<String, MyNode> nodes, Map<String, MyLink> links, Background background) {
+			this.nodes = nodes;
+			this.links = links;
+			this.background = background;
+		}
+	}
+	
+	/**
+	 * Parses the network definition file, i.e. the nodes, links, corridors and background.
+	 * @param networkFile The network definition file
+	 * @param encoding Character encoding set used by the network definition file
+	 * @return The data parsed from the network definition file
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SAXException When there is any problem when parsing the XML document. 
+	 * It is generally used as a wrapper for other kinds of exceptions.
+	 * @throws IOException If the network definition file does not exist or is inaccessible.
+	 */
+	private NetworkData parseNetwork(Path networkFile, String encoding) 
+			throws ParserConfigurationException, SAXException, IOException {
+		NodeHandler nodeHandler = new NodeHandler();
+		LinkHandler linkHandler = new LinkHandler(nodeHandler.getNodes(), singlePassNetwork);
+		CorridorHandler corridorHandler = new CorridorHandler(linkHandler.getLinks(), singlePassNetwork);
+		BackgroundHandler backgroundHandler = new BackgroundHandler();
+		if (singlePassNetwork){
+			MultiplexingHandler networkHandler = new MultiplexingHandler(
+					nodeHandler, linkHandler, corridorHandler, backgroundHandler);
+			XMLextractor.run(networkFile, encoding, networkHandler);
+		} else {
+			XMLextractor.run(networkFile, encoding, nodeHandler);
+			XMLextractor.run(networkFile, encoding, linkHandler);
+			XMLextractor.run(networkFile, encoding, corridorHandler);
+			XMLextractor.run(networkFile, encoding, backgroundHandler);
+		}
+		return new NetworkData(nodeHandler.getNodes(), linkHandler.getLinks(), backgroundHandler.getResult());
+	}
+	
+	/**
+	 * Parses the network definition, the Matsim event log and the ensemble event log concurrently,
+	 * using an {@link ImportScheduler}. The network definition, the selection of the relevant part 
+	 * of the Matsim event log and the ensemble event log are processed at the same time. The Matsim
+	 * event log is parsed as soon as the network definition is available, because the 
+	 * parsed events refer to the parsed links. If the Matsim event log is given in several
+	 * shards, they are time-windowed and parsed concurrently at that point, see 
+	 * {@link SceneImportHandler#parseMatsimShards(List, String, Map, boolean, Double, Double)}.
+	 * @param onlyAgents Value of the checkbox specifying whether only JDEECo agents should be shown
+	 * @param startAt Value of the field specifying the simulation time at which visualization should start
+	 * @param endAt Value of the field specifying the simulation time at which visualization should end
+	 * @param networkFile The network definition file
+	 * @param networkFileEncoding Character encoding set used by the network definition file
+	 * @param eventField The GUI input field for entering the Matsim event log file path
+	 * @param ensembleField The GUI input field for entering the ensemble event log file path
+	 * @return The data parsed from the network definition file
+	 * @throws IOException If some of the source XML files does not exist or is inaccessible.
+	 * @throws SelectionTooBigException If the selected time interval is too large to handle 
+	 * @throws ElementTooLargeException If an event element in the Matsim or ensemble event log is too large
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SAXException When there is any problem when parsing the XML document. 
+	 * It is generally used as a wrapper for other kinds of exceptions.
+	 */
+	private NetworkData importConcurrently(final boolean onlyAgents, final Double startAt, final Double endAt, 
+			final Path networkFile, final String networkFileEncoding, TextField eventField, TextField ensembleField) 
+					throws IOException, SelectionTooBigException, ElementTooLargeException, 
+					ParserConfigurationException, SAXException {
+		final List<Path> eventsFiles = getEventsFiles(eventField);
+		final Path eventsFile = eventsFiles.get(0);
+		final boolean sharded = eventsFiles.size() > 1;
+		final String eventsFileEncoding = charsetBoxes.get(1).getSelectionModel().getSelectedItem();
+		try (ImportScheduler scheduler = new ImportScheduler(importThreads)){
+			Future<NetworkData> networkStep = scheduler.submit(new Callable<NetworkData>() {
+
+				@Override
+				public NetworkData call() throws Exception {
+					return parseNetwork(networkFile, networkFileEncoding);
+				}
+			});
+			EventLogCache cache = (eventLogCache && !sharded) ? 
+					EventLogCache.open(eventsFile, startAt, endAt, onlyAgents) : null;
+			Future<EventLogSection> eventsDataStep = null;
+			if ((cache == null) && !sharded){
+				eventsDataStep = scheduler.submitResource(new Callable<EventLogSection>() {
+	
+					@Override
+					public EventLogSection call() throws Exception {
+						return getEventLogSection(eventsFile, eventsFileEncoding, startAt, endAt, 1);
+					}
+				});
+			}
+			Future<List<EnsembleEvent>> ensembleStep = null;
+			if (ensembleEventsPresent){
+				final Path ensembleFile = Paths.get(ensembleField.getText());
+				final String ensembleFileEncoding = charsetBoxes.get(2).getSelectionModel().getSelectedItem();
+				ensembleStep = scheduler.submit(new Callable<List<EnsembleEvent>>() {
+
+					@Override
+					public List<EnsembleEvent> call() throws Exception {
+						return parseEnsembleEvents(ensembleFile, ensembleFileEncoding, startAt, endAt);
+					}
+				});
 			}
-		});		
+			EventLogSection eventsData = (eventsDataStep == null) ? null : scheduler.claim(eventsDataStep);
+			try (EventLogSection eventsSection = eventsData){
+				NetworkData network = scheduler.join(networkStep);
+				CheckPointDatabase database;
+				if (sharded){
+					database = parseMatsimShards(eventsFiles, eventsFileEncoding, network.links, 
+							onlyAgents, startAt, endAt);
+				} else if (cache == null){
+					database = parseMatsimEvents(eventsFile, eventsSection, eventsFileEncoding, network.links, 
+							onlyAgents, startAt, endAt, eventLogCache);
+				} else {
+					database = replayCachedEvents(cache, network.links);
+				}
+				setMatsimEventsData(database, startAt, endAt);
+				ensembleEvents = (ensembleStep == null) ? null : scheduler.join(ensembleStep);
+				return network;
+			}
+		}
 	}
 	
 	/**
@@ -477,7 +1096,7 @@ class SceneImportHandler implements EventHandler<ActionEvent>{
 	 * @throws IOException If the source XML file, specified by a method parameter, 
 	 * does not exist or is inaccessible.
 	 * @throws SelectionTooBigException If the selected time interval is too large to handle 
-	 * @throws ElementTooLargeException If an event element in the Matsim event log is too large
+	 * @throws ElementTooLargeException If an event element in the Matsim or ensemble event log is too large
 	 * @throws ParserConfigurationException Should never happen
 	 * @throws SAXException When there is any problem when parsing the XML document. 
 	 * It is generally used as a wrapper for other kinds of exceptions.
@@ -487,29 +1106,17 @@ class SceneImportHandler implements EventHandler<ActionEvent>{
 					throws IOException, SelectionTooBigException, ElementTooLargeException, 
 					ParserConfigurationException, SAXException{
 		if(matsimEventsPresent){
-			Path eventsFile = Paths.get(eventField.getText());
+			List<Path> eventsFiles = getEventsFiles(eventField);
 			String eventsFileEncoding = charsetBoxes.get(1).getSelectionModel().getSelectedItem();
-			InputStream eventsStream = getEventLogStream(eventsFile, eventsFileEncoding, startAt, endAt);
-			MatsimEventHandler matsimEventHandler = new MatsimEventHandler(
-					links, onlyAgents, startAt, endAt);
-			XMLextractor.run(eventsStream, eventsFileEncoding, matsimEventHandler);
-			cdb = buildCheckPointDatabase(matsimEventHandler.getEvents());
-			if (startAt == null){
-				minTime = cdb.getMinTime();
-			} else {
-				minTime = Math.max(startAt * 1.0, cdb.getMinTime());
-			}
-			if (endAt == null){
-				maxTime = cdb.getMaxTime();
-			} else {
-				maxTime = Math.min(endAt * 1.0, cdb.getMaxTime());
-			}
+			CheckPointDatabase database = loadMatsimEvents(eventsFiles, eventsFileEncoding, links, 
+					onlyAgents, startAt, endAt, eventLogCache);
+			setMatsimEventsData(database, startAt, endAt);
 			if (ensembleEventsPresent){
 				Path ensembleFile = Paths.get(ensembleField.getText());
 				String ensembleFileEncoding = charsetBoxes.get(2).getSelectionModel().getSelectedItem();									
-				EnsembleHandler ensembleHandler = new EnsembleHandler(startAt, endAt);
-				XMLextractor.run(ensembleFile, ensembleFileEncoding, ensembleHandler);
-				ensembleEvents = ensembleHandler.getEvents();
+				ensembleEvents = parseEnsembleEvents(ensembleFile, ensembleFileEncoding, startAt, endAt);
+			} else {
+				ensembleEvents = null;
 			}
 		} else {
 			ensembleEvents = null;
@@ -519,6 +1126,440 @@ class SceneImportHandler implements EventHandler<ActionEvent>{
 		}
 	}
 	
+	/**
+	 * If true, the Matsim event log is split into chunks which are parsed in parallel
+	 * by a {@link ParallelEventParser}. Otherwise, it is parsed in a single thread.
+	 */
+	private final boolean parallelEventParsing = true;
+	
+	/**
+	 * If true, the event logs are parsed by the {@link EventLogTokenizer} whenever possible,
+	 * bypassing the SAX engine. Otherwise, they are always parsed by the SAX engine.
+	 */
+	private final boolean eventLogTokenizer = true;
+	
+	/**
+	 * If true, the events parsed from a Matsim event log are stored in an {@link EventLogCache}
+	 * next to the event log, and the later imports of the same event log load the events 
+	 * from the cache instead of parsing the event log again.
+	 */
+	private final boolean eventLogCache = true;
+	
+	/**
+	 * If true, the {@link CheckPointDatabase} is built by several worker threads, each of them 
+	 * handling the events of a subset of the people, see {@link CheckPointBuilder}. Otherwise,
+	 * it is built by the thread receiving the parsed events.
+	 */
+	private final boolean parallelCheckPointBuild = true;
+	
+	/**
+	 * Number of the worker threads building the {@link CheckPointDatabase}, 
+	 * if {@link SceneImportHandler#parallelCheckPointBuild} holds
+	 */
+	private final int checkPointBuildThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+	
+	/**
+	 * The columns of the {@link CheckPointDatabase} are kept on the heap as long as they take at most
+	 * this many bytes. Larger databases are kept outside of the heap, so that the scenarios producing
+	 * more checkpoints than a reasonable maximum heap size can hold can still be visualized.
+	 */
+	private final long checkPointMemoryBudget = Runtime.getRuntime().maxMemory() / 4;
+	
+	/**
+	 * The part of {@link SceneImportHandler#checkPointMemoryBudget} given to each {@link CheckPointDatabase}
+	 * of the current scene. If the scene is switched between time windows, the budget is shared by the 
+	 * windows held by the {@link WindowPrefetcher} and one more, which has been evicted but is still
+	 * being shown or loaded. Otherwise, the only database gets the whole budget.
+	 */
+	private volatile long checkPointBudgetShare = checkPointMemoryBudget;
+	
+	/**
+	 * If true, the columns of the {@link CheckPointDatabase} which do not fit into 
+	 * {@link SceneImportHandler#checkPointBudgetShare} are moved outside of the heap, so the number of the 
+	 * Matsim events in the selection is not limited. Otherwise, the columns are always kept on the heap,
+	 * and the number of the Matsim events is limited so that their checkpoints fit into the budget.
+	 */
+	private final boolean offHeapCheckPoints = true;
+	
+	/**
+	 * If true, the columns of the {@link CheckPointDatabase} kept outside of the heap are mapped from
+	 * temporary files, so that they are not limited by the memory available for the direct buffers.
+	 * Otherwise, they are allocated as direct buffers.
+	 */
+	private final boolean mappedCheckPoints = true;
+	
+	/**
+	 * Returns a new builder of the {@link CheckPointDatabase}. Unless {@link SceneImportHandler#offHeapCheckPoints}
+	 * holds, the number of the Matsim events in the selection is limited, so that their checkpoints fit into 
+	 * {@link SceneImportHandler#checkPointBudgetShare}, see {@link CheckPointBuilder#getEventCapacity(long)}. 
+	 * The events are counted by the builder receiving them, whether they are parsed or loaded from an 
+	 * {@link EventLogCache}, and whether they come from a single event log or from its merged shards.
+	 * @return A new builder of the {@link CheckPointDatabase}, which has to be closed
+	 */
+	private CheckPointBuilder createCheckPointBuilder(){
+		int threads = parallelCheckPointBuild ? checkPointBuildThreads : 1;
+		long budget = checkPointBudgetShare;
+		if (offHeapCheckPoints){
+			return new CheckPointBuilder(threads, budget, mappedCheckPoints);
+		} else {
+			return new CheckPointBuilder(threads, Long.MAX_VALUE, false, CheckPointBuilder.getEventCapacity(budget));
+		}
+	}
+	
+	/**
+	 * @param ex Thrown by a {@link CheckPointBuilder} which has been given too many events
+	 * @return The exception reporting the problem to the user, with {@link TooManyEvents} 
+	 * as the wrapped exception
+	 */
+	private static SAXException tooManyEvents(EventLimitExceededException ex){
+		String message = "The selection contains too many <event> elements. \n" + 
+				"Please specify a selection of the log file which contains at most " +
+				ex.getLimit() + " elements.";
+		return new SAXException(new TooManyEvents(message));
+	}
+	
+	/**
+	 * If true, the event logs are not required to be strictly sorted by time, e.g. when they have 
+	 * been merged from the outputs of several parallel runners. The maximum disorder of each event 
+	 * log searched by {@link BigFilesSearch} is measured once, by the scan building its 
+	 * {@link EventLogIndex}, and the sections selected by the search are widened by it. The disorder 
+	 * of the event logs parsed as a whole is measured in their contents loaded into the memory, 
+	 * without building any index. The Matsim events are put back in order by a {@link ReorderingSink} 
+	 * before they reach the {@link CheckPointBuilder}.
+	 */
+	private final boolean disorderTolerantSearch = true;
+	
+	/**
+	 * Returns the maximum disorder of the given Matsim event log, see {@link BigFilesSearch#getMaxDisorder()}.
+	 * If the event log has been searched by {@link BigFilesSearch} (see 
+	 * {@link SceneImportHandler#getEventLogSection(Path, String, Double, Double, int)}), the disorder has been 
+	 * taken from the index of the search already. Otherwise the disorder is measured in the given contents 
+	 * of the (possibly modified) event log, so that no index file is built for the event logs which are 
+	 * not searched.
+	 * @param events The (possibly modified) Matsim event log
+	 * @param encoding Character encoding set used by the event log file
+	 * @param data Contents of the (possibly modified) event log, or null if it is not loaded into the memory
+	 * @return The maximum disorder of the event log. Zero if {@link SceneImportHandler#disorderTolerantSearch}
+	 * does not hold or if the event log is neither searched nor loaded into the memory, in which case
+	 * it is assumed to be sorted.
+	 */
+	private double getEventLogDisorder(EventLogSection events, String encoding, byte[] data){
+		if (!disorderTolerantSearch){
+			return 0;
+		} else if (!Double.isNaN(events.disorder)){
+			return events.disorder;
+		} else {
+			return (data == null) ? 0 : EventLogIndex.getMaxDisorder(data, Charset.forName(encoding));
+		}
+	}
+	
+	/**
+	 * Parses the Matsim event log, as returned by 
+	 * {@link SceneImportHandler#getEventLogSection(Path, String, Double, Double, int)}.
+	 * The parsed events are given to a {@link CheckPointBuilder} one by one, as soon as
+	 * they are parsed, so that they do not have to be held in the memory all at once.
+	 * If the event log is larger than {@link SceneImportHandler#eventLogInMemoryThreshold}, 
+	 * it is streamed through the SAX engine instead of being loaded into the memory.
+	 * If the writeCache parameter holds, the parsed events are also written into the 
+	 * {@link EventLogCache} of the event log. If the event log is only approximately sorted,
+	 * the parsed events are put in order by a {@link ReorderingSink} first.
+	 * @param eventsFile The Matsim event log file
+	 * @param events The (possibly modified) Matsim event log
+	 * @param encoding Character encoding set used by the Matsim event log file
+	 * @param links The parsed link elements, indexed by their link IDs
+	 * @param onlyAgents Value of the checkbox specifying whether only JDEECo agents should be shown
+	 * @param startAt Value of the field specifying the simulation time at which visualization should start
+	 * @param endAt Value of the field specifying the simulation time at which visualization should end
+	 * @param writeCache If true, the parsed events are written into the {@link EventLogCache} of the event log
+	 * @return {@link CheckPointDatabase} instance containing information about the positions of
+	 * people on the map at specified times.
+	 * @throws IOException If it is impossible to read from the Matsim event log file
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SAXException When there is any problem when parsing the XML document. 
+	 * It is generally used as a wrapper for other kinds of exceptions.
+	 */
+	private CheckPointDatabase parseMatsimEvents(Path eventsFile, EventLogSection events, String encoding, 
+			Map<String,MyLink> links, boolean onlyAgents, Double startAt, Double endAt, boolean writeCache) 
+					throws IOException, ParserConfigurationException, SAXException {
+		try (CheckPointBuilder checkPointBuilder = createCheckPointBuilder()){
+			EventLogCacheWriter cacheWriter = null;
+			MatsimEventSink builder = checkPointBuilder;
+			if (writeCache){
+				cacheWriter = new EventLogCacheWriter(eventsFile, checkPointBuilder);
+				builder = cacheWriter;
+			}
+			parseMatsimEvents(events, encoding, links, onlyAgents, startAt, endAt, builder, 1);
+			if (cacheWriter != null){
+				try {
+					cacheWriter.write(eventsFile, startAt, endAt, onlyAgents);
+				} catch (IOException ex){
+					// The cache is optional, e.g. the directory of the event log may be read-only
+				}
+			}
+			return checkPointBuilder.getDatabase();
+		} catch (EventLimitExceededException ex){
+			throw tooManyEvents(ex);
+		}
+	}
+	
+	/**
+	 * Parses the Matsim event log, as returned by 
+	 * {@link SceneImportHandler#getEventLogSection(Path, String, Double, Double, int)}, giving the parsed
+	 * events to the given sink one by one, sorted by time. If the event log is larger than 
+	 * {@link SceneImportHandler#eventLogInMemoryThreshold}, or if its length is not known
+	 * without reading it, it is streamed through the SAX engine instead of being loaded 
+	 * into the memory. If the event log is only approximately sorted,
+	 * the parsed events are put in order by a {@link ReorderingSink}. If several event logs are parsed 
+	 * at the same time, they share the threshold and the processors parsing them.
+	 * @param events The (possibly modified) Matsim event log
+	 * @param encoding Character encoding set used by the Matsim event log file
+	 * @param links The parsed link elements, indexed by their link IDs
+	 * @param onlyAgents Value of the checkbox specifying whether only JDEECo agents should be shown
+	 * @param startAt Value of the field specifying the simulation time at which visualization should start
+	 * @param endAt Value of the field specifying the simulation time at which visualization should end
+	 * @param sink Receives the parsed events
+	 * @param shares Number of the event logs parsed at the same time, e.g. the shards of an event log
+	 * @throws IOException If it is impossible to read from the Matsim event log file
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SAXException When there is any problem when parsing the XML document. 
+	 * It is generally used as a wrapper for other kinds of exceptions.
+	 */
+	private void parseMatsimEvents(EventLogSection events, String encoding, Map<String,MyLink> links, 
+			boolean onlyAgents, Double startAt, Double endAt, MatsimEventSink sink, int shares) 
+					throws IOException, ParserConfigurationException, SAXException {
+		InputStream eventsStream = events.stream;
+		long length = InputFiles.getKnownLength(eventsStream);
+		boolean inMemory = (length >= 0) && (length <= (eventLogInMemoryThreshold / shares)) && 
+				(parallelEventParsing || eventLogTokenizer);
+		byte[] eventsData = inMemory ? InputFiles.readFully(eventsStream, (int)length) : null;
+		MatsimEventSink builder = sink;
+		ReorderingSink reordering = null;
+		double disorder = getEventLogDisorder(events, encoding, eventsData);
+		if (disorder > 0){
+			reordering = new ReorderingSink(builder, disorder);
+			builder = reordering;
+		}
+		if (inMemory && parallelEventParsing){
+			int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / shares);
+			ParallelEventParser parser = new ParallelEventParser(links, onlyAgents, startAt, endAt, 
+					Charset.forName(encoding), parallelism);
+			parser.setUseTokenizer(eventLogTokenizer);
+			parser.parse(eventsData, builder);
+		} else if (inMemory){
+			EventLogTokenizer.parseMatsimEvents(eventsData, Charset.forName(encoding), links, 
+					onlyAgents, startAt, endAt, builder);
+		} else {
+			MatsimEventHandler matsimEventHandler = new MatsimEventHandler(
+					links, onlyAgents, startAt, endAt, builder);
+			XMLextractor.run(eventsStream, encoding, matsimEventHandler);
+		}
+		if (reordering != null){
+			reordering.flush();
+		}
+	}
+	
+	/**
+	 * Parses the shards of a Matsim event log, merging their events by time. Each shard is
+	 * time-windowed by {@link SceneImportHandler#getEventLogSection(Path, String, Double, Double, int)} 
+	 * and parsed on its own thread, while the parsed events are merged by a {@link ShardMerger}
+	 * in the calling thread and given to a {@link CheckPointBuilder}. Since the merge needs all of the shards 
+	 * to be parsed at the same time, they share {@link SceneImportHandler#eventLogMemoryBudget}, 
+	 * {@link SceneImportHandler#eventLogInMemoryThreshold} and the processors parsing them. The number of 
+	 * the events is limited by the builder receiving the merged events. The shards are not cached.
+	 * @param eventsFiles The shards of the Matsim event log
+	 * @param encoding Character encoding set used by the shards
+	 * @param links The parsed link elements, indexed by their link IDs
+	 * @param onlyAgents Value of the checkbox specifying whether only JDEECo agents should be shown
+	 * @param startAt Value of the field specifying the simulation time at which visualization should start
+	 * @param endAt Value of the field specifying the simulation time at which visualization should end
+	 * @return {@link CheckPointDatabase} instance containing information about the positions of
+	 * people on the map at specified times.
+	 * @throws IOException If some of the shards does not exist or is inaccessible
+	 * @throws SelectionTooBigException If the selected time interval is too large to handle 
+	 * @throws ElementTooLargeException If an event element in some of the shards is too large
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SAXException When there is any problem when parsing the XML document. 
+	 * It is generally used as a wrapper for other kinds of exceptions.
+	 */
+	private CheckPointDatabase parseMatsimShards(List<Path> eventsFiles, final String encoding, 
+			final Map<String,MyLink> links, final boolean onlyAgents, final Double startAt, final Double endAt) 
+					throws IOException, SelectionTooBigException, ElementTooLargeException, 
+					ParserConfigurationException, SAXException {
+		try (CheckPointBuilder builder = createCheckPointBuilder();
+				ImportScheduler scheduler = new ImportScheduler(eventsFiles.size())){
+			final int shards = eventsFiles.size();
+			final ShardMerger merger = new ShardMerger(builder, shards);
+			List<Future<Void>> steps = new ArrayList<>();
+			for (int i = 0; i < eventsFiles.size(); i++){
+				final Path eventsFile = eventsFiles.get(i);
+				final int shard = i;
+				steps.add(scheduler.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						try (EventLogSection events = getEventLogSection(eventsFile, encoding, startAt, endAt, shards)){
+							parseMatsimEvents(events, encoding, links, onlyAgents, startAt, endAt, 
+									merger.getShardSink(shard), shards);
+						} catch (Exception ex){
+							merger.abort();
+							throw ex;
+						} finally {
+							merger.finish(shard);
+						}
+						return null;
+					}
+				}));
+			}
+			try {
+				merger.merge();
+			} catch (CancellationException ex){
+				// Some of the shards could not be parsed, its exception is rethrown below
+			} catch (RuntimeException ex){
+				merger.abort();
+				throw ex;
+			}
+			CancellationException cancelled = null;
+			for (Future<Void> step : steps){
+				try {
+					scheduler.join(step);
+				} catch (CancellationException ex){
+					// The shard has been stopped because another one could not be parsed
+					cancelled = ex;
+				}
+			}
+			if (cancelled != null){
+				throw cancelled;
+			}
+			return builder.getDatabase();
+		} catch (EventLimitExceededException ex){
+			throw tooManyEvents(ex);
+		}
+	}
+	
+	/**
+	 * Loads the Matsim events of the given time interval from the given Matsim event log, or from
+	 * its shards if there are several of them. A single event log is loaded from its {@link EventLogCache}
+	 * if the cache covers the time interval, otherwise it is parsed.
+	 * @param eventsFiles The Matsim event log file, or its shards
+	 * @param encoding Character encoding set used by the Matsim event log files
+	 * @param links The parsed link elements, indexed by their link IDs
+	 * @param onlyAgents Value of the checkbox specifying whether only JDEECo agents should be shown
+	 * @param startAt Value of the field specifying the simulation time at which visualization should start
+	 * @param endAt Value of the field specifying the simulation time at which visualization should end
+	 * @param writeCache If true, the events parsed from a single event log are written into its {@link EventLogCache}
+	 * @return {@link CheckPointDatabase} instance containing information about the positions of
+	 * people on the map at specified times.
+	 * @throws IOException If some of the event log files does not exist or is inaccessible
+	 * @throws SelectionTooBigException If the selected time interval is too large to handle 
+	 * @throws ElementTooLargeException If an event element in the event logs is too large
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SAXException When there is any problem when parsing the XML document. 
+	 * It is generally used as a wrapper for other kinds of exceptions.
+	 */
+	private CheckPointDatabase loadMatsimEvents(List<Path> eventsFiles, String encoding, Map<String,MyLink> links, 
+			boolean onlyAgents, Double startAt, Double endAt, boolean writeCache) throws IOException, 
+			SelectionTooBigException, ElementTooLargeException, ParserConfigurationException, SAXException {
+		if (eventsFiles.size() > 1){
+			return parseMatsimShards(eventsFiles, encoding, links, onlyAgents, startAt, endAt);
+		}
+		Path eventsFile = eventsFiles.get(0);
+		EventLogCache cache = eventLogCache ? EventLogCache.open(eventsFile, startAt, endAt, onlyAgents) : null;
+		if (cache != null){
+			return replayCachedEvents(cache, links);
+		}
+		try (EventLogSection events = getEventLogSection(eventsFile, encoding, startAt, endAt, 1)){
+			return parseMatsimEvents(eventsFile, events, encoding, links, onlyAgents, startAt, endAt, writeCache);
+		}
+	}
+	
+	/**
+	 * Resolves the value of the GUI input field for entering the Matsim event log file path, 
+	 * which may list several shards of the event log, see {@link InputFiles#resolveList(String)}
+	 * @param eventField The GUI input field for entering the Matsim event log file path
+	 * @return The Matsim event log file, or its shards
+	 * @throws IOException If no file is listed, or if some of the listed glob patterns 
+	 * does not match any file
+	 */
+	private List<Path> getEventsFiles(TextField eventField) throws IOException {
+		List<Path> eventsFiles = InputFiles.resolveList(eventField.getText());
+		if (eventsFiles.isEmpty()){
+			throw new IOException("Event log file does not exist.");
+		}
+		return eventsFiles;
+	}
+	
+	/**
+	 * Loads the Matsim events from the cache of the event log, instead of parsing the event log
+	 * @param cache The cache of the Matsim event log, containing the selected events
+	 * @param links The parsed link elements, indexed by their link IDs
+	 * @return {@link CheckPointDatabase} instance containing information about the positions of
+	 * people on the map at specified times.
+	 * @throws SAXException If a cached event refers to a link which is not present in the network,
+	 * or if the selection contains too many events
+	 */
+	private CheckPointDatabase replayCachedEvents(EventLogCache cache, Map<String,MyLink> links) 
+			throws SAXException {
+		try (CheckPointBuilder builder = createCheckPointBuilder()){
+			cache.replay(builder, links);
+			return builder.getDatabase();
+		} catch (EventLimitExceededException ex){
+			throw tooManyEvents(ex);
+		}
+	}
+	
+	/**
+	 * Sets the {@link SceneImportHandler#cdb} built out of the parsed Matsim events and 
+	 * computes the {@link SceneImportHandler#minTime} and {@link SceneImportHandler#maxTime} 
+	 * @param database The database built out of the parsed Matsim events
+	 * @param startAt Value of the field specifying the simulation time at which visualization should start
+	 * @param endAt Value of the field specifying the simulation time at which visualization should end
+	 */
+	private void setMatsimEventsData(CheckPointDatabase database, Double startAt, Double endAt){
+		cdb = database;
+		if (startAt == null){
+			minTime = cdb.getMinTime();
+		} else {
+			minTime = Math.max(startAt * 1.0, cdb.getMinTime());
+		}
+		if (endAt == null){
+			maxTime = cdb.getMaxTime();
+		} else {
+			maxTime = Math.min(endAt * 1.0, cdb.getMaxTime());
+		}
+	}
+	
+	/**
+	 * Parses the ensemble event log. Only the section of the ensemble event log covering the
+	 * specified time interval is read, as selected by 
+	 * {@link SceneImportHandler#getEventLogData(Path, String, Double, Double)}.
+	 * @param ensembleFile The ensemble event log file
+	 * @param encoding Character encoding set used by the ensemble event log file
+	 * @param startAt Value of the field specifying the simulation time at which visualization should start
+	 * @param endAt Value of the field specifying the simulation time at which visualization should end
+	 * @return The parsed ensemble events
+	 * @throws IOException If the ensemble event log file does not exist or is inaccessible.
+	 * @throws SelectionTooBigException If the selected time interval is too large to handle 
+	 * @throws ElementTooLargeException If an event element in the ensemble event log is too large
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SAXException When there is any problem when parsing the XML document. 
+	 * It is generally used as a wrapper for other kinds of exceptions.
+	 */
+	private List<EnsembleEvent> parseEnsembleEvents(Path ensembleFile, String encoding, Double startAt, Double endAt) 
+			throws IOException, SelectionTooBigException, ElementTooLargeException, 
+			ParserConfigurationException, SAXException {
+		EnsembleHandler ensembleHandler = new EnsembleHandler(startAt, endAt);
+		try (InputStream stream = getEventLogData(ensembleFile, encoding, startAt, endAt)){
+			long length = InputFiles.getKnownLength(stream);
+			if (eventLogTokenizer && (length >= 0) && (length <= ensembleLogTokenizerThreshold)){
+				byte[] data = InputFiles.readFully(stream, (int)length);
+				return EventLogTokenizer.parseEnsembleEvents(data, Charset.forName(encoding), startAt, endAt);
+			} else {
+				XMLextractor.run(stream, encoding, ensembleHandler);
+			}
+			return ensembleHandler.getEvents();
+		}
+	}
+	
 	/**
 	 * Radius of the circle representing a person in the visualization
 	 */
@@ -531,47 +1572,165 @@ class SceneImportHandler implements EventHandler<ActionEvent>{
 	
 	/**
 	 * If the event log file is at most this big, it is parsed as a whole.
-	 * If the file is larger, intelligent searching is used.
+	 * If the file is larger, intelligent searching is used. For the compressed files, 
+	 * the size of the decompressed contents is considered.
 	 */
 	private final long eventLogFileThreashold = 10L * 1024L * 1024L;
 	
 	/**
-	 * Returns an input stream opened on a possibly modified version of the XML document given in 
-	 * the first parameter. If the XML file is small enough, the returned stream is simply opened 
-	 * on the file. If the XML file is larger than the threshold {@link SceneImportHandler#eventLogFileThreashold}, 
-	 * the stream is opened on a modified version of the XML document. In this modified version, most of the 
+	 * The parts of an event log held in the memory as a whole, while they are being selected
+	 * by {@link BigFilesSearch}, {@link SequentialSearch} or {@link BlockFilesSearch} or parsed, 
+	 * can be at most this big, in bytes
+	 */
+	private final long eventLogMemoryBudget = Runtime.getRuntime().maxMemory() / 4;
+	
+	/**
+	 * If the (possibly modified) Matsim event log is at most this big, it is loaded into the memory
+	 * and parsed as a whole, possibly in parallel. Larger event logs are streamed through the SAX engine.
+	 * The decision is made by the known length of the event log, before any of it is read.
+	 */
+	private final long eventLogInMemoryThreshold = Math.min(512L * 1024L * 1024L, eventLogMemoryBudget);
+	
+	/**
+	 * If the (possibly modified) ensemble event log is at most this big and {@link SceneImportHandler#eventLogTokenizer}
+	 * holds, it is loaded into the memory and parsed by the {@link EventLogTokenizer}. 
+	 * Larger event logs, and the event logs whose length is not known without reading them,
+	 * are streamed through the SAX engine.
+	 */
+	private final long ensembleLogTokenizerThreshold = Math.min(512L * 1024L * 1024L, eventLogMemoryBudget);
+	
+	/**
+	 * Returns a possibly modified version of the XML document given in the first parameter. 
+	 * If the XML file is small enough, the whole file is returned. If the XML file is larger 
+	 * than the threshold {@link SceneImportHandler#eventLogFileThreashold}, a modified version 
+	 * of the XML document is returned. In this modified version, most of the 
 	 * event elements that do not belong to the time interval specified in the parameters are discarded, 
 	 * i.e. the resulting document may be much smaller than the whole original document.
-	 * For more info about what "most of the elements" means, see {@link BigFilesSearch}
-	 * @see {@link BigFilesSearch#getSectionWellFormed(double, double)} 
-	 * @param eventLog The Matsim event log file
-	 * @param encoding Character encoding set used by the Matsim event log file
+	 * For more info about what "most of the elements" means, see {@link BigFilesSearch}. 
+	 * If the XML file is compressed by gzip, it is decompressed on the fly. If the decompressed
+	 * document is larger than the threshold, it is searched sequentially by {@link SequentialSearch}, 
+	 * which retrieves exactly the event elements inside the time interval. If the XML file is stored
+	 * in the block-compressed format, only the blocks covering the time interval are decompressed,
+	 * see {@link BlockFilesSearch}. The Matsim event log and the ensemble event log are both 
+	 * retrieved this way.
+	 * @see {@link BigFilesSearch#getSectionStream(Double, Double)} 
+	 * @param eventLog The Matsim or ensemble event log file
+	 * @param encoding Character encoding set used by the event log file
 	 * @param fromTime If not null, specifies the lower bound of the desired time interval. If null,
 	 * no lower bound is given.
 	 * @param toTime If not null, specifies the upper bound of the desired time interval. If null,
 	 * no upper bound is given
-	 * @return Stream opened on a possibly modified version of the Matsim event log file
-	 * @throws IOException If it is impossible to read from the Matsim event log file
+	 * @return Stream reading the possibly modified version of the event log file, encoded 
+	 * in the given encoding. The sections selected by {@link BigFilesSearch} are not loaded 
+	 * into the memory, they are read from the event log file as the stream is read.
+	 * @throws IOException If it is impossible to read from the event log file
+	 * @throws ElementTooLargeException If some event element is too large
+	 * @throws SelectionTooBigException If the specified time interval is too large
+	 */
+	private InputStream getEventLogData(Path eventLog, String encoding, Double fromTime, Double toTime) 
+			throws IOException, SelectionTooBigException, ElementTooLargeException{
+		return getEventLogSection(eventLog, encoding, fromTime, toTime, 1).stream;
+	}
+	
+	/**
+	 * Returns the same (possibly modified) version of the event log as
+	 * {@link SceneImportHandler#getEventLogData(Path, String, Double, Double)}, together with 
+	 * the maximum disorder of the event log, if it is known to the {@link BigFilesSearch} 
+	 * selecting the section. The disorder is then taken from the index of the search which 
+	 * has been built for the selection already, see {@link BigFilesSearch#getMaxDisorder()}. If several 
+	 * event logs are selected at the same time, they share {@link SceneImportHandler#eventLogMemoryBudget}.
+	 * @param eventLog The Matsim or ensemble event log file
+	 * @param encoding Character encoding set used by the event log file
+	 * @param fromTime If not null, specifies the lower bound of the desired time interval. If null,
+	 * no lower bound is given.
+	 * @param toTime If not null, specifies the upper bound of the desired time interval. If null,
+	 * no upper bound is given
+	 * @param shares Number of the event logs selected at the same time, e.g. the shards of an event log
+	 * @return The possibly modified version of the event log file, with its maximum disorder
+	 * @throws IOException If it is impossible to read from the event log file
 	 * @throws ElementTooLargeException If some event element is too large
 	 * @throws SelectionTooBigException If the specified time interval is too large
 	 */
-	private InputStream getEventLogStream(Path eventLog, String encoding, Double fromTime, Double toTime) 
-			throws IOException, SelectionTooBigException, ElementTooLargeException{	
+	private EventLogSection getEventLogSection(Path eventLog, String encoding, Double fromTime, Double toTime, 
+			int shares) throws IOException, SelectionTooBigException, ElementTooLargeException{	
+		long memoryBudget = eventLogMemoryBudget / shares;
 		if (Files.exists(eventLog)){
-			if (Files.size(eventLog) <= eventLogFileThreashold){
-				return Files.newInputStream(eventLog);
+			if (BlockCompressedLog.isBlockCompressed(eventLog)){
+				long length;
+				try (BlockCompressedLog log = new BlockCompressedLog(eventLog)){
+					length = log.getTotalLength();
+				}
+				if (length <= eventLogFileThreashold){
+					try (InputStream stream = InputFiles.open(eventLog)){
+						return new EventLogSection(new ByteArrayInputStream(InputFiles.readAtMost(stream, (int)length)));
+					}
+				}
+				BlockFilesSearch search = new BlockFilesSearch(eventLog, memoryBudget);
+				return new EventLogSection(new ByteArrayInputStream(search.getSectionWellFormed(fromTime, toTime)));
+			} else if (InputFiles.isGzip(eventLog)){
+				try (InputStream stream = InputFiles.open(eventLog)){
+					byte[] head = InputFiles.readAtMost(stream, (int)eventLogFileThreashold + 1);
+					if (head.length <= eventLogFileThreashold){
+						return new EventLogSection(new ByteArrayInputStream(head));
+					}
+					InputStream rest = new SequenceInputStream(new ByteArrayInputStream(head), stream);
+					SequentialSearch search = new SequentialSearch(rest, Charset.forName(encoding), memoryBudget);
+					return new EventLogSection(search.getSectionStream(fromTime, toTime));
+				}
+			} else if (Files.size(eventLog) <= eventLogFileThreashold){
+				return new EventLogSection(new ByteArrayInputStream(Files.readAllBytes(eventLog)));
 			} else {
 				Charset charset = Charset.forName(encoding);
-				BigFilesSearch bfs = new BigFilesSearch(eventLog, charset);
-				String document = bfs.getSectionWellFormed(fromTime, toTime);
-				byte[] docBytes = document.getBytes(encoding);
-				return new ByteArrayInputStream(docBytes);
+				BigFilesSearch bfs = new BigFilesSearch(eventLog, charset, memoryBudget);
+				bfs.setDisorderTolerant(disorderTolerantSearch);
+				InputStream section = bfs.getSectionStream(fromTime, toTime);
+				return new EventLogSection(section, bfs.getMaxDisorder());
 			}
 		} else {
 			throw new IOException("Event log file does not exist.");
 		}
 	}
 	
+	/**
+	 * A (possibly modified) version of an event log, as returned by 
+	 * {@link SceneImportHandler#getEventLogSection(Path, String, Double, Double, int)}
+	 */
+	private static class EventLogSection implements Closeable {
+		
+		/**
+		 * Reads the possibly modified version of the event log
+		 */
+		private final InputStream stream;
+		
+		/**
+		 * The maximum disorder of the event log, see {@link BigFilesSearch#getMaxDisorder()}.
+		 * {@link Double#NaN} if the event log has not been searched by {@link BigFilesSearch}.
+		 */
+		private final double disorder;
+
+		/**
+		 * @param stream Reads the possibly modified version of the event log
+		 * @param disorder The maximum disorder of the event log, as found by {@link BigFilesSearch}
+		 */
+		public EventLogSection(InputStream stream, double disorder) {
+			this.stream = stream;
+			this.disorder = disorder;
+		}
+
+		/**
+		 * The maximum disorder of the event log is not known
+		 * @param stream Reads the possibly modified version of the event log
+		 */
+		public EventLogSection(InputStream stream) {
+			this(stream, Double.NaN);
+		}
+
+		@Override
+		public void close() throws IOException {
+			stream.close();
+		}
+	}
+	
 	/**
 	 * Producer of {@link Node} instances, later used for visualizing persons or cars 
 	 */
@@ -713,61 +1872,5 @@ class SceneImportHandler implements EventHandler<ActionEvent>{
 		}
 		
 	}
-	
-	/**
-	 * Given the {@link MatsimEvent} instances parsed from the event log, this method extracts the
-	 * information about the positions of people on the map at specified times. This information
-	 * is then returned packaged in the {@link CheckPointDatabase} instance.
-	 * @param events The {@link MatsimEvent} instances parsed from the event log.
-	 * @return {@link CheckPointDatabase} instance containing information about the positions of
-	 * people on the map at specified times.
-	 */
-	private CheckPointDatabase buildCheckPointDatabase(List<MatsimEvent> events){
-		CheckPointDatabase db = new CheckPointDatabase();
-		for (MatsimEvent event : events){
-			String personID = event.getPerson();
-			double time = event.getTime();
-			if (event.getType() == EventType.PERSON_ENTERS_VEHICLE){	
-				EntersOrLeavesVehicle elv = (EntersOrLeavesVehicle)event;
-				String vehicleID = elv.getVehicleId();
-				CheckPoint cp = new CheckPoint(time, personID, vehicleID, Type.PERSON_ENTERS);
-				db.add(personID, cp);
-				db.setInVehicle(personID, vehicleID);
-			} else if (event.getType() == EventType.PERSON_LEAVES_VEHICLE){
-				EntersOrLeavesVehicle elv = (EntersOrLeavesVehicle)event;
-				String vehicleID = elv.getVehicleId();
-				CheckPoint cp = new CheckPoint(time, personID, vehicleID, Type.PERSON_LEAVES);
-				db.add(personID, cp);
-				db.setInVehicle(personID, null);
-			} else if ((event.getType() == EventType.ENTERED_LINK) || 
-					(event.getType() == EventType.LEFT_LINK)){
-				Type type;
-				if (event.getType() == EventType.ENTERED_LINK){
-					type = Type.LINK_ENTERED;
-				} else {
-					type = Type.LINK_LEFT;
-				}
-				String vehicleID = db.getInVehicle(personID);
-				EnteredOrLeftLink ell = (EnteredOrLeftLink)event;					
-				MyLink link = ell.getLink();
-				boolean justDeparted = db.getJustDeparted(personID);
-				if (justDeparted && (vehicleID == null)){
-					vehicleID = ell.getVehicleId();
-					CheckPoint cp = new CheckPoint(time, personID, vehicleID, Type.PERSON_ENTERS);
-					db.add(personID, cp);
-					db.setInVehicle(personID, vehicleID);
-				}
-				CheckPoint cp = new CheckPoint(link.getId(), time, personID, vehicleID, type);
-				db.add(personID, cp);
-				db.setJustDeparted(personID, false);
-			} else if (event.getType() == EventType.DEPARTURE){
-				db.setJustDeparted(personID, true);
-			} else if (event.getType() == EventType.ARRIVAL){
-				CheckPoint cp = new CheckPoint(time, personID, null, Type.PERSON_LEAVES);
-				db.add(personID, cp);
-			}
-		}
-		return db;
-	}
 		
 }
@@ -17,6 +17,7 @@ import cz.filipekt.jdcv.gui_logic.BackgroundColorHandler;
 import cz.filipekt.jdcv.gui_logic.CloseSceneHandler;
 import cz.filipekt.jdcv.gui_logic.ConfigFileLoader;
 import cz.filipekt.jdcv.gui_logic.ControlsBarItemHandler;
+import cz.filipekt.jdcv.gui_logic.EventLogProfiler;
 import cz.filipekt.jdcv.gui_logic.FileChooserButton;
 import cz.filipekt.jdcv.gui_logic.GraphicsPanelHandler;
 import cz.filipekt.jdcv.gui_logic.ImportSceneHandler;
@@ -37,6 +38,7 @@ import cz.filipekt.jdcv.plugins.PluginWithPreferences;
 import cz.filipekt.jdcv.prefs.GlobalPrefs;
 import cz.filipekt.jdcv.util.CharsetNames;
 import cz.filipekt.jdcv.util.GUIUtils;
+import cz.filipekt.jdcv.util.InputFiles;
 import cz.filipekt.jdcv.util.Resources;
 import javafx.animation.Animation.Status;
 import javafx.animation.Timeline;
@@ -63,6 +65,7 @@ import javafx.scene.control.ScrollPane;
 import javafx.scene.control.Slider;
 import javafx.scene.control.TextField;
 import javafx.scene.control.ToolBar;
+import javafx.scene.control.Tooltip;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.DragEvent;
@@ -113,23 +116,23 @@ public class Visualizer extends Application {
 	 * i.e. moving cars/persons. If false, the visualization only shows the map.
 	 */
 	public void setScene(MapScene newScene, boolean matsimEventsPresent) {
+		if ((scene != null) && (scene.getTimeLine() != null)){
+			scene.getTimeLine().stop();
+			if (timelineToSliderListener != null){
+				scene.getTimeLine().currentTimeProperty().removeListener(timelineToSliderListener);
+				timelineToSliderListener = null;
+			}
+			if (sliderToTimelineListener != null){
+				timelineSlider.valueProperty().removeListener(sliderToTimelineListener);
+				sliderToTimelineListener = null;
+			}
+		}
 		if (newScene == null){
 			showNoMap();
 			controlsBar.setDisable(true);
 			graphicsColumn.setDisable(true);
 			switchablePanel.setDisable(true);
 			timelineSlider.setDisable(true);
-			if ((scene != null) && (scene.getTimeLine() != null)){
-				scene.getTimeLine().stop();
-				if (timelineToSliderListener != null){
-					scene.getTimeLine().currentTimeProperty().removeListener(timelineToSliderListener);
-					timelineToSliderListener = null;
-				}
-				if (sliderToTimelineListener != null){
-					timelineSlider.valueProperty().removeListener(sliderToTimelineListener);
-					sliderToTimelineListener = null;
-				}
-			}
 		} else {
 			setNontrivialScene(newScene, matsimEventsPresent);
 		}
@@ -156,7 +159,12 @@ public class Visualizer extends Application {
 		if (matsimEventsPresent){
 			controlsBar.setDisable(false);
 			timelineSlider.setDisable(false);
-			setSliderParameters(newScene.getMinTime(), newScene.getMaxTime());
+			final MapScene.WindowSwitch windowSwitch = newScene.getWindowSwitch();
+			if (windowSwitch == null){
+				setSliderParameters(newScene.getMinTime(), newScene.getMaxTime());
+			} else {
+				setSliderParameters(windowSwitch.getRangeStart(), windowSwitch.getRangeEnd());
+			}
 			timelineToSliderListener = new ChangeListener<Duration>() {
 
 				@Override
@@ -172,8 +180,13 @@ public class Visualizer extends Application {
 				@Override
 				public void changed(ObservableValue<? extends Number> arg0,
 						Number oldValue, Number newValue) {
-					Duration time = new Duration(
-							newScene.convertToVisualizationTime(newValue.doubleValue()));
+					double value = newValue.doubleValue();
+					if ((windowSwitch != null) && 
+							((value < newScene.getMinTime()) || (value > newScene.getMaxTime()))){
+						windowSwitch.switchTo(value);
+						return;
+					}
+					Duration time = new Duration(newScene.convertToVisualizationTime(value));
 					newScene.getTimeLine().jumpTo(time);
 				}
 			};
@@ -217,6 +230,17 @@ public class Visualizer extends Application {
 		timelineSlider.setBlockIncrement(diff/10);
 	}
 	
+	/**
+	 * Moves the slider in the main window back to the current time of the visualization timeline,
+	 * e.g. when the slider has been dragged to a time window which could not be switched to
+	 */
+	void resetSlider(){
+		if ((scene != null) && (scene.getTimeLine() != null)){
+			double millis = scene.getTimeLine().getCurrentTime().toMillis();
+			timelineSlider.setValue(scene.convertToSimulationTime(millis));
+		}
+	}
+	
 	/**
 	 * Makes sure the changes in visualization timeline current time are projected to
 	 * the position of the slider in the main window
@@ -373,7 +397,7 @@ public class Visualizer extends Application {
 	 * Sets up the drag&drop functionality for the input fields where user defines the input files
 	 * @param fields The fields where user defines the input files
 	 */
-	private void setUpDragNDrop(List<TextField> fields){
+	private void setUpDragNDrop(final List<TextField> fields){
 		for (final TextField field : fields){
 			field.setOnDragOver(new EventHandler<DragEvent>() {
 	
@@ -388,8 +412,12 @@ public class Visualizer extends Application {
 				public void handle(DragEvent event) {
 					Dragboard dragBoard = event.getDragboard();
 					if (dragBoard.hasFiles()){
-						for (File file : dragBoard.getFiles()){
-							field.setText(file.getAbsolutePath().toString());
+						if ((field == fields.get(eventsFieldIndex)) && (dragBoard.getFiles().size() > 1)){
+							field.setText(InputFiles.formatList(dragBoard.getFiles()));
+						} else {
+							for (File file : dragBoard.getFiles()){
+								field.setText(file.getAbsolutePath().toString());
+							}
 						}
 						event.setDropCompleted(true);
 						event.consume();
@@ -414,6 +442,12 @@ public class Visualizer extends Application {
 	 */
 	private final String loadButtonText = "Load!";
 	
+	/**
+	 * Index of the field for entering the path to the Matsim event log in {@link Visualizer#fields}.
+	 * The field accepts several shards of the event log.
+	 */
+	private final int eventsFieldIndex = 1;
+	
 	/**
 	 * The input text fields for entering the paths to the input files.
 	 * Located in the "import scene" page.
@@ -443,7 +477,13 @@ public class Visualizer extends Application {
 	 * are processed and the visual output is opened.
 	 */
 	private final Button okButton = new Button("OK");
-	
+
+	/**
+	 * Called when {@link Visualizer#okButton} is clicked. Processes the input files
+	 * and opens the visual output.
+	 */
+	private SceneImportHandler sceneImportHandler;
+
 	/**
 	 * The input field for specifying the desired duration of the visualization
 	 */
@@ -467,13 +507,14 @@ public class Visualizer extends Application {
 		double loadButtonWidth = GUIUtils.computeTextLength(loadButtonText) + 40.0;
 		List<Label> labels = new ArrayList<>();
 		labels.add(new Label("Map/network definition:"));
-		labels.add(new Label("Matsim event log:"));
+		labels.add(new Label("Matsim event log(s):"));
 		labels.add(new Label("Ensemble event log:"));
 		List<Button> chooserButtons = new ArrayList<>();				
 		int row = prepareInputFilesControls(importSceneGrid, fields, labels, charsets, 
 				chooserButtons, encodingBoxWidth, selectButtonWidth);	
 		row = prepareOtherControls(importSceneGrid, row, durationField, onlyComponentsBox, 
 				startAtField, endAtField);
+		row = prepareProfileRow(importSceneGrid, row, selectButtonWidth);
 		row += 1;
 		String line = "----------";
 		Label orLabel = new Label(line + " OR " + line);
@@ -484,9 +525,10 @@ public class Visualizer extends Application {
 				encodingBoxWidth, selectButtonWidth, loadButtonWidth, onlyComponentsBox,
 				startAtField, endAtField);
 		row += 2;		
-		okButton.setOnAction(new SceneImportHandler(fields, okButton, onlyComponentsBox, 
+		sceneImportHandler = new SceneImportHandler(fields, okButton, onlyComponentsBox, 
 				importSceneGrid, Visualizer.this, durationField, timeLineStatus, timeLineRate, 
-				startAtField, endAtField, charsets));
+				startAtField, endAtField, charsets);
+		okButton.setOnAction(sceneImportHandler);
 		importSceneGrid.add(okButton, 1, row);
 		importSceneGrid.setAlignment(Pos.CENTER);
 		importSceneGrid.setHgap(importSceneGridHGap);
@@ -526,6 +568,35 @@ public class Visualizer extends Application {
 		return row;
 	}
 	
+	/**
+	 * Builds and prepares the row of the "import scene" page which shows a quick profile
+	 * of the Matsim event log, so that the start and end of the visualization can be chosen
+	 * before the import.
+	 * @param pane Base container for the controls in the "import scene" page
+	 * @param row Number of the row in the pane, to which the controls will be added
+	 * @param selectButtonWidth The preferred width of the buttons used for opening a file selection dialog
+	 * @return The number of the current row, as the "import scene" page is built one row at a time
+	 */
+	private int prepareProfileRow(GridPane pane, int row, double selectButtonWidth){
+		Label profileLabel = new Label("Event log profile:");
+		Label summaryLabel = new Label();
+		HBox histogramBox = new HBox(1);
+		histogramBox.setAlignment(Pos.BOTTOM_LEFT);
+		VBox profileBox = new VBox(5, summaryLabel, histogramBox);
+		Button profileButton = new Button("Profile");
+		profileButton.setPrefWidth(selectButtonWidth);
+		profileButton.setTooltip(new Tooltip("Estimates the time range and the events density of the " + 
+				"Matsim event log. Click a bar of the histogram to visualize its time interval."));
+		profileButton.setOnAction(new EventLogProfiler(fields.get(eventsFieldIndex), 
+				charsets.get(eventsFieldIndex), startAtField, endAtField, profileButton, 
+				summaryLabel, histogramBox));
+		pane.add(profileLabel, 0, row);
+		pane.add(profileBox, 1, row);
+		pane.add(profileButton, 3, row);
+		row += 1;
+		return row;
+	}
+	
 	/**
 	 * Builds and prepares the controls that allow the user to specify the input files.
 	 * @param pane Base container for the controls in the "import scene" page
@@ -558,8 +629,12 @@ public class Visualizer extends Application {
 		for (int i = 0; i < chooserButtons.size(); i++){
 			Button button = chooserButtons.get(i);
 			TextField field = fields.get(i);
-			button.setOnMouseClicked(new FileChooserButton(stage, field, "Select XML file"));
+			boolean multiple = (i == eventsFieldIndex);
+			button.setOnMouseClicked(new FileChooserButton(stage, field, "Select XML file", multiple));
 		}
+		fields.get(eventsFieldIndex).setTooltip(new Tooltip("The event log may be given in several shards, " + 
+				"listed separated by \"" + InputFiles.listSeparator + "\". A file name may also be a glob " + 
+				"pattern, e.g. \"events-*.xml\". The shards are merged by time."));
 		int row = 0;
 		for (int i = 0; i < labels.size(); i++){
 			Label label = labels.get(i);
@@ -1138,6 +1213,7 @@ public class Visualizer extends Application {
 			endAtField.setText(params.getEndAt());
 			onlyComponentsBox.setSelected(params.isJustAgents());
 			durationField.setText(params.getDuration());
+			sceneImportHandler.setConcurrentImport(params.isConcurrentImport());
 			okButton.fire();
 		} catch (Exception ex){
 			ex.printStackTrace();
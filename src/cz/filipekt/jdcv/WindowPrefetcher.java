@@ -0,0 +1,403 @@
+package cz.filipekt.jdcv;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+import cz.filipekt.jdcv.checkpoints.CheckPointDatabase;
+import cz.filipekt.jdcv.events.EnsembleEvent;
+import cz.filipekt.jdcv.util.BigFilesSearch.ElementTooLargeException;
+import cz.filipekt.jdcv.util.BigFilesSearch.SelectionTooBigException;
+
+/**
+ * Keeps the time windows of the event logs, neighbouring the one shown in the scene, parsed
+ * in advance, so that the scene can be switched to them without a blocking reload. The event
+ * logs are divided into windows as long as the time interval selected by the user, indexed
+ * relative to it, i.e. the selected interval is the window 0, the one following it is the
+ * window 1 etc. The windows are loaded in the background, one at a time, and the recently
+ * loaded ones are kept in a LRU cache holding at most {@link WindowPrefetcher#capacity} windows.
+ * The time range covered by the Matsim event log is known approximately, if at all, so that the 
+ * windows lying completely outside of it can be told from the quiet intervals of the simulation.
+ * The databases of the windows which have been evicted from the cache are released explicitly
+ * by {@link WindowPrefetcher#release(CheckPointDatabase)}, once no scene uses them.
+ */
+class WindowPrefetcher implements AutoCloseable {
+
+	/**
+	 * Loads the events of a time window of the event logs
+	 */
+	static interface WindowLoader {
+
+		/**
+		 * @param from Start of the time window
+		 * @param to End of the time window
+		 * @return The events of the time window
+		 * @throws IOException If some of the event logs does not exist or is inaccessible.
+		 * @throws SelectionTooBigException If the time window is too large to handle
+		 * @throws ElementTooLargeException If an event element in the event logs is too large
+		 * @throws ParserConfigurationException Should never happen
+		 * @throws SAXException When there is any problem when parsing the event logs.
+		 */
+		EventWindow load(double from, double to) throws IOException, SelectionTooBigException,
+				ElementTooLargeException, ParserConfigurationException, SAXException;
+	}
+
+	/**
+	 * The events of a time window of the event logs
+	 */
+	static class EventWindow {
+
+		/**
+		 * The partially parsed data from the Matsim event log
+		 */
+		private final CheckPointDatabase database;
+
+		/**
+		 * Parsed event elements from the ensemble event log, null if there is no ensemble event log
+		 */
+		private final List<EnsembleEvent> ensembleEvents;
+
+		/**
+		 * Minimum time value shown at the application timeline
+		 */
+		private final double minTime;
+
+		/**
+		 * Maximum time value shown at the application timeline
+		 */
+		private final double maxTime;
+
+		/**
+		 * @param database The partially parsed data from the Matsim event log
+		 * @param ensembleEvents Parsed event elements from the ensemble event log, null if
+		 * there is no ensemble event log
+		 * @param minTime Minimum time value shown at the application timeline
+		 * @param maxTime Maximum time value shown at the application timeline
+		 */
+		EventWindow(CheckPointDatabase database, List<EnsembleEvent> ensembleEvents, double minTime,
+				double maxTime) {
+			this.database = database;
+			this.ensembleEvents = ensembleEvents;
+			this.minTime = minTime;
+			this.maxTime = maxTime;
+		}
+
+		/**
+		 * @return The partially parsed data from the Matsim event log
+		 */
+		CheckPointDatabase getDatabase() {
+			return database;
+		}
+
+		/**
+		 * @return Parsed event elements from the ensemble event log, null if there is no ensemble event log
+		 */
+		List<EnsembleEvent> getEnsembleEvents() {
+			return ensembleEvents;
+		}
+
+		/**
+		 * @return Minimum time value shown at the application timeline
+		 */
+		double getMinTime() {
+			return minTime;
+		}
+
+		/**
+		 * @return Maximum time value shown at the application timeline
+		 */
+		double getMaxTime() {
+			return maxTime;
+		}
+
+		/**
+		 * @return True iff the Matsim event log does not contain any events in the time window,
+		 * e.g. because the window lies behind the end of the simulation
+		 */
+		boolean isEmpty(){
+			return (database == null) || (database.getPersonsCount() == 0) || !(minTime < maxTime);
+		}
+	}
+
+	/**
+	 * Loads the events of the time windows
+	 */
+	private final WindowLoader loader;
+
+	/**
+	 * Start of the time window 0
+	 */
+	private final double origin;
+
+	/**
+	 * Length of each time window
+	 */
+	private final double width;
+
+	/**
+	 * Maximum number of the time windows held in {@link WindowPrefetcher#windows}
+	 */
+	private final int capacity;
+
+	/**
+	 * The lowest time of the Matsim events, or {@link Double#NEGATIVE_INFINITY} if it is not known
+	 */
+	private final double logStart;
+
+	/**
+	 * The highest time of the Matsim events, or {@link Double#POSITIVE_INFINITY} if it is not known
+	 */
+	private final double logEnd;
+
+	/**
+	 * Loads the time windows in the background, one at a time
+	 */
+	private final ImportScheduler scheduler = new ImportScheduler(1);
+
+	/**
+	 * The recently requested time windows, including the ones still being loaded,
+	 * indexed by their indices and ordered from the least recently used one
+	 */
+	@SuppressWarnings("serial")
+	private final Map<Integer,Future<EventWindow>> windows =
+			new LinkedHashMap<Integer,Future<EventWindow>>(16, 0.75f, true){
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer,Future<EventWindow>> eldest) {
+			if (size() > capacity){
+				evicted.add(eldest.getValue());
+				return true;
+			} else {
+				return false;
+			}
+		}
+	};
+	
+	/**
+	 * The time windows which have been evicted from {@link WindowPrefetcher#windows}, 
+	 * but whose databases have not been released yet
+	 */
+	private final List<Future<EventWindow>> evicted = new ArrayList<>();
+
+	/**
+	 * @param loader Loads the events of the time windows
+	 * @param origin Start of the time window 0
+	 * @param width Length of each time window, must be positive
+	 * @param capacity Maximum number of the time windows held at once
+	 * @param logStart The lowest time of the Matsim events, or {@link Double#NEGATIVE_INFINITY} if it is not known
+	 * @param logEnd The highest time of the Matsim events, or {@link Double#POSITIVE_INFINITY} if it is not known
+	 */
+	WindowPrefetcher(WindowLoader loader, double origin, double width, int capacity, 
+			double logStart, double logEnd) {
+		this.loader = loader;
+		this.origin = origin;
+		this.width = width;
+		this.capacity = capacity;
+		this.logStart = logStart;
+		this.logEnd = logEnd;
+	}
+
+	/**
+	 * @param index Index of a time window
+	 * @return Start of the time window
+	 */
+	double getStart(int index){
+		return origin + (index * width);
+	}
+
+	/**
+	 * @param index Index of a time window
+	 * @return End of the time window
+	 */
+	double getEnd(int index){
+		return getStart(index + 1);
+	}
+
+	/**
+	 * @param time A simulation time
+	 * @return Index of the time window containing the given time
+	 */
+	int getIndex(double time){
+		return (int)Math.floor((time - origin) / width);
+	}
+
+	/**
+	 * @param index Index of a time window
+	 * @return True iff the time window lies completely before the start or after the end 
+	 * of the Matsim event log, as far as they are known
+	 */
+	boolean isOutsideLog(int index){
+		return (getEnd(index) < logStart) || (getStart(index) > logEnd);
+	}
+
+	/**
+	 * @param forward If true, the end of the Matsim event log is asked for. Otherwise, its start.
+	 * @return True iff the given end of the Matsim event log is known
+	 */
+	boolean isLogBounded(boolean forward){
+		return forward ? !Double.isInfinite(logEnd) : !Double.isInfinite(logStart);
+	}
+
+	/**
+	 * Stores a time window which has already been loaded, e.g. the one loaded by the scene import
+	 * @param index Index of the time window
+	 * @param window The events of the time window
+	 */
+	synchronized void put(int index, final EventWindow window){
+		FutureTask<EventWindow> loaded = new FutureTask<>(new Callable<EventWindow>() {
+
+			@Override
+			public EventWindow call() {
+				return window;
+			}
+		});
+		loaded.run();
+		windows.put(index, loaded);
+	}
+
+	/**
+	 * Returns the given time window, which starts being loaded in the background
+	 * if it has not been requested recently
+	 * @param index Index of the time window
+	 * @return Handle to the events of the time window, to be passed to {@link ImportScheduler#join(Future)}
+	 */
+	synchronized Future<EventWindow> get(final int index){
+		Future<EventWindow> window = windows.get(index);
+		if ((window == null) || window.isCancelled()){
+			window = scheduler.submit(new Callable<EventWindow>() {
+
+				@Override
+				public EventWindow call() throws Exception {
+					return loader.load(getStart(index), getEnd(index));
+				}
+			});
+			windows.put(index, window);
+		}
+		return window;
+	}
+
+	/**
+	 * Waits until the given time window is loaded, loading it in the background
+	 * if it has not been requested recently
+	 * @param index Index of the time window
+	 * @return The events of the time window
+	 * @throws IOException If some of the event logs does not exist or is inaccessible, or if the
+	 * waiting thread has been interrupted
+	 * @throws SelectionTooBigException If the time window is too large to handle
+	 * @throws ElementTooLargeException If an event element in the event logs is too large
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SAXException When there is any problem when parsing the event logs.
+	 */
+	EventWindow join(int index) throws IOException, SelectionTooBigException, ElementTooLargeException,
+			ParserConfigurationException, SAXException {
+		return scheduler.join(get(index));
+	}
+
+	/**
+	 * Forgets the given time window, e.g. because it could not be loaded,
+	 * so that it is loaded again when it is requested next time
+	 * @param index Index of the time window
+	 */
+	synchronized void forget(int index){
+		Future<EventWindow> window = windows.remove(index);
+		if (window != null){
+			evicted.add(window);
+		}
+	}
+
+	/**
+	 * Forgets all the time windows except for the given one and its two neighbours, cancelling
+	 * the ones which have not been loaded yet. Used by the streaming playback, so that the
+	 * windows left behind the playhead can be released.
+	 * @param index Index of a time window
+	 */
+	synchronized void retainAround(int index){
+		Iterator<Map.Entry<Integer,Future<EventWindow>>> it = windows.entrySet().iterator();
+		while (it.hasNext()){
+			Map.Entry<Integer,Future<EventWindow>> entry = it.next();
+			if (Math.abs(entry.getKey() - index) > 1){
+				entry.getValue().cancel(true);
+				evicted.add(entry.getValue());
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Starts loading the time windows neighbouring the given one in the background,
+	 * unless they have been requested recently
+	 * @param index Index of a time window
+	 */
+	void prefetchAround(int index){
+		get(index + 1);
+		get(index - 1);
+	}
+
+	/**
+	 * Stops loading the time windows. The windows which have not been loaded yet are cancelled,
+	 * so that nobody waits for them.
+	 */
+	@Override
+	public synchronized void close() {
+		for (Future<EventWindow> window : windows.values()){
+			window.cancel(true);
+			evicted.add(window);
+		}
+		windows.clear();
+		scheduler.close();
+	}
+	
+	/**
+	 * Releases the databases of the evicted time windows, see {@link CheckPointDatabase#release()}. 
+	 * The windows still being loaded are released by a later call, the ones which have been cancelled
+	 * are left to the garbage collector. It is to be called in the JavaFX application thread, once 
+	 * the scene has been switched and no scene is being built out of the windows, so that no 
+	 * database is released while it is being read.
+	 * @param shown The database shown by the current scene, which is kept until a later call. 
+	 * Null if no database of this prefetcher is shown anymore.
+	 */
+	synchronized void release(CheckPointDatabase shown){
+		Iterator<Future<EventWindow>> it = evicted.iterator();
+		while (it.hasNext()){
+			Future<EventWindow> window = it.next();
+			if (window.isDone()){
+				CheckPointDatabase database = getDatabase(window);
+				if ((database == null) || (database != shown)){
+					if (database != null){
+						database.release();
+					}
+					it.remove();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @param window A time window which has finished loading
+	 * @return The database of the time window, or null if it has none, e.g. because 
+	 * the loading has failed or has been cancelled
+	 */
+	private static CheckPointDatabase getDatabase(Future<EventWindow> window){
+		try {
+			EventWindow loaded = window.get();
+			return (loaded == null) ? null : loaded.getDatabase();
+		} catch (ExecutionException | CancellationException ex){
+			return null;
+		} catch (InterruptedException ex){
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package cz.filipekt.jdcv.checkpoints;
 
+import cz.filipekt.jdcv.util.SymbolTable;
+
 /**
  * Marks a relevant event on the timeline. Can hold three types of information -
  * that a person entered a vehicle, left a vehicle, or is at a specified place at specified 
@@ -50,15 +52,16 @@ public class CheckPoint {
 	}
 	
 	/**
-	 * ID of the link
+	 * Symbol of the link, as assigned by {@link CheckPointDatabase#getLinks()}
 	 */
-	private final String linkID;
+	private final int link;
 	
 	/**
-	 * @return ID of the link
+	 * @return Symbol of the link, as assigned by {@link CheckPointDatabase#getLinks()}.
+	 * {@link SymbolTable#noSymbol} if there is no link associated.
 	 */
-	public String getLinkID() {
-		return linkID;
+	public int getLink() {
+		return link;
 	}
 
 	/**
@@ -67,28 +70,29 @@ public class CheckPoint {
 	private final double time;
 	
 	/**
-	 * Who is driving
+	 * Who is driving, as assigned a symbol by {@link CheckPointDatabase#getPersons()}
 	 */
-	private final String person;
+	private final int person;
 	
 	/**
-	 * @return Who is driving
+	 * @return Who is driving, as assigned a symbol by {@link CheckPointDatabase#getPersons()}
 	 * @see {@link CheckPoint#person}
 	 */
-	public String getPerson() {
+	public int getPerson() {
 		return person;
 	}
 	
 	/**
-	 * Vehicle used
+	 * Vehicle used, as assigned a symbol by {@link CheckPointDatabase#getVehicles()}
 	 */
-	private final String vehicle;
+	private final int vehicle;
 
 	/**
-	 * @return Vehicle used
+	 * @return Vehicle used, as assigned a symbol by {@link CheckPointDatabase#getVehicles()}.
+	 * {@link SymbolTable#noSymbol} if there is no vehicle associated.
 	 * @see {@link CheckPoint#vehicle}
 	 */
-	public String getVehicle() {
+	public int getVehicle() {
 		return vehicle;
 	}
 
@@ -101,14 +105,14 @@ public class CheckPoint {
 	}
 
 	/**
-	 * @param linkID ID of the link
+	 * @param link Symbol of the link
 	 * @param time A point in time
-	 * @param person Who is driving/moving
-	 * @param ID of the vehicle driven
+	 * @param person Symbol of the person driving/moving
+	 * @param vehicle Symbol of the vehicle driven
 	 * @param type The type of information this {@link CheckPoint} bears.
 	 */
-	public CheckPoint(String linkID, double time, String person, String vehicle, Type type) {
-		this.linkID = linkID;
+	public CheckPoint(int link, double time, int person, int vehicle, Type type) {
+		this.link = link;
 		this.time = time;
 		this.person = person;
 		this.vehicle = vehicle;
@@ -116,14 +120,15 @@ public class CheckPoint {
 	}
 	
 	/**
-	 * Equal to calling {@code CheckPoint(0,0,time,person,type)}. Useful when the type
+	 * Equal to calling {@code CheckPoint(SymbolTable.noSymbol,time,person,vehicle,type)}. Useful when the type
 	 * is one of {@code PERSON_ENTERS} , {@code PERSON_LEAVES}
 	 * @param time
 	 * @param person
+	 * @param vehicle
 	 * @param type
 	 */
-	public CheckPoint(double time, String person, String vehicle, Type type) {
-		this(null, time, person, vehicle, type);
+	public CheckPoint(double time, int person, int vehicle, Type type) {
+		this(SymbolTable.noSymbol, time, person, vehicle, type);
 	}
 	
 	
@@ -0,0 +1,520 @@
+package cz.filipekt.jdcv.checkpoints;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import cz.filipekt.jdcv.checkpoints.CheckPoint.Type;
+import cz.filipekt.jdcv.events.EnteredOrLeftLink;
+import cz.filipekt.jdcv.events.EntersOrLeavesVehicle;
+import cz.filipekt.jdcv.events.EventType;
+import cz.filipekt.jdcv.events.MatsimEvent;
+import cz.filipekt.jdcv.events.MatsimEventSink;
+import cz.filipekt.jdcv.util.SymbolTable;
+
+/**
+ * Given the {@link MatsimEvent} instances parsed from the event log, this class extracts the
+ * information about the positions of people on the map at specified times. This information
+ * is collected in a {@link CheckPointDatabase} instance. The events are received one by one,
+ * as soon as they are parsed, so they do not have to be kept in the memory. <br>
+ * The state kept while building the database concerns each person separately, so the building 
+ * can be split among several worker threads. If so, the events are hash-partitioned by the person
+ * ID, each partition is built by its own sequential builder on its own thread, and the databases
+ * of the partitions are merged by {@link CheckPointDatabase#merge(List, long, boolean)} at the end. The events 
+ * are passed to the workers in batches, through a bounded queue per partition. The builder then
+ * has to be closed, so that the workers are stopped even if the building does not finish.
+ */
+public class CheckPointBuilder implements MatsimEventSink, AutoCloseable {
+	
+	/**
+	 * The database being built, null if the database is built in parallel by the partitions
+	 */
+	private final CheckPointDatabase db;
+	
+	/**
+	 * The partitions building the database in parallel, null if the database is built 
+	 * by the calling thread
+	 */
+	private final Partition[] partitions;
+	
+	/**
+	 * The merged databases of the partitions, null until the building finishes
+	 */
+	private CheckPointDatabase merged = null;
+	
+	/**
+	 * The columns of the database are kept on the heap as long as they take at most this many bytes,
+	 * see {@link CheckPointDatabase#CheckPointDatabase(long, boolean)}
+	 */
+	private final long memoryBudget;
+	
+	/**
+	 * If true, the columns of the database kept outside of the heap are mapped from temporary files,
+	 * otherwise they are allocated as direct buffers
+	 */
+	private final boolean mapped;
+	
+	/**
+	 * Maximal allowed number of the events given to the builder, see {@link CheckPointBuilder#add(double, 
+	 * EventType, String, String, String)}. Both the parsed events and the events loaded from an
+	 * {@link EventLogCache} are counted by this single rule.
+	 */
+	private final long eventLimit;
+	
+	/**
+	 * Number of the events given to the builder
+	 */
+	private long eventCount = 0;
+	
+	/**
+	 * The database is built by the calling thread and kept on the heap
+	 */
+	public CheckPointBuilder() {
+		this(1, Long.MAX_VALUE, false);
+	}
+	
+	/**
+	 * The number of the events is not limited
+	 * @param threads Number of the worker threads building the database. If not greater 
+	 * than 1, the database is built by the calling thread.
+	 * @param memoryBudget The columns of the database are kept on the heap as long as they take 
+	 * at most this many bytes, otherwise they are kept outside of the heap. If the database is
+	 * built in parallel, the budget is divided among the partitions.
+	 * @param mapped If true, the columns of the database kept outside of the heap are mapped from 
+	 * temporary files, otherwise they are allocated as direct buffers
+	 */
+	public CheckPointBuilder(int threads, long memoryBudget, boolean mapped) {
+		this(threads, memoryBudget, mapped, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * @param threads Number of the worker threads building the database. If not greater 
+	 * than 1, the database is built by the calling thread.
+	 * @param memoryBudget The columns of the database are kept on the heap as long as they take 
+	 * at most this many bytes, otherwise they are kept outside of the heap. If the database is
+	 * built in parallel, the budget is divided among the partitions.
+	 * @param mapped If true, the columns of the database kept outside of the heap are mapped from 
+	 * temporary files, otherwise they are allocated as direct buffers
+	 * @param eventLimit Maximal allowed number of the events given to the builder
+	 */
+	public CheckPointBuilder(int threads, long memoryBudget, boolean mapped, long eventLimit) {
+		this.eventLimit = eventLimit;
+		this.memoryBudget = memoryBudget;
+		this.mapped = mapped;
+		if (threads > 1){
+			db = null;
+			partitions = new Partition[threads];
+			for (int i = 0; i < threads; i++){
+				partitions[i] = new Partition(memoryBudget / threads);
+				partitions[i].start();
+			}
+		} else {
+			db = new CheckPointDatabase(memoryBudget, mapped);
+			partitions = null;
+		}
+	}
+	
+	/**
+	 * Seals the database (see {@link CheckPointDatabase#seal()}), so it is to be called 
+	 * when all the events have been received. If the database is built in parallel, waits
+	 * until the partitions are built and merges them.
+	 * @return The database containing information about the positions of
+	 * people on the map at specified times.
+	 * @throws CancellationException If the building has been stopped by {@link CheckPointBuilder#close()}
+	 * or the waiting thread has been interrupted
+	 */
+	public CheckPointDatabase getDatabase() {
+		if (partitions == null){
+			db.seal();
+			return db;
+		}
+		if (merged == null){
+			List<CheckPointDatabase> parts = new ArrayList<>();
+			for (Partition partition : partitions){
+				partition.finish();
+			}
+			for (Partition partition : partitions){
+				parts.add(partition.getDatabase());
+			}
+			merged = CheckPointDatabase.merge(parts, memoryBudget, mapped);
+			for (CheckPointDatabase part : parts){
+				part.release();
+			}
+		}
+		return merged;
+	}
+	
+	/**
+	 * Stops the worker threads, if the database is built in parallel
+	 */
+	@Override
+	public void close() {
+		if (partitions != null){
+			aborted = true;
+			for (Partition partition : partitions){
+				partition.interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * The events are passed to the partitions in batches of this size
+	 */
+	private static final int batchSize = 1024;
+	
+	/**
+	 * Maximum number of the batches waiting in the queue of a partition
+	 */
+	private static final int queuedBatches = 16;
+	
+	/**
+	 * How long the producer waits for a partition before checking whether the building 
+	 * has been aborted, in milliseconds
+	 */
+	private static final long pollTimeout = 100;
+	
+	/**
+	 * True if the building has been aborted, either by {@link CheckPointBuilder#close()} or 
+	 * because some of the partitions has failed
+	 */
+	private volatile boolean aborted = false;
+	
+	/**
+	 * A batch of events, given by their attributes as in 
+	 * {@link CheckPointBuilder#add(double, EventType, String, String, String)}.
+	 * A batch with no events marks the end of the events.
+	 */
+	private static class Batch {
+		
+		/**
+		 * The times at which the events occurred
+		 */
+		private final double[] times = new double[batchSize];
+		
+		/**
+		 * The types of the events
+		 */
+		private final EventType[] types = new EventType[batchSize];
+		
+		/**
+		 * IDs of the people involved in the events
+		 */
+		private final String[] persons = new String[batchSize];
+		
+		/**
+		 * IDs of the vehicles involved in the events
+		 */
+		private final String[] vehicles = new String[batchSize];
+		
+		/**
+		 * IDs of the links involved in the events
+		 */
+		private final String[] links = new String[batchSize];
+		
+		/**
+		 * Number of the events in the batch
+		 */
+		private int count = 0;
+		
+		/**
+		 * @return True iff no more event fits into the batch
+		 */
+		boolean isFull(){
+			return count == batchSize;
+		}
+	}
+	
+	/**
+	 * A partition of the people, whose events are given to a sequential builder by
+	 * a worker thread
+	 */
+	private class Partition extends Thread {
+		
+		/**
+		 * Builds the database of the people in the partition
+		 */
+		private final CheckPointBuilder builder;
+		
+		/**
+		 * The batches of events passed from the producer
+		 */
+		private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(queuedBatches);
+		
+		/**
+		 * The batch being filled by the producer
+		 */
+		private Batch batch = new Batch();
+		
+		/**
+		 * The exception which has stopped the worker thread, if any
+		 */
+		private volatile RuntimeException failure = null;
+		
+		/**
+		 * Creates the worker thread of the partition, which has to be started
+		 * @param memoryBudget The columns of the database of the partition are kept on the heap
+		 * as long as they take at most this many bytes
+		 */
+		Partition(long memoryBudget) {
+			super("checkpoint-builder");
+			setDaemon(true);
+			builder = new CheckPointBuilder(1, memoryBudget, mapped);
+		}
+		
+		/**
+		 * Adds an event to the batch being filled, passing the batch to the worker thread when it is full.
+		 * The parameters are the same as in {@link CheckPointBuilder#add(double, EventType, String, String, String)}.
+		 */
+		void add(double time, EventType eventType, String personID, String vehicleID, String linkID){
+			int i = batch.count;
+			batch.times[i] = time;
+			batch.types[i] = eventType;
+			batch.persons[i] = personID;
+			batch.vehicles[i] = vehicleID;
+			batch.links[i] = linkID;
+			batch.count += 1;
+			if (batch.isFull()){
+				put(batch);
+				batch = new Batch();
+			}
+		}
+		
+		/**
+		 * Passes the remaining events and the end mark to the worker thread
+		 */
+		void finish(){
+			if (batch.count > 0){
+				put(batch);
+			}
+			put(new Batch());
+		}
+		
+		/**
+		 * Passes a batch of events to the worker thread, waiting while the queue is full
+		 * @param batch The batch of events
+		 * @throws CancellationException If the building has been aborted
+		 */
+		private void put(Batch batch){
+			try {
+				while (!queue.offer(batch, pollTimeout, TimeUnit.MILLISECONDS)){
+					checkAborted();
+				}
+			} catch (InterruptedException ex){
+				Thread.currentThread().interrupt();
+				throw new CancellationException();
+			}
+		}
+		
+		/**
+		 * Waits until the worker thread finishes
+		 * @return The sealed database of the people in the partition
+		 * @throws CancellationException If the building has been aborted
+		 */
+		CheckPointDatabase getDatabase(){
+			try {
+				join();
+			} catch (InterruptedException ex){
+				Thread.currentThread().interrupt();
+				throw new CancellationException();
+			}
+			checkAborted();
+			return builder.getDatabase();
+		}
+		
+		@Override
+		public void run() {
+			try {
+				Batch batch;
+				while ((batch = queue.take()).count > 0){
+					for (int i = 0; i < batch.count; i++){
+						builder.add(batch.times[i], batch.types[i], batch.persons[i], 
+								batch.vehicles[i], batch.links[i]);
+					}
+				}
+				builder.getDatabase();
+			} catch (InterruptedException ex){
+				// The building has been aborted
+			} catch (RuntimeException ex){
+				failure = ex;
+				aborted = true;
+			}
+		}
+	}
+	
+	/**
+	 * @throws RuntimeException If some of the partitions has failed, its exception is rethrown
+	 * @throws CancellationException If the building has been aborted otherwise
+	 */
+	private void checkAborted(){
+		if (aborted){
+			for (Partition partition : partitions){
+				if (partition.failure != null){
+					throw partition.failure;
+				}
+			}
+			throw new CancellationException();
+		}
+	}
+	
+	/**
+	 * Maximal number of the checkpoints created for a single event, see {@link CheckPointBuilder#add(double, 
+	 * EventType, String, String, String)}. An entered or left link event may create a checkpoint for 
+	 * entering the vehicle too.
+	 */
+	private static final int maxCheckPointsPerEvent = 2;
+	
+	/**
+	 * Returns the number of the events whose checkpoints surely fit into the columns kept on the heap.
+	 * The columns double their capacity as they grow, so up to one half of them may be unused.
+	 * @param memoryBudget The columns of the database are kept on the heap as long as they take 
+	 * at most this many bytes
+	 * @return Maximal number of the events that can be given to a builder with the given memory budget
+	 * without moving the columns of the database outside of the heap
+	 */
+	public static long getEventCapacity(long memoryBudget){
+		return memoryBudget / (2 * CheckPointColumns.getSize(maxCheckPointsPerEvent, true));
+	}
+	
+	/**
+	 * Thrown when the builder is given more events than allowed. It is unchecked, so that it
+	 * can pass through the {@link MatsimEventSink} instances feeding the builder.
+	 */
+	@SuppressWarnings("serial")
+	public static class EventLimitExceededException extends RuntimeException {
+		
+		/**
+		 * Maximal allowed number of the events given to the builder
+		 */
+		private final long limit;
+
+		/**
+		 * @param limit Maximal allowed number of the events given to the builder
+		 */
+		public EventLimitExceededException(long limit) {
+			this.limit = limit;
+		}
+
+		/**
+		 * @return Maximal allowed number of the events given to the builder
+		 */
+		public long getLimit() {
+			return limit;
+		}
+	}
+	
+	/**
+	 * Associates each person (indexed by its symbol) with a vehicle (given by its symbol) 
+	 * he/she is currently seated in. If the person is in no vehicle, {@link SymbolTable#noSymbol} 
+	 * is associated. 
+	 */
+	private int[] inVehicle = new int[0];
+	
+	/**
+	 * Marks whether the last the last event concerning the person (indexed by its symbol) was
+	 * a departure. If there is no event for a person yet, it is considered to be true.
+	 */
+	private boolean[] justDeparted = new boolean[0];
+	
+	/**
+	 * Makes sure that {@link CheckPointBuilder#inVehicle} and {@link CheckPointBuilder#justDeparted}
+	 * have a value for the given person, initializing the values for the newly encountered people.
+	 * @param person A person, given by its symbol
+	 */
+	private void ensureCapacity(int person){
+		if (person >= inVehicle.length){
+			int oldLength = inVehicle.length;
+			int newLength = Math.max(person + 1, oldLength * 2);
+			inVehicle = Arrays.copyOf(inVehicle, newLength);
+			Arrays.fill(inVehicle, oldLength, newLength, SymbolTable.noSymbol);
+			justDeparted = Arrays.copyOf(justDeparted, newLength);
+			Arrays.fill(justDeparted, oldLength, newLength, true);
+		}
+	}
+
+	/**
+	 * Updates the database according to the given event
+	 * @param event An event parsed from the event log
+	 */
+	@Override
+	public void add(MatsimEvent event) {
+		String vehicle = null;
+		String link = null;
+		switch (event.getType()){
+			case PERSON_ENTERS_VEHICLE:
+			case PERSON_LEAVES_VEHICLE:
+				vehicle = ((EntersOrLeavesVehicle)event).getVehicleId();
+				break;
+			case ENTERED_LINK:
+			case LEFT_LINK:
+				EnteredOrLeftLink ell = (EnteredOrLeftLink)event;
+				vehicle = ell.getVehicleId();
+				link = ell.getLink().getId();
+				break;
+			default:
+				break;
+		}
+		add(event.getTime(), event.getType(), event.getPerson(), vehicle, link);
+	}
+	
+	/**
+	 * Updates the database according to an event given by its attributes. It is used when 
+	 * the events are not parsed from the event log, e.g. when they are loaded from an {@link EventLogCache}.
+	 * @param time The time at which the event occurred
+	 * @param eventType The type of the event
+	 * @param personID ID of the person involved in the event
+	 * @param vehicleID ID of the vehicle involved in the event. Null if there is no vehicle.
+	 * @param linkID ID of the link involved in the event. Only required for the entered 
+	 * and left link events.
+	 * @throws EventLimitExceededException If the builder has been given more events than allowed
+	 */
+	public void add(double time, EventType eventType, String personID, String vehicleID, String linkID) {
+		eventCount += 1;
+		if (eventCount > eventLimit){
+			throw new EventLimitExceededException(eventLimit);
+		}
+		if ((personID == null) || personID.isEmpty()){
+			return;
+		}
+		if (partitions != null){
+			int partition = (personID.hashCode() & Integer.MAX_VALUE) % partitions.length;
+			partitions[partition].add(time, eventType, personID, vehicleID, linkID);
+			return;
+		}
+		int person = db.getPersons().encode(personID);
+		ensureCapacity(person);
+		if (eventType == EventType.PERSON_ENTERS_VEHICLE){	
+			int vehicle = db.getVehicles().encode(vehicleID);
+			db.add(person, SymbolTable.noSymbol, time, vehicle, Type.PERSON_ENTERS);
+			inVehicle[person] = vehicle;
+		} else if (eventType == EventType.PERSON_LEAVES_VEHICLE){
+			int vehicle = db.getVehicles().encode(vehicleID);
+			db.add(person, SymbolTable.noSymbol, time, vehicle, Type.PERSON_LEAVES);
+			inVehicle[person] = SymbolTable.noSymbol;
+		} else if ((eventType == EventType.ENTERED_LINK) || 
+				(eventType == EventType.LEFT_LINK)){
+			Type type;
+			if (eventType == EventType.ENTERED_LINK){
+				type = Type.LINK_ENTERED;
+			} else {
+				type = Type.LINK_LEFT;
+			}
+			int vehicle = inVehicle[person];
+			if (justDeparted[person] && (vehicle == SymbolTable.noSymbol)){
+				vehicle = db.getVehicles().encode(vehicleID);
+				db.add(person, SymbolTable.noSymbol, time, vehicle, Type.PERSON_ENTERS);
+				inVehicle[person] = vehicle;
+			}
+			db.add(person, db.getLinks().encode(linkID), time, vehicle, type);
+			justDeparted[person] = false;
+		} else if (eventType == EventType.DEPARTURE){
+			justDeparted[person] = true;
+		} else if (eventType == EventType.ARRIVAL){
+			db.add(person, SymbolTable.noSymbol, time, SymbolTable.noSymbol, Type.PERSON_LEAVES);
+		}
+	}
+	
+}
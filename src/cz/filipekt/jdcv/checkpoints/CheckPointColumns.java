@@ -0,0 +1,149 @@
+package cz.filipekt.jdcv.checkpoints;
+
+/**
+ * Storage of the columns of a {@link CheckPointDatabase}, i.e. of the attributes of the checkpoints,
+ * addressed by the indices of the checkpoints. The columns are either kept in arrays on the heap,
+ * see {@link HeapCheckPointColumns}, or outside of the heap, see {@link OffHeapCheckPointColumns}.
+ * The storage does not keep track of how many checkpoints it holds, it only provides room for
+ * {@link CheckPointColumns#capacity()} of them.
+ */
+abstract class CheckPointColumns {
+
+	/**
+	 * Number of the bytes taken by the attributes of a checkpoint, without its person
+	 */
+	static final int bytesPerCheckPoint = 8 + 4 + 4 + 1;
+
+	/**
+	 * Number of the bytes taken by the person of a checkpoint, if the person column is present
+	 */
+	static final int bytesPerPerson = 4;
+
+	/**
+	 * True iff the column with the people of the checkpoints is present, which is only needed
+	 * until the {@link CheckPointDatabase} is sealed
+	 */
+	private final boolean withPersons;
+
+	/**
+	 * @param withPersons True iff the column with the people of the checkpoints is present
+	 */
+	CheckPointColumns(boolean withPersons) {
+		this.withPersons = withPersons;
+	}
+
+	/**
+	 * @return True iff the column with the people of the checkpoints is present
+	 */
+	boolean hasPersons() {
+		return withPersons;
+	}
+
+	/**
+	 * @param capacity Number of the checkpoints
+	 * @param withPersons True iff the column with the people of the checkpoints is present
+	 * @return Number of the bytes needed for the columns of the given number of checkpoints
+	 */
+	static long getSize(long capacity, boolean withPersons){
+		return capacity * (bytesPerCheckPoint + (withPersons ? bytesPerPerson : 0));
+	}
+
+	/**
+	 * @return Number of the checkpoints the columns have room for
+	 */
+	abstract int capacity();
+
+	/**
+	 * Makes room for at least the given number of checkpoints, keeping the stored ones
+	 * @param capacity Number of the checkpoints
+	 */
+	abstract void grow(int capacity);
+
+	/**
+	 * Frees the memory taken by the columns right away, instead of leaving it to the garbage
+	 * collector. The columns must not be accessed afterwards. The columns kept on the heap
+	 * are left to the garbage collector.
+	 */
+	void release(){
+	}
+
+	/**
+	 * Copies the first checkpoints to other columns
+	 * @param target The checkpoints are copied here, to the same indices
+	 * @param count Number of the copied checkpoints
+	 */
+	void copyTo(CheckPointColumns target, int count){
+		boolean persons = withPersons && target.withPersons;
+		for (int i = 0; i < count; i++){
+			target.setTime(i, getTime(i));
+			target.setLink(i, getLink(i));
+			target.setVehicle(i, getVehicle(i));
+			target.setType(i, getType(i));
+			if (persons){
+				target.setPerson(i, getPerson(i));
+			}
+		}
+	}
+
+	/**
+	 * @param index Index of a checkpoint
+	 * @return The time of the checkpoint
+	 */
+	abstract double getTime(int index);
+
+	/**
+	 * @param index Index of a checkpoint
+	 * @param time The time of the checkpoint
+	 */
+	abstract void setTime(int index, double time);
+
+	/**
+	 * @param index Index of a checkpoint
+	 * @return The symbol of the link of the checkpoint
+	 */
+	abstract int getLink(int index);
+
+	/**
+	 * @param index Index of a checkpoint
+	 * @param link The symbol of the link of the checkpoint
+	 */
+	abstract void setLink(int index, int link);
+
+	/**
+	 * @param index Index of a checkpoint
+	 * @return The symbol of the vehicle of the checkpoint
+	 */
+	abstract int getVehicle(int index);
+
+	/**
+	 * @param index Index of a checkpoint
+	 * @param vehicle The symbol of the vehicle of the checkpoint
+	 */
+	abstract void setVehicle(int index, int vehicle);
+
+	/**
+	 * @param index Index of a checkpoint
+	 * @return The ordinal of the {@link CheckPoint.Type} of the checkpoint
+	 */
+	abstract byte getType(int index);
+
+	/**
+	 * @param index Index of a checkpoint
+	 * @param type The ordinal of the {@link CheckPoint.Type} of the checkpoint
+	 */
+	abstract void setType(int index, byte type);
+
+	/**
+	 * @param index Index of a checkpoint
+	 * @return The symbol of the person of the checkpoint
+	 * @throws IllegalStateException If the person column is not present
+	 */
+	abstract int getPerson(int index);
+
+	/**
+	 * @param index Index of a checkpoint
+	 * @param person The symbol of the person of the checkpoint
+	 * @throws IllegalStateException If the person column is not present
+	 */
+	abstract void setPerson(int index, int person);
+}
@@ -1,191 +1,531 @@
 package cz.filipekt.jdcv.checkpoints;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+
+import cz.filipekt.jdcv.util.SymbolTable;
 
 /**
  * Holds the data from the event log in a structured way. The main feature is that
- * it assigns to each person (given by ID) a list of {@link CheckPoint} instances.
+ * it assigns to each person (given by ID) a sequence of checkpoints.
  * These checkpoints determine some relevant events regarding the person, such as
  * "entering/leaving a vehicle", or "being at a certain place at a certain time". 
+ * The IDs of the people, vehicles and links are encoded as dense integer symbols, 
+ * the original IDs are kept in the corresponding {@link SymbolTable} instances. <br>
+ * The checkpoints are not stored as objects, but in columns, one per attribute, and they
+ * are addressed by their indices in the columns. The columns are kept in primitive arrays
+ * on the heap, unless they exceed the memory budget of the database, in which case they are
+ * kept outside of the heap (see {@link OffHeapCheckPointColumns}). When the database
+ * has been built, it is sealed by {@link CheckPointDatabase#seal()}, which makes the checkpoints
+ * of each person occupy a contiguous range of indices, starting with the position defining ones.
  * 
  * @author Tomas Filipek <tom.filipek@seznam.cz>
  */
 public class CheckPointDatabase {
 	
 	/**
-	 * To each person ID there is a list of checkpoints (i.e. where & when & etc.) assigned.
+	 * Assigns the symbols to the IDs of the people
 	 */
-	private final Map<String,List<CheckPoint>> database = new HashMap<>();
+	private final SymbolTable persons = new SymbolTable();
 	
 	/**
-	 * Adds the given {@link CheckPoint} instance to the {@link CheckPoint} list of the
-	 * specified person.
-	 * @param personID To this person the {@link CheckPoint} will be added.
-	 * @param checkpoint This {@link CheckPoint} will be added to the specified person
+	 * @return Assigns the symbols to the IDs of the people
 	 */
-	public void add(String personID, CheckPoint checkpoint){
-		if ((personID != null) && (checkpoint != null) && !personID.isEmpty()){
-			if (!database.containsKey(personID)){
-				database.put(personID, new ArrayList<CheckPoint>());
-			}
-			database.get(personID).add(checkpoint);
-			if (checkpoint.getTime() < minTime){
-				minTime = checkpoint.getTime();
-			}
-			if (checkpoint.getTime() > maxTime){
-				maxTime = checkpoint.getTime();
-			}
+	public SymbolTable getPersons() {
+		return persons;
+	}
+	
+	/**
+	 * Assigns the symbols to the IDs of the vehicles
+	 */
+	private final SymbolTable vehicles = new SymbolTable();
+	
+	/**
+	 * @return Assigns the symbols to the IDs of the vehicles
+	 */
+	public SymbolTable getVehicles() {
+		return vehicles;
+	}
+	
+	/**
+	 * Assigns the symbols to the IDs of the links
+	 */
+	private final SymbolTable links = new SymbolTable();
+	
+	/**
+	 * @return Assigns the symbols to the IDs of the links
+	 */
+	public SymbolTable getLinks() {
+		return links;
+	}
+	
+	/**
+	 * All the types of the checkpoints, indexed by their ordinals
+	 */
+	private static final CheckPoint.Type[] types = CheckPoint.Type.values();
+	
+	/**
+	 * Initial capacity of the columns
+	 */
+	private static final int initialCapacity = 1024;
+	
+	/**
+	 * The columns are kept on the heap as long as they take at most this many bytes, 
+	 * otherwise they are moved outside of the heap, see {@link OffHeapCheckPointColumns}
+	 */
+	private final long memoryBudget;
+	
+	/**
+	 * If true, the columns kept outside of the heap are mapped from temporary files,
+	 * otherwise they are allocated as direct buffers
+	 */
+	private final boolean mapped;
+	
+	/**
+	 * The database keeps all the checkpoints on the heap
+	 */
+	public CheckPointDatabase() {
+		this(Long.MAX_VALUE, false);
+	}
+	
+	/**
+	 * @param memoryBudget The columns are kept on the heap as long as they take at most this many 
+	 * bytes, otherwise they are moved outside of the heap
+	 * @param mapped If true, the columns kept outside of the heap are mapped from temporary files, 
+	 * otherwise they are allocated as direct buffers
+	 */
+	public CheckPointDatabase(long memoryBudget, boolean mapped) {
+		this.memoryBudget = memoryBudget;
+		this.mapped = mapped;
+		this.columns = createColumns(initialCapacity, true, memoryBudget);
+	}
+	
+	/**
+	 * Number of the recorded checkpoints
+	 */
+	private int count = 0;
+	
+	/**
+	 * The time, link, vehicle and type of each checkpoint. The links and the vehicles are given 
+	 * by their symbols assigned by {@link CheckPointDatabase#links} and {@link CheckPointDatabase#vehicles}.
+	 * Until the database is sealed, the person of each checkpoint is kept as well, given by its symbol
+	 * assigned by {@link CheckPointDatabase#persons}.
+	 */
+	private CheckPointColumns columns;
+	
+	/**
+	 * @param capacity Number of the checkpoints the columns will have room for
+	 * @param withPersons True iff the column with the people of the checkpoints is needed
+	 * @param budget Part of {@link CheckPointDatabase#memoryBudget} which is not taken by other columns
+	 * living on the heap at the same time, e.g. by the ones being copied to the new columns
+	 * @return New columns, kept on the heap if they fit into the given budget
+	 */
+	private CheckPointColumns createColumns(int capacity, boolean withPersons, long budget){
+		if (CheckPointColumns.getSize(capacity, withPersons) <= budget){
+			return new HeapCheckPointColumns(capacity, withPersons);
+		} else {
+			return new OffHeapCheckPointColumns(capacity, withPersons, mapped);
 		}
 	}
 	
 	/**
-	 * @param personID A person
-	 * @return The list of {@link CheckPoint} instances associated with the person
+	 * @return Number of the bytes taken on the heap by the columns
 	 */
-	public List<CheckPoint> getList(String personID){		
-		if (database.containsKey(personID)){
-			return database.get(personID);
+	private long getHeapSize(){
+		if (columns instanceof HeapCheckPointColumns){
+			return CheckPointColumns.getSize(columns.capacity(), columns.hasPersons());
 		} else {
-			return new ArrayList<>();
+			return 0;
 		}
 	}
 	
 	/**
-	 * @param personID A person
-	 * @return The list of checkpoints (associated with the specified person) that
-	 * define the person's position (i.e. the checkpoints that say the person has
-	 * entered/left a vehicle are missed out) 
+	 * Frees the memory taken by the checkpoints kept outside of the heap right away, instead of leaving
+	 * it to the garbage collector. It is to be called when the database is not needed anymore, e.g.
+	 * when the scene showing it has been replaced. The database must not be used afterwards, from any
+	 * thread, as the memory of the checkpoints may have been unmapped.
+	 */
+	public void release(){
+		columns.release();
+		columns = new HeapCheckPointColumns(0, false);
+		count = 0;
+	}
+	
+	/**
+	 * @return True iff the checkpoints are kept outside of the heap
+	 */
+	public boolean isOffHeap(){
+		return columns instanceof OffHeapCheckPointColumns;
+	}
+	
+	/**
+	 * The checkpoints of each person (indexed by the symbol assigned by {@link CheckPointDatabase#persons})
+	 * occupy the indices from offsets[person] up to offsets[person+1] (excluded) in the columns.
+	 * Null until the database is sealed.
+	 */
+	private int[] offsets = null;
+	
+	/**
+	 * In the range of each person, the position defining checkpoints occupy the indices up to
+	 * splits[person] (excluded), the remaining checkpoints occupy the rest. Null until the 
+	 * database is sealed.
+	 */
+	private int[] splits = null;
+	
+	/**
+	 * Adds a checkpoint to the checkpoints of the specified person.
+	 * @param person To this person (given by its symbol) the checkpoint will be added.
+	 * @param link Symbol of the link, {@link SymbolTable#noSymbol} if there is no link associated
+	 * @param time A point in time
+	 * @param vehicle Symbol of the vehicle, {@link SymbolTable#noSymbol} if there is no vehicle associated
+	 * @param type The type of information the checkpoint bears
+	 * @throws IllegalStateException If the database has already been sealed
 	 */
-	public List<CheckPoint> getPositionsList(String personID){
-		return getSelectionList(personID, true);
+	public void add(int person, int link, double time, int vehicle, CheckPoint.Type type){
+		if ((person == SymbolTable.noSymbol) || (type == null)){
+			return;
+		}
+		if (offsets != null){
+			throw new IllegalStateException("The database has already been sealed.");
+		}
+		if (count == columns.capacity()){
+			int newCapacity = 2 * count;
+			if ((columns instanceof HeapCheckPointColumns) && 
+					(CheckPointColumns.getSize(newCapacity, true) > memoryBudget)){
+				CheckPointColumns offHeap = new OffHeapCheckPointColumns(newCapacity, true, mapped);
+				columns.copyTo(offHeap, count);
+				columns = offHeap;
+			} else {
+				columns.grow(newCapacity);
+			}
+		}
+		columns.setTime(count, time);
+		columns.setLink(count, link);
+		columns.setVehicle(count, vehicle);
+		columns.setType(count, (byte)type.ordinal());
+		columns.setPerson(count, person);
+		count += 1;
+		if (time < minTime){
+			minTime = time;
+		}
+		if (time > maxTime){
+			maxTime = time;
+		}
 	}
 	
 	/**
-	 * @param personID A person
-	 * @return The list of checkpoints (associated with the specified person) that
-	 * do not specify the person's position, but contains other data
+	 * Adds the given {@link CheckPoint} instance to the checkpoints of the specified person.
+	 * @param person To this person (given by its symbol) the {@link CheckPoint} will be added.
+	 * @param checkpoint This {@link CheckPoint} will be added to the specified person
+	 * @throws IllegalStateException If the database has already been sealed
 	 */
-	public List<CheckPoint> getOthersList(String personID){
-		return getSelectionList(personID, false);
+	public void add(int person, CheckPoint checkpoint){
+		if (checkpoint != null){
+			add(person, checkpoint.getLink(), checkpoint.getTime(), checkpoint.getVehicle(), checkpoint.getType());
+		}
 	}
 	
-	/** 
-	 * @param personID A person
-	 * @param positions If true, position defining checkpoints are requested, else the
-	 * remaining checkpoints are requested.
-	 * @return The list of checkpoints associated with the person that moreover satisfy
-	 * the condition specified by the second parameter 
+	/**
+	 * Finishes the building of the database. The columns are reordered, so that the checkpoints
+	 * of each person occupy a contiguous range, with the position defining checkpoints first. The
+	 * checkpoints keep their original order within both parts of the range. The reordered columns
+	 * are kept on the heap only if they fit into the memory budget together with the original ones,
+	 * which live until the copying is finished. No checkpoint can be added afterwards. Calling 
+	 * the method repeatedly has no effect.
 	 */
-	private List<CheckPoint> getSelectionList(String personID, boolean positions){
-		if (database.containsKey(personID)){
-			List<CheckPoint> res = new ArrayList<>();
-			for (CheckPoint cp : database.get(personID)){
-				switch(cp.getType()){
-					case LINK_ENTERED:	//fall through
-					case LINK_LEFT:
-						if (positions){
-							res.add(cp);
-						}
-						break;
-					default:
-						if (!positions){
-							res.add(cp);
-						}
-						break;
+	public void seal(){
+		if (offsets != null){
+			return;
+		}
+		int personsCount = persons.size();
+		int[] newOffsets = new int[personsCount + 1];
+		int[] newSplits = new int[personsCount];
+		for (int i = 0; i < count; i++){
+			int p = columns.getPerson(i);
+			newOffsets[p + 1] += 1;
+			if (isPosition(columns.getType(i))){
+				newSplits[p] += 1;
+			}
+		}
+		for (int p = 0; p < personsCount; p++){
+			newOffsets[p + 1] += newOffsets[p];
+			newSplits[p] += newOffsets[p];
+		}
+		int[] nextPosition = Arrays.copyOf(newOffsets, personsCount);
+		int[] nextOther = Arrays.copyOf(newSplits, personsCount);
+		CheckPointColumns sealed = createColumns(count, false, memoryBudget - getHeapSize());
+		for (int i = 0; i < count; i++){
+			int p = columns.getPerson(i);
+			byte type = columns.getType(i);
+			int target;
+			if (isPosition(type)){
+				target = nextPosition[p]++;
+			} else {
+				target = nextOther[p]++;
+			}
+			sealed.setTime(target, columns.getTime(i));
+			sealed.setLink(target, columns.getLink(i));
+			sealed.setVehicle(target, columns.getVehicle(i));
+			sealed.setType(target, type);
+		}
+		columns.release();
+		columns = sealed;
+		splits = newSplits;
+		offsets = newOffsets;
+	}
+	
+	/**
+	 * Merges the sealed databases built out of disjoint sets of people, e.g. by the partitions
+	 * of a parallel {@link CheckPointBuilder}, into a single sealed database. The people are
+	 * assigned the symbols part by part, in the order of the parts, and the ranges of their
+	 * checkpoints are concatenated, so that no reordering is needed. The symbols of the links and
+	 * the vehicles, which the parts may share, are translated to the symbols of the merged database.
+	 * The columns of the parts kept on the heap are counted against the memory budget of the merged
+	 * database, as they live until the merging is finished.
+	 * @param parts The merged databases, each of them sealed, with no person present in two of them
+	 * @param memoryBudget The columns of the merged database are kept on the heap as long as they 
+	 * take at most this many bytes, otherwise they are kept outside of the heap
+	 * @param mapped If true, the columns kept outside of the heap are mapped from temporary files, 
+	 * otherwise they are allocated as direct buffers
+	 * @return The merged database, which is sealed
+	 * @throws IllegalArgumentException If some person is present in two of the databases
+	 * @throws IllegalStateException If some of the databases has not been sealed yet
+	 */
+	public static CheckPointDatabase merge(List<CheckPointDatabase> parts, long memoryBudget, boolean mapped){
+		CheckPointDatabase res = new CheckPointDatabase(memoryBudget, mapped);
+		int totalCount = 0;
+		int totalPersons = 0;
+		long partsHeapSize = 0;
+		for (CheckPointDatabase part : parts){
+			part.checkSealed();
+			totalCount += part.count;
+			totalPersons += part.getPersonsCount();
+			partsHeapSize += part.getHeapSize();
+		}
+		res.columns.release();
+		res.columns = res.createColumns(totalCount, false, memoryBudget - partsHeapSize);
+		res.offsets = new int[totalPersons + 1];
+		res.splits = new int[totalPersons];
+		for (CheckPointDatabase part : parts){
+			int personBase = res.persons.size();
+			for (int p = 0; p < part.getPersonsCount(); p++){
+				if (res.persons.encode(part.persons.decode(p)) != (personBase + p)){
+					throw new IllegalArgumentException("A person is present in two of the merged databases.");
 				}
+				res.offsets[personBase + p + 1] = res.count + part.offsets[p + 1];
+				res.splits[personBase + p] = res.count + part.splits[p];
 			}
-			return res;
-		} else {
-			return new ArrayList<>();
+			int[] linkMap = translate(part.links, res.links);
+			int[] vehicleMap = translate(part.vehicles, res.vehicles);
+			for (int i = 0; i < part.count; i++){
+				int target = res.count + i;
+				res.columns.setTime(target, part.columns.getTime(i));
+				res.columns.setType(target, part.columns.getType(i));
+				int link = part.columns.getLink(i);
+				res.columns.setLink(target, (link == SymbolTable.noSymbol) ? link : linkMap[link]);
+				int vehicle = part.columns.getVehicle(i);
+				res.columns.setVehicle(target, (vehicle == SymbolTable.noSymbol) ? vehicle : vehicleMap[vehicle]);
+			}
+			res.count += part.count;
+			res.minTime = Math.min(res.minTime, part.minTime);
+			res.maxTime = Math.max(res.maxTime, part.maxTime);
+		}
+		return res;
+	}
+
+	/**
+	 * @param from A symbol table
+	 * @param to Another symbol table, to which the strings of the first one are added
+	 * @return The symbols assigned by the second table to the strings of the first one,
+	 * indexed by the symbols assigned by the first table
+	 */
+	private static int[] translate(SymbolTable from, SymbolTable to){
+		int[] res = new int[from.size()];
+		for (int i = 0; i < res.length; i++){
+			res[i] = to.encode(from.decode(i));
+		}
+		return res;
+	}
+
+	/**
+	 * @param type The ordinal of a {@link CheckPoint.Type}
+	 * @return True iff the checkpoints of the given type define the person's position
+	 */
+	private static boolean isPosition(byte type){
+		switch (types[type]){
+			case LINK_ENTERED:	//fall through
+			case LINK_LEFT:
+				return true;
+			default:
+				return false;
 		}
 	}
 	
 	/**
-	 * @return The IDs of all the persons that are recorded in this database.
+	 * @throws IllegalStateException If the database has not been sealed yet
 	 */
-	public Set<String> getKeys(){
-		return database.keySet();
+	private void checkSealed(){
+		if (offsets == null){
+			throw new IllegalStateException("The database has not been sealed yet.");
+		}
 	}
 	
 	/**
-	 * Minimal value of "time" attribute across all of the recorded {@link CheckPoint} instances.
+	 * @param person A person, given by its symbol
+	 * @return True iff the person has been assigned a range by {@link CheckPointDatabase#seal()}
 	 */
-	private double minTime = Double.MAX_VALUE;
+	private boolean isRecorded(int person){
+		return (person >= 0) && (person < splits.length);
+	}
 	
 	/**
-	 * @return Minimal value of "time" attribute across all of the recorded {@link CheckPoint} instances.
-	 * @see {@link CheckPointDatabase#minTime}
+	 * @param person A person, given by its symbol
+	 * @return Index of the first checkpoint (associated with the specified person) that defines 
+	 * the person's position (i.e. the checkpoints that say the person has entered/left a vehicle are 
+	 * missed out). The position defining checkpoints of the person occupy the indices up to
+	 * {@link CheckPointDatabase#getPositionsEnd(int)} (excluded).
 	 */
-	public double getMinTime() {
-		return minTime;
+	public int getPositionsStart(int person){
+		checkSealed();
+		return isRecorded(person) ? offsets[person] : 0;
 	}
 	
 	/**
-	 * Maximal value of "time" attribute across all of the recorded {@link CheckPoint} instances.
+	 * @param person A person, given by its symbol
+	 * @return Index following the last checkpoint (associated with the specified person) that
+	 * defines the person's position
 	 */
-	private double maxTime = Double.MIN_VALUE;
-
+	public int getPositionsEnd(int person){
+		checkSealed();
+		return isRecorded(person) ? splits[person] : 0;
+	}
+	
 	/**
-	 * @return Maximal value of "time" attribute across all of the recorded {@link CheckPoint} instances.
-	 * @see {@link CheckPointDatabase#maxTime}
+	 * @param person A person, given by its symbol
+	 * @return Index of the first checkpoint (associated with the specified person) that does not 
+	 * specify the person's position, but contains other data. These checkpoints of the person 
+	 * occupy the indices up to {@link CheckPointDatabase#getOthersEnd(int)} (excluded).
 	 */
-	public double getMaxTime() {
-		return maxTime;
+	public int getOthersStart(int person){
+		return getPositionsEnd(person);
+	}
+	
+	/**
+	 * @param person A person, given by its symbol
+	 * @return Index following the last checkpoint (associated with the specified person) that
+	 * does not specify the person's position
+	 */
+	public int getOthersEnd(int person){
+		checkSealed();
+		return isRecorded(person) ? offsets[person + 1] : 0;
 	}
 	
 	/**
-	 * Associates each person with a vehicle he/she is currently seated in. If the person is
-	 * in no vehicle, null value is associated. 
-	 * Used when adding a new {@link CheckPoint} instance to the database.
+	 * @param checkpoint Index of a checkpoint
+	 * @return A point in time
 	 */
-	private final Map<String, String> inVehicle = new HashMap<>();
+	public double getTime(int checkpoint){
+		return columns.getTime(checkpoint);
+	}
 	
 	/**
-	 * @param personID A person
-	 * @param vehicleID The vehicle in which the specified person currently travels.
-	 * @see {@link CheckPointDatabase#inVehicle}
+	 * @param checkpoint Index of a checkpoint
+	 * @return Symbol of the link, as assigned by {@link CheckPointDatabase#getLinks()}.
+	 * {@link SymbolTable#noSymbol} if there is no link associated.
 	 */
-	public void setInVehicle(String personID, String vehicleID){
-		inVehicle.put(personID, vehicleID);
+	public int getLink(int checkpoint){
+		return columns.getLink(checkpoint);
 	}
 	
 	/**
-	 * @param personID A person
-	 * @return Vehicle the specified person is currently seated in
-	 * @see {@link CheckPointDatabase#inVehicle}
+	 * @param checkpoint Index of a checkpoint
+	 * @return Symbol of the vehicle, as assigned by {@link CheckPointDatabase#getVehicles()}.
+	 * {@link SymbolTable#noSymbol} if there is no vehicle associated.
 	 */
-	public String getInVehicle(String personID){
-		return inVehicle.get(personID);
+	public int getVehicle(int checkpoint){
+		return columns.getVehicle(checkpoint);
 	}
 	
 	/**
-	 * Marks whether the last the last event concerning the person (the key) was
-	 * a departure. It is used when adding a new checkpoint.
+	 * @param checkpoint Index of a checkpoint
+	 * @return The type of information the checkpoint bears
 	 */
-	private final Map<String,Boolean> justDeparted = new HashMap<>();
+	public CheckPoint.Type getType(int checkpoint){
+		return types[columns.getType(checkpoint)];
+	}
 	
 	/**
-	 * @param personID A person
-	 * @return True iff the last event of the specified person was a departure 
+	 * @return The number of the recorded checkpoints
 	 */
-	public boolean getJustDeparted(String personID){
-		Boolean val = justDeparted.get(personID);
-		if (val == null){
-			return true;
-		} else {
-			return val;
+	public int getCheckPointsCount(){
+		return count;
+	}
+	
+	/**
+	 * Returns the checkpoints of the person as {@link CheckPoint} instances, which are created
+	 * on each call, so the method is only meant for occasional use, such as showing them to the user.
+	 * The position defining checkpoints and the other ones are merged by their time. When the times
+	 * are equal, the person is considered to enter a vehicle before and leave it after the
+	 * position defining checkpoints.
+	 * @param person A person, given by its symbol
+	 * @return The list of {@link CheckPoint} instances associated with the person
+	 */
+	public List<CheckPoint> getList(int person){
+		int positionsEnd = getPositionsEnd(person);
+		int othersEnd = getOthersEnd(person);
+		List<CheckPoint> res = new ArrayList<>(othersEnd - getPositionsStart(person));
+		int position = getPositionsStart(person);
+		int other = getOthersStart(person);
+		while ((position < positionsEnd) || (other < othersEnd)){
+			boolean takeOther;
+			if (position == positionsEnd){
+				takeOther = true;
+			} else if (other == othersEnd){
+				takeOther = false;
+			} else if (getTime(other) == getTime(position)){
+				takeOther = (getType(other) == CheckPoint.Type.PERSON_ENTERS);
+			} else {
+				takeOther = (getTime(other) < getTime(position));
+			}
+			int checkpoint = takeOther ? other++ : position++;
+			res.add(new CheckPoint(getLink(checkpoint), getTime(checkpoint), person, getVehicle(checkpoint), 
+					getType(checkpoint)));
 		}
+		return res;
+	}
+	
+	/**
+	 * @return The number of the persons that are recorded in this database. The persons
+	 * are given the symbols from 0 up to this number (excluded).
+	 */
+	public int getPersonsCount(){
+		return persons.size();
+	}
+	
+	/**
+	 * Minimal value of "time" attribute across all of the recorded {@link CheckPoint} instances.
+	 */
+	private double minTime = Double.MAX_VALUE;
+	
+	/**
+	 * @return Minimal value of "time" attribute across all of the recorded {@link CheckPoint} instances.
+	 * @see {@link CheckPointDatabase#minTime}
+	 */
+	public double getMinTime() {
+		return minTime;
 	}
 	
 	/**
-	 * @param personID A person
-	 * @param val Whether the last event of the specified person was a departure 
+	 * Maximal value of "time" attribute across all of the recorded {@link CheckPoint} instances.
 	 */
-	public void setJustDeparted(String personID, boolean val){
-		justDeparted.put(personID, val);
+	private double maxTime = Double.MIN_VALUE;
+
+	/**
+	 * @return Maximal value of "time" attribute across all of the recorded {@link CheckPoint} instances.
+	 * @see {@link CheckPointDatabase#maxTime}
+	 */
+	public double getMaxTime() {
+		return maxTime;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,261 @@
+package cz.filipekt.jdcv.checkpoints;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.xml.sax.SAXException;
+
+import cz.filipekt.jdcv.events.EventType;
+import cz.filipekt.jdcv.exceptions.LinkNotFoundException;
+import cz.filipekt.jdcv.network.MyLink;
+import cz.filipekt.jdcv.util.SourceStamp;
+import cz.filipekt.jdcv.util.SymbolTable;
+import cz.filipekt.jdcv.xml.MatsimEventHandler;
+
+/**
+ * Binary columnar cache of the events parsed from a Matsim event log, as written by
+ * {@link EventLogCacheWriter}. It is stored next to the event log (see
+ * {@link EventLogCache#getCacheFile(Path)}), so that a scene can be reopened without
+ * parsing the event log again. The cache file is memory-mapped and its events are given
+ * directly to a {@link CheckPointBuilder}. <br>
+ * The cache file starts with {@link EventLogCache#magic} and the header, which contains the
+ * {@link SourceStamp} of the event log and the selection the events were parsed with. It is
+ * followed by the string dictionary holding the IDs of the persons, vehicles and links, and
+ * by the columns: the times, the person, vehicle and link IDs (as indices to the dictionary)
+ * and the event types. A cache file larger than a single mapping can hold is not used,
+ * the event log is parsed instead.
+ */
+public class EventLogCache {
+
+	/**
+	 * The first bytes of each cache file
+	 */
+	static final byte[] magic = "JDCVEVC1".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Size of the header following the {@link EventLogCache#magic}, in bytes
+	 */
+	static final int headerSize = 3*8 + 2*8 + 3*4;
+
+	/**
+	 * Size of one event in the columns, in bytes
+	 */
+	static final int eventSize = 8 + 3*4 + 1;
+
+	/**
+	 * All of the event types, indexed by the values of the type column
+	 */
+	private static final EventType[] types = EventType.values();
+
+	/**
+	 * @param eventLog The Matsim event log
+	 * @return The cache file belonging to the event log
+	 */
+	public static Path getCacheFile(Path eventLog){
+		return eventLog.resolveSibling(eventLog.getFileName() + ".cache");
+	}
+
+	/**
+	 * Opens the cache of the given event log, if there is a cache which is up to date and
+	 * which contains all the events of the given selection.
+	 * @param eventLog The Matsim event log
+	 * @param startAt Start of the selected time interval. If null, the interval is unbounded from below.
+	 * @param endAt End of the selected time interval. If null, the interval is unbounded from above.
+	 * @param onlyAgents Marks whether only the events of the JDEECo agents are selected
+	 * @return The cache, or null if there is no such cache
+	 * @throws IOException If it is impossible to read from the event log
+	 */
+	public static EventLogCache open(Path eventLog, Double startAt, Double endAt,
+			boolean onlyAgents) throws IOException {
+		Path cacheFile = getCacheFile(eventLog);
+		if (!Files.isRegularFile(cacheFile)){
+			return null;
+		}
+		ByteBuffer data;
+		try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)){
+			if ((channel.size() < (magic.length + headerSize)) || (channel.size() > Integer.MAX_VALUE)){
+				return null;
+			}
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException ex){
+			return null;
+		}
+		byte[] start = new byte[magic.length];
+		data.get(start);
+		if (!Arrays.equals(start, magic)){
+			return null;
+		}
+		SourceStamp stamp = new SourceStamp(data.getLong(), data.getLong(), data.getLong());
+		double cachedStartAt = data.getDouble();
+		double cachedEndAt = data.getDouble();
+		boolean cachedOnlyAgents = data.getInt() != 0;
+		int eventCount = data.getInt();
+		int stringCount = data.getInt();
+		if (!stamp.equals(SourceStamp.of(eventLog))){
+			return null;
+		}
+		if ((!Double.isNaN(cachedStartAt) && ((startAt == null) || (startAt < cachedStartAt))) ||
+				(!Double.isNaN(cachedEndAt) && ((endAt == null) || (endAt > cachedEndAt))) ||
+				(cachedOnlyAgents && !onlyAgents)){
+			return null;
+		}
+		try {
+			String[] strings = new String[stringCount];
+			for (int i = 0; i < stringCount; i++){
+				byte[] string = new byte[data.getInt()];
+				data.get(string);
+				strings[i] = new String(string, StandardCharsets.UTF_8);
+			}
+			data.position(EventLogCacheWriter.align(data.position()));
+			if (data.remaining() != ((long)eventCount * eventSize)){
+				return null;
+			}
+			return new EventLogCache(data.slice(), eventCount, strings, startAt, endAt, onlyAgents);
+		} catch (RuntimeException ex){
+			return null;
+		}
+	}
+
+	/**
+	 * The time column
+	 */
+	private final DoubleBuffer times;
+
+	/**
+	 * The person column, indexing {@link EventLogCache#strings}
+	 */
+	private final IntBuffer persons;
+
+	/**
+	 * The vehicle column, indexing {@link EventLogCache#strings}
+	 */
+	private final IntBuffer vehicles;
+
+	/**
+	 * The link column, indexing {@link EventLogCache#strings}
+	 */
+	private final IntBuffer links;
+
+	/**
+	 * The type column, holding the ordinals of the {@link EventType} values
+	 */
+	private final ByteBuffer eventTypes;
+
+	/**
+	 * Number of the cached events
+	 */
+	private final int eventCount;
+
+	/**
+	 * The string dictionary
+	 */
+	private final String[] strings;
+
+	/**
+	 * Start of the selected time interval. If null, the interval is unbounded from below.
+	 */
+	private final Double startAt;
+
+	/**
+	 * End of the selected time interval. If null, the interval is unbounded from above.
+	 */
+	private final Double endAt;
+
+	/**
+	 * Marks whether only the events of the JDEECo agents are selected
+	 */
+	private final boolean onlyAgents;
+
+	/**
+	 * @param columns The memory-mapped columns
+	 * @param eventCount Number of the cached events
+	 * @param strings The string dictionary
+	 * @param startAt Start of the selected time interval. If null, the interval is unbounded from below.
+	 * @param endAt End of the selected time interval. If null, the interval is unbounded from above.
+	 * @param onlyAgents Marks whether only the events of the JDEECo agents are selected
+	 */
+	private EventLogCache(ByteBuffer columns, int eventCount, String[] strings,
+			Double startAt, Double endAt, boolean onlyAgents) {
+		this.eventCount = eventCount;
+		this.strings = strings;
+		this.startAt = startAt;
+		this.endAt = endAt;
+		this.onlyAgents = onlyAgents;
+		int position = 0;
+		times = column(columns, position, 8 * eventCount).asDoubleBuffer();
+		position += 8 * eventCount;
+		persons = column(columns, position, 4 * eventCount).asIntBuffer();
+		position += 4 * eventCount;
+		vehicles = column(columns, position, 4 * eventCount).asIntBuffer();
+		position += 4 * eventCount;
+		links = column(columns, position, 4 * eventCount).asIntBuffer();
+		position += 4 * eventCount;
+		eventTypes = column(columns, position, eventCount);
+	}
+
+	/**
+	 * @param columns The memory-mapped columns
+	 * @param position Position of a column
+	 * @param length Length of the column, in bytes
+	 * @return The column
+	 */
+	private static ByteBuffer column(ByteBuffer columns, int position, int length){
+		ByteBuffer res = columns.duplicate();
+		res.position(position);
+		res.limit(position + length);
+		return res.slice();
+	}
+
+	/**
+	 * @return Number of the cached events, including those outside the current selection
+	 */
+	public int getEventCount(){
+		return eventCount;
+	}
+
+	/**
+	 * @param symbol Index to the string dictionary
+	 * @return The string, or null if the symbol is {@link SymbolTable#noSymbol}
+	 */
+	private String decode(int symbol){
+		return (symbol == SymbolTable.noSymbol) ? null : strings[symbol];
+	}
+
+	/**
+	 * Gives the cached events inside the current selection to the given builder,
+	 * in the order in which they were parsed.
+	 * The events are limited by the builder, the same way as the parsed ones.
+	 * @param builder Receives the cached events
+	 * @param network The parsed link elements, indexed by their link IDs
+	 * @throws SAXException If a cached event refers to a link not present in the network,
+	 * as the parser would do. The {@link LinkNotFoundException} is used as a wrapped exception.
+	 * @throws CheckPointBuilder.EventLimitExceededException If the builder is given more events 
+	 * than allowed
+	 */
+	public void replay(CheckPointBuilder builder, Map<String,MyLink> network) throws SAXException {
+		for (int i = 0; i < eventCount; i++){
+			double time = times.get(i);
+			if (((startAt != null) && (startAt > time)) || ((endAt != null) && (endAt < time))){
+				continue;
+			}
+			String person = decode(persons.get(i));
+			if (onlyAgents && !MatsimEventHandler.isInjectedComponent(person)){
+				continue;
+			}
+			String link = decode(links.get(i));
+			if ((link != null) && !network.containsKey(link)){
+				throw new SAXException(new LinkNotFoundException());
+			}
+			builder.add(time, types[eventTypes.get(i)], person, decode(vehicles.get(i)), link);
+		}
+	}
+}
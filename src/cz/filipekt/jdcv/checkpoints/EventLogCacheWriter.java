@@ -0,0 +1,171 @@
+package cz.filipekt.jdcv.checkpoints;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import cz.filipekt.jdcv.events.ActStartOrEnd;
+import cz.filipekt.jdcv.events.ArrivalOrDeparture;
+import cz.filipekt.jdcv.events.EnteredOrLeftLink;
+import cz.filipekt.jdcv.events.EntersOrLeavesVehicle;
+import cz.filipekt.jdcv.events.MatsimEvent;
+import cz.filipekt.jdcv.events.MatsimEventSink;
+import cz.filipekt.jdcv.network.MyLink;
+import cz.filipekt.jdcv.util.SourceStamp;
+import cz.filipekt.jdcv.util.SymbolTable;
+
+/**
+ * Records the events parsed from a Matsim event log into columns, while passing them on
+ * to another {@link MatsimEventSink}. When the parsing is finished, the columns are written
+ * into a cache file, which is later read by {@link EventLogCache}.
+ */
+public class EventLogCacheWriter implements MatsimEventSink {
+
+	/**
+	 * Receives the events after they have been recorded
+	 */
+	private final MatsimEventSink target;
+
+	/**
+	 * Stamp of the event log, taken before the parsing started
+	 */
+	private final SourceStamp stamp;
+
+	/**
+	 * The string dictionary, holding the IDs of the persons, vehicles and links
+	 */
+	private final SymbolTable strings = new SymbolTable();
+
+	/**
+	 * The time column
+	 */
+	private double[] times = new double[1024];
+
+	/**
+	 * The person column, indexing {@link EventLogCacheWriter#strings}
+	 */
+	private int[] persons = new int[1024];
+
+	/**
+	 * The vehicle column, indexing {@link EventLogCacheWriter#strings}
+	 */
+	private int[] vehicles = new int[1024];
+
+	/**
+	 * The link column, indexing {@link EventLogCacheWriter#strings}
+	 */
+	private int[] links = new int[1024];
+
+	/**
+	 * The type column, holding the ordinals of the event types
+	 */
+	private byte[] types = new byte[1024];
+
+	/**
+	 * Number of the recorded events
+	 */
+	private int count = 0;
+
+	/**
+	 * @param eventLog The Matsim event log which is about to be parsed
+	 * @param target Receives the events after they have been recorded
+	 * @throws IOException If it is impossible to read from the event log
+	 */
+	public EventLogCacheWriter(Path eventLog, MatsimEventSink target) throws IOException {
+		this.target = target;
+		this.stamp = SourceStamp.of(eventLog);
+	}
+
+	/**
+	 * @param position A position in the cache file
+	 * @return The nearest position which is not lower and which is a multiple of 8
+	 */
+	static int align(int position){
+		return (position + 7) & ~7;
+	}
+
+	/**
+	 * Records the given event and passes it on to {@link EventLogCacheWriter#target}
+	 * @param event An event parsed from the event log
+	 */
+	@Override
+	public void add(MatsimEvent event) {
+		if (count == times.length){
+			int newLength = 2 * count;
+			times = Arrays.copyOf(times, newLength);
+			persons = Arrays.copyOf(persons, newLength);
+			vehicles = Arrays.copyOf(vehicles, newLength);
+			links = Arrays.copyOf(links, newLength);
+			types = Arrays.copyOf(types, newLength);
+		}
+		String vehicle = null;
+		MyLink link = null;
+		if (event instanceof EntersOrLeavesVehicle){
+			vehicle = ((EntersOrLeavesVehicle)event).getVehicleId();
+		} else if (event instanceof EnteredOrLeftLink){
+			vehicle = ((EnteredOrLeftLink)event).getVehicleId();
+			link = ((EnteredOrLeftLink)event).getLink();
+		} else if (event instanceof ArrivalOrDeparture){
+			link = ((ArrivalOrDeparture)event).getLink();
+		} else if (event instanceof ActStartOrEnd){
+			link = ((ActStartOrEnd)event).getLink();
+		}
+		times[count] = event.getTime();
+		persons[count] = strings.encode(event.getPerson());
+		vehicles[count] = strings.encode(vehicle);
+		links[count] = (link == null) ? SymbolTable.noSymbol : strings.encode(link.getId());
+		types[count] = (byte)event.getType().ordinal();
+		count += 1;
+		target.add(event);
+	}
+
+	/**
+	 * Writes the recorded events into the cache file of the event log. The file is written
+	 * under a temporary name first, so that an incomplete cache file is never read.
+	 * @param eventLog The parsed Matsim event log
+	 * @param startAt Start of the time interval the events were selected by. If null,
+	 * the interval is unbounded from below.
+	 * @param endAt End of the time interval the events were selected by. If null,
+	 * the interval is unbounded from above.
+	 * @param onlyAgents Marks whether only the events of the JDEECo agents were selected
+	 * @throws IOException If it is impossible to write the cache file
+	 */
+	public void write(Path eventLog, Double startAt, Double endAt, boolean onlyAgents) throws IOException {
+		Path cacheFile = EventLogCache.getCacheFile(eventLog);
+		Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))){
+			out.write(EventLogCache.magic);
+			out.writeLong(stamp.getSize());
+			out.writeLong(stamp.getModified());
+			out.writeLong(stamp.getHash());
+			out.writeDouble((startAt == null) ? Double.NaN : startAt);
+			out.writeDouble((endAt == null) ? Double.NaN : endAt);
+			out.writeInt(onlyAgents ? 1 : 0);
+			out.writeInt(count);
+			out.writeInt(strings.size());
+			for (int i = 0; i < strings.size(); i++){
+				byte[] string = strings.decode(i).getBytes(StandardCharsets.UTF_8);
+				out.writeInt(string.length);
+				out.write(string);
+			}
+			while (out.size() != align(out.size())){
+				out.write(0);
+			}
+			for (int i = 0; i < count; i++){
+				out.writeDouble(times[i]);
+			}
+			for (int[] column : new int[][]{persons, vehicles, links}){
+				for (int i = 0; i < count; i++){
+					out.writeInt(column[i]);
+				}
+			}
+			out.write(types, 0, count);
+		}
+		Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+	}
+}
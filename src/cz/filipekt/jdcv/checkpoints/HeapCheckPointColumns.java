@@ -0,0 +1,121 @@
+package cz.filipekt.jdcv.checkpoints;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the columns of a {@link CheckPointDatabase} in primitive arrays on the heap
+ */
+class HeapCheckPointColumns extends CheckPointColumns {
+
+	/**
+	 * The time of each checkpoint
+	 */
+	private double[] time;
+
+	/**
+	 * The link of each checkpoint
+	 */
+	private int[] link;
+
+	/**
+	 * The vehicle of each checkpoint
+	 */
+	private int[] vehicle;
+
+	/**
+	 * The ordinal of the {@link CheckPoint.Type} of each checkpoint
+	 */
+	private byte[] type;
+
+	/**
+	 * The person of each checkpoint, null if the person column is not present
+	 */
+	private int[] person;
+
+	/**
+	 * @param capacity Number of the checkpoints the columns have room for
+	 * @param withPersons True iff the column with the people of the checkpoints is present
+	 */
+	HeapCheckPointColumns(int capacity, boolean withPersons) {
+		super(withPersons);
+		time = new double[capacity];
+		link = new int[capacity];
+		vehicle = new int[capacity];
+		type = new byte[capacity];
+		person = withPersons ? new int[capacity] : null;
+	}
+
+	@Override
+	int capacity() {
+		return time.length;
+	}
+
+	@Override
+	void grow(int capacity) {
+		if (capacity > time.length){
+			time = Arrays.copyOf(time, capacity);
+			link = Arrays.copyOf(link, capacity);
+			vehicle = Arrays.copyOf(vehicle, capacity);
+			type = Arrays.copyOf(type, capacity);
+			if (person != null){
+				person = Arrays.copyOf(person, capacity);
+			}
+		}
+	}
+
+	@Override
+	double getTime(int index) {
+		return time[index];
+	}
+
+	@Override
+	void setTime(int index, double time) {
+		this.time[index] = time;
+	}
+
+	@Override
+	int getLink(int index) {
+		return link[index];
+	}
+
+	@Override
+	void setLink(int index, int link) {
+		this.link[index] = link;
+	}
+
+	@Override
+	int getVehicle(int index) {
+		return vehicle[index];
+	}
+
+	@Override
+	void setVehicle(int index, int vehicle) {
+		this.vehicle[index] = vehicle;
+	}
+
+	@Override
+	byte getType(int index) {
+		return type[index];
+	}
+
+	@Override
+	void setType(int index, byte type) {
+		this.type[index] = type;
+	}
+
+	@Override
+	int getPerson(int index) {
+		if (person == null){
+			throw new IllegalStateException();
+		}
+		return person[index];
+	}
+
+	@Override
+	void setPerson(int index, int person) {
+		if (this.person == null){
+			throw new IllegalStateException();
+		}
+		this.person[index] = person;
+	}
+}
@@ -0,0 +1,292 @@
+package cz.filipekt.jdcv.checkpoints;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the columns of a {@link CheckPointDatabase} outside of the heap, so that they neither count
+ * towards the maximum heap size nor have to be traversed by the garbage collector. The columns are
+ * divided into chunks of {@link OffHeapCheckPointColumns#chunkSize} checkpoints. Each chunk is a single
+ * buffer, split into the views of the individual columns, which is either allocated as a direct buffer,
+ * or mapped from a temporary file. The mapped chunks are limited neither by the maximum heap size nor by
+ * the maximum size of the direct buffers, as the operating system pages them out to the file when needed.
+ * The temporary file is deleted right after it has been mapped, where the operating system allows it,
+ * otherwise when the chunk is released. The chunks are released by {@link OffHeapCheckPointColumns#release()},
+ * or when the columns are garbage collected if the running JVM does not allow releasing them explicitly.
+ */
+class OffHeapCheckPointColumns extends CheckPointColumns {
+
+	/**
+	 * Binary logarithm of {@link OffHeapCheckPointColumns#chunkSize}
+	 */
+	private static final int chunkBits = 20;
+
+	/**
+	 * Number of the checkpoints in each chunk
+	 */
+	private static final int chunkSize = 1 << chunkBits;
+
+	/**
+	 * Gives the position of a checkpoint in its chunk
+	 */
+	private static final int chunkMask = chunkSize - 1;
+
+	/**
+	 * If true, the chunks are mapped from temporary files, otherwise they are allocated as direct buffers
+	 */
+	private final boolean mapped;
+
+	/**
+	 * Number of the allocated chunks
+	 */
+	private int chunks = 0;
+
+	/**
+	 * Each chunk as a whole, as allocated or mapped
+	 */
+	private ByteBuffer[] buffers = new ByteBuffer[0];
+
+	/**
+	 * The temporary files of the mapped chunks, which could not be deleted while mapped
+	 */
+	private final List<Path> undeletedFiles = new ArrayList<>();
+
+	/**
+	 * The time column of each chunk
+	 */
+	private DoubleBuffer[] time = new DoubleBuffer[0];
+
+	/**
+	 * The link column of each chunk
+	 */
+	private IntBuffer[] link = new IntBuffer[0];
+
+	/**
+	 * The vehicle column of each chunk
+	 */
+	private IntBuffer[] vehicle = new IntBuffer[0];
+
+	/**
+	 * The type column of each chunk
+	 */
+	private ByteBuffer[] type = new ByteBuffer[0];
+
+	/**
+	 * The person column of each chunk, if the person column is present
+	 */
+	private IntBuffer[] person = new IntBuffer[0];
+
+	/**
+	 * @param capacity Number of the checkpoints the columns have room for
+	 * @param withPersons True iff the column with the people of the checkpoints is present
+	 * @param mapped If true, the chunks are mapped from temporary files, otherwise they are
+	 * allocated as direct buffers
+	 */
+	OffHeapCheckPointColumns(int capacity, boolean withPersons, boolean mapped) {
+		super(withPersons);
+		this.mapped = mapped;
+		grow(capacity);
+	}
+
+	@Override
+	int capacity() {
+		return chunks * chunkSize;
+	}
+
+	@Override
+	void grow(int capacity) {
+		while ((long)chunks * chunkSize < capacity){
+			if (chunks == time.length){
+				int newLength = Math.max(4, 2 * chunks);
+				buffers = Arrays.copyOf(buffers, newLength);
+				time = Arrays.copyOf(time, newLength);
+				link = Arrays.copyOf(link, newLength);
+				vehicle = Arrays.copyOf(vehicle, newLength);
+				type = Arrays.copyOf(type, newLength);
+				person = Arrays.copyOf(person, newLength);
+			}
+			ByteBuffer chunk = allocate((int)getSize(chunkSize, hasPersons()));
+			buffers[chunks] = chunk;
+			int position = 0;
+			time[chunks] = slice(chunk, position, 8 * chunkSize).asDoubleBuffer();
+			position += 8 * chunkSize;
+			link[chunks] = slice(chunk, position, 4 * chunkSize).asIntBuffer();
+			position += 4 * chunkSize;
+			vehicle[chunks] = slice(chunk, position, 4 * chunkSize).asIntBuffer();
+			position += 4 * chunkSize;
+			if (hasPersons()){
+				person[chunks] = slice(chunk, position, 4 * chunkSize).asIntBuffer();
+				position += 4 * chunkSize;
+			}
+			type[chunks] = slice(chunk, position, chunkSize);
+			chunks += 1;
+		}
+	}
+
+	/**
+	 * @param buffer A chunk
+	 * @param position Start of the column in the chunk, in bytes
+	 * @param length Length of the column, in bytes
+	 * @return The view of the column, in the native byte order
+	 */
+	private static ByteBuffer slice(ByteBuffer buffer, int position, int length){
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.position(position);
+		duplicate.limit(position + length);
+		return duplicate.slice().order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Allocates a chunk. If it should be mapped but the temporary file can not be created or mapped,
+	 * e.g. because the temporary directory is read-only, it is allocated as a direct buffer instead.
+	 * @param bytes Size of the chunk
+	 * @return The allocated chunk
+	 */
+	private ByteBuffer allocate(int bytes){
+		if (mapped){
+			try {
+				Path file = Files.createTempFile("jdcv-checkpoints", ".tmp");
+				try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+						StandardOpenOption.WRITE)){
+					return channel.map(MapMode.READ_WRITE, 0, bytes);
+				} finally {
+					try {
+						Files.delete(file);
+					} catch (IOException ex){
+						// Some systems do not allow deleting a mapped file
+						undeletedFiles.add(file);
+						file.toFile().deleteOnExit();
+					}
+				}
+			} catch (IOException ex){
+				// Falls back to a direct buffer
+			}
+		}
+		return ByteBuffer.allocateDirect(bytes);
+	}
+
+	/**
+	 * Unmaps or frees the chunks and deletes their temporary files which could not be deleted
+	 * while mapped. The columns hold no checkpoint afterwards.
+	 */
+	@Override
+	void release() {
+		ByteBuffer[] released = Arrays.copyOf(buffers, chunks);
+		chunks = 0;
+		buffers = new ByteBuffer[0];
+		time = new DoubleBuffer[0];
+		link = new IntBuffer[0];
+		vehicle = new IntBuffer[0];
+		type = new ByteBuffer[0];
+		person = new IntBuffer[0];
+		for (ByteBuffer buffer : released){
+			free(buffer);
+		}
+		for (Path file : undeletedFiles){
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException ex){
+				// The chunk could not be unmapped, the file is deleted on exit
+			}
+		}
+		undeletedFiles.clear();
+	}
+
+	/**
+	 * Unmaps or frees a chunk right away, using the cleaner of the direct buffers, which is not
+	 * a public API. If the running JVM does not allow it, the chunk is left to the garbage collector.
+	 * @param buffer A chunk, as allocated or mapped
+	 */
+	private static void free(ByteBuffer buffer){
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner;
+			try {
+				invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			} catch (NoSuchMethodException ex){
+				// Before Java 9, the cleaner is reached through the buffer itself
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null){
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+				return;
+			}
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+		} catch (ReflectiveOperationException | RuntimeException ex){
+			// Left to the garbage collector
+		}
+	}
+
+	@Override
+	double getTime(int index) {
+		return time[index >>> chunkBits].get(index & chunkMask);
+	}
+
+	@Override
+	void setTime(int index, double time) {
+		this.time[index >>> chunkBits].put(index & chunkMask, time);
+	}
+
+	@Override
+	int getLink(int index) {
+		return link[index >>> chunkBits].get(index & chunkMask);
+	}
+
+	@Override
+	void setLink(int index, int link) {
+		this.link[index >>> chunkBits].put(index & chunkMask, link);
+	}
+
+	@Override
+	int getVehicle(int index) {
+		return vehicle[index >>> chunkBits].get(index & chunkMask);
+	}
+
+	@Override
+	void setVehicle(int index, int vehicle) {
+		this.vehicle[index >>> chunkBits].put(index & chunkMask, vehicle);
+	}
+
+	@Override
+	byte getType(int index) {
+		return type[index >>> chunkBits].get(index & chunkMask);
+	}
+
+	@Override
+	void setType(int index, byte type) {
+		this.type[index >>> chunkBits].put(index & chunkMask, type);
+	}
+
+	@Override
+	int getPerson(int index) {
+		if (!hasPersons()){
+			throw new IllegalStateException();
+		}
+		return person[index >>> chunkBits].get(index & chunkMask);
+	}
+
+	@Override
+	void setPerson(int index, int person) {
+		if (!hasPersons()){
+			throw new IllegalStateException();
+		}
+		this.person[index >>> chunkBits].put(index & chunkMask, person);
+	}
+}
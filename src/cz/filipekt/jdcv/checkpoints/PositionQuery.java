@@ -0,0 +1,261 @@
+package cz.filipekt.jdcv.checkpoints;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import cz.filipekt.jdcv.network.MyLink;
+import cz.filipekt.jdcv.util.SymbolTable;
+
+/**
+ * Answers the question where each person is at a given simulation time, directly from
+ * a {@link CheckPointDatabase}, without the JavaFX timeline of the scene. It can therefore
+ * be used for seeking, exporting or analyzing the simulation, e.g. from the plugins or from
+ * the scripting console. The position of a person is found by a binary search among the position
+ * defining checkpoints of the person, i.e. in O(log n) time for n checkpoints of the person.
+ * Between entering and leaving a link, the position is interpolated linearly along the link,
+ * in the coordinates of the network definition file.
+ */
+public class PositionQuery {
+
+	/**
+	 * Position of a person at a given simulation time
+	 */
+	public static class AgentPosition {
+
+		/**
+		 * ID of the person
+		 */
+		private final String person;
+
+		/**
+		 * ID of the link the person is on, or has left most recently
+		 */
+		private final String link;
+
+		/**
+		 * x-coordinate of the person
+		 */
+		private final double x;
+
+		/**
+		 * y-coordinate of the person
+		 */
+		private final double y;
+
+		/**
+		 * True iff the person has entered the link and has not left it yet
+		 */
+		private final boolean onLink;
+
+		/**
+		 * True iff the person is seated in a vehicle
+		 */
+		private final boolean inVehicle;
+
+		/**
+		 * @param person ID of the person
+		 * @param link ID of the link the person is on, or has left most recently
+		 * @param x x-coordinate of the person
+		 * @param y y-coordinate of the person
+		 * @param onLink True iff the person has entered the link and has not left it yet
+		 * @param inVehicle True iff the person is seated in a vehicle
+		 */
+		AgentPosition(String person, String link, double x, double y, boolean onLink, boolean inVehicle) {
+			this.person = person;
+			this.link = link;
+			this.x = x;
+			this.y = y;
+			this.onLink = onLink;
+			this.inVehicle = inVehicle;
+		}
+
+		/**
+		 * @return ID of the person
+		 */
+		public String getPerson() {
+			return person;
+		}
+
+		/**
+		 * @return ID of the link the person is on, or has left most recently
+		 */
+		public String getLink() {
+			return link;
+		}
+
+		/**
+		 * @return x-coordinate of the person
+		 */
+		public double getX() {
+			return x;
+		}
+
+		/**
+		 * @return y-coordinate of the person
+		 */
+		public double getY() {
+			return y;
+		}
+
+		/**
+		 * @return True iff the person has entered the link and has not left it yet
+		 */
+		public boolean isOnLink() {
+			return onLink;
+		}
+
+		/**
+		 * @return True iff the person is seated in a vehicle
+		 */
+		public boolean isInVehicle() {
+			return inVehicle;
+		}
+
+		@Override
+		public String toString() {
+			return person + " @ " + link + " [" + x + ", " + y + "]";
+		}
+	}
+
+	/**
+	 * The queried checkpoints
+	 */
+	private final CheckPointDatabase db;
+
+	/**
+	 * x-coordinate of the start node of each link, indexed by the symbol assigned by
+	 * {@link CheckPointDatabase#getLinks()}. {@link Double#NaN} if the link is not in the network.
+	 */
+	private final double[] fromX;
+
+	/**
+	 * y-coordinate of the start node of each link, indexed by the symbol of the link
+	 */
+	private final double[] fromY;
+
+	/**
+	 * x-coordinate of the end node of each link, indexed by the symbol of the link
+	 */
+	private final double[] toX;
+
+	/**
+	 * y-coordinate of the end node of each link, indexed by the symbol of the link
+	 */
+	private final double[] toY;
+
+	/**
+	 * @param db The queried checkpoints, the database has to be sealed
+	 * @param links The links of the network, indexed by their IDs
+	 */
+	public PositionQuery(CheckPointDatabase db, Map<String,MyLink> links) {
+		if (db == null){
+			throw new NullPointerException();
+		}
+		this.db = db;
+		SymbolTable linkSymbols = db.getLinks();
+		int count = linkSymbols.size();
+		fromX = new double[count];
+		fromY = new double[count];
+		toX = new double[count];
+		toY = new double[count];
+		Arrays.fill(fromX, Double.NaN);
+		for (int i = 0; i < count; i++){
+			MyLink link = (links == null) ? null : links.get(linkSymbols.decode(i));
+			if (link != null){
+				fromX[i] = link.getFrom().getX();
+				fromY[i] = link.getFrom().getY();
+				toX[i] = link.getTo().getX();
+				toY[i] = link.getTo().getY();
+			}
+		}
+	}
+
+	/**
+	 * @param from Index of the first checkpoint of the searched range
+	 * @param to Index following the last checkpoint of the searched range
+	 * @param time A simulation time
+	 * @return Index of the last checkpoint in the range, which is sorted by time, whose time
+	 * is not greater than the given time. -1 if there is no such checkpoint.
+	 */
+	private int findLastBefore(int from, int to, double time){
+		int low = from;
+		int high = to;
+		while (low < high){
+			int middle = (low + high) >>> 1;
+			if (db.getTime(middle) <= time){
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return (low > from) ? (low - 1) : -1;
+	}
+
+	/**
+	 * @param person A person, given by its symbol assigned by {@link CheckPointDatabase#getPersons()}
+	 * @param time A simulation time
+	 * @return Position of the person at the given time. Null if the position is not known, i.e. if the
+	 * person has not entered or left any link until the time, or if the link is not in the network.
+	 */
+	public AgentPosition getPosition(int person, double time){
+		int positionsStart = db.getPositionsStart(person);
+		int positionsEnd = db.getPositionsEnd(person);
+		int cp = findLastBefore(positionsStart, positionsEnd, time);
+		if (cp < 0){
+			return null;
+		}
+		int link = db.getLink(cp);
+		if ((link == SymbolTable.noSymbol) || Double.isNaN(fromX[link])){
+			return null;
+		}
+		boolean onLink = (db.getType(cp) == CheckPoint.Type.LINK_ENTERED);
+		double x;
+		double y;
+		if (onLink && ((cp + 1) < positionsEnd)){
+			double start = db.getTime(cp);
+			double end = db.getTime(cp + 1);
+			double ratio = (end > start) ? Math.min(1, (time - start) / (end - start)) : 0;
+			x = fromX[link] + (ratio * (toX[link] - fromX[link]));
+			y = fromY[link] + (ratio * (toY[link] - fromY[link]));
+		} else if (onLink){
+			x = fromX[link];
+			y = fromY[link];
+		} else {
+			x = toX[link];
+			y = toY[link];
+		}
+		int other = findLastBefore(db.getOthersStart(person), db.getOthersEnd(person), time);
+		boolean inVehicle = (other >= 0) && (db.getType(other) == CheckPoint.Type.PERSON_ENTERS);
+		return new AgentPosition(db.getPersons().decode(person), db.getLinks().decode(link), x, y,
+				onLink, inVehicle);
+	}
+
+	/**
+	 * @param personID ID of a person
+	 * @param time A simulation time
+	 * @return Position of the person at the given time. Null if the person is unknown or if
+	 * the position is not known, see {@link PositionQuery#getPosition(int, double)}.
+	 */
+	public AgentPosition getPosition(String personID, double time){
+		int person = db.getPersons().find(personID);
+		return (person == SymbolTable.noSymbol) ? null : getPosition(person, time);
+	}
+
+	/**
+	 * @param time A simulation time
+	 * @return Positions of all the people whose positions are known at the given time
+	 */
+	public List<AgentPosition> getPositions(double time){
+		List<AgentPosition> res = new ArrayList<>();
+		for (int person = 0; person < db.getPersonsCount(); person++){
+			AgentPosition position = getPosition(person, time);
+			if (position != null){
+				res.add(position);
+			}
+		}
+		return res;
+	}
+
+}
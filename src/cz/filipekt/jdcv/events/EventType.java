@@ -128,4 +128,69 @@ public enum EventType {
 				return null;
 		}
 	}
+	
+	/**
+	 * All of the event types, in the order of their declaration
+	 */
+	private static final EventType[] allTypes = values();
+	
+	/**
+	 * @return The actual value of the type attribute that is represented by this event type
+	 */
+	public String getText(){
+		switch (this){
+			case PERSON_ENTERS_VEHICLE:
+				return EventType.personEntersVehicleValue;
+			case PERSON_LEAVES_VEHICLE:
+				return EventType.personLeavesVehicleValue;
+			case ENTERED_LINK:
+				return EventType.enteredLinkValue;
+			case LEFT_LINK:
+				return EventType.leftLinkValue;
+			case DEPARTURE:
+				return EventType.departureValue;
+			case ARRIVAL:
+				return EventType.arrivalValue;
+			case ACT_START:
+				return EventType.actStartValue;
+			case ACT_END:
+				return EventType.actEndValue;
+			case WAIT_2_LINK:
+				return EventType.wait2linkValue;
+			case STUCK_AND_ABORT:
+				return EventType.stuckAndAbortValue;
+			case TRAVELLED:
+				return EventType.travelledValue;
+			case ENSEMBLE:
+				return EventType.ensembleValue;
+			default:
+				throw new IllegalStateException();
+		}
+	}
+	
+	/**
+	 * Same as {@link EventType#from(String)}, but the value of the type attribute is given 
+	 * as raw bytes, encoded in an ASCII compatible character encoding. No String is created.
+	 * @param data Contains the value of the type attribute in an event element
+	 * @param offset Position of the value in the data
+	 * @param length Length of the value, in bytes
+	 * @return The enum representation of the value of the type attribute. 
+	 * If the attribute value is unrecognized, null is returned.
+	 */
+	public static EventType from(byte[] data, int offset, int length){
+		outer:
+		for (EventType type : allTypes){
+			String text = type.getText();
+			if (text.length() != length){
+				continue;
+			}
+			for (int i = 0; i < length; i++){
+				if (data[offset + i] != text.charAt(i)){
+					continue outer;
+				}
+			}
+			return type;
+		}
+		return null;
+	}
 }
@@ -0,0 +1,15 @@
+package cz.filipekt.jdcv.events;
+
+/**
+ * Receives the {@link MatsimEvent} instances one by one, in the order in which they 
+ * appear in the event log, as soon as they are parsed. This makes it possible to process
+ * the event log without keeping all of the parsed events in the memory.
+ */
+public interface MatsimEventSink {
+	
+	/**
+	 * Called for each of the parsed events, in the order of their appearance in the event log
+	 * @param event The parsed event
+	 */
+	void add(MatsimEvent event);
+}
@@ -16,6 +16,7 @@ import javafx.scene.control.TextField;
 import cz.filipekt.jdcv.util.CharsetNames;
 import cz.filipekt.jdcv.util.Dialog;
 import cz.filipekt.jdcv.util.Dialog.Type;
+import cz.filipekt.jdcv.util.InputFiles;
 
 /**
  * Loads the configuration of a new scene from a configuration file.
@@ -124,7 +125,9 @@ public class ConfigFileLoader implements EventHandler<ActionEvent> {
 	
 	/**
 	 * Contents of the first block of the line that specifies the event log 
-	 * file, in the config file
+	 * file, in the config file. The path may list several shards of the event log
+	 * (see {@link InputFiles#resolveList(String)}), and the line may be repeated,
+	 * each occurrence adding more shards.
 	 */
 	private final String eventPreamble = "events";
 	
@@ -233,13 +236,13 @@ public class ConfigFileLoader implements EventHandler<ActionEvent> {
 					if ((blocks != null) && (blocks.length > 0) && (blocks[0] != null)){
 						switch (blocks[0]){
 							case networkPreamble:
-								processPathDef(blocks, networkField, networkCharsets, lineNo);
+								processPathDef(blocks, networkField, networkCharsets, lineNo, false);
 								break;
 							case eventPreamble:
-								processPathDef(blocks, eventField, eventCharsets, lineNo);
+								processPathDef(blocks, eventField, eventCharsets, lineNo, true);
 								break;
 							case ensemblePreamble:
-								processPathDef(blocks, ensembleField, ensembleCharsets, lineNo);
+								processPathDef(blocks, ensembleField, ensembleCharsets, lineNo, false);
 								break;
 							case durationPreamble:
 								processNumberDef(blocks, durationField, lineNo);
@@ -278,16 +281,23 @@ public class ConfigFileLoader implements EventHandler<ActionEvent> {
 	 * @param field The text field to which the path will be written to 
 	 * @param encodingBox The combo-box where the loaded text encoding will be recorded to
 	 * @param lineNo Number of the line, whose contents are given in the first parameter
+	 * @param append If true, the path is appended to the list of files already written
+	 * to the text field, instead of replacing it
 	 * @throws ConfigFileLoader.ConfigFileFormatException When the line does not have a valid structure
 	 */
 	private void processPathDef(String[] blocks, TextField field, ComboBox<String> encodingBox, 
-			int lineNo) throws ConfigFileLoader.ConfigFileFormatException{
+			int lineNo, boolean append) throws ConfigFileLoader.ConfigFileFormatException{
 		if ((blocks != null) && (blocks.length >= 2)){
 			if (blocks.length > 3){
 				throw new ConfigFileFormatException("[Line " + lineNo + 
 						"]: contains too many blocks delimited by \"" + delimiter + "\"");
 			}
-			field.setText(blocks[1]);
+			String previous = field.getText();
+			if (append && (previous != null) && !previous.isEmpty()){
+				field.setText(previous + InputFiles.listSeparator + blocks[1]);
+			} else {
+				field.setText(blocks[1]);
+			}
 			if ((encodingBox != null) && (blocks.length >= 3) && (blocks[2] != null) && 
 					(CharsetNames.get().contains(blocks[2]))){
 				encodingBox.getSelectionModel().select(blocks[2]);
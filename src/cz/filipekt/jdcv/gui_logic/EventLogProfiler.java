@@ -0,0 +1,219 @@
+package cz.filipekt.jdcv.gui_logic;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.application.Platform;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.scene.Cursor;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import cz.filipekt.jdcv.util.BigFilesSearch;
+import cz.filipekt.jdcv.util.BlockCompressedLog;
+import cz.filipekt.jdcv.util.Dialog;
+import cz.filipekt.jdcv.util.Dialog.Type;
+import cz.filipekt.jdcv.util.EventLogProfile;
+import cz.filipekt.jdcv.util.InputFiles;
+
+/**
+ * Quickly profiles the Matsim event log specified in the "import scene" page, before it is imported,
+ * so that the user can choose the start and end of the visualization up front. The time range, the
+ * estimated number of events and a histogram of the events density in time are shown. Clicking a bar
+ * of the histogram fills in the start and end of the visualization with its time interval.
+ *
+ * @author Tomas Filipek <tom.filipek@seznam.cz>
+ */
+public class EventLogProfiler implements EventHandler<ActionEvent> {
+
+	/**
+	 * The text field for specifying the path to the event log file
+	 */
+	private final TextField eventField;
+
+	/**
+	 * The combo-box for selecting the text encoding of the event log file
+	 */
+	private final ComboBox<String> eventCharsets;
+
+	/**
+	 * The field specifying the where in the event log should the visualization begin
+	 */
+	private final TextField startAtField;
+
+	/**
+	 * The field specifying the where in the event log should the visualization end
+	 */
+	private final TextField endAtField;
+
+	/**
+	 * The button starting the profiling, disabled while the profiling runs
+	 */
+	private final Button profileButton;
+
+	/**
+	 * Shows the time range and the estimated number of events of the profiled event log
+	 */
+	private final Label summaryLabel;
+
+	/**
+	 * Contains the bars of the histogram of the events density in time
+	 */
+	private final HBox histogramBox;
+
+	/**
+	 * @param eventField The text field for specifying the path to the event log file
+	 * @param eventCharsets The combo-box for selecting the text encoding of the event log file
+	 * @param startAtField The field specifying the where in the event log should the visualization begin
+	 * @param endAtField The field specifying the where in the event log should the visualization end
+	 * @param profileButton The button starting the profiling, disabled while the profiling runs
+	 * @param summaryLabel Shows the time range and the estimated number of events of the profiled event log
+	 * @param histogramBox Contains the bars of the histogram of the events density in time
+	 */
+	public EventLogProfiler(TextField eventField, ComboBox<String> eventCharsets, TextField startAtField,
+			TextField endAtField, Button profileButton, Label summaryLabel, HBox histogramBox) {
+		this.eventField = eventField;
+		this.eventCharsets = eventCharsets;
+		this.startAtField = startAtField;
+		this.endAtField = endAtField;
+		this.profileButton = profileButton;
+		this.summaryLabel = summaryLabel;
+		this.histogramBox = histogramBox;
+	}
+
+	/**
+	 * Number of the positions where each event log file is probed
+	 */
+	private final int samples = 256;
+
+	/**
+	 * Number of the bars of the histogram
+	 */
+	private final int bins = 40;
+
+	/**
+	 * Height of the highest bar of the histogram
+	 */
+	private final double histogramHeight = 40;
+
+	/**
+	 * Width of each bar of the histogram
+	 */
+	private final double barWidth = 8;
+
+	/**
+	 * Fired when user clicks the "profile" button. Profiles the event log in the background
+	 * and shows the result.
+	 */
+	@Override
+	public void handle(ActionEvent arg0) {
+		final String pathValue = eventField.getText();
+		if ((pathValue == null) || pathValue.trim().isEmpty()){
+			Dialog.show(Type.INFO, "Path to the Matsim event log hasn't been specified.",
+					"Fill in the path and try again.");
+			return;
+		}
+		final Charset charset = Charset.forName(eventCharsets.getSelectionModel().getSelectedItem());
+		profileButton.setDisable(true);
+		summaryLabel.setText("Profiling...");
+		histogramBox.getChildren().clear();
+		Thread profiler = new Thread("event-log-profiler"){
+
+			@Override
+			public void run() {
+				long begin = System.nanoTime();
+				EventLogProfile profile = null;
+				String[] errorMessages = null;
+				try {
+					List<EventLogProfile> profiles = new ArrayList<>();
+					for (Path path : InputFiles.resolveList(pathValue)){
+						if (InputFiles.isGzip(path) || BlockCompressedLog.isBlockCompressed(path)){
+							errorMessages = new String[]{"Compressed event logs can not be profiled:",
+									path.toString()};
+							break;
+						}
+						profiles.add(new BigFilesSearch(path, charset).getProfile(samples));
+					}
+					if (errorMessages == null){
+						profile = EventLogProfile.merge(profiles);
+					}
+				} catch (IOException ex) {
+					errorMessages = new String[]{"Could not read from the Matsim event log:", ex.getMessage()};
+				} catch (RuntimeException ex) {
+					errorMessages = new String[]{"Could not profile the Matsim event log:", String.valueOf(ex)};
+				}
+				final long elapsed = (System.nanoTime() - begin) / 1000000L;
+				final EventLogProfile result = profile;
+				final String[] messages = errorMessages;
+				Platform.runLater(new Runnable() {
+
+					@Override
+					public void run() {
+						try {
+							if (messages == null){
+								showProfile(result, elapsed);
+							} else {
+								summaryLabel.setText("");
+								Dialog.show(Type.ERROR, messages);
+							}
+						} finally {
+							profileButton.setDisable(false);
+						}
+					}
+				});
+			}
+		};
+		profiler.setDaemon(true);
+		profiler.start();
+	}
+
+	/**
+	 * Shows the given profile of the event log in the "import scene" page
+	 * @param profile The profile of the event log
+	 * @param elapsed How long the profiling took, in milliseconds
+	 */
+	private void showProfile(EventLogProfile profile, long elapsed){
+		if (profile.isEmpty()){
+			summaryLabel.setText(String.format("No event elements found (%d ms)", elapsed));
+			return;
+		}
+		summaryLabel.setText(String.format("Time %.0f - %.0f s, approx. %,d events (%d ms)",
+				profile.getMinTime(), profile.getMaxTime(), profile.getEventCount(), elapsed));
+		double[] histogram = profile.getHistogram(bins);
+		double binWidth = profile.getBinWidth(bins);
+		double highest = 0;
+		for (double events : histogram){
+			highest = Math.max(highest, events);
+		}
+		for (int i = 0; i < bins; i++){
+			final double from = profile.getMinTime() + (i * binWidth);
+			final double to = from + binWidth;
+			double height = (highest > 0) ? Math.max(1, histogramHeight * (histogram[i] / highest)) : 1;
+			Rectangle bar = new Rectangle(barWidth, height, Color.STEELBLUE);
+			String density = (binWidth > 0) ? String.format(", %.1f events/s", histogram[i] / binWidth) : "";
+			Tooltip.install(bar, new Tooltip(String.format("%.0f - %.0f s: approx. %,d events%s",
+					from, to, Math.round(histogram[i]), density)));
+			bar.setCursor(Cursor.HAND);
+			bar.setOnMouseClicked(new EventHandler<MouseEvent>() {
+
+				@Override
+				public void handle(MouseEvent event) {
+					startAtField.setText(Long.toString((long)Math.floor(from)));
+					endAtField.setText(Long.toString((long)Math.ceil(to)));
+				}
+			});
+			histogramBox.getChildren().add(bar);
+		}
+	}
+
+}
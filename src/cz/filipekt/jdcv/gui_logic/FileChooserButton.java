@@ -2,12 +2,14 @@ package cz.filipekt.jdcv.gui_logic;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 import javafx.event.Event;
 import javafx.event.EventHandler;
 import javafx.scene.control.TextField;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import cz.filipekt.jdcv.util.InputFiles;
 
 /**
  * Listener for the {@link Event} that the user clicks a button that allows to choose a
@@ -40,21 +42,41 @@ public class FileChooserButton implements EventHandler<Event>{
 	 */
 	private final String windowTitle;
 	
+	/**
+	 * If true, several files can be selected at once, e.g. the shards of an event log.
+	 * Their paths are put inside the {@link FileChooserButton#field} as a list 
+	 * accepted by {@link InputFiles#resolveList(String)}.
+	 */
+	private final boolean multiple;
+	
 	/**
 	 * @param stage The main {@link Stage} of the application
 	 * @param field After the file selection process is completed, the absolute path to the
 	 * selected file is put inside this {@link TextField}.
 	 * @param windowTitle The title of the file choosing window
+	 * @param multiple If true, several files can be selected at once
 	 */
-	public FileChooserButton(Stage stage, TextField field, String windowTitle) {
+	public FileChooserButton(Stage stage, TextField field, String windowTitle, boolean multiple) {
 		this.stage = stage;
 		this.field = field;
 		this.windowTitle = windowTitle;
+		this.multiple = multiple;
+	}
+	
+	/**
+	 * @param stage The main {@link Stage} of the application
+	 * @param field After the file selection process is completed, the absolute path to the
+	 * selected file is put inside this {@link TextField}.
+	 * @param windowTitle The title of the file choosing window
+	 */
+	public FileChooserButton(Stage stage, TextField field, String windowTitle) {
+		this(stage, field, windowTitle, false);
 	}
 
 	/**
 	 * When the button, to which this handler is appointed, is clicked, this method is run.
-	 * Shows the standard JavaFX {@link FileChooser} allowing for selection of a single file. 
+	 * Shows the standard JavaFX {@link FileChooser} allowing for selection of a single file,
+	 * or of several files if {@link FileChooserButton#multiple} holds.
 	 */
 	@Override
 	public void handle(Event arg0) {
@@ -63,6 +85,14 @@ public class FileChooserButton implements EventHandler<Event>{
 			fileChooser.setInitialDirectory(FileChooserButton.lastDirectory.getCanonicalFile());
 		} catch (IOException e) {}
 		fileChooser.setTitle(windowTitle);
+		if (multiple){
+			List<File> files = fileChooser.showOpenMultipleDialog(stage);
+			if ((files != null) && !files.isEmpty()){
+				field.setText(InputFiles.formatList(files));
+				FileChooserButton.lastDirectory = files.get(0).getAbsoluteFile().getParentFile();
+			}
+			return;
+		}
 		File res = fileChooser.showOpenDialog(stage);
 		if (res != null){
 			field.setText(res.toPath().toAbsolutePath().toString());
@@ -9,6 +9,7 @@ import javafx.scene.input.MouseEvent;
 import cz.filipekt.jdcv.checkpoints.CheckPoint;
 import cz.filipekt.jdcv.checkpoints.CheckPointDatabase;
 import cz.filipekt.jdcv.plugins.InfoPanel;
+import cz.filipekt.jdcv.util.SymbolTable;
 
 /**
  * Handler for the event that the user clicks on a person visualization.
@@ -17,9 +18,10 @@ import cz.filipekt.jdcv.plugins.InfoPanel;
 public class InfoPanelSetter implements EventHandler<MouseEvent>{
 	
 	/**
-	 * Pieces of information to be shown in the info-panel.
+	 * The person whose info will be shown, given by its symbol 
+	 * assigned by {@link CheckPointDatabase#getPersons()}
 	 */
-	private final Map<String,String> info;
+	private final int person;
 	
 	/**
 	 * The checkpoints (position of people) as encountered when parsing the input XML 
@@ -28,33 +30,32 @@ public class InfoPanelSetter implements EventHandler<MouseEvent>{
 	private final CheckPointDatabase checkpointDb;
 
 	/**
-	 * @param personID ID of the person whose info will be shown
+	 * @param person The person whose info will be shown, given by its symbol 
+	 * assigned by {@link CheckPointDatabase#getPersons()}
+	 * @param checkpointDb The checkpoints (position of people) as encountered when parsing the input XML 
+	 * files. Contains positions of people on the map at specified times.
 	 */
-	public InfoPanelSetter(String personID, CheckPointDatabase checkpointDb) {	
-		this.checkpointDb = checkpointDb;
-		if ((checkpointDb != null) && (checkpointDb.getList(personID) != null)){				
-			Map<String,String> personInfo = getInfoForPerson(personID);
-			if (personInfo == null){
-				throw new NullPointerException();
-			} else {
-				this.info = personInfo;				
-			}
-		} else {
+	public InfoPanelSetter(int person, CheckPointDatabase checkpointDb) {	
+		if (checkpointDb == null){
 			throw new NullPointerException();
-		}				
+		}
+		this.person = person;
+		this.checkpointDb = checkpointDb;
 	}
 	
 	/**
-	 * Given a person ID, this method creates a collection of key-value pairs for 
+	 * Given a person, this method creates a collection of key-value pairs for 
 	 * use by the info side-panel, with each pair containing a piece of relevant 
-	 * information about the person.
-	 * @param personID ID of the person
+	 * information about the person. The symbols of the person and the links are 
+	 * resolved to the original IDs here, as they are only needed for the display.
+	 * @param person The person, given by its symbol
 	 * @return Collection of key-value pairs for use by the info side-panel
 	 */
-	private Map<String,String> getInfoForPerson(String personID){
-		List<CheckPoint> checkPoints = checkpointDb.getList(personID);
+	private Map<String,String> getInfoForPerson(int person){
+		List<CheckPoint> checkPoints = checkpointDb.getList(person);
+		SymbolTable links = checkpointDb.getLinks();
 		Map<String,String> res = new LinkedHashMap<>();
-		res.put("Person ID", personID);
+		res.put("Person ID", checkpointDb.getPersons().decode(person));
 		for (CheckPoint cp : checkPoints){
 			String key = "Time " + cp.getTime();
 			String value = null;
@@ -66,10 +67,10 @@ public class InfoPanelSetter implements EventHandler<MouseEvent>{
 					value = "persons leaves vehicle";
 					break;
 				case LINK_ENTERED:
-					value = "enters link " + cp.getLinkID();
+					value = "enters link " + links.decode(cp.getLink());
 					break;
 				case LINK_LEFT:
-					value = "leaves link " + cp.getLinkID();
+					value = "leaves link " + links.decode(cp.getLink());
 					break;
 			}
 			if (value != null){
@@ -84,6 +85,6 @@ public class InfoPanelSetter implements EventHandler<MouseEvent>{
 	 */
 	@Override
 	public void handle(MouseEvent arg0) {
-		InfoPanel.getInstance().setInfo("Person/car selected:", info);
+		InfoPanel.getInstance().setInfo("Person/car selected:", getInfoForPerson(person));
 	}
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+package cz.filipekt.jdcv.measuring;
+
+import cz.filipekt.jdcv.checkpoints.CheckPointBuilder;
+import cz.filipekt.jdcv.checkpoints.CheckPointDatabase;
+import cz.filipekt.jdcv.events.EventType;
+
+/**
+ * Measures the building and the reading of the {@link CheckPointDatabase} when its columns are kept
+ * on the heap and when they are moved outside of the heap, because they do not fit into the memory
+ * budget given to the {@link CheckPointBuilder}. Provides a self-contained measuring package - the
+ * events are generated on the fly, so no input files are needed.
+ */
+public class MeasureCheckPointStorage {
+
+	/**
+	 * Carries out the whole performance measuring process of the checkpoint storage.
+	 * The action is delegated to the {@link MeasureCheckPointStorage#test()} procedure.
+	 */
+	public static void main(String[] args) {
+		INSTANCE.test();
+	}
+
+	/**
+	 * The singleton instance of this class
+	 */
+	private static final MeasureCheckPointStorage INSTANCE = new MeasureCheckPointStorage();
+
+	/**
+	 * Numbers of the events given to the measured builders
+	 */
+	private final long[] eventCounts = {500_000L, 2_000_000L, 8_000_000L};
+
+	/**
+	 * The memory budget given to the builders whose columns may be moved outside of the heap,
+	 * in bytes. It is about the share of a time window held by the scene import handler.
+	 */
+	private final long memoryBudget = 64L * 1024L * 1024L;
+
+	/**
+	 * Number of the worker threads of the measured builders
+	 */
+	private final int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Number of the people the generated events concern
+	 */
+	private final int personsCount = 10_000;
+
+	/**
+	 * Number of the links the generated events concern
+	 */
+	private final int linksCount = 1_000;
+
+	/**
+	 * IDs of the people the generated events concern
+	 */
+	private final String[] persons = createIds("p", personsCount);
+
+	/**
+	 * IDs of the vehicles the generated events concern, one per person
+	 */
+	private final String[] vehicles = createIds("v", personsCount);
+
+	/**
+	 * IDs of the links the generated events concern
+	 */
+	private final String[] links = createIds("l", linksCount);
+
+	/**
+	 * Sum of the values read from the measured databases, kept so that the reading is not optimized away
+	 */
+	private double readSum = 0;
+
+	/**
+	 * @param prefix Common prefix of the IDs
+	 * @param count Number of the IDs
+	 * @return The IDs consisting of the prefix and the numbers from 0 up to the count (excluded)
+	 */
+	private static String[] createIds(String prefix, int count){
+		String[] res = new String[count];
+		for (int i = 0; i < count; i++){
+			res[i] = prefix + i;
+		}
+		return res;
+	}
+
+	/**
+	 * Carries out the whole performance measuring process of the checkpoint storage. Each number
+	 * of the events is given to a builder keeping the columns on the heap, and to the builders
+	 * given {@link MeasureCheckPointStorage#memoryBudget} whose columns are mapped from temporary
+	 * files or allocated as direct buffers once they do not fit into the budget.
+	 */
+	private void test(){
+		System.out.println("Memory budget: " + (memoryBudget / (1024 * 1024)) + " MB, " +
+				CheckPointBuilder.getEventCapacity(memoryBudget) + " events surely kept on the heap");
+		System.out.println();
+		for (long eventCount : eventCounts){
+			System.out.println("Events: " + eventCount);
+			measure(eventCount, "heap", Long.MAX_VALUE, false);
+			measure(eventCount, "mapped", memoryBudget, true);
+			measure(eventCount, "direct", memoryBudget, false);
+			System.out.println();
+		}
+		System.out.println("Finished");
+	}
+
+	/**
+	 * Builds the database of the given number of generated events, reads all of its checkpoints
+	 * and prints the running times, together with whether the columns have been kept outside of the heap
+	 * @param eventCount Number of the events given to the builder
+	 * @param label Describes the measured storage in the printed results
+	 * @param budget Passed to {@link CheckPointBuilder#CheckPointBuilder(int, long, boolean)}
+	 * @param mapped Passed to {@link CheckPointBuilder#CheckPointBuilder(int, long, boolean)}
+	 */
+	private void measure(long eventCount, String label, long budget, boolean mapped){
+		System.gc();
+		long before = System.nanoTime();
+		CheckPointDatabase database;
+		try (CheckPointBuilder builder = new CheckPointBuilder(threads, budget, mapped)){
+			addEvents(builder, eventCount);
+			database = builder.getDatabase();
+		} catch (OutOfMemoryError ex){
+			System.out.println(label + ": out of memory");
+			return;
+		}
+		long built = System.nanoTime();
+		double sum = 0;
+		for (int person = 0; person < database.getPersonsCount(); person++){
+			int end = database.getPositionsEnd(person);
+			for (int i = database.getPositionsStart(person); i < end; i++){
+				sum += database.getTime(i) + database.getLink(i);
+			}
+		}
+		long read = System.nanoTime();
+		readSum += sum;
+		System.out.println(label + ": off-heap " + database.isOffHeap() + ", " +
+				database.getCheckPointsCount() + " checkpoints, built in " +
+				(built - before) / 1000000L + " ms, read in " + (read - built) / 1000000L + " ms");
+		database.release();
+	}
+
+	/**
+	 * Gives the generated events to the builder. Each person repeatedly enters a link and
+	 * leaves it, the links being visited in turn, and the time advances after each round
+	 * of the events of all of the people.
+	 * @param builder Receives the generated events
+	 * @param eventCount Number of the generated events
+	 */
+	private void addEvents(CheckPointBuilder builder, long eventCount){
+		for (long i = 0; i < eventCount; i++){
+			int person = (int)(i % personsCount);
+			long round = i / personsCount;
+			EventType type = ((round % 2) == 0) ? EventType.ENTERED_LINK : EventType.LEFT_LINK;
+			String link = links[(int)(((round / 2) + person) % linksCount)];
+			builder.add(round, type, persons[person], vehicles[person], link);
+		}
+	}
+}
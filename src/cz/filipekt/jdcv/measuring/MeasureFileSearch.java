@@ -194,13 +194,45 @@ public class MeasureFileSearch {
 	
 	/**
 	 * Measures the running time of {@link BigFilesSearch#getPrecedingLocation(double)}
-	 * on the given file.
+	 * on the given file, when the file is probed by decoding the samples and when it is
+	 * probed by searching for the encoded bytes directly, and when the file is searched by
+	 * bisection and when it is searched by interpolation. The {@link cz.filipekt.jdcv.util.EventLogIndex}
+	 * is not used, so that the probing itself is measured.
 	 * @param character The characteristics of the file given in the other parameter
 	 * @param file The {@link BigFilesSearch} class will access this file
 	 */
 	private void measure(FileCharacter character, File file) 
 			throws IOException, SelectionTooBigException, ElementTooLargeException{
+		System.out.println("Count:" + character.getElementCount() + 
+				", size: " + character.getElementSize() + 
+				", encoding: " + character.getEncoding());
+		double decoded = measure(character, file, false, false);
+		double encoded = measure(character, file, true, false);
+		if (Double.isNaN(decoded) || Double.isNaN(encoded)){
+			System.out.println("Per-probe speedup: n/a");
+		} else {
+			System.out.println("Per-probe speedup: " + Math.round(100 * decoded / encoded) / 100.0 + "x");
+		}
+		measure(character, file, true, true);
+	}
+	
+	/**
+	 * Measures the running time of {@link BigFilesSearch#getPrecedingLocation(double)}
+	 * on the given file, using the specified way of probing and searching the file.
+	 * @param character The characteristics of the file given in the other parameter
+	 * @param file The {@link BigFilesSearch} class will access this file
+	 * @param byteLevelProbe Passed to {@link BigFilesSearch#setByteLevelProbe(boolean)}
+	 * @param interpolationSearch Passed to {@link BigFilesSearch#setInterpolationSearch(boolean)}
+	 * @return Mean running time of a single probe, in nanoseconds. {@link Double#NaN} if the file
+	 * has not been probed at all, e.g. because it is smaller than a single search step.
+	 */
+	private double measure(FileCharacter character, File file, boolean byteLevelProbe, 
+			boolean interpolationSearch) 
+			throws IOException, SelectionTooBigException, ElementTooLargeException{
 		final BigFilesSearch bfs = new BigFilesSearch(file.toPath(), character.getEncoding());
+		bfs.setUseIndex(false);
+		bfs.setByteLevelProbe(byteLevelProbe);
+		bfs.setInterpolationSearch(interpolationSearch);
 		final double[] points = generatePoints(character.getElementCount());
 		Runnable procedure = new Runnable() {
 			
@@ -220,21 +252,26 @@ public class MeasureFileSearch {
 		for (int i = 0; i<warmupCount; i++){
 			procedure.run();
 		}
-		System.out.println("Finished warm-up");
 		System.gc();
 
 //		MEASUREMENT:
+		long probesBefore = bfs.getProbeCount();
 		long before = System.nanoTime();
 		for (int i = 0; i<measureCount; i++){
 			procedure.run();
 		}
 		long after = System.nanoTime();
+		long probes = bfs.getProbeCount() - probesBefore;
 		
 		double mean = (after - before) / (points.length * measureCount);
-		System.out.println("Count:" + character.getElementCount() + 
-				", size: " + character.getElementSize() + 
-				", encoding: " + character.getEncoding());
-		System.out.println(Math.round(mean / 1000) + " μs");
+		double perProbe = (probes == 0) ? Double.NaN : ((double)(after - before) / probes);
+		double probesPerSearch = (double)probes / (points.length * measureCount);
+		System.out.println((byteLevelProbe ? "Byte-level probe" : "Decoding probe") + 
+				(interpolationSearch ? ", interpolation: " : ", bisection: ") + 
+				Math.round(mean / 1000) + " μs, " + 
+				(Double.isNaN(perProbe) ? "n/a" : Math.round(perProbe) + " ns") + " per probe, " + 
+				Math.round(10 * probesPerSearch) / 10.0 + " probes per search");
+		return perProbe;
 	}
 	
 	/**
@@ -101,26 +101,36 @@ public class MeasureInputProcessing {
 			if (par == null){
 				System.out.println("Input #" + count++ + " error");
 			} else {
-//				WARMUP:
-				for (int i = 0; i<warmupCount; i++){
-					procedure.run(visualizer, par);
-				}
-				procedure.resetTotalTime();
-				System.gc();
-				
-//				MEASUREMENT:
-				for (int i = 0; i<measurementsCount; i++){
-					procedure.run(visualizer, par);	
-				}
-				
-				System.out.println("Input #" + count++ + " elapsed: " + 
-						Math.round(procedure.getTotalTime() / measurementsCount) + 
-						"ms (" + measurementsCount + " iterations)");
+				long sequential = measureSingle(visualizer, procedure, par.withConcurrentImport(false));
+				long concurrent = measureSingle(visualizer, procedure, par.withConcurrentImport(true));
+				System.out.println("Input #" + count++ + " elapsed: " +
+						sequential + "ms sequential, " + concurrent + "ms concurrent, " +
+						(sequential - concurrent) + "ms saved (" + measurementsCount + " iterations)");
 			}
 		}
 		Platform.exit();
 	}
 	
+	/**
+	 * Measures the processing of a single input, with the warm-up carried out first.
+	 * @return Average time elapsed during a single processing of the input, in milliseconds
+	 */
+	private long measureSingle(Visualizer visualizer, MeasuredProcedure procedure, Parameters par)
+			throws InterruptedException {
+//		WARMUP:
+		for (int i = 0; i<warmupCount; i++){
+			procedure.run(visualizer, par);
+		}
+		procedure.resetTotalTime();
+		System.gc();
+
+//		MEASUREMENT:
+		for (int i = 0; i<measurementsCount; i++){
+			procedure.run(visualizer, par);
+		}
+		return Math.round(procedure.getTotalTime() / measurementsCount);
+	}
+
 	/**
 	 * Carries out the performance testing of the input file processing
 	 * functionality. The input is created already during the class construction,
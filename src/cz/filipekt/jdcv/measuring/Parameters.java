@@ -60,6 +60,11 @@ public class Parameters {
 	 */
 	private final String endAt;
 	
+	/**
+	 * If true, the input files are parsed concurrently
+	 */
+	private final boolean concurrentImport;
+	
 	/**
 	 * @return Path to the network definition file
 	 */
@@ -130,6 +135,13 @@ public class Parameters {
 		return duration;
 	}
 	
+	/**
+	 * @return If true, the input files are parsed concurrently
+	 */
+	public boolean isConcurrentImport() {
+		return concurrentImport;
+	}
+	
 	/**
 	 * @param mapPath Path to the network definition file
 	 * @param mapEncoding Text encoding of the network definition file
@@ -141,9 +153,11 @@ public class Parameters {
 	 * @param duration Intended duration  of the visualization
 	 * @param startAt Left bound of the time interval we wish to visualize
 	 * @param endAt Right bound of the time interval we wish to visualize
+	 * @param concurrentImport If true, the input files are parsed concurrently
 	 */
 	public Parameters(String mapPath, String mapEncoding, String eventPath, String eventEncoding, String ensemblePath,
-			String ensembleEncoding, boolean justAgents, String duration, String startAt, String endAt) {
+			String ensembleEncoding, boolean justAgents, String duration, String startAt, String endAt, 
+			boolean concurrentImport) {
 		this.mapPath = mapPath;
 		this.mapEncoding = mapEncoding;
 		this.eventPath = eventPath;
@@ -154,6 +168,36 @@ public class Parameters {
 		this.duration = duration;
 		this.startAt = startAt;
 		this.endAt = endAt;
+		this.concurrentImport = concurrentImport;
+	}
+	
+	/**
+	 * Creates the parameters with the input files being parsed concurrently.
+	 * @param mapPath Path to the network definition file
+	 * @param mapEncoding Text encoding of the network definition file
+	 * @param eventPath Path to the MATSim event log file
+	 * @param eventEncoding Text encoding of the MATSim event log file
+	 * @param ensemblePath Path to the ensemble log file
+	 * @param ensembleEncoding Text encoding of the ensemble log file
+	 * @param justAgents If true, just JDEECo injected agents will be shown
+	 * @param duration Intended duration  of the visualization
+	 * @param startAt Left bound of the time interval we wish to visualize
+	 * @param endAt Right bound of the time interval we wish to visualize
+	 */
+	public Parameters(String mapPath, String mapEncoding, String eventPath, String eventEncoding, String ensemblePath,
+			String ensembleEncoding, boolean justAgents, String duration, String startAt, String endAt) {
+		this(mapPath, mapEncoding, eventPath, eventEncoding, ensemblePath, ensembleEncoding, 
+				justAgents, duration, startAt, endAt, true);
+	}
+	
+	/**
+	 * @return A copy of these parameters, differing only in whether the input files 
+	 * are parsed concurrently
+	 * @param concurrentImport If true, the input files are parsed concurrently
+	 */
+	public Parameters withConcurrentImport(boolean concurrentImport){
+		return new Parameters(mapPath, mapEncoding, eventPath, eventEncoding, ensemblePath, 
+				ensembleEncoding, justAgents, duration, startAt, endAt, concurrentImport);
 	}
 	
 }
@@ -1,15 +1,19 @@
 package cz.filipekt.jdcv.util;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 
 /**
  * Makes it possible to retrieve a certain part of the event log file, according
  * to a specified time interval. It is assumed that the event elements are sorted
- * by the time attribute.
+ * by the time attribute, unless {@link BigFilesSearch#disorderTolerant} holds.
  * 
  * @author Tomas Filipek <tom.filipek@seznam.cz>
  */
@@ -25,15 +29,313 @@ public class BigFilesSearch {
 	 */
 	private final Charset charset;
 
+	/**
+	 * The sections of the event log file held in the memory as a whole, i.e. those returned by
+	 * {@link BigFilesSearch#getSectionWellFormed(Double, Double)}, can be at most this big, in bytes.
+	 * The sections returned by {@link BigFilesSearch#getSectionStream(Double, Double)} are not 
+	 * limited, because they are not held in the memory.
+	 */
+	private final long memoryBudget;
+
 	/**
 	 * @param path The event log file
 	 * @param charset Text encoding of the event log file
+	 * @param memoryBudget The sections of the event log file held in the memory as a whole
+	 * can be at most this big, in bytes
 	 */
-	public BigFilesSearch(Path path, Charset charset) {
+	public BigFilesSearch(Path path, Charset charset, long memoryBudget) {
 		this.charset = charset;
 		this.path = path;
+		this.memoryBudget = memoryBudget;
+		this.codeUnit = "tt".getBytes(charset).length - "t".getBytes(charset).length;
+		this.asciiByte = getAsciiByte(charset, codeUnit);
+		this.timeAttributePattern = encodeAscii(timeAttributeName + "=\"");
+		this.eventElementPattern = encodeAscii(eventElementStart);
+		this.byteProbeSupported = (asciiByte >= 0) && isEncodedAscii(charset, timeAttributeName + "=\"" + 
+				eventElementStart + "0123456789.-+eE");
+	}
+
+	/**
+	 * Uses a memory budget of a quarter of the maximum heap size
+	 * @param path The event log file
+	 * @param charset Text encoding of the event log file
+	 */
+	public BigFilesSearch(Path path, Charset charset) {
+		this(path, charset, Runtime.getRuntime().maxMemory() / 4);
+	}
+
+	/**
+	 * If true, the positions of the event elements are looked up in an {@link EventLogIndex}
+	 * instead of probing the event log file
+	 */
+	private boolean useIndex = true;
+
+	/**
+	 * @param useIndex If true, the positions of the event elements are looked up in an {@link EventLogIndex}
+	 * instead of probing the event log file
+	 */
+	public void setUseIndex(boolean useIndex) {
+		this.useIndex = useIndex;
 	}
 
+	/**
+	 * If true, the event log file is probed by searching for the encoded bytes of the time attribute
+	 * directly in the examined samples, whenever the encoding makes it possible. Otherwise,
+	 * the samples are always decoded first.
+	 */
+	private boolean byteLevelProbe = true;
+
+	/**
+	 * @param byteLevelProbe If true, the event log file is probed by searching for the encoded bytes
+	 * of the time attribute directly in the examined samples, whenever the encoding makes it possible.
+	 * Otherwise, the samples are always decoded first.
+	 */
+	public void setByteLevelProbe(boolean byteLevelProbe) {
+		this.byteLevelProbe = byteLevelProbe;
+	}
+
+	/**
+	 * If true, the event log file may be only approximately sorted by the time attribute, e.g. when
+	 * it has been merged from the outputs of several parallel simulation runners. The maximum disorder
+	 * of the event log file is then measured by the scan building its {@link EventLogIndex}, and each 
+	 * searched time interval is widened by it, so that no event element inside the interval is left
+	 * out of the returned section. The event elements in the section have to be reordered by the
+	 * caller, see {@link BigFilesSearch#getMaxDisorder()}.
+	 */
+	private boolean disorderTolerant = false;
+
+	/**
+	 * @param disorderTolerant If true, the event log file may be only approximately sorted by the
+	 * time attribute, and the searched time intervals are widened by its maximum disorder
+	 */
+	public void setDisorderTolerant(boolean disorderTolerant) {
+		this.disorderTolerant = disorderTolerant;
+	}
+
+	/**
+	 * Returns the maximum disorder of the event log file, i.e. the largest amount of time by which
+	 * an event element precedes some of the event elements located before it in the file, as measured 
+	 * by the scan building the {@link EventLogIndex}. Every event element in the returned sections 
+	 * is therefore preceded by at most this much later event elements, so the elements can be put
+	 * in order by holding back only those which are younger than the latest time seen minus the disorder.
+	 * @return The maximum disorder of the event log file. Zero if {@link BigFilesSearch#disorderTolerant}
+	 * does not hold, or if the encoding of the event log file can not be indexed, in which case the file
+	 * is assumed to be sorted.
+	 * @throws IOException If it is impossible to read from the event log file
+	 */
+	public double getMaxDisorder() throws IOException {
+		if (!disorderTolerant){
+			return 0;
+		}
+		EventLogIndex index = getIndex();
+		return (index == null) ? 0 : index.getMaxDisorder();
+	}
+
+	/**
+	 * @return The index of the event log file, loaded or built when it is first needed, or null
+	 * if the encoding of the event log file can not be indexed
+	 * @throws IOException If it is impossible to read from the event log file
+	 */
+	private EventLogIndex getIndex() throws IOException {
+		if (index == null){
+			index = EventLogIndex.get(path, charset, step);
+		}
+		return index;
+	}
+
+	/**
+	 * Quickly estimates the time range of the event log file, the number of its event elements
+	 * and their density in time, without parsing the whole file. The file is probed at the given
+	 * number of evenly spaced positions, and in each examined sample of data the event elements are
+	 * counted and their time attribute values are parsed. The part of the file between two neighbouring
+	 * probes is assumed to cover the times between the first event elements of the samples, with as
+	 * many event elements per byte as there are in the samples on average. The samples are examined
+	 * at the byte level, like by {@link BigFilesSearch#getTimeAfterEncoded(RandomAccessFile, long)},
+	 * whenever {@link BigFilesSearch#byteLevelProbe} and {@link BigFilesSearch#byteProbeSupported} hold.
+	 * @param samples Number of the positions where the file is probed
+	 * @return The estimated profile of the event log file, empty if no event element has been found
+	 * @throws IOException If it is impossible to read from the event log file
+	 */
+	public EventLogProfile getProfile(int samples) throws IOException {
+		long size = Files.size(path);
+		long last = Math.max(0, size - sampleSize);
+		int count = (int)Math.max(1, Math.min(samples, (last / sampleSize) + 1));
+		long[] positions = new long[count];
+		double[] firstTimes = new double[count];
+		double[] densities = new double[count];
+		int found = 0;
+		ProfileScan scan = new ProfileScan();
+		try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "r")){
+			for (int i = 0; i < count; i++){
+				long position = (count == 1) ? 0 : (last * i) / (count - 1);
+				raf.seek(position);
+				probeCount += 1;
+				int length = Math.max(0, raf.read(sampleBuffer));
+				scan.startSample();
+				if (byteLevelProbe && byteProbeSupported){
+					scanSampleEncoded(position, length, scan);
+				} else {
+					try {
+						scanSampleDecoded(length, scan);
+					} catch (ElementTooLargeException ex){
+						// The sample lies inside a huge element, so it tells nothing about the events
+						continue;
+					}
+				}
+				if (!Double.isNaN(scan.firstTime)){
+					positions[found] = position;
+					firstTimes[found] = scan.firstTime;
+					densities[found] = scan.events / (double)Math.max(1, length);
+					found += 1;
+				}
+			}
+		}
+		double[] starts = new double[found];
+		double[] ends = new double[found];
+		double[] events = new double[found];
+		for (int i = 0; i < found; i++){
+			starts[i] = firstTimes[i];
+			if ((i + 1) < found){
+				ends[i] = firstTimes[i + 1];
+				events[i] = (positions[i + 1] - positions[i]) * ((densities[i] + densities[i + 1]) / 2);
+			} else {
+				ends[i] = scan.lastTime;
+				events[i] = (size - positions[i]) * densities[i];
+			}
+		}
+		return new EventLogProfile(starts, ends, events, scan.minTime, scan.maxTime);
+	}
+
+	/**
+	 * Collects the event elements and their time attribute values found by {@link BigFilesSearch#getProfile(int)}
+	 */
+	private static class ProfileScan {
+
+		/**
+		 * Number of the event elements in the current sample
+		 */
+		private int events;
+
+		/**
+		 * Time attribute value of the first event element in the current sample,
+		 * or {@link Double#NaN} if none has been found
+		 */
+		private double firstTime;
+
+		/**
+		 * The lowest time value found in all the samples
+		 */
+		private double minTime = Double.POSITIVE_INFINITY;
+
+		/**
+		 * The highest time value found in all the samples
+		 */
+		private double maxTime = Double.NEGATIVE_INFINITY;
+
+		/**
+		 * The last time value found
+		 */
+		private double lastTime = Double.NaN;
+
+		/**
+		 * Starts collecting the event elements of the next sample
+		 */
+		void startSample(){
+			events = 0;
+			firstTime = Double.NaN;
+		}
+
+		/**
+		 * Records the time attribute value of an event element of the current sample
+		 * @param time The time attribute value
+		 */
+		void addTime(double time){
+			if (Double.isNaN(firstTime)){
+				firstTime = time;
+			}
+			minTime = Math.min(minTime, time);
+			maxTime = Math.max(maxTime, time);
+			lastTime = time;
+		}
+	}
+
+	/**
+	 * Counts the event elements in the sample held in {@link BigFilesSearch#sampleBuffer} and parses 
+	 * their time attribute values, after decoding the sample into a String
+	 * @param length Length of the sample, in bytes
+	 * @param scan Collects the event elements and their time attribute values
+	 * @throws ElementTooLargeException If the sample lies inside a huge element
+	 */
+	private void scanSampleDecoded(int length, ProfileScan scan) throws ElementTooLargeException {
+		String sample = getWithCorrectOffset(sampleBuffer, length);
+		String timeAttributeStart = timeAttributeName + "=\"";
+		int index = sample.indexOf(eventElementStart);
+		while (index >= 0){
+			scan.events += 1;
+			int timeStart = sample.indexOf(timeAttributeStart, index);
+			int next = sample.indexOf(eventElementStart, index + 1);
+			if ((timeStart >= 0) && ((next < 0) || (timeStart < next))){
+				int numberStart = timeStart + timeAttributeStart.length();
+				int quotes = sample.indexOf('"', numberStart);
+				if (quotes >= 0){
+					try {
+						scan.addTime(NumberParser.parseDouble(sample, numberStart, quotes));
+					} catch (NumberFormatException ex){
+						// A malformed time value only makes the estimate coarser
+					}
+				}
+			}
+			index = next;
+		}
+	}
+
+	/**
+	 * Counts the event elements in the sample held in {@link BigFilesSearch#sampleBuffer} and parses 
+	 * their time attribute values directly from the bytes, searching for {@link BigFilesSearch#eventElementPattern}
+	 * and {@link BigFilesSearch#timeAttributePattern} at the positions where the code units of the encoding start.
+	 * Used only if {@link BigFilesSearch#byteProbeSupported} holds.
+	 * @param positionInFile Position of the sample in the event log file
+	 * @param length Length of the sample, in bytes
+	 * @param scan Collects the event elements and their time attribute values
+	 */
+	private void scanSampleEncoded(long positionInFile, int length, ProfileScan scan){
+		int offset = (int)((codeUnit - (positionInFile % codeUnit)) % codeUnit);
+		int index = indexOf(sampleBuffer, offset, length, eventElementPattern);
+		while (index >= 0){
+			scan.events += 1;
+			int next = indexOf(sampleBuffer, index + codeUnit, length, eventElementPattern);
+			int timeStart = indexOf(sampleBuffer, index, (next < 0) ? length : next, timeAttributePattern);
+			if (timeStart >= 0){
+				try {
+					double time = parseTimeEncoded(timeStart + timeAttributePattern.length, length);
+					if (!Double.isNaN(time)){
+						scan.addTime(time);
+					}
+				} catch (NumberFormatException ex){
+					// A malformed time value only makes the estimate coarser
+				}
+			}
+			index = next;
+		}
+	}
+
+	/**
+	 * Number of the probes made into the event log file so far
+	 */
+	private long probeCount = 0;
+
+	/**
+	 * @return Number of the probes made into the event log file so far
+	 */
+	public long getProbeCount() {
+		return probeCount;
+	}
+	
+	/**
+	 * The index of the event log file, loaded or built when it is first needed
+	 */
+	private EventLogIndex index = null;
+
 	/**
 	 * First few characters of an event element
 	 */
@@ -44,6 +346,11 @@ public class BigFilesSearch {
 	 */
 	private final String timeAttributeName = "time";
 	
+	/**
+	 * Start of the end tag of the root element
+	 */
+	private final String rootElementEnd = "</events";
+	
 	/**
 	 * Returns a section of the event log file that contains all the event elements 
 	 * with time attribute value inside the interval specified by the parameters.
@@ -66,8 +373,9 @@ public class BigFilesSearch {
 	 */
 	public String getSectionWellFormed(Double fromTime, Double toTime) 
 			throws IOException, SelectionTooBigException, ElementTooLargeException{
-		StringBuilder section = new StringBuilder(getSectionRaw(fromTime, toTime));
-		alignToElements(section);
+		long[] bounds = getSectionBounds(fromTime, toTime);
+		StringBuilder section = new StringBuilder(getSectionRaw(bounds));
+		alignToElements(section, bounds[1] == Files.size(path));
 		String preamble = "<?xml version=\"1.0\" encoding=\"" + charset.name() +
 				"\"?>\n<events version=\"1.0\">\n";
 		section.insert(0, preamble);
@@ -77,17 +385,22 @@ public class BigFilesSearch {
 	
 	/**
 	 * Crops the given section of an XML document so that it begins with an event
-	 * element and ends just before an event element.
+	 * element and ends just before an event element, or just before the end tag
+	 * of the root element if the section reaches the end of the event log file.
 	 * @param section A section of the event log file 
+	 * @param atEnd True iff the section reaches the end of the event log file
 	 */
-	private void alignToElements(StringBuilder section){
+	private void alignToElements(StringBuilder section, boolean atEnd){
 		int eventFirstIndex = section.indexOf(eventElementStart);
 		if (eventFirstIndex == -1){
 			section.setLength(0);
 		} else {
 			section.delete(0, eventFirstIndex);
 		}
-		int eventLastIndex = section.lastIndexOf(eventElementStart);
+		int eventLastIndex = atEnd ? section.lastIndexOf(rootElementEnd) : -1;
+		if (eventLastIndex == -1){
+			eventLastIndex = section.lastIndexOf(eventElementStart);
+		}
 		if (eventLastIndex == -1){
 			section.setLength(0);
 		} else {
@@ -104,51 +417,175 @@ public class BigFilesSearch {
 	 * excess on each end, i.e. the first event element with time equal to the lower
 	 * bound given as a parameter can be encounter as far as {@link BigFilesSearch#step}
 	 * bytes into the selection.  
+	 * @param bounds The bounds of the section, as returned by 
+	 * {@link BigFilesSearch#getSectionBounds(Double, Double)}
+	 * @return Section of the event log file that contains all the event elements 
+	 * with time attribute value inside the specified interval
+	 * @throws IOException If it is impossible to read from the event log file
+	 * @throws SelectionTooBigException If the section would not fit into {@link BigFilesSearch#memoryBudget}
+	 * or into a single array
+	 * @throws ElementTooLargeException If some event element is too large
+	 */
+	private String getSectionRaw(long[] bounds) 
+			throws IOException, SelectionTooBigException, ElementTooLargeException{
+		long precFrom = bounds[0];
+		long afterTo = bounds[1];
+		long maxLength = afterTo-precFrom;
+		if ((maxLength > maxArraySize) || (maxLength > memoryBudget)){
+			throw new SelectionTooBigException();
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "r")){
+			raf.seek(precFrom);
+			byte[] data = new byte[(int)maxLength];
+			int count = raf.read(data);
+			raf.seek(precFrom);
+			int sampleCount = raf.read(sampleBuffer);
+			int offset = getCorrectOffset(sampleBuffer, sampleCount);
+			String text = new String(data, offset, count-offset, charset);
+			return text;
+		}		
+	}
+	
+	/**
+	 * Determines the part of the event log file which contains all the event elements 
+	 * with time attribute value inside the interval specified by the parameters. 
+	 * The part is not aligned to the event elements. The interval is widened 
+	 * by the {@link BigFilesSearch#getMaxDisorder()} on both ends: the event elements 
+	 * before the returned part are then all older than the interval, and those after 
+	 * it are all younger.
 	 * @param fromTime Start of the desired time interval. If null, 
 	 * the interval is unbounded from below.
 	 * @param toTime End of the desired time interval. If null, 
 	 * the interval is unbounded from above.
-	 * @return Section of the event log file that contains all the event elements 
-	 * with time attribute value inside the specified interval
+	 * @return The position of the start of the part in the event log file and the position following 
+	 * its end, which is at most the size of the event log file
 	 * @throws IOException If it is impossible to read from the event log file
-	 * @throws SelectionTooBigException If the specified time interval is too large
 	 * @throws ElementTooLargeException If some event element is too large
 	 */
-	private String getSectionRaw(Double fromTime, Double toTime) 
-			throws IOException, SelectionTooBigException, ElementTooLargeException{
+	private long[] getSectionBounds(Double fromTime, Double toTime) 
+			throws IOException, ElementTooLargeException{
+		double disorder = getMaxDisorder();
 		long precFrom;
 		if (fromTime == null){
 			precFrom = 0;
 		} else {
-			precFrom = getPrecedingLocation(fromTime);
+			precFrom = getPrecedingLocation(fromTime - disorder);
 		}
 		long afterTo;
 		if (toTime == null){
 			afterTo = Files.size(path);
 		} else {
-			long precTo = getPrecedingLocation(toTime);
-			afterTo = precTo + step + sampleSize;
+			long precTo = getPrecedingLocation(toTime + disorder);
+			afterTo = Math.min(precTo + step + sampleSize, Files.size(path));
 		}
+		return new long[]{precFrom, afterTo};
+	}
+	
+	/**
+	 * Returns the same section of the event log file as 
+	 * {@link BigFilesSearch#getSectionWellFormed(Double, Double)}, encoded in {@link BigFilesSearch#charset},
+	 * but as a stream which builds the well-formed document on the fly: the generated XML declaration 
+	 * and root start tag, the part of the event log file aligned to the event elements, and the root 
+	 * end tag. The part of the event log file is memory-mapped one window at a time (see 
+	 * {@link MappedFileInputStream}), so it is neither copied nor decoded before it is read from 
+	 * the stream, and its size is not limited by the {@link BigFilesSearch#memoryBudget}. If the 
+	 * event log file is not encoded in a character set compatible with ASCII, the section is built 
+	 * by {@link BigFilesSearch#getSectionWellFormed(Double, Double)}.
+	 * @param fromTime Start of the desired time interval. If null, 
+	 * the interval is unbounded from below.
+	 * @param toTime End of the desired time interval. If null, 
+	 * the interval is unbounded from above.
+	 * @return Stream reading the section of the event log file. Its {@link InputStream#available()}
+	 * returns the exact length of the section in bytes, if it is smaller than 2 GB.
+	 * @throws IOException If it is impossible to read from the event log file
+	 * @throws SelectionTooBigException If the section has to be held in the memory as a whole 
+	 * and it would not fit into {@link BigFilesSearch#memoryBudget}
+	 * @throws ElementTooLargeException If some event element is too large
+	 */
+	public InputStream getSectionStream(Double fromTime, Double toTime) 
+			throws IOException, SelectionTooBigException, ElementTooLargeException{
+		byte[] elementStart = eventElementStart.getBytes(charset);
+		if (!Arrays.equals(elementStart, eventElementStart.getBytes(StandardCharsets.US_ASCII))){
+			String section = getSectionWellFormed(fromTime, toTime);
+			return new ByteBufferInputStream(ByteBuffer.wrap(section.getBytes(charset)));
+		}
+		long[] bounds = getSectionBounds(fromTime, toTime);
+		long start = bounds[0];
+		long end = bounds[1];
 		try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "r")){
-			raf.seek(precFrom);
-			long maxLength = afterTo-precFrom;
-			if ((maxLength > ((long)Integer.MAX_VALUE)) || 
-					(maxLength > maxSelectionSize)){
-				throw new SelectionTooBigException();
+			byte[] head = new byte[(int)Math.min(step, end - start)];
+			raf.seek(start);
+			raf.readFully(head);
+			int first = indexOf(head, elementStart, 0, head.length);
+			if (first == -1){
+				if (head.length >= sampleSize){
+					throw new ElementTooLargeException();
+				}
+				end = start;
+			} else {
+				start += first;
+				byte[] tail = new byte[(int)Math.min(step, end - start)];
+				raf.seek(end - tail.length);
+				raf.readFully(tail);
+				int last = -1;
+				if (end == Files.size(path)){
+					last = lastIndexOf(tail, rootElementEnd.getBytes(charset), 0, tail.length);
+				}
+				if (last == -1){
+					last = lastIndexOf(tail, elementStart, 0, tail.length);
+				}
+				if (last == -1){
+					throw new ElementTooLargeException();
+				}
+				end -= tail.length - last;
 			}
-			byte[] data = new byte[(int)maxLength];
-			int count = raf.read(data);
-			raf.seek(precFrom);
-			int sampleCount = raf.read(sampleBuffer);
-			int offset = getCorrectOffset(sampleBuffer, sampleCount);
-			String text = new String(data, offset, count-offset, charset);
-			return text;
-		}		
+		}
+		String preamble = "<?xml version=\"1.0\" encoding=\"" + charset.name() +
+				"\"?>\n<events version=\"1.0\">\n";
+		return new MappedFileInputStream(path, start, end, preamble.getBytes(charset), 
+				"\n</events>".getBytes(charset));
+	}
+	
+	/**
+	 * @return Position of the first occurrence of the pattern in the data, starting at
+	 * the position "from" and ending before the position "to". If there is no such
+	 * occurrence, -1 is returned.
+	 */
+	private static int indexOf(byte[] data, byte[] pattern, int from, int to){
+		outer:
+		for (int i = from; i <= (to - pattern.length); i++){
+			for (int j = 0; j < pattern.length; j++){
+				if (data[i+j] != pattern[j]){
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return Position of the last occurrence of the pattern in the data, starting at
+	 * the position "from" and ending before the position "to". If there is no such
+	 * occurrence, -1 is returned.
+	 */
+	private static int lastIndexOf(byte[] data, byte[] pattern, int from, int to){
+		outer:
+		for (int i = to - pattern.length; i >= from; i--){
+			for (int j = 0; j < pattern.length; j++){
+				if (data[i+j] != pattern[j]){
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
 	}
 	
 	/**
 	 * Thrown when the user demands a too large portion of the event log file.
-	 * Too large is defined as at least 2^31 - (1 + 2^21), which is cca 2GB 
+	 * Too large is defined as not fitting into the memory budget given to the search, 
+	 * or, for the sections held in a single array, as at least cca 2GB 
 	 */
 	@SuppressWarnings("serial")
 	public static class SelectionTooBigException extends Exception {}
@@ -173,7 +610,7 @@ public class BigFilesSearch {
 	private String getWithCorrectOffset(byte[] data, int count) throws ElementTooLargeException{
 		count = Math.max(0, count-4);
 		for (int offset = 0; offset < 4; offset++){
-			String text = new String(data, offset, count, charset);
+			String text = new String(data, offset, count - offset, charset);
 			if (text.contains(eventElementStart)){
 				return text;
 			}
@@ -192,7 +629,7 @@ public class BigFilesSearch {
 	 */
 	private int getCorrectOffset(byte[] data, int count) throws ElementTooLargeException{
 		for (int offset = 0; offset < 4; offset++){
-			String text = new String(data, offset, count, charset);
+			String text = new String(data, offset, count - offset, charset);
 			if (text.contains(eventElementStart)){
 				return offset;
 			}
@@ -208,24 +645,84 @@ public class BigFilesSearch {
 	 * {@link BigFilesSearch#step} bytes before the first element with the time
 	 * attribute value equal to the value given in the parameter. At the same time,
 	 * the first event element that starts after this position has its time attribute
-	 * value strictly smaller than the value given in the parameter. <br>
+	 * value strictly smaller than the value given in the parameter. If the event log file is
+	 * only approximately sorted, the first event element with the given time value can be 
+	 * located anywhere after the returned position, but all the event elements preceding the
+	 * position are older than the given value increased by the maximum disorder of the file. <br>
+	 * If {@link BigFilesSearch#useIndex} holds, the position is looked up in the {@link EventLogIndex}
+	 * of the event log file, which is built when it does not exist yet. An index which has not
+	 * sampled any event element is not used. Otherwise, the event log 
+	 * file is probed by a binary search, or by an interpolation search if 
+	 * {@link BigFilesSearch#interpolationSearch} holds.
 	 * 
 	 * @param targetTime We are trying to locate the element with this time attribute value 
 	 * @throws IOException If it is impossible to read from the event log file
 	 * @throws ElementTooLargeException If some of the event elements is too large
 	 */
 	public long getPrecedingLocation(double targetTime) throws IOException, ElementTooLargeException {
+		if (useIndex){
+			EventLogIndex index = getIndex();
+			if ((index != null) && (index.getCount() > 0)){
+				return index.getPrecedingLocation(targetTime);
+			}
+		}
 		long lowerBound = 0;
 		long upperBound = Files.size(path);
-		long midPoint;
-		try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "r")){			
+		double lowerTime = Double.NaN;
+		double upperTime = Double.NaN;
+		int interpolationRounds = interpolationSearch ? maxInterpolationRounds : 0;
+		try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "r")){
+			if ((interpolationRounds > 0) && ((upperBound - lowerBound) >= step)){
+				lowerTime = getTimeAfterOrNaN(raf, 0);
+				if (lowerTime >= targetTime){
+					return 0;
+				}
+				long last = Math.max(0, upperBound - sampleSize);
+				double lastTime = getTimeAfterOrNaN(raf, last);
+				if (lastTime < targetTime){
+					return last;
+				} else if (!Double.isNaN(lastTime)){
+					upperBound = last;
+					upperTime = lastTime;
+				}
+			}
 			while ((upperBound - lowerBound) >= step){
-				midPoint = (lowerBound + upperBound) / 2L;
-				boolean midPointBefore = isBefore(raf, midPoint, targetTime);
-				if (midPointBefore){
-					lowerBound = midPoint;
+				long probe;
+				long bracketEnd = -1;
+				long width = upperBound - lowerBound;
+				boolean interpolated = false;
+				if ((interpolationRounds > 0) && (lowerTime < targetTime) && (targetTime <= upperTime)){
+					interpolationRounds -= 1;
+					interpolated = true;
+					double ratio = (targetTime - lowerTime) / (upperTime - lowerTime);
+					long guess = lowerBound + (long)(ratio * (upperBound - lowerBound));
+					long halfBracket = (step / 2) - 1;
+					probe = Math.min(upperBound - 1, Math.max(lowerBound + 1, guess - halfBracket));
+					bracketEnd = Math.min(upperBound - 1, probe + (2 * halfBracket));
+				} else {
+					probe = (lowerBound + upperBound) / 2L;
+				}
+				double time = getTimeAfter(raf, probe);
+				if (time < targetTime){
+					lowerBound = probe;
+					lowerTime = time;
+					if (bracketEnd > lowerBound){
+						time = getTimeAfter(raf, bracketEnd);
+						if (time < targetTime){
+							lowerBound = bracketEnd;
+							lowerTime = time;
+						} else {
+							upperBound = bracketEnd;
+							upperTime = time;
+						}
+					}
 				} else {
-					upperBound = midPoint;
+					upperBound = probe;
+					upperTime = time;
+				}
+				if (interpolated && ((upperBound - lowerBound) > (width / 2))){
+					// The times are not distributed evenly enough for the guesses to pay off
+					interpolationRounds = 0;
 				}
 			}
 			return lowerBound;
@@ -233,37 +730,270 @@ public class BigFilesSearch {
 	}
 	
 	/**
-	 * Determines, whether the first event element starting after the given position in the
-	 * file has its time attribute value smaller than the given value.
+	 * If true, {@link BigFilesSearch#getPrecedingLocation(double)} probes the event log file by
+	 * an interpolation search, which relies on the time attribute values growing roughly linearly
+	 * with the position in the file. Each of at most {@link BigFilesSearch#maxInterpolationRounds} 
+	 * rounds guesses the position from the times found at the current bounds and probes both ends 
+	 * of a {@link BigFilesSearch#step} wide bracket around the guess. When a round does not halve
+	 * the searched interval, e.g. because the times are distributed unevenly, or when the rounds
+	 * are used up, the search continues by bisection. If false, only the bisection is used.
+	 */
+	private boolean interpolationSearch = true;
+	
+	/**
+	 * @param interpolationSearch If true, the event log file is probed by an interpolation search,
+	 * falling back to bisection when the guesses fail. Otherwise, only the bisection is used.
+	 */
+	public void setInterpolationSearch(boolean interpolationSearch) {
+		this.interpolationSearch = interpolationSearch;
+	}
+	
+	/**
+	 * Maximum number of the interpolation rounds in a single search, see 
+	 * {@link BigFilesSearch#interpolationSearch}
+	 */
+	private final int maxInterpolationRounds = 3;
+	
+	/**
+	 * Finds the time attribute value of the first event element starting after the given 
+	 * position in the file.
+	 * @param file File in which the event element will be examined
+	 * @param positionInFile A position in the given file from which we will start searching 
+	 * for an event element 
+	 * @return The time attribute value of the first event element starting after the given
+	 * position in the given file, or {@link Double#NaN} if the examined sample of data does
+	 * not contain any time attribute
+	 * @throws ElementTooLargeException If some of the event elements is too large
+	 * @throws IOException If it is impossible to read from the event log file
+	 */
+	private double getTimeAfter(RandomAccessFile file, long positionInFile) throws ElementTooLargeException, IOException{
+		probeCount += 1;
+		if (byteLevelProbe && byteProbeSupported){
+			return getTimeAfterEncoded(file, positionInFile);
+		} else {
+			return getTimeAfterDecoded(file, positionInFile);
+		}
+	}
+	
+	/**
+	 * Like {@link BigFilesSearch#getTimeAfter(RandomAccessFile, long)}, but returns {@link Double#NaN}
+	 * if the examined sample of data does not contain any event element. Used for probing the
+	 * ends of the file, which also contain the XML prolog and epilog.
+	 * @param file File in which the event element will be examined
+	 * @param positionInFile A position in the given file from which we will start searching 
+	 * for an event element 
+	 * @return The time attribute value of the first event element starting after the given
+	 * position in the given file, or {@link Double#NaN} if it could not be found
+	 * @throws IOException If it is impossible to read from the event log file
+	 */
+	private double getTimeAfterOrNaN(RandomAccessFile file, long positionInFile) throws IOException{
+		try {
+			return getTimeAfter(file, positionInFile);
+		} catch (ElementTooLargeException ex){
+			return Double.NaN;
+		}
+	}
+	
+	/**
+	 * Implements {@link BigFilesSearch#getTimeAfter(RandomAccessFile, long)} by decoding
+	 * the examined sample of data into a String first.
 	 * @param file File in which the event element will be examined
 	 * @param positionInFile A position in the given file from which we will start searching 
 	 * for an event element 
-	 * @param timeValue The time attribute value used for comparison
-	 * @return Returns true if and only if the first event element starting after the given 
-	 * position in the given file has its time attribute value smaller than the given value. 
+	 * @return The time attribute value of the first event element starting after the given
+	 * position in the given file, or {@link Double#NaN} if the examined sample of data does
+	 * not contain any time attribute
 	 * @throws ElementTooLargeException If some of the event elements is too large
 	 * @throws IOException If it is impossible to read from the event log file
 	 */
-	private boolean isBefore(RandomAccessFile file, long positionInFile, double timeValue) throws ElementTooLargeException, IOException{
+	private double getTimeAfterDecoded(RandomAccessFile file, long positionInFile) throws ElementTooLargeException, IOException{
 		file.seek(positionInFile);
 		int count = file.read(sampleBuffer);
 		String sample = getWithCorrectOffset(sampleBuffer, count);
 		int index = sample.indexOf(timeAttributeName + "=\"");
-		String sampleFromTime = sample.substring(index + 6);
 		if (index >= 0){
-			int quotes = sampleFromTime.indexOf("\"");
-			String number = sampleFromTime.substring(0, quotes);
-			double time = Double.parseDouble(number);
-			return time < timeValue;
+			int numberStart = index + 6;
+			int quotes = sample.indexOf('"', numberStart);
+			return NumberParser.parseDouble(sample, numberStart, quotes);
 		} else {
+			return Double.NaN;
+		}
+	}
+	
+	/**
+	 * Implements {@link BigFilesSearch#getTimeAfter(RandomAccessFile, long)} by searching for
+	 * {@link BigFilesSearch#timeAttributePattern} directly in the examined sample of data, at the
+	 * positions where the code units of the encoding start, and by parsing the time attribute
+	 * value from the bytes. Used only if {@link BigFilesSearch#byteProbeSupported} holds.
+	 * @param file File in which the event element will be examined
+	 * @param positionInFile A position in the given file from which we will start searching 
+	 * for an event element 
+	 * @return The time attribute value of the first event element starting after the given
+	 * position in the given file, or {@link Double#NaN} if the examined sample of data does
+	 * not contain any time attribute
+	 * @throws ElementTooLargeException If some of the event elements is too large
+	 * @throws IOException If it is impossible to read from the event log file
+	 */
+	private double getTimeAfterEncoded(RandomAccessFile file, long positionInFile) throws ElementTooLargeException, IOException{
+		file.seek(positionInFile);
+		int count = Math.max(0, file.read(sampleBuffer));
+		int offset = (int)((codeUnit - (positionInFile % codeUnit)) % codeUnit);
+		int index = indexOf(sampleBuffer, offset, count, timeAttributePattern);
+		if (index < 0){
+			if (indexOf(sampleBuffer, offset, count, eventElementPattern) < 0){
+				throw new ElementTooLargeException();
+			}
+			return Double.NaN;
+		}
+		double time = parseTimeEncoded(index + timeAttributePattern.length, count);
+		if (Double.isNaN(time)){
+			throw new ElementTooLargeException();
+		}
+		return time;
+	}
+	
+	/**
+	 * Parses the time attribute value starting at the given position of {@link BigFilesSearch#sampleBuffer},
+	 * directly from the bytes encoded in code units of {@link BigFilesSearch#codeUnit} bytes
+	 * @param numberStart Position where the time attribute value starts
+	 * @param count Length of the examined sample of data
+	 * @return The time attribute value, or {@link Double#NaN} if it does not end inside the sample
+	 * @throws NumberFormatException If the time attribute value is malformed
+	 */
+	private double parseTimeEncoded(int numberStart, int count){
+		int timeLength = 0;
+		for (int position = numberStart; (position + codeUnit) <= count; position += codeUnit){
+			byte b = sampleBuffer[position + asciiByte];
+			if (b == '"'){
+				if (codeUnit == 1){
+					return NumberParser.parseDouble(sampleBuffer, numberStart, position);
+				} else {
+					return NumberParser.parseDouble(timeBuffer, 0, timeLength);
+				}
+			}
+			if (codeUnit > 1){
+				if (timeLength == timeBuffer.length){
+					throw new NumberFormatException();
+				}
+				timeBuffer[timeLength] = b;
+				timeLength += 1;
+			}
+		}
+		return Double.NaN;
+	}
+	
+	/**
+	 * @param data The raw data containing encoded text
+	 * @param from Position in the data where the first code unit starts
+	 * @param to Length of the raw data
+	 * @param pattern Encoded text, as returned by {@link BigFilesSearch#encodeAscii(String)}
+	 * @return Position of the first occurrence of the pattern in the data, starting at a code unit 
+	 * boundary, or -1 if there is no such occurrence
+	 */
+	private int indexOf(byte[] data, int from, int to, byte[] pattern){
+		search:
+		for (int i = from; (i + pattern.length) <= to; i += codeUnit){
+			for (int j = 0; j < pattern.length; j++){
+				if (data[i + j] != pattern[j]){
+					continue search;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+	
+	/**
+	 * @param text Text consisting of ASCII characters
+	 * @return The text encoded in code units of {@link BigFilesSearch#codeUnit} bytes, each of them
+	 * holding the ASCII value in the byte {@link BigFilesSearch#asciiByte} and zeros elsewhere
+	 */
+	private byte[] encodeAscii(String text){
+		if (asciiByte < 0){
+			return new byte[0];
+		}
+		byte[] res = new byte[text.length() * codeUnit];
+		for (int i = 0; i < text.length(); i++){
+			res[(i * codeUnit) + asciiByte] = (byte)text.charAt(i);
+		}
+		return res;
+	}
+	
+	/**
+	 * @param charset A character encoding
+	 * @param text Text consisting of ASCII characters
+	 * @return True iff the given encoding encodes the text exactly like 
+	 * {@link BigFilesSearch#encodeAscii(String)}, ignoring a possible byte order mark
+	 */
+	private boolean isEncodedAscii(Charset charset, String text){
+		byte[] expected = encodeAscii(text);
+		byte[] actual = text.getBytes(charset);
+		if (actual.length < expected.length){
 			return false;
 		}
+		return Arrays.equals(expected, Arrays.copyOfRange(actual, actual.length - expected.length, actual.length));
 	}
 	
 	/**
-	 * Maximum size of the selection in the XML document, in bytes
+	 * @param charset A character encoding
+	 * @param codeUnit Size of the code units of the encoding, in bytes
+	 * @return Position of the byte holding the ASCII value inside the code unit encoding
+	 * an ASCII character, or -1 if the encoding does not have such a position
+	 */
+	private static int getAsciiByte(Charset charset, int codeUnit){
+		if ((codeUnit < 1) || (codeUnit > 4)){
+			return -1;
+		}
+		byte[] encoded = "t".getBytes(charset);
+		if (encoded.length < codeUnit){
+			return -1;
+		}
+		for (int i = 0; i < codeUnit; i++){
+			if (encoded[encoded.length - codeUnit + i] == 't'){
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Size of the code units of {@link BigFilesSearch#charset}, in bytes
+	 */
+	private final int codeUnit;
+	
+	/**
+	 * Position of the byte holding the ASCII value inside the code unit encoding an ASCII
+	 * character in {@link BigFilesSearch#charset}, or -1 if there is no such position
+	 */
+	private final int asciiByte;
+	
+	/**
+	 * Start of the time attribute, up to its value, encoded by {@link BigFilesSearch#encodeAscii(String)}
+	 */
+	private final byte[] timeAttributePattern;
+	
+	/**
+	 * The {@link BigFilesSearch#eventElementStart}, encoded by {@link BigFilesSearch#encodeAscii(String)}
+	 */
+	private final byte[] eventElementPattern;
+	
+	/**
+	 * True iff the event log file can be probed by {@link BigFilesSearch#getTimeAfterEncoded(RandomAccessFile, long)},
+	 * i.e. the ASCII characters are encoded in code units of the same size with zeros outside of
+	 * {@link BigFilesSearch#asciiByte}, such as in UTF-8, US-ASCII or UTF-16
+	 */
+	private final boolean byteProbeSupported;
+	
+	/**
+	 * The value of a time attribute encoded in code units wider than one byte is gathered here
+	 * as ASCII characters before it is parsed
+	 */
+	private final byte[] timeBuffer = new byte[64];
+	
+	/**
+	 * Maximum size of a section held in a single array, in bytes
 	 */
-	private final long maxSelectionSize = 100L * 1024L * 1024L;
+	private final long maxArraySize = Integer.MAX_VALUE - 8;
 	
 	/**
 	 * The location of an event element with a specified time value is
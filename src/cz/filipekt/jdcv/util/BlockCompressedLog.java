@@ -0,0 +1,269 @@
+package cz.filipekt.jdcv.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Event log stored in the block-compressed format, as written by {@link BlockCompressedLogWriter}.
+ * Unlike a file compressed by gzip, any of its parts can be decompressed without decompressing
+ * the preceding parts, so it can be searched by {@link BlockFilesSearch}. <br>
+ * The file starts with {@link BlockCompressedLog#magic}, followed by the blocks, each of them
+ * compressed by deflate independently of the others. The first block contains the beginning of
+ * the XML document, up to the first event element. The last block contains the end of the
+ * document, starting with the end tag of the root element. The blocks in between contain the
+ * event elements, each block starting with an event element. The blocks are followed by the
+ * block table, where for each block its position in the file, its compressed and uncompressed
+ * length and the time of its first event element are recorded. The file ends with the position
+ * of the block table, the number of the blocks and the {@link BlockCompressedLog#magic}.
+ */
+public class BlockCompressedLog implements AutoCloseable {
+
+	/**
+	 * Both the first and the last bytes of each block-compressed file
+	 */
+	static final byte[] magic = "JDCVBLK1".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Size of an entry of the block table, in bytes
+	 */
+	static final int tableEntrySize = 8 + 4 + 4 + 8;
+
+	/**
+	 * Size of the end of the file following the block table, in bytes
+	 */
+	static final int trailerSize = 8 + 4 + magic.length;
+
+	/**
+	 * @param file An input file
+	 * @return True iff the file is stored in the block-compressed format
+	 * @throws IOException If it is impossible to read from the file
+	 */
+	public static boolean isBlockCompressed(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)){
+			return Arrays.equals(InputFiles.readAtMost(in, magic.length), magic);
+		}
+	}
+
+	/**
+	 * The opened block-compressed file
+	 */
+	private final RandomAccessFile file;
+
+	/**
+	 * Position of each block in the file
+	 */
+	private final long[] offsets;
+
+	/**
+	 * Compressed length of each block, in bytes
+	 */
+	private final int[] compressedLengths;
+
+	/**
+	 * Uncompressed length of each block, in bytes
+	 */
+	private final int[] lengths;
+
+	/**
+	 * Value of the time attribute of the first event element of each block. For the blocks
+	 * not starting with an event element, the time of the preceding block is used.
+	 * The first block has the time {@link Double#NEGATIVE_INFINITY}.
+	 */
+	private final double[] times;
+
+	/**
+	 * Opens the given block-compressed file and reads its block table
+	 * @param path The block-compressed file
+	 * @throws IOException If it is impossible to read from the file, or if it is not
+	 * a valid block-compressed file
+	 */
+	public BlockCompressedLog(Path path) throws IOException {
+		file = new RandomAccessFile(path.toFile(), "r");
+		try {
+			long length = file.length();
+			if (length < (magic.length + trailerSize)){
+				throw new IOException("Not a block-compressed file: " + path);
+			}
+			file.seek(length - trailerSize);
+			long tableOffset = file.readLong();
+			int count = file.readInt();
+			byte[] trailingMagic = new byte[magic.length];
+			file.readFully(trailingMagic);
+			if (!Arrays.equals(trailingMagic, magic) || (count < 2) ||
+					(tableOffset + ((long)count * tableEntrySize) != (length - trailerSize))){
+				throw new IOException("Not a block-compressed file: " + path);
+			}
+			offsets = new long[count];
+			compressedLengths = new int[count];
+			lengths = new int[count];
+			times = new double[count];
+			file.seek(tableOffset);
+			for (int i = 0; i < count; i++){
+				offsets[i] = file.readLong();
+				compressedLengths[i] = file.readInt();
+				lengths[i] = file.readInt();
+				times[i] = file.readDouble();
+			}
+		} catch (IOException ex){
+			file.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * @return Number of the blocks, including the first and the last block,
+	 * which do not contain any event elements
+	 */
+	public int getBlockCount(){
+		return offsets.length;
+	}
+
+	/**
+	 * @param block Index of a block
+	 * @return Uncompressed length of the block, in bytes
+	 */
+	public int getLength(int block){
+		return lengths[block];
+	}
+
+	/**
+	 * @return Uncompressed length of the whole XML document, in bytes
+	 */
+	public long getTotalLength(){
+		long res = 0;
+		for (int length : lengths){
+			res += length;
+		}
+		return res;
+	}
+
+	/**
+	 * @param block Index of a block
+	 * @return Value of the time attribute of the first event element of the block.
+	 * @see {@link BlockCompressedLog#times}
+	 */
+	public double getTime(int block){
+		return times[block];
+	}
+
+	/**
+	 * Reads and decompresses the given block
+	 * @param block Index of the block
+	 * @return The uncompressed contents of the block
+	 * @throws IOException If it is impossible to read from the file, or if the block is corrupted
+	 */
+	public byte[] readBlock(int block) throws IOException {
+		byte[] compressed = new byte[compressedLengths[block]];
+		synchronized (file){
+			file.seek(offsets[block]);
+			file.readFully(compressed);
+		}
+		byte[] res = new byte[lengths[block]];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			byte[] excess = new byte[1];
+			int count = 0;
+			while (!inflater.finished()){
+				int inflated = (count < res.length) ?
+						inflater.inflate(res, count, res.length - count) : inflater.inflate(excess);
+				if ((inflated == 0) && (inflater.needsInput() || inflater.needsDictionary())){
+					break;
+				}
+				count += inflated;
+			}
+			if ((count != res.length) || !inflater.finished()){
+				throw new IOException("Corrupted block " + block);
+			}
+		} catch (DataFormatException ex){
+			throw new IOException("Corrupted block " + block, ex);
+		} finally {
+			inflater.end();
+		}
+		return res;
+	}
+
+	/**
+	 * @return Stream reading the whole XML document, decompressing one block at a time
+	 */
+	public InputStream openStream(){
+		return new InputStream() {
+
+			/**
+			 * Index of the block following the current block
+			 */
+			private int nextBlock = 0;
+
+			/**
+			 * The uncompressed contents of the current block
+			 */
+			private byte[] current = new byte[0];
+
+			/**
+			 * Position of the next byte to be read in the current block
+			 */
+			private int position = 0;
+
+			/**
+			 * Makes sure that the current block contains a byte to be read
+			 * @return False if the end of the document has been reached
+			 * @throws IOException If it is impossible to read from the file
+			 */
+			private boolean fill() throws IOException {
+				while (position == current.length){
+					if (nextBlock == offsets.length){
+						return false;
+					}
+					current = readBlock(nextBlock);
+					position = 0;
+					nextBlock += 1;
+				}
+				return true;
+			}
+
+			@Override
+			public int read() throws IOException {
+				if (!fill()){
+					return -1;
+				}
+				int res = current[position] & 0xFF;
+				position += 1;
+				return res;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (len == 0){
+					return 0;
+				}
+				if (!fill()){
+					return -1;
+				}
+				int count = Math.min(len, current.length - position);
+				System.arraycopy(current, position, b, off, count);
+				position += count;
+				return count;
+			}
+
+			@Override
+			public void close() throws IOException {
+				BlockCompressedLog.this.close();
+			}
+		};
+	}
+
+	/**
+	 * Closes the block-compressed file
+	 */
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
@@ -0,0 +1,279 @@
+package cz.filipekt.jdcv.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Converts an event log into the block-compressed format described in {@link BlockCompressedLog}.
+ * The event log is read sequentially, so it may also be compressed by gzip (see {@link InputFiles}).
+ * The event log has to be encoded in a character set compatible with ASCII, otherwise the
+ * event elements are not recognized and the whole document is stored as a single block.
+ * It can be run from the command line, with the event log and the target file as the arguments.
+ */
+public class BlockCompressedLogWriter {
+
+	/**
+	 * Converts the event log given by the first argument into the block-compressed
+	 * file given by the second argument.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2){
+			System.err.println("Usage: BlockCompressedLogWriter <events.xml[.gz]> <target file>");
+			return;
+		}
+		new BlockCompressedLogWriter().convert(Paths.get(args[0]), Paths.get(args[1]));
+	}
+
+	/**
+	 * First few characters of an event element
+	 */
+	private static final byte[] eventElementStart = "<event ".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * First few characters of the end tag of the root element
+	 */
+	private static final byte[] rootElementEnd = "</events".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Start of the time attribute, up to its value
+	 */
+	private static final byte[] timeAttributeStart = " time=\"".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Preferred uncompressed size of the blocks containing the event elements, in bytes.
+	 * A block is ended at the first event element starting after this many bytes.
+	 */
+	private final int blockSize;
+
+	/**
+	 * @param blockSize Preferred uncompressed size of the blocks containing the event elements, in bytes
+	 * @throws IllegalArgumentException When the block size is not positive
+	 */
+	public BlockCompressedLogWriter(int blockSize) throws IllegalArgumentException {
+		if (blockSize < 1){
+			throw new IllegalArgumentException("The block size must be positive.");
+		}
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Uses blocks of 1 MB
+	 */
+	public BlockCompressedLogWriter() {
+		this(1024 * 1024);
+	}
+
+	/**
+	 * The entries of the block table of the file being written. Each entry holds
+	 * the position of the block, its compressed length and its uncompressed length.
+	 */
+	private final List<long[]> entries = new ArrayList<>();
+
+	/**
+	 * The times of the first event elements of the blocks of the file being written
+	 * @see {@link BlockCompressedLog#getTime(int)}
+	 */
+	private final List<Double> times = new ArrayList<>();
+
+	/**
+	 * Number of the bytes written to the target file so far
+	 */
+	private long written;
+
+	/**
+	 * Converts the given event log into the block-compressed format
+	 * @param source The event log, possibly compressed by gzip
+	 * @param target The block-compressed file to be written
+	 * @throws IOException If it is impossible to read from the event log or to write the target file
+	 */
+	public void convert(Path source, Path target) throws IOException {
+		entries.clear();
+		times.clear();
+		written = 0;
+		try (InputStream in = InputFiles.open(source);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target)))){
+			out.write(BlockCompressedLog.magic);
+			written += BlockCompressedLog.magic.length;
+			Deflater deflater = new Deflater();
+			try {
+				convertBlocks(in, out, deflater);
+			} finally {
+				deflater.end();
+			}
+			long tableOffset = written;
+			for (int i = 0; i < entries.size(); i++){
+				long[] entry = entries.get(i);
+				out.writeLong(entry[0]);
+				out.writeInt((int)entry[1]);
+				out.writeInt((int)entry[2]);
+				out.writeDouble(times.get(i));
+			}
+			out.writeLong(tableOffset);
+			out.writeInt(entries.size());
+			out.write(BlockCompressedLog.magic);
+		}
+	}
+
+	/**
+	 * Splits the event log into the blocks and writes them, compressed, to the target file
+	 * @param in The event log
+	 * @param out The target file
+	 * @param deflater Used for the compression of the blocks
+	 * @throws IOException If it is impossible to read from the event log or to write the target file
+	 */
+	private void convertBlocks(InputStream in, OutputStream out, Deflater deflater) throws IOException {
+		byte[] buffer = new byte[2 * blockSize];
+		int length = 0;
+		boolean prologWritten = false;
+		int read = 0;
+		while (read != -1){
+			if (length == buffer.length){
+				buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+			}
+			read = in.read(buffer, length, buffer.length - length);
+			if (read > 0){
+				length += read;
+			}
+			int cut = 0;
+			if (!prologWritten){
+				int first = indexOf(buffer, eventElementStart, 0, length);
+				if (first != -1){
+					writeBlock(out, deflater, buffer, 0, first, Double.NEGATIVE_INFINITY);
+					prologWritten = true;
+					cut = first;
+				}
+			}
+			while (prologWritten){
+				int next = indexOf(buffer, eventElementStart, cut + blockSize, length);
+				if (next == -1){
+					break;
+				}
+				writeBlock(out, deflater, buffer, cut, next, getFirstTime(buffer, cut, next));
+				cut = next;
+			}
+			if (cut > 0){
+				System.arraycopy(buffer, cut, buffer, 0, length - cut);
+				length -= cut;
+			}
+		}
+		if (!prologWritten){
+			writeBlock(out, deflater, buffer, 0, length, Double.NEGATIVE_INFINITY);
+			writeBlock(out, deflater, buffer, length, length, Double.NEGATIVE_INFINITY);
+		} else {
+			int end = lastIndexOf(buffer, rootElementEnd, 0, length);
+			if (end == -1){
+				end = length;
+			}
+			writeBlock(out, deflater, buffer, 0, end, getFirstTime(buffer, 0, end));
+			writeBlock(out, deflater, buffer, end, length, times.get(times.size() - 1));
+		}
+	}
+
+	/**
+	 * Compresses the given part of the event log and writes it as a new block
+	 * @param out The target file
+	 * @param deflater Used for the compression of the block
+	 * @param data Contains the part of the event log
+	 * @param from Start of the part in the data
+	 * @param to End of the part in the data
+	 * @param time Value of the time attribute of the first event element of the block. If NaN,
+	 * the time of the preceding block is used.
+	 * @throws IOException If it is impossible to write the target file
+	 */
+	private void writeBlock(OutputStream out, Deflater deflater, byte[] data, int from, int to,
+			double time) throws IOException {
+		deflater.reset();
+		deflater.setInput(data, from, to - from);
+		deflater.finish();
+		byte[] chunk = new byte[64 * 1024];
+		long compressed = 0;
+		while (!deflater.finished()){
+			int count = deflater.deflate(chunk);
+			out.write(chunk, 0, count);
+			compressed += count;
+		}
+		entries.add(new long[]{written, compressed, to - from});
+		if (Double.isNaN(time)){
+			time = times.isEmpty() ? Double.NEGATIVE_INFINITY : times.get(times.size() - 1);
+		}
+		times.add(time);
+		written += compressed;
+	}
+
+	/**
+	 * @param data Contains a part of the event log, starting with an event element
+	 * @param from Start of the part in the data
+	 * @param to End of the part in the data
+	 * @return Value of the time attribute of the event element at the start of the part.
+	 * NaN if the value could not be found or parsed.
+	 */
+	private double getFirstTime(byte[] data, int from, int to){
+		int next = indexOf(data, eventElementStart, from + 1, to);
+		int elementEnd = (next == -1) ? to : next;
+		int index = indexOf(data, timeAttributeStart, from, elementEnd);
+		if (index == -1){
+			return Double.NaN;
+		}
+		int valueStart = index + timeAttributeStart.length;
+		int valueEnd = valueStart;
+		while ((valueEnd < elementEnd) && (data[valueEnd] != '"')){
+			valueEnd += 1;
+		}
+		if (valueEnd == elementEnd){
+			return Double.NaN;
+		}
+		try {
+			return NumberParser.parseDouble(data, valueStart, valueEnd);
+		} catch (NumberFormatException ex){
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * @return Position of the first occurrence of the pattern in the data, starting at
+	 * the position "from" and ending before the position "to". If there is no such
+	 * occurrence, -1 is returned.
+	 */
+	private static int indexOf(byte[] data, byte[] pattern, int from, int to){
+		int limit = to - pattern.length;
+		outer:
+		for (int i = Math.max(0, from); i <= limit; i++){
+			for (int j = 0; j < pattern.length; j++){
+				if (data[i+j] != pattern[j]){
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return Position of the last occurrence of the pattern in the data, starting at
+	 * the position "from" and ending before the position "to". If there is no such
+	 * occurrence, -1 is returned.
+	 */
+	private static int lastIndexOf(byte[] data, byte[] pattern, int from, int to){
+		outer:
+		for (int i = to - pattern.length; i >= from; i--){
+			for (int j = 0; j < pattern.length; j++){
+				if (data[i+j] != pattern[j]){
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+}
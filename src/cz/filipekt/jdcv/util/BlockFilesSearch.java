@@ -0,0 +1,128 @@
+package cz.filipekt.jdcv.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import cz.filipekt.jdcv.util.BigFilesSearch.SelectionTooBigException;
+
+/**
+ * Retrieves a certain part of an event log stored in the block-compressed format
+ * (see {@link BlockCompressedLog}), according to a specified time interval, like
+ * {@link BigFilesSearch} does for the uncompressed event logs. The block containing
+ * the start of the time interval is found in the block table, so only the blocks
+ * covering the time interval are read and decompressed. It is assumed that the event
+ * elements are sorted by the time attribute.
+ */
+public class BlockFilesSearch {
+
+	/**
+	 * The event log, in the block-compressed format
+	 */
+	private final Path path;
+
+	/**
+	 * The selected section of the event log can be at most this big, in bytes
+	 */
+	private final long memoryBudget;
+
+	/**
+	 * @param path The event log, in the block-compressed format
+	 * @param memoryBudget The selected section of the event log can be at most this big, in bytes
+	 */
+	public BlockFilesSearch(Path path, long memoryBudget) {
+		this.path = path;
+		this.memoryBudget = Math.min(memoryBudget, maxArraySize);
+	}
+
+	/**
+	 * Uses a memory budget of a quarter of the maximum heap size
+	 * @param path The event log, in the block-compressed format
+	 */
+	public BlockFilesSearch(Path path) {
+		this(path, Runtime.getRuntime().maxMemory() / 4);
+	}
+
+	/**
+	 * Maximum size of an array, in bytes
+	 */
+	private static final long maxArraySize = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Returns a section of the event log that contains all the event elements
+	 * with time attribute value inside the interval specified by the parameters.
+	 * The section consists of the beginning and the end of the original document and
+	 * of the blocks covering the time interval, so it is a well formed XML document,
+	 * providing that the event log is itself a well formed XML. The provided section
+	 * may contain up to one block of event elements in excess on each end.
+	 * @param fromTime Start of the desired time interval. If null,
+	 * the interval is unbounded from below.
+	 * @param toTime End of the desired time interval. If null,
+	 * the interval is unbounded from above.
+	 * @return Section of the event log that contains all the event elements with time
+	 * attribute value inside the specified interval, in the encoding of the event log
+	 * @throws IOException If it is impossible to read from the event log
+	 * @throws SelectionTooBigException If the section would not fit into {@link BlockFilesSearch#memoryBudget}
+	 */
+	public byte[] getSectionWellFormed(Double fromTime, Double toTime)
+			throws IOException, SelectionTooBigException {
+		try (BlockCompressedLog log = new BlockCompressedLog(path)){
+			int lastBlock = log.getBlockCount() - 1;
+			int first = 1;
+			if (fromTime != null){
+				first = Math.max(1, Math.min(lastBlock - 1, getPrecedingBlock(log, fromTime, false)));
+			}
+			int last = lastBlock - 1;
+			if (toTime != null){
+				last = Math.min(last, getPrecedingBlock(log, toTime, true));
+			}
+			long size = log.getLength(0) + log.getLength(lastBlock);
+			for (int i = first; i <= last; i++){
+				size += log.getLength(i);
+			}
+			if (size > memoryBudget){
+				throw new SelectionTooBigException();
+			}
+			byte[] section = new byte[(int)size];
+			int position = append(section, 0, log.readBlock(0));
+			for (int i = first; i <= last; i++){
+				position = append(section, position, log.readBlock(i));
+			}
+			append(section, position, log.readBlock(lastBlock));
+			return section;
+		}
+	}
+
+	/**
+	 * @param section The selected section of the event log
+	 * @param position Number of the bytes of the section filled so far
+	 * @param block A decompressed block, copied to the section at the given position
+	 * @return Number of the bytes of the section filled, including the block
+	 */
+	private static int append(byte[] section, int position, byte[] block){
+		System.arraycopy(block, 0, section, position, block.length);
+		return position + block.length;
+	}
+
+	/**
+	 * Finds the last block starting before the given time, using a binary search in the block table
+	 * @param log The opened event log
+	 * @param targetTime The time being searched for
+	 * @param inclusive If true, the blocks starting exactly at the target time are considered too
+	 * @return Index of the last block whose first event element has the time attribute value
+	 * lower than (or equal to, if inclusive) the target time. Zero if there is no such block.
+	 */
+	private int getPrecedingBlock(BlockCompressedLog log, double targetTime, boolean inclusive){
+		int low = 0;
+		int high = log.getBlockCount() - 1;
+		while (low < high){
+			int middle = (low + high + 1) >>> 1;
+			double time = log.getTime(middle);
+			if ((time < targetTime) || (inclusive && (time == targetTime))){
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,81 @@
+package cz.filipekt.jdcv.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Stream reading the contents of the given byte buffers, one after another. The buffers
+ * are read directly, so e.g. a memory-mapped part of a file can be given to a parser
+ * without copying it into the heap first.
+ */
+public class ByteBufferInputStream extends InputStream {
+
+	/**
+	 * The buffers being read, each from its position to its limit
+	 */
+	private final ByteBuffer[] buffers;
+
+	/**
+	 * Index of the buffer currently being read
+	 */
+	private int current = 0;
+
+	/**
+	 * @param buffers The buffers to be read, each from its position to its limit.
+	 * The buffers are not modified, their duplicates are read.
+	 */
+	public ByteBufferInputStream(ByteBuffer... buffers) {
+		this.buffers = new ByteBuffer[buffers.length];
+		for (int i = 0; i < buffers.length; i++){
+			this.buffers[i] = buffers[i].duplicate();
+		}
+	}
+
+	/**
+	 * Makes sure that the current buffer contains a byte to be read
+	 * @return False if the end of the last buffer has been reached
+	 */
+	private boolean fill(){
+		while ((current < buffers.length) && !buffers[current].hasRemaining()){
+			current += 1;
+		}
+		return current < buffers.length;
+	}
+
+	@Override
+	public int read() {
+		if (!fill()){
+			return -1;
+		}
+		return buffers[current].get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if ((off < 0) || (len < 0) || (len > (b.length - off))){
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0){
+			return 0;
+		}
+		if (!fill()){
+			return -1;
+		}
+		int count = Math.min(len, buffers[current].remaining());
+		buffers[current].get(b, off, count);
+		return count;
+	}
+
+	/**
+	 * @return The exact number of the bytes remaining in all of the buffers,
+	 * at most {@link Integer#MAX_VALUE}
+	 */
+	@Override
+	public int available() {
+		long res = 0;
+		for (int i = current; i < buffers.length; i++){
+			res += buffers[i].remaining();
+		}
+		return (int)Math.min(Integer.MAX_VALUE, res);
+	}
+}
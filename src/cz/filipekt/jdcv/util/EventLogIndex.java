@@ -0,0 +1,481 @@
+package cz.filipekt.jdcv.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sparse index of an event log, mapping the time attribute values of sampled event elements
+ * to their positions in the event log. An event element is sampled at least every
+ * {@link EventLogIndex#step} bytes. The index is built by a single sequential scan of the
+ * event log and stored next to it (see {@link EventLogIndex#getIndexFile(Path)}), stamped
+ * by the {@link SourceStamp} of the event log, so that it is rebuilt when the event log changes.
+ * The recently used indexes are also kept in the memory, so that an event log whose index file
+ * can not be written, e.g. because its directory is read-only, is not scanned again by every search.
+ * It is used by {@link BigFilesSearch}, which then does not have to probe the event log.
+ * Only the event logs encoded in a character set compatible with ASCII can be indexed.
+ * The scan also validates the order of the event elements: it measures the maximum disorder 
+ * of the event log (see {@link EventLogIndex#getMaxDisorder()}), so that the event logs which 
+ * are only approximately sorted by time can be searched as well.
+ */
+public class EventLogIndex {
+
+	/**
+	 * The first bytes of each index file. It has to be changed whenever the content of the
+	 * index file changes, so that the index files written by the older versions are rebuilt.
+	 */
+	private static final byte[] magic = "JDCVIDX2".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * First few characters of an event element
+	 */
+	private static final byte[] eventElementStart = "<event ".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Start of the time attribute, up to its value
+	 */
+	private static final byte[] timeAttributeStart = " time=\"".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Maximum length of the value of a time attribute, in bytes
+	 */
+	private static final int maxTimeLength = 64;
+
+	/**
+	 * Size of the buffer used for scanning the event log, in bytes
+	 */
+	private static final int bufferSize = 1024 * 1024;
+
+	/**
+	 * Maximum number of the indexes held in {@link EventLogIndex#cache}
+	 */
+	private static final int cachedIndexes = 16;
+
+	/**
+	 * The recently used indexes, indexed by the absolute paths of their event logs
+	 * and ordered from the least recently used one
+	 */
+	@SuppressWarnings("serial")
+	private static final Map<Path,EventLogIndex> cache = new LinkedHashMap<Path,EventLogIndex>(16, 0.75f, true){
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Path,EventLogIndex> eldest) {
+			return size() > cachedIndexes;
+		}
+	};
+
+	/**
+	 * @param eventLog The event log
+	 * @return The index file belonging to the event log
+	 */
+	public static Path getIndexFile(Path eventLog){
+		return eventLog.resolveSibling(eventLog.getFileName() + ".index");
+	}
+
+	/**
+	 * @param charset A character encoding
+	 * @return True iff the event logs in the given encoding can be indexed
+	 */
+	public static boolean isSupported(Charset charset){
+		return Arrays.equals(eventElementStart, "<event ".getBytes(charset)) &&
+				Arrays.equals(timeAttributeStart, " time=\"".getBytes(charset));
+	}
+
+	/**
+	 * Returns the index of the given event log. The index is taken from the memory if it has been
+	 * used recently and is up to date. Otherwise it is loaded from the index file, if it exists and
+	 * is up to date, or it is built and the index file is (re)written. The index is kept in the memory
+	 * even if the index file can not be written.
+	 * @param eventLog The event log
+	 * @param charset Text encoding of the event log
+	 * @param step An event element is sampled at least every this many bytes
+	 * @return The index of the event log, or null if the encoding is not supported
+	 * @throws IOException If it is impossible to read from the event log
+	 */
+	public static EventLogIndex get(Path eventLog, Charset charset, long step) throws IOException {
+		if (!isSupported(charset)){
+			return null;
+		}
+		SourceStamp stamp = SourceStamp.of(eventLog);
+		Path key = eventLog.toAbsolutePath().normalize();
+		synchronized (cache){
+			EventLogIndex cached = cache.get(key);
+			if ((cached != null) && cached.stamp.equals(stamp) && (cached.step == step)){
+				return cached;
+			}
+		}
+		Path indexFile = getIndexFile(eventLog);
+		EventLogIndex index = load(indexFile, stamp, step);
+		if (index == null){
+			index = build(eventLog, stamp, step);
+			try {
+				index.write(indexFile);
+			} catch (IOException ex){
+				// The index is kept in the memory only, e.g. the directory may be read-only
+			}
+		}
+		synchronized (cache){
+			cache.put(key, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Loads the index from the given index file
+	 * @param indexFile The index file
+	 * @param stamp The current stamp of the event log
+	 * @param step An event element is sampled at least every this many bytes
+	 * @return The loaded index, or null if the index file does not exist, is not up to date,
+	 * has been built with a different step, or has not sampled any event element although
+	 * the event log spans more than one step
+	 */
+	private static EventLogIndex load(Path indexFile, SourceStamp stamp, long step){
+		if (!Files.isRegularFile(indexFile)){
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))){
+			byte[] start = new byte[magic.length];
+			in.readFully(start);
+			if (!Arrays.equals(start, magic)){
+				return null;
+			}
+			SourceStamp indexed = new SourceStamp(in.readLong(), in.readLong(), in.readLong());
+			if (!indexed.equals(stamp) || (in.readLong() != step)){
+				return null;
+			}
+			double maxDisorder = in.readDouble();
+			if (!(maxDisorder >= 0)){
+				return null;
+			}
+			int count = in.readInt();
+			if ((count < 0) || (count > ((stamp.getSize() / step) + 1)) || ((count == 0) && (stamp.getSize() > step))){
+				return null;
+			}
+			long[] positions = new long[count];
+			double[] times = new double[count];
+			for (int i = 0; i < count; i++){
+				positions[i] = in.readLong();
+				times[i] = in.readDouble();
+			}
+			return new EventLogIndex(stamp, step, positions, times, count, maxDisorder);
+		} catch (IOException ex){
+			return null;
+		}
+	}
+
+	/**
+	 * Builds the index by a sequential scan of the event log. The time attribute of every
+	 * event element is parsed, so that the maximum disorder of the event log is measured.
+	 * @param eventLog The event log
+	 * @param stamp The current stamp of the event log
+	 * @param step An event element is sampled at least every this many bytes
+	 * @return The built index
+	 * @throws IOException If it is impossible to read from the event log
+	 */
+	private static EventLogIndex build(Path eventLog, SourceStamp stamp, long step) throws IOException {
+		Scanner scanner = new Scanner(step);
+		byte[] buffer = new byte[bufferSize];
+		try (InputStream in = Files.newInputStream(eventLog)){
+			int read;
+			while ((read = in.read(buffer)) != -1){
+				scanner.scan(buffer, 0, read);
+			}
+		}
+		return new EventLogIndex(stamp, step, scanner.positions, scanner.times, scanner.count, scanner.maxDisorder);
+	}
+
+	/**
+	 * Measures the maximum disorder (see {@link EventLogIndex#getMaxDisorder()}) of an event log 
+	 * which has been loaded into the memory as a whole, e.g. because it is small enough to be parsed
+	 * without being searched. Nothing is sampled and no index file is written.
+	 * @param eventLog Contents of the event log
+	 * @param charset Text encoding of the event log
+	 * @return The maximum disorder of the event log, or zero if the encoding is not supported,
+	 * in which case the event log is assumed to be sorted
+	 */
+	public static double getMaxDisorder(byte[] eventLog, Charset charset){
+		if (!isSupported(charset)){
+			return 0;
+		}
+		Scanner scanner = new Scanner(-1);
+		scanner.scan(eventLog, 0, eventLog.length);
+		return scanner.maxDisorder;
+	}
+
+	/**
+	 * Sequential byte-level scan of an event log, given to {@link Scanner#scan(byte[], int, int)} 
+	 * in consecutive parts. It parses the time attribute of every event element, measures the 
+	 * maximum disorder of the event log and samples the event elements for the index.
+	 */
+	private static class Scanner {
+
+		/**
+		 * An event element is sampled at least every this many bytes. If negative, nothing is sampled.
+		 */
+		private final long step;
+
+		/**
+		 * Positions of the sampled event elements
+		 */
+		private long[] positions = new long[16];
+
+		/**
+		 * Values of the time attributes of the sampled event elements
+		 */
+		private double[] times = new double[16];
+
+		/**
+		 * Number of the sampled event elements
+		 */
+		private int count = 0;
+
+		/**
+		 * The highest time value found so far
+		 */
+		private double maxTime = Double.NEGATIVE_INFINITY;
+
+		/**
+		 * The maximum disorder found so far
+		 */
+		private double maxDisorder = 0;
+
+		/**
+		 * The bytes of the time attribute value being read
+		 */
+		private final byte[] time = new byte[maxTimeLength];
+
+		/**
+		 * Number of the bytes of the time attribute value read so far, or -1 if the value
+		 * is not being read
+		 */
+		private int timeLength = -1;
+
+		/**
+		 * Number of the bytes of {@link EventLogIndex#eventElementStart} matched so far
+		 */
+		private int elementMatched = 0;
+
+		/**
+		 * Number of the bytes of {@link EventLogIndex#timeAttributeStart} matched so far
+		 */
+		private int attributeMatched = -1;
+
+		/**
+		 * Position of the event element being scanned
+		 */
+		private long elementStart = -1;
+
+		/**
+		 * The first event element starting at this position or later is sampled next
+		 */
+		private long nextSample = 0;
+
+		/**
+		 * Position of the next byte to be scanned in the event log
+		 */
+		private long position = 0;
+
+		/**
+		 * @param step An event element is sampled at least every this many bytes. If negative, nothing is sampled.
+		 */
+		Scanner(long step) {
+			this.step = step;
+		}
+
+		/**
+		 * Scans the next part of the event log
+		 * @param buffer Contains the part of the event log
+		 * @param from Position of the part in the buffer
+		 * @param to Position following the end of the part in the buffer
+		 */
+		void scan(byte[] buffer, int from, int to){
+			for (int i = from; i < to; i++, position++){
+				byte b = buffer[i];
+				if (elementMatched == eventElementStart.length){
+					if (timeLength >= 0){
+						if (b == '"'){
+							try {
+								record(NumberParser.parseDouble(time, 0, timeLength));
+							} catch (NumberFormatException ex){}
+							elementMatched = 0;
+						} else if (timeLength < maxTimeLength){
+							time[timeLength] = b;
+							timeLength += 1;
+						} else {
+							elementMatched = 0;
+						}
+						continue;
+					} else if (b == '>'){
+						elementMatched = 0;
+					} else {
+						attributeMatched = (b == timeAttributeStart[attributeMatched]) ? (attributeMatched + 1) :
+							((b == timeAttributeStart[0]) ? 1 : 0);
+						if (attributeMatched == timeAttributeStart.length){
+							timeLength = 0;
+						}
+						continue;
+					}
+				}
+				elementMatched = (b == eventElementStart[elementMatched]) ? (elementMatched + 1) :
+					((b == eventElementStart[0]) ? 1 : 0);
+				if (elementMatched == eventElementStart.length){
+					elementStart = position + 1 - eventElementStart.length;
+					// The space ending the element start also starts the first attribute
+					attributeMatched = 1;
+					timeLength = -1;
+				}
+			}
+		}
+
+		/**
+		 * Records the time attribute value of the event element being scanned
+		 * @param value The time attribute value
+		 */
+		private void record(double value){
+			if (value < maxTime){
+				maxDisorder = Math.max(maxDisorder, maxTime - value);
+			} else {
+				maxTime = value;
+			}
+			if ((step >= 0) && (elementStart >= nextSample)){
+				if (count == positions.length){
+					positions = Arrays.copyOf(positions, 2 * count);
+					times = Arrays.copyOf(times, 2 * count);
+				}
+				positions[count] = elementStart;
+				times[count] = value;
+				count += 1;
+				nextSample = elementStart + step;
+			}
+		}
+	}
+
+	/**
+	 * Stamp of the indexed event log
+	 */
+	private final SourceStamp stamp;
+
+	/**
+	 * An event element is sampled at least every this many bytes
+	 */
+	private final long step;
+
+	/**
+	 * Positions of the sampled event elements in the event log, in ascending order
+	 */
+	private final long[] positions;
+
+	/**
+	 * Values of the time attributes of the sampled event elements
+	 */
+	private final double[] times;
+
+	/**
+	 * Number of the sampled event elements
+	 */
+	private final int count;
+
+	/**
+	 * The maximum disorder of the event log, see {@link EventLogIndex#getMaxDisorder()}
+	 */
+	private final double maxDisorder;
+
+	/**
+	 * @param stamp Stamp of the indexed event log
+	 * @param step An event element is sampled at least every this many bytes
+	 * @param positions Positions of the sampled event elements in the event log
+	 * @param times Values of the time attributes of the sampled event elements
+	 * @param count Number of the sampled event elements
+	 * @param maxDisorder The maximum disorder of the event log
+	 */
+	private EventLogIndex(SourceStamp stamp, long step, long[] positions, double[] times, int count,
+			double maxDisorder) {
+		this.stamp = stamp;
+		this.step = step;
+		this.positions = positions;
+		this.times = times;
+		this.count = count;
+		this.maxDisorder = maxDisorder;
+	}
+
+	/**
+	 * @return Number of the sampled event elements
+	 */
+	public int getCount(){
+		return count;
+	}
+
+	/**
+	 * @return The maximum disorder of the event log, i.e. the largest amount of time by which
+	 * an event element precedes some of the event elements located before it in the event log.
+	 * It is zero iff the event log is sorted by time.
+	 */
+	public double getMaxDisorder(){
+		return maxDisorder;
+	}
+
+	/**
+	 * Writes the index into the given index file. The file is written under a temporary
+	 * name first, so that an incomplete index file is never read.
+	 * @param indexFile The index file
+	 * @throws IOException If it is impossible to write the index file
+	 */
+	private void write(Path indexFile) throws IOException {
+		Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))){
+			out.write(magic);
+			out.writeLong(stamp.getSize());
+			out.writeLong(stamp.getModified());
+			out.writeLong(stamp.getHash());
+			out.writeLong(step);
+			out.writeDouble(maxDisorder);
+			out.writeInt(count);
+			for (int i = 0; i < count; i++){
+				out.writeLong(positions[i]);
+				out.writeDouble(times[i]);
+			}
+		}
+		try {
+			Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException ex){
+			Files.deleteIfExists(tempFile);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Resolves {@link BigFilesSearch#getPrecedingLocation(double)} by a binary search in the index.
+	 * The returned position is the start of the last sampled event element with the time attribute
+	 * value strictly smaller than the given value, so the first element with the given time value
+	 * follows within about {@link EventLogIndex#step} bytes. If there is no such sampled element,
+	 * the beginning of the event log is returned. If the event log is not sorted, the sampled 
+	 * times are not sorted either, but the returned element still has its time value smaller 
+	 * than the given one, and the one sampled after it has its time value at least as large.
+	 * @param targetTime We are trying to locate the element with this time attribute value
+	 * @return Position in the event log, measured by bytes from its beginning
+	 */
+	public long getPrecedingLocation(double targetTime){
+		int low = -1;
+		int high = count - 1;
+		while (low < high){
+			int middle = (low + high + 1) >>> 1;
+			if (times[middle] < targetTime){
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return (low == -1) ? 0 : positions[low];
+	}
+}
@@ -0,0 +1,169 @@
+package cz.filipekt.jdcv.util;
+
+import java.util.List;
+
+/**
+ * Approximate profile of an event log, i.e. the time range it covers, the number of its
+ * event elements and their density in time, estimated from a few hundred samples of the
+ * event log (see {@link BigFilesSearch#getProfile(int)}) without parsing it. The event log
+ * is described by segments, i.e. the parts of the event log between the neighbouring samples,
+ * each of them covering a time interval and containing an estimated number of event elements,
+ * which are assumed to be spread evenly over the interval.
+ */
+public class EventLogProfile {
+
+	/**
+	 * Start of the time interval covered by each segment
+	 */
+	private final double[] segmentStarts;
+
+	/**
+	 * End of the time interval covered by each segment
+	 */
+	private final double[] segmentEnds;
+
+	/**
+	 * Estimated number of the event elements in each segment
+	 */
+	private final double[] segmentEvents;
+
+	/**
+	 * The lowest time value found in the samples
+	 */
+	private final double minTime;
+
+	/**
+	 * The highest time value found in the samples
+	 */
+	private final double maxTime;
+
+	/**
+	 * @param segmentStarts Start of the time interval covered by each segment
+	 * @param segmentEnds End of the time interval covered by each segment
+	 * @param segmentEvents Estimated number of the event elements in each segment
+	 * @param minTime The lowest time value found in the samples
+	 * @param maxTime The highest time value found in the samples
+	 */
+	EventLogProfile(double[] segmentStarts, double[] segmentEnds, double[] segmentEvents,
+			double minTime, double maxTime) {
+		this.segmentStarts = segmentStarts;
+		this.segmentEnds = segmentEnds;
+		this.segmentEvents = segmentEvents;
+		this.minTime = minTime;
+		this.maxTime = maxTime;
+	}
+
+	/**
+	 * Combines the profiles of several event logs, e.g. of the shards of a single event log
+	 * @param profiles The combined profiles
+	 * @return The profile of all the event logs taken together
+	 */
+	public static EventLogProfile merge(List<EventLogProfile> profiles){
+		int count = 0;
+		double minTime = Double.POSITIVE_INFINITY;
+		double maxTime = Double.NEGATIVE_INFINITY;
+		for (EventLogProfile profile : profiles){
+			count += profile.segmentEvents.length;
+			minTime = Math.min(minTime, profile.minTime);
+			maxTime = Math.max(maxTime, profile.maxTime);
+		}
+		double[] starts = new double[count];
+		double[] ends = new double[count];
+		double[] events = new double[count];
+		int position = 0;
+		for (EventLogProfile profile : profiles){
+			int length = profile.segmentEvents.length;
+			System.arraycopy(profile.segmentStarts, 0, starts, position, length);
+			System.arraycopy(profile.segmentEnds, 0, ends, position, length);
+			System.arraycopy(profile.segmentEvents, 0, events, position, length);
+			position += length;
+		}
+		return new EventLogProfile(starts, ends, events, minTime, maxTime);
+	}
+
+	/**
+	 * @return True iff no time value has been found in the samples, e.g. because the file
+	 * is not an event log
+	 */
+	public boolean isEmpty(){
+		return !(minTime <= maxTime);
+	}
+
+	/**
+	 * @return The lowest time value found in the samples, approximating the start of the event log
+	 */
+	public double getMinTime() {
+		return minTime;
+	}
+
+	/**
+	 * @return The highest time value found in the samples, approximating the end of the event log
+	 */
+	public double getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * @return The estimated number of the event elements in the event log
+	 */
+	public long getEventCount(){
+		double res = 0;
+		for (double events : segmentEvents){
+			res += events;
+		}
+		return Math.round(res);
+	}
+
+	/**
+	 * Estimates the number of the event elements in each of the given number of equally long
+	 * time intervals, which together cover the time range of the event log. Divided by the length
+	 * of the intervals, see {@link EventLogProfile#getBinWidth(int)}, they give the density of the
+	 * events in time.
+	 * @param bins Number of the time intervals
+	 * @return The estimated number of the event elements in each of the time intervals
+	 */
+	public double[] getHistogram(int bins){
+		double[] res = new double[bins];
+		if (isEmpty() || (bins <= 0)){
+			return res;
+		}
+		double width = getBinWidth(bins);
+		for (int i = 0; i < segmentEvents.length; i++){
+			double start = Math.max(minTime, Math.min(segmentStarts[i], segmentEnds[i]));
+			double end = Math.min(maxTime, Math.max(segmentStarts[i], segmentEnds[i]));
+			if (!(end > start) || !(width > 0)){
+				res[getBin(start, bins)] += segmentEvents[i];
+				continue;
+			}
+			for (int bin = getBin(start, bins); bin <= getBin(end, bins); bin++){
+				double binStart = minTime + (bin * width);
+				double overlap = Math.min(end, binStart + width) - Math.max(start, binStart);
+				if (overlap > 0){
+					res[bin] += segmentEvents[i] * (overlap / (end - start));
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * @param bins Number of the time intervals the time range of the event log is divided into
+	 * @return Length of each of the time intervals
+	 */
+	public double getBinWidth(int bins){
+		return (maxTime - minTime) / bins;
+	}
+
+	/**
+	 * @param time A time inside the time range of the event log
+	 * @param bins Number of the time intervals the time range of the event log is divided into
+	 * @return Index of the time interval containing the given time
+	 */
+	private int getBin(double time, int bins){
+		double width = getBinWidth(bins);
+		if (!(width > 0)){
+			return 0;
+		}
+		return Math.max(0, Math.min(bins - 1, (int)((time - minTime) / width)));
+	}
+}
@@ -0,0 +1,237 @@
+package cz.filipekt.jdcv.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens the input files, which may be compressed by gzip (as MATSim does by default,
+ * e.g. "events.xml.gz"). The compression is detected by the contents of the file, not
+ * by its name. Compressed files are decompressed on a separate thread, ahead of the
+ * consumer, so that the decompression and the parsing can run at the same time.
+ * The files in the block-compressed format (see {@link BlockCompressedLog}) are
+ * decompressed too. An input file may also be given as a list of files, e.g. an event log
+ * written in several shards, see {@link InputFiles#resolveList(String)}.
+ */
+public class InputFiles {
+
+	/**
+	 * Separates the files in a list of input files
+	 */
+	public static final String listSeparator = "|";
+
+	/**
+	 * Characters which make a file name a glob pattern
+	 */
+	private static final String globCharacters = "*?[{";
+
+	/**
+	 * The first two bytes of each gzip file
+	 */
+	private static final int[] gzipMagic = {0x1f, 0x8b};
+
+	/**
+	 * The compressed files are decompressed in blocks of this size, in bytes
+	 */
+	private static final int decompressedBlockSize = 1024 * 1024;
+
+	/**
+	 * At most this many decompressed blocks are kept ready for the consumer
+	 */
+	private static final int decompressedBlocksAhead = 16;
+
+	/**
+	 * Size of the buffer used for reading the files, in bytes
+	 */
+	private static final int readBufferSize = 256 * 1024;
+
+	/**
+	 * @param file An input file
+	 * @return True iff the file is compressed by gzip
+	 * @throws IOException If it is impossible to read from the file
+	 */
+	public static boolean isGzip(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)){
+			for (int magicByte : gzipMagic){
+				if (in.read() != magicByte){
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Opens a stream on the given file. If the file is compressed by gzip or stored in the
+	 * block-compressed format, the returned stream provides the decompressed contents.
+	 * @param file An input file
+	 * @return Stream reading the (decompressed) contents of the file
+	 * @throws IOException If it is impossible to read from the file
+	 */
+	public static InputStream open(Path file) throws IOException {
+		if (BlockCompressedLog.isBlockCompressed(file)){
+			return new BlockCompressedLog(file).openStream();
+		}
+		boolean compressed = isGzip(file);
+		InputStream in = Files.newInputStream(file);
+		if (compressed){
+			try {
+				InputStream decompressed = new GZIPInputStream(in, readBufferSize);
+				return new ReadAheadInputStream(decompressed, decompressedBlockSize,
+						decompressedBlocksAhead, "gzip-read-ahead");
+			} catch (IOException ex){
+				in.close();
+				throw ex;
+			}
+		} else {
+			return new BufferedInputStream(in, readBufferSize);
+		}
+	}
+
+	/**
+	 * Reads the given stream until its end, or until the given number of bytes has been read.
+	 * The array holding the bytes grows as they are read, so reading a short stream with a
+	 * high limit does not allocate the limit up front.
+	 * @param in The stream to be read
+	 * @param limit At most this many bytes are read
+	 * @return The bytes read. If there are less than "limit" of them, the end of the stream has been reached.
+	 * @throws IOException If it is impossible to read from the stream
+	 */
+	public static byte[] readAtMost(InputStream in, int limit) throws IOException {
+		byte[] data = new byte[Math.min(limit, readBufferSize)];
+		int count = 0;
+		while (count < limit){
+			if (count == data.length){
+				int next = in.read();
+				if (next == -1){
+					break;
+				}
+				data = Arrays.copyOf(data, (int)Math.min(limit, 2L * data.length));
+				data[count] = (byte)next;
+				count += 1;
+				continue;
+			}
+			int read = in.read(data, count, data.length - count);
+			if (read == -1){
+				break;
+			}
+			count += read;
+		}
+		return (count == data.length) ? data : Arrays.copyOf(data, count);
+	}
+
+	/**
+	 * Reads exactly the given number of bytes from the given stream, directly into an array 
+	 * of the final size
+	 * @param in The stream to be read
+	 * @param length Number of the bytes to be read, e.g. as returned by {@link InputFiles#getKnownLength(InputStream)}
+	 * @return The bytes read
+	 * @throws IOException If it is impossible to read from the stream, or if the stream ends
+	 * before the given number of bytes has been read
+	 */
+	public static byte[] readFully(InputStream in, int length) throws IOException {
+		byte[] data = new byte[length];
+		int count = 0;
+		while (count < length){
+			int read = in.read(data, count, length - count);
+			if (read == -1){
+				throw new EOFException("The stream has ended after " + count + " of " + length + " bytes.");
+			}
+			count += read;
+		}
+		return data;
+	}
+
+	/**
+	 * Returns the number of the bytes remaining in the given stream, if the stream knows it
+	 * exactly without being read, i.e. if it is a {@link MappedFileInputStream}, 
+	 * a {@link ByteBufferInputStream} or a {@link ByteArrayInputStream}. The value of 
+	 * {@link InputStream#available()} is not trusted for the other streams.
+	 * @param in A stream
+	 * @return The exact number of the bytes remaining in the stream, or -1 if it is not known
+	 */
+	public static long getKnownLength(InputStream in){
+		if (in instanceof MappedFileInputStream){
+			return ((MappedFileInputStream)in).getRemaining();
+		} else if (in instanceof ByteBufferInputStream){
+			return ((ByteBufferInputStream)in).available();
+		} else if (in instanceof ByteArrayInputStream){
+			return ((ByteArrayInputStream)in).available();
+		} else {
+			return -1;
+		}
+	}
+
+	/**
+	 * Resolves a list of input files, separated by {@link InputFiles#listSeparator}. Each item of
+	 * the list is either a path to a file, or a path whose file name is a glob pattern (such as
+	 * "output/events-*.xml"), which is replaced by the matching files in the directory, sorted
+	 * by their names.
+	 * @param list The list of input files
+	 * @return The listed files, in the order of the list
+	 * @throws IOException If a glob pattern does not match any file, or if the directory
+	 * of a glob pattern can not be read
+	 */
+	public static List<Path> resolveList(String list) throws IOException {
+		List<Path> res = new ArrayList<>();
+		for (String item : list.split(Pattern.quote(listSeparator))){
+			item = item.trim();
+			if (item.isEmpty()){
+				continue;
+			}
+			int nameStart = Math.max(item.lastIndexOf('/'), item.lastIndexOf(File.separatorChar)) + 1;
+			String name = item.substring(nameStart);
+			boolean glob = false;
+			for (char c : globCharacters.toCharArray()){
+				glob |= (name.indexOf(c) >= 0);
+			}
+			if (!glob){
+				res.add(Paths.get(item));
+				continue;
+			}
+			Path directory = Paths.get(nameStart == 0 ? "" : item.substring(0, nameStart)).toAbsolutePath();
+			List<Path> matching = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, name)){
+				for (Path file : stream){
+					if (Files.isRegularFile(file)){
+						matching.add(file);
+					}
+				}
+			}
+			if (matching.isEmpty()){
+				throw new IOException("No file matches \"" + item + "\".");
+			}
+			Collections.sort(matching);
+			res.addAll(matching);
+		}
+		return res;
+	}
+
+	/**
+	 * @param files Some input files
+	 * @return The list of the given files, as accepted by {@link InputFiles#resolveList(String)}
+	 */
+	public static String formatList(List<File> files){
+		StringBuilder sb = new StringBuilder();
+		for (File file : files){
+			if (sb.length() > 0){
+				sb.append(listSeparator);
+			}
+			sb.append(file.getAbsolutePath());
+		}
+		return sb.toString();
+	}
+}
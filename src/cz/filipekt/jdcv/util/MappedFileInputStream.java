@@ -0,0 +1,132 @@
+package cz.filipekt.jdcv.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stream reading a range of a file, preceded and followed by the given bytes. The range is
+ * memory-mapped in windows of {@link MappedFileInputStream#windowSize} bytes, one window
+ * at a time, so that the range can be of any size and is not copied into the heap before
+ * it is read from the stream.
+ */
+public class MappedFileInputStream extends InputStream {
+
+	/**
+	 * The range of the file is mapped in windows of this size, in bytes
+	 */
+	private static final int windowSize = 64 * 1024 * 1024;
+
+	/**
+	 * The opened file
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * Position following the end of the range in the file
+	 */
+	private final long end;
+
+	/**
+	 * Position in the file where the next window starts
+	 */
+	private long nextWindow;
+
+	/**
+	 * The bytes preceding the range
+	 */
+	private final ByteBuffer prefix;
+
+	/**
+	 * The bytes following the range
+	 */
+	private final ByteBuffer suffix;
+
+	/**
+	 * The window currently being read
+	 */
+	private ByteBuffer window = ByteBuffer.allocate(0);
+
+	/**
+	 * @param file The file to be read
+	 * @param start Position of the start of the range in the file
+	 * @param end Position following the end of the range in the file
+	 * @param prefix The bytes read before the range
+	 * @param suffix The bytes read after the range
+	 * @throws IOException If it is impossible to open the file
+	 */
+	public MappedFileInputStream(Path file, long start, long end, byte[] prefix, byte[] suffix) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.nextWindow = start;
+		this.end = Math.max(start, end);
+		this.prefix = ByteBuffer.wrap(prefix);
+		this.suffix = ByteBuffer.wrap(suffix);
+	}
+
+	/**
+	 * @return The buffer containing the next byte to be read, or null if the end of the stream has been reached
+	 * @throws IOException If it is impossible to read from the file
+	 */
+	private ByteBuffer current() throws IOException {
+		if (prefix.hasRemaining()){
+			return prefix;
+		}
+		if (!window.hasRemaining() && (nextWindow < end)){
+			long size = Math.min(windowSize, end - nextWindow);
+			window = channel.map(FileChannel.MapMode.READ_ONLY, nextWindow, size);
+			nextWindow += size;
+		}
+		if (window.hasRemaining()){
+			return window;
+		}
+		return suffix.hasRemaining() ? suffix : null;
+	}
+
+	@Override
+	public int read() throws IOException {
+		ByteBuffer buffer = current();
+		return (buffer == null) ? -1 : (buffer.get() & 0xFF);
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if ((off < 0) || (len < 0) || (len > (b.length - off))){
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0){
+			return 0;
+		}
+		ByteBuffer buffer = current();
+		if (buffer == null){
+			return -1;
+		}
+		int count = Math.min(len, buffer.remaining());
+		buffer.get(b, off, count);
+		return count;
+	}
+
+	/**
+	 * @return The exact number of the bytes remaining in the stream
+	 */
+	public long getRemaining(){
+		return prefix.remaining() + window.remaining() + (end - nextWindow) + suffix.remaining();
+	}
+
+	/**
+	 * @return The exact number of the bytes remaining in the stream, at most {@link Integer#MAX_VALUE}
+	 */
+	@Override
+	public int available() {
+		return (int)Math.min(Integer.MAX_VALUE, getRemaining());
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = ByteBuffer.allocate(0);
+		nextWindow = end;
+		channel.close();
+	}
+}
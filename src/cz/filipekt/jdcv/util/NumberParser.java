@@ -0,0 +1,243 @@
+package cz.filipekt.jdcv.util;
+
+/**
+ * Parses decimal numbers directly from a range of characters or bytes, without creating any
+ * intermediate objects. The results are always identical to the results of
+ * {@link Double#parseDouble(String)}, applied to the same characters. <br>
+ * Numbers of the form [sign] digits [. digits] [e [sign] digits] with at most 15 significant
+ * digits and a small decimal exponent are composed directly, using a single multiplication
+ * or division by an exact power of ten, which is correctly rounded. This covers the time values
+ * and the coordinates found in the input files. Any other input is given to
+ * {@link Double#parseDouble(String)}, which also produces the {@link NumberFormatException}
+ * if the input is not a number.
+ */
+public class NumberParser {
+
+	/**
+	 * Exact powers of ten, i.e. 10^i can be found at the index i. All of them are
+	 * exactly representable as doubles.
+	 */
+	private static final double[] powersOfTen = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * Maximal number of significant digits of a mantissa that is composed directly.
+	 * Such mantissa is always smaller than 2^53, so it is exactly representable as a double.
+	 * Leading zeros are not significant. Once the mantissa has more significant digits,
+	 * the following digits are not accumulated, so that the mantissa can not overflow.
+	 */
+	private static final int maxSignificantDigits = 15;
+
+	/**
+	 * The absolute value of the exponent is never accumulated beyond this value.
+	 * It prevents an overflow, while it is still large enough for the exponent to fall
+	 * outside of the range handled directly.
+	 */
+	private static final int exponentCap = 100000;
+
+	/**
+	 * Marks that the parsed input is not handled directly
+	 */
+	private static final double notComposed = Double.NaN;
+
+	/**
+	 * @param text Contains the number
+	 * @return The parsed number, identical to {@link Double#parseDouble(String)}
+	 * @throws NumberFormatException If the text does not contain a parsable number
+	 * @throws NullPointerException If the text is null
+	 */
+	public static double parseDouble(CharSequence text) throws NumberFormatException {
+		return parseDouble(text, 0, text.length());
+	}
+
+	/**
+	 * @param text Contains the number
+	 * @param from Position of the first character of the number
+	 * @param to Position following the last character of the number
+	 * @return The parsed number, identical to {@link Double#parseDouble(String)} applied
+	 * to the given range of characters
+	 * @throws NumberFormatException If the range does not contain a parsable number
+	 * @throws IndexOutOfBoundsException If the range is not valid
+	 */
+	public static double parseDouble(CharSequence text, int from, int to)
+			throws NumberFormatException, IndexOutOfBoundsException {
+		if ((from < 0) || (to > text.length()) || (from > to)){
+			throw new IndexOutOfBoundsException();
+		}
+		int position = from;
+		boolean negative = false;
+		if ((position < to) && ((text.charAt(position) == '-') || (text.charAt(position) == '+'))){
+			negative = text.charAt(position) == '-';
+			position += 1;
+		}
+		long mantissa = 0;
+		int significantDigits = 0;
+		int digits = 0;
+		int exponent = 0;
+		while ((position < to) && isDigit(text.charAt(position))){
+			if (significantDigits <= maxSignificantDigits){
+				mantissa = (mantissa * 10) + (text.charAt(position) - '0');
+				significantDigits += (mantissa == 0) ? 0 : 1;
+			}
+			digits += 1;
+			position += 1;
+		}
+		if ((position < to) && (text.charAt(position) == '.')){
+			position += 1;
+			while ((position < to) && isDigit(text.charAt(position))){
+				if (significantDigits <= maxSignificantDigits){
+					mantissa = (mantissa * 10) + (text.charAt(position) - '0');
+					significantDigits += (mantissa == 0) ? 0 : 1;
+				}
+				exponent -= 1;
+				digits += 1;
+				position += 1;
+			}
+		}
+		if ((position < to) && ((text.charAt(position) == 'e') || (text.charAt(position) == 'E'))){
+			position += 1;
+			boolean negativeExponent = false;
+			if ((position < to) && ((text.charAt(position) == '-') || (text.charAt(position) == '+'))){
+				negativeExponent = text.charAt(position) == '-';
+				position += 1;
+			}
+			int exponentStart = position;
+			int explicitExponent = 0;
+			while ((position < to) && isDigit(text.charAt(position))){
+				explicitExponent = addExponentDigit(explicitExponent, text.charAt(position));
+				position += 1;
+			}
+			if (position == exponentStart){
+				digits = 0;
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+		double res = notComposed;
+		if ((position == to) && (digits > 0)){
+			res = compose(negative, mantissa, significantDigits, exponent);
+		}
+		if (Double.isNaN(res)){
+			return Double.parseDouble(text.subSequence(from, to).toString());
+		}
+		return res;
+	}
+
+	/**
+	 * @param data Contains the number, encoded in a character set compatible with ASCII
+	 * @param from Position of the first byte of the number
+	 * @param to Position following the last byte of the number
+	 * @return The parsed number, identical to {@link Double#parseDouble(String)} applied
+	 * to the given range of bytes, interpreted as ASCII characters
+	 * @throws NumberFormatException If the range does not contain a parsable number
+	 * @throws IndexOutOfBoundsException If the range is not valid
+	 */
+	public static double parseDouble(byte[] data, int from, int to)
+			throws NumberFormatException, IndexOutOfBoundsException {
+		if ((from < 0) || (to > data.length) || (from > to)){
+			throw new IndexOutOfBoundsException();
+		}
+		int position = from;
+		boolean negative = false;
+		if ((position < to) && ((data[position] == '-') || (data[position] == '+'))){
+			negative = data[position] == '-';
+			position += 1;
+		}
+		long mantissa = 0;
+		int significantDigits = 0;
+		int digits = 0;
+		int exponent = 0;
+		while ((position < to) && isDigit(data[position])){
+			if (significantDigits <= maxSignificantDigits){
+				mantissa = (mantissa * 10) + (data[position] - '0');
+				significantDigits += (mantissa == 0) ? 0 : 1;
+			}
+			digits += 1;
+			position += 1;
+		}
+		if ((position < to) && (data[position] == '.')){
+			position += 1;
+			while ((position < to) && isDigit(data[position])){
+				if (significantDigits <= maxSignificantDigits){
+					mantissa = (mantissa * 10) + (data[position] - '0');
+					significantDigits += (mantissa == 0) ? 0 : 1;
+				}
+				exponent -= 1;
+				digits += 1;
+				position += 1;
+			}
+		}
+		if ((position < to) && ((data[position] == 'e') || (data[position] == 'E'))){
+			position += 1;
+			boolean negativeExponent = false;
+			if ((position < to) && ((data[position] == '-') || (data[position] == '+'))){
+				negativeExponent = data[position] == '-';
+				position += 1;
+			}
+			int exponentStart = position;
+			int explicitExponent = 0;
+			while ((position < to) && isDigit(data[position])){
+				explicitExponent = addExponentDigit(explicitExponent, (char)data[position]);
+				position += 1;
+			}
+			if (position == exponentStart){
+				digits = 0;
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+		double res = notComposed;
+		if ((position == to) && (digits > 0)){
+			res = compose(negative, mantissa, significantDigits, exponent);
+		}
+		if (Double.isNaN(res)){
+			char[] chars = new char[to - from];
+			for (int i = 0; i < chars.length; i++){
+				chars[i] = (char)(data[from + i] & 0xFF);
+			}
+			return Double.parseDouble(new String(chars));
+		}
+		return res;
+	}
+
+	/**
+	 * @return True iff the character is one of the decimal digits 0-9
+	 */
+	private static boolean isDigit(int c){
+		return (c >= '0') && (c <= '9');
+	}
+
+	/**
+	 * @param exponent The value of the exponent so far
+	 * @param digit The next digit of the exponent
+	 * @return The value of the exponent with the digit appended, capped at {@link NumberParser#exponentCap}
+	 */
+	private static int addExponentDigit(int exponent, char digit){
+		return Math.min((exponent * 10) + (digit - '0'), exponentCap);
+	}
+
+	/**
+	 * @param negative True iff the number is negative
+	 * @param mantissa All the digits of the number, without the decimal point
+	 * @param significantDigits Number of the significant digits in the mantissa
+	 * @param exponent The number is equal to mantissa * 10^exponent
+	 * @return The correctly rounded double value of the number. {@link NumberParser#notComposed}
+	 * if the number can not be composed directly.
+	 */
+	private static double compose(boolean negative, long mantissa, int significantDigits, int exponent){
+		if (significantDigits > maxSignificantDigits){
+			return notComposed;
+		}
+		double value;
+		if (mantissa == 0){
+			value = 0.0;
+		} else if ((exponent >= 0) && (exponent < powersOfTen.length)){
+			value = mantissa * powersOfTen[exponent];
+		} else if ((exponent < 0) && (-exponent < powersOfTen.length)){
+			value = mantissa / powersOfTen[-exponent];
+		} else {
+			return notComposed;
+		}
+		return negative ? -value : value;
+	}
+}
@@ -0,0 +1,164 @@
+package cz.filipekt.jdcv.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the source stream on a separate thread, ahead of the consumer of this stream.
+ * The data are read in blocks, and at most a given number of blocks is kept ready
+ * for the consumer. It is used for the decompression of the input files, so that the
+ * decompression and the parsing of the decompressed data can run at the same time.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+	/**
+	 * Marks the end of the source stream in {@link ReadAheadInputStream#blocks}
+	 */
+	private static final byte[] endOfStream = new byte[0];
+
+	/**
+	 * The blocks read from the source stream, not yet given to the consumer
+	 */
+	private final BlockingQueue<byte[]> blocks;
+
+	/**
+	 * Reads the source stream and fills {@link ReadAheadInputStream#blocks}
+	 */
+	private final Thread reader;
+
+	/**
+	 * The exception thrown when reading from the source stream. Null if there was no exception.
+	 */
+	private volatile IOException failure;
+
+	/**
+	 * Marks whether this stream has been closed
+	 */
+	private boolean closed = false;
+
+	/**
+	 * The block currently being given to the consumer
+	 */
+	private byte[] current = null;
+
+	/**
+	 * Position of the next byte to be given to the consumer in {@link ReadAheadInputStream#current}
+	 */
+	private int position = 0;
+
+	/**
+	 * @param source The stream to be read ahead. It is closed when it has been read or
+	 * when this stream is closed.
+	 * @param blockSize Size of the blocks in which the source stream is read, in bytes
+	 * @param blocksAhead At most this many blocks are read ahead of the consumer
+	 * @param threadName Name of the thread reading the source stream
+	 */
+	public ReadAheadInputStream(final InputStream source, final int blockSize, int blocksAhead,
+			String threadName) {
+		blocks = new ArrayBlockingQueue<>(blocksAhead);
+		reader = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try (InputStream in = source){
+					while (true){
+						byte[] block = new byte[blockSize];
+						int count = 0;
+						int read = 0;
+						while ((count < blockSize) && ((read = in.read(block, count, blockSize - count)) != -1)){
+							count += read;
+						}
+						if (count > 0){
+							blocks.put((count == blockSize) ? block : Arrays.copyOf(block, count));
+						}
+						if (read == -1){
+							break;
+						}
+					}
+				} catch (IOException ex){
+					failure = ex;
+				} catch (InterruptedException ex){
+					return;
+				}
+				try {
+					blocks.put(endOfStream);
+				} catch (InterruptedException ex){}
+			}
+		}, threadName);
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * Makes sure that {@link ReadAheadInputStream#current} contains a byte to be given to the consumer
+	 * @return False if the end of the source stream has been reached
+	 * @throws IOException When the source stream could not be read
+	 */
+	private boolean fill() throws IOException {
+		if (closed){
+			throw new IOException("Stream closed");
+		}
+		while ((current == null) || (position == current.length)){
+			if (current == endOfStream){
+				if (failure != null){
+					throw failure;
+				}
+				return false;
+			}
+			try {
+				current = blocks.take();
+				position = 0;
+			} catch (InterruptedException ex){
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!fill()){
+			return -1;
+		}
+		int res = current[position] & 0xFF;
+		position += 1;
+		return res;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if ((off < 0) || (len < 0) || (len > (b.length - off))){
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0){
+			return 0;
+		}
+		if (!fill()){
+			return -1;
+		}
+		int count = Math.min(len, current.length - position);
+		System.arraycopy(current, position, b, off, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return (current == null) ? 0 : (current.length - position);
+	}
+
+	/**
+	 * Stops the reading of the source stream, which is then closed
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		reader.interrupt();
+		blocks.clear();
+	}
+}
@@ -0,0 +1,272 @@
+package cz.filipekt.jdcv.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import cz.filipekt.jdcv.util.BigFilesSearch.ElementTooLargeException;
+import cz.filipekt.jdcv.util.BigFilesSearch.SelectionTooBigException;
+
+/**
+ * Retrieves a certain part of an event log, according to a specified time interval,
+ * like {@link BigFilesSearch} does. Unlike {@link BigFilesSearch}, the event log is only
+ * read sequentially, so it can be used for the event logs which do not allow a random
+ * access, e.g. because they are compressed. The event log is read only until the end
+ * of the time interval is reached. It is assumed that the event elements are sorted
+ * by the time attribute.
+ */
+public class SequentialSearch {
+
+	/**
+	 * The event log
+	 */
+	private final InputStream stream;
+
+	/**
+	 * Text encoding of the event log
+	 */
+	private final Charset charset;
+
+	/**
+	 * The selected section of the event log can be at most this big, in bytes
+	 */
+	private final long memoryBudget;
+
+	/**
+	 * @param stream The event log, read from its beginning
+	 * @param charset Text encoding of the event log
+	 * @param memoryBudget The selected section of the event log can be at most this big, in bytes
+	 */
+	public SequentialSearch(InputStream stream, Charset charset, long memoryBudget) {
+		this.stream = stream;
+		this.charset = charset;
+		this.memoryBudget = Math.min(memoryBudget, maxArraySize);
+	}
+
+	/**
+	 * Uses a memory budget of a quarter of the maximum heap size
+	 * @param stream The event log, read from its beginning
+	 * @param charset Text encoding of the event log
+	 */
+	public SequentialSearch(InputStream stream, Charset charset) {
+		this(stream, charset, Runtime.getRuntime().maxMemory() / 4);
+	}
+
+	/**
+	 * First few characters of an event element
+	 */
+	private final String eventElementStart = "<event ";
+
+	/**
+	 * First few characters of the end tag of the root element
+	 */
+	private final String rootElementEnd = "</events";
+
+	/**
+	 * Start of the time attribute, up to its value
+	 */
+	private final String timeAttributeStart = " time=\"";
+
+	/**
+	 * Maximum size of an array, in bytes
+	 */
+	private static final long maxArraySize = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Maximum size of an event element, in characters
+	 */
+	private final int maxElementSize = 1024 * 1024;
+
+	/**
+	 * Size of the buffer used for reading the event log, in characters
+	 */
+	private final int bufferSize = 64 * 1024;
+
+	/**
+	 * Returns a section of the event log that contains all the event elements
+	 * with time attribute value inside the interval specified by the parameters.
+	 * The section starts with a generated XML declaration, and the event elements are
+	 * encapsulated inside a root XML element (<events>), thus making it a well formed
+	 * XML document, providing that the event log is itself a well formed XML.
+	 * The selected event elements are encoded as they are found, and the returned stream
+	 * reads the encoded section without copying it.
+	 * @param fromTime Start of the desired time interval. If null,
+	 * the interval is unbounded from below.
+	 * @param toTime End of the desired time interval. If null,
+	 * the interval is unbounded from above.
+	 * @return Stream reading the section of the event log that contains all the event elements 
+	 * with time attribute value inside the specified interval, encoded in {@link SequentialSearch#charset}
+	 * @throws IOException If it is impossible to read from the event log
+	 * @throws SelectionTooBigException If the section would not fit into {@link SequentialSearch#memoryBudget}
+	 * @throws ElementTooLargeException If some event element is too large
+	 */
+	public InputStream getSectionStream(Double fromTime, Double toTime)
+			throws IOException, SelectionTooBigException, ElementTooLargeException {
+		Section section = new Section();
+		section.append("<?xml version=\"1.0\" encoding=\"");
+		section.append(charset.name());
+		section.append("\"?>\n<events version=\"1.0\">\n");
+		StringBuilder pending = new StringBuilder();
+		Reader reader = new InputStreamReader(stream, charset);
+		char[] buffer = new char[bufferSize];
+		boolean finished = false;
+		int count;
+		while (!finished && ((count = reader.read(buffer)) != -1)){
+			pending.append(buffer, 0, count);
+			finished = selectElements(pending, section, fromTime, toTime, false);
+		}
+		if (!finished){
+			selectElements(pending, section, fromTime, toTime, true);
+		}
+		section.append("\n</events>");
+		return section.getStream();
+	}
+
+	/**
+	 * The selected section of the event log, encoded in {@link SequentialSearch#charset}
+	 * as it is being appended
+	 */
+	private class Section {
+
+		/**
+		 * The encoded section
+		 */
+		private final SectionBuffer bytes = new SectionBuffer();
+
+		/**
+		 * Encodes the appended characters into {@link Section#bytes}. It keeps a few kilobytes
+		 * of the encoded characters until it is flushed, so they are not counted by the budget check.
+		 */
+		private final Writer writer = new OutputStreamWriter(bytes, charset);
+
+		/**
+		 * @param text Appended to the section
+		 * @throws IOException If the text could not be encoded
+		 */
+		void append(String text) throws IOException {
+			writer.write(text);
+		}
+
+		/**
+		 * @param text Contains the characters appended to the section
+		 * @param start Position of the first appended character in the text
+		 * @param end Position following the last appended character in the text
+		 * @throws IOException If the text could not be encoded
+		 * @throws SelectionTooBigException If the section would not fit into {@link SequentialSearch#memoryBudget}
+		 */
+		void append(StringBuilder text, int start, int end) throws IOException, SelectionTooBigException {
+			writer.append(text, start, end);
+			if (bytes.size() > memoryBudget){
+				throw new SelectionTooBigException();
+			}
+		}
+
+		/**
+		 * @return Stream reading the encoded section
+		 * @throws IOException If the text could not be encoded
+		 */
+		InputStream getStream() throws IOException {
+			writer.flush();
+			return bytes.getStream();
+		}
+	}
+
+	/**
+	 * Lets the collected bytes be read without being copied
+	 */
+	private static class SectionBuffer extends ByteArrayOutputStream {
+
+		/**
+		 * @return Stream reading the collected bytes
+		 */
+		InputStream getStream(){
+			return new ByteArrayInputStream(buf, 0, count);
+		}
+	}
+
+	/**
+	 * Examines the complete event elements in the given text read from the event log.
+	 * The elements inside the time interval are appended to the selection, the examined
+	 * elements are removed from the text.
+	 * @param pending The text read from the event log, not examined yet
+	 * @param section The event elements inside the time interval are appended here
+	 * @param fromTime Start of the desired time interval. If null,
+	 * the interval is unbounded from below.
+	 * @param toTime End of the desired time interval. If null,
+	 * the interval is unbounded from above.
+	 * @param atEnd Marks whether the end of the event log has been reached, i.e. whether the
+	 * last event element in the text is complete
+	 * @return True iff an event element following the time interval has been found,
+	 * so that the rest of the event log does not have to be read
+	 * @throws IOException If the selected event elements could not be encoded
+	 * @throws SelectionTooBigException If the section would not fit into {@link SequentialSearch#memoryBudget}
+	 * @throws ElementTooLargeException If some event element is too large
+	 */
+	private boolean selectElements(StringBuilder pending, Section section, Double fromTime, Double toTime, 
+			boolean atEnd) throws IOException, SelectionTooBigException, ElementTooLargeException {
+		int start = pending.indexOf(eventElementStart);
+		if (start == -1){
+			pending.delete(0, Math.max(0, pending.length() - eventElementStart.length()));
+			return false;
+		}
+		while (true){
+			int next = pending.indexOf(eventElementStart, start + 1);
+			int end = next;
+			if (next == -1){
+				if (!atEnd){
+					break;
+				}
+				end = pending.lastIndexOf(rootElementEnd);
+				if (end < start){
+					end = pending.length();
+				}
+			}
+			Double time = getTime(pending, start, end);
+			if ((time != null) && (toTime != null) && (time > toTime)){
+				return true;
+			}
+			if ((time == null) || (fromTime == null) || (time >= fromTime)){
+				section.append(pending, start, end);
+			}
+			if (next == -1){
+				return false;
+			}
+			start = next;
+		}
+		pending.delete(0, start);
+		if (pending.length() > maxElementSize){
+			throw new ElementTooLargeException();
+		}
+		return false;
+	}
+
+	/**
+	 * @param text Contains an event element
+	 * @param start Position of the event element in the text
+	 * @param end Position following the event element in the text
+	 * @return The value of the time attribute of the event element. Null if the attribute
+	 * could not be found or parsed, in which case the element is left to the XML parser.
+	 */
+	private Double getTime(StringBuilder text, int start, int end){
+		int index = text.indexOf(timeAttributeStart, start);
+		if ((index == -1) || (index >= end)){
+			return null;
+		}
+		int numberStart = index + timeAttributeStart.length();
+		int quotes = text.indexOf("\"", numberStart);
+		if ((quotes == -1) || (quotes >= end)){
+			return null;
+		}
+		try {
+			return NumberParser.parseDouble(text, numberStart, quotes);
+		} catch (NumberFormatException ex){
+			return null;
+		}
+	}
+}
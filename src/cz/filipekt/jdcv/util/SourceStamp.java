@@ -0,0 +1,121 @@
+package cz.filipekt.jdcv.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Identifies the contents of an input file, so that the files derived from it (caches, indices)
+ * can be recognized as stale when the input file changes. Besides the size and the
+ * modification time of the input file, a hash of its first and last {@link SourceStamp#sampleSize}
+ * bytes is used. Hashing the whole file would take about as long as parsing it.
+ */
+public class SourceStamp {
+
+	/**
+	 * This many bytes from both the beginning and the end of the input file are hashed
+	 */
+	private static final int sampleSize = 64 * 1024;
+
+	/**
+	 * Size of the input file, in bytes
+	 */
+	private final long size;
+
+	/**
+	 * @return Size of the input file, in bytes
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Time of the last modification of the input file, in milliseconds
+	 */
+	private final long modified;
+
+	/**
+	 * @return Time of the last modification of the input file, in milliseconds
+	 */
+	public long getModified() {
+		return modified;
+	}
+
+	/**
+	 * Hash of the beginning and the end of the input file
+	 */
+	private final long hash;
+
+	/**
+	 * @return Hash of the beginning and the end of the input file
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * @param size Size of the input file, in bytes
+	 * @param modified Time of the last modification of the input file, in milliseconds
+	 * @param hash Hash of the beginning and the end of the input file
+	 */
+	public SourceStamp(long size, long modified, long hash) {
+		this.size = size;
+		this.modified = modified;
+		this.hash = hash;
+	}
+
+	/**
+	 * @param file An input file
+	 * @return The current stamp of the input file
+	 * @throws IOException If it is impossible to read from the input file
+	 */
+	public static SourceStamp of(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			long size = channel.size();
+			long modified = Files.getLastModifiedTime(file).toMillis();
+			CRC32 crc = new CRC32();
+			ByteBuffer sample = ByteBuffer.allocate(sampleSize);
+			readFully(channel, sample, 0);
+			crc.update(sample.array(), 0, sample.position());
+			sample.clear();
+			readFully(channel, sample, Math.max(0, size - sampleSize));
+			crc.update(sample.array(), 0, sample.position());
+			return new SourceStamp(size, modified, crc.getValue());
+		}
+	}
+
+	/**
+	 * Reads from the channel until the buffer is full or the end of the channel is reached
+	 * @param channel The channel to be read
+	 * @param buffer The bytes read are stored here
+	 * @param position Position in the channel where the reading starts
+	 * @throws IOException If it is impossible to read from the channel
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()){
+			int read = channel.read(buffer, position);
+			if (read == -1){
+				break;
+			}
+			position += read;
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof SourceStamp)){
+			return false;
+		}
+		SourceStamp other = (SourceStamp)obj;
+		return (size == other.size) && (modified == other.modified) && (hash == other.hash);
+	}
+
+	@Override
+	public int hashCode() {
+		return (int)(size ^ modified ^ hash);
+	}
+}
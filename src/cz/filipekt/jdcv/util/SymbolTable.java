@@ -0,0 +1,86 @@
+package cz.filipekt.jdcv.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns dense integer symbols (0, 1, 2, ...) to strings, such as the IDs of people,
+ * vehicles or links. The symbols are assigned in the order in which the strings are
+ * first encountered. Once the string is encoded, the application can work with the
+ * symbol only, and the original string is needed only when shown to the user.
+ */
+public class SymbolTable {
+
+	/**
+	 * Stands for a missing string, e.g. when a person is not seated in any vehicle
+	 */
+	public static final int noSymbol = -1;
+
+	/**
+	 * Maps each encountered string to its symbol
+	 */
+	private final Map<String,Integer> symbols = new HashMap<>();
+
+	/**
+	 * The encountered strings, indexed by their symbols
+	 */
+	private final List<String> strings = new ArrayList<>();
+
+	/**
+	 * @param string A string to be encoded
+	 * @return The symbol assigned to the string. If the string has not been encountered yet,
+	 * a new symbol is assigned to it. If the string is null, {@link SymbolTable#noSymbol} is returned.
+	 */
+	public int encode(String string){
+		if (string == null){
+			return noSymbol;
+		}
+		Integer symbol = symbols.get(string);
+		if (symbol == null){
+			symbol = strings.size();
+			symbols.put(string, symbol);
+			strings.add(string);
+		}
+		return symbol;
+	}
+
+	/**
+	 * @param string A string
+	 * @return The symbol assigned to the string. If the string has not been encountered yet,
+	 * or if it is null, {@link SymbolTable#noSymbol} is returned.
+	 */
+	public int find(String string){
+		if (string == null){
+			return noSymbol;
+		}
+		Integer symbol = symbols.get(string);
+		if (symbol == null){
+			return noSymbol;
+		} else {
+			return symbol;
+		}
+	}
+
+	/**
+	 * @param symbol A symbol assigned by this table
+	 * @return The string to which the symbol has been assigned. If the symbol is
+	 * {@link SymbolTable#noSymbol}, null is returned.
+	 * @throws IndexOutOfBoundsException When no string has been assigned the symbol
+	 */
+	public String decode(int symbol) throws IndexOutOfBoundsException {
+		if (symbol == noSymbol){
+			return null;
+		}
+		return strings.get(symbol);
+	}
+
+	/**
+	 * @return Number of the symbols assigned so far. The symbols are the numbers
+	 * from 0 up to this number (excluded).
+	 */
+	public int size(){
+		return strings.size();
+	}
+}
@@ -21,7 +21,8 @@ import javafx.geometry.Point2D;
  * SAX handler used to parse the XML file containing the map definition.
  * Collects the corridor elements. 
  * Can only be used after the "link" elements have been collected, as these
- * are required upon construction of this handler instance.
+ * are required upon construction of this handler instance, unless the assignment
+ * of the corridors to the links is deferred to the end of the document.
  * 
  * @author Tomas Filipek <tom.filipek@seznam.cz>
  */
@@ -149,11 +150,36 @@ public class CorridorHandler extends DefaultHandler {
 	 */
 	private final Map<String,MyLink> links;
 
+	/**
+	 * If true, the parsed corridors are assigned to the links only at the end of 
+	 * the document, so that the link elements may be collected in the same parsing 
+	 * pass, see {@link MultiplexingHandler}.
+	 */
+	private final boolean deferAssignment;
+	
+	/**
+	 * The parsed corridors, in the document order, waiting to be assigned to their links.
+	 * Used only if {@link CorridorHandler#deferAssignment} holds.
+	 */
+	private final List<Corridor> pendingCorridors = new ArrayList<>();
+
 	/**
 	 * @param links The parsed link elements
 	 */
 	public CorridorHandler(Map<String, MyLink> links) {
+		this(links, false);
+	}
+	
+	/**
+	 * @param links The parsed link elements. If the second parameter holds, this collection 
+	 * may still be being filled during the parsing, as long as it is complete when the
+	 * end of the document is reached.
+	 * @param deferAssignment If true, the corridors are assigned to the links only at the
+	 * end of the document.
+	 */
+	public CorridorHandler(Map<String, MyLink> links, boolean deferAssignment) {
 		this.links = links;
+		this.deferAssignment = deferAssignment;
 	}
 
 	@Override
@@ -161,14 +187,38 @@ public class CorridorHandler extends DefaultHandler {
 		if (qName.equals(corridorName)){
 			Corridor newCorridor = new Corridor(currentCorridorId, currentCorridorLinks, 
 					currentLinkImg, currentLinkPath, currentPathAbsolute);
-			Collection<MyLink> parsedLinks = getParsedLinksFor(currentCorridorLinks);
-			for (MyLink link : parsedLinks){
-				link.setCorridor(newCorridor);
+			if (deferAssignment){
+				pendingCorridors.add(newCorridor);
+			} else {
+				assignToLinks(newCorridor);
 			}
 			inCorridor = false;
 		}
 	}
 	
+	/**
+	 * Called by the SAX engine at the end of the document. Assigns the corridors, whose
+	 * assignment has been deferred, to the corresponding links.
+	 */
+	@Override
+	public void endDocument() throws SAXException {
+		for (Corridor corridor : pendingCorridors){
+			assignToLinks(corridor);
+		}
+		pendingCorridors.clear();
+	}
+	
+	/**
+	 * Sets the given corridor as the visual representation of all the links it refers to
+	 * @param corridor A parsed corridor element
+	 */
+	private void assignToLinks(Corridor corridor){
+		Collection<MyLink> parsedLinks = getParsedLinksFor(corridor.getLinks());
+		for (MyLink link : parsedLinks){
+			link.setCorridor(corridor);
+		}
+	}
+	
 	/**
 	 * @param linkIDs ID values of some link elements
 	 * @return The parsed link elements defined by the ID values given in the parameter
@@ -5,11 +5,12 @@ import java.util.List;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
 
 import cz.filipekt.jdcv.events.EnsembleEvent;
+import cz.filipekt.jdcv.events.EventType;
 import cz.filipekt.jdcv.exceptions.InvalidAttributeValueException;
 import cz.filipekt.jdcv.exceptions.TooManyEvents;
+import cz.filipekt.jdcv.util.NumberParser;
 
 /**
  * SAX handler used to parse the XML file containing the ensemble events.
@@ -17,7 +18,7 @@ import cz.filipekt.jdcv.exceptions.TooManyEvents;
  * 
  * @author Tomas Filipek <tom.filipek@seznam.cz>
  */
-public class EnsembleHandler extends DefaultHandler {
+public class EnsembleHandler extends EventLogHandler {
 
 	/**
 	 * Local name of the event element
@@ -120,59 +121,83 @@ public class EnsembleHandler extends DefaultHandler {
 	private final long countLimit = 600_000L;
 
 	/**
-	 * Makes sure that when an ensemble event element is encountered, it contains all the 
-	 * required attributes with values in correct format. Afterwards, event element is stored
-	 * in the parsed form in the {@link EnsembleHandler#events} storage.
+	 * Makes sure that when an ensemble event element is encountered, it is counted and,
+	 * if it is inside the selected time interval, processed by {@link EnsembleHandler#processEvent}.
 	 */
 	@Override
 	public void startElement(String uri, String localName, String qName,
 			Attributes attributes) throws SAXException {
 		if (qName.equals(eventName)){
-			count += 1;
-			if (count > countLimit){
-				String message = "The selection contains too many <event> elements. " + 
-						"Please specify a selection of the log file which contains at most " +
-						countLimit + " elements.";
-				throw new SAXException(new TooManyEvents(message));
+			countEvent();
+			double time = parseTime(attributes.getValue(timeName));
+			if (isWithinSelection(time)){
+				processEvent(attributes, time, EventType.ENSEMBLE);
 			}
-			String timeVal = attributes.getValue(timeName);
-			Utils.ensureNonNullAndNonEmptyAttr(eventName, timeName, timeVal);
-			double time;
-			try {
-				time = Double.parseDouble(timeVal);
-			} catch (NumberFormatException ex){
+		}
+	}
+	
+	@Override
+	void countEvent() throws SAXException {
+		count += 1;
+		if (count > countLimit){
+			String message = "The selection contains too many <event> elements. " + 
+					"Please specify a selection of the log file which contains at most " +
+					countLimit + " elements.";
+			throw new SAXException(new TooManyEvents(message));
+		}
+	}
+	
+	@Override
+	double parseTime(String timeVal) throws SAXException {
+		Utils.ensureNonNullAndNonEmptyAttr(eventName, timeName, timeVal);
+		try {
+			return NumberParser.parseDouble(timeVal);
+		} catch (NumberFormatException ex){
+			throw new SAXException(new InvalidAttributeValueException(
+					"Time attribute of the ensemble event must be in the \"double precision\" format."));
+		}
+	}
+	
+	@Override
+	boolean isWithinSelection(double time) {
+		if (startAtConstraint && (startAtLimit > time)){
+			return false;
+		}
+		if (endAtConstraint && (endAtLimit < time)){
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Makes sure that the ensemble event element contains all the required attributes with 
+	 * values in correct format. Afterwards, event element is stored in the parsed form 
+	 * in the {@link EnsembleHandler#events} storage. The value of the type attribute is ignored.
+	 */
+	@Override
+	void processEvent(Attributes attributes, double time, EventType type) throws SAXException {
+		String coordinatorVal = attributes.getValue(coordinatorName);
+		Utils.ensureNonNullAndNonEmptyAttr(eventName, coordinatorName, coordinatorVal);
+		String memberVal = attributes.getValue(memberName);
+		Utils.ensureNonNullAndNonEmptyAttr(eventName, memberName, memberVal);
+		String membershipVal = attributes.getValue(membershipName);
+		Utils.ensureNonNullAndNonEmptyAttr(eventName, membershipName, membershipVal);
+		String ensembleVal = attributes.getValue(ensembleName);
+		Utils.ensureNonNullAndNonEmptyAttr(eventName, ensembleName, ensembleVal);
+		boolean membership;
+		switch(membershipVal){
+			case "true":
+				membership = true;
+				break;
+			case "false":
+				membership = false;
+				break;
+			default:
 				throw new SAXException(new InvalidAttributeValueException(
-						"Time attribute of the ensemble event must be in the \"double precision\" format."));
-			}
-			if (startAtConstraint && (startAtLimit > time)){
-				return;
-			}
-			if (endAtConstraint && (endAtLimit < time)){
-				return;
-			}
-			String coordinatorVal = attributes.getValue(coordinatorName);
-			Utils.ensureNonNullAndNonEmptyAttr(eventName, coordinatorName, coordinatorVal);
-			String memberVal = attributes.getValue(memberName);
-			Utils.ensureNonNullAndNonEmptyAttr(eventName, memberName, memberVal);
-			String membershipVal = attributes.getValue(membershipName);
-			Utils.ensureNonNullAndNonEmptyAttr(eventName, membershipName, membershipVal);
-			String ensembleVal = attributes.getValue(ensembleName);
-			Utils.ensureNonNullAndNonEmptyAttr(eventName, ensembleName, ensembleVal);
-			boolean membership;
-			switch(membershipVal){
-				case "true":
-					membership = true;
-					break;
-				case "false":
-					membership = false;
-					break;
-				default:
-					throw new SAXException(new InvalidAttributeValueException(
-							"Membership attribute in the ensemble event element has only two allowed values: true, false."));
-			}
-			EnsembleEvent eev = new EnsembleEvent(coordinatorVal, memberVal, membership, ensembleVal, time);
-			events.add(eev);
+						"Membership attribute in the ensemble event element has only two allowed values: true, false."));
 		}
+		EnsembleEvent eev = new EnsembleEvent(coordinatorVal, memberVal, membership, ensembleVal, time);
+		events.add(eev);
 	}
 	
 }
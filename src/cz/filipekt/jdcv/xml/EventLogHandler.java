@@ -0,0 +1,64 @@
+package cz.filipekt.jdcv.xml;
+
+import java.nio.charset.StandardCharsets;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import cz.filipekt.jdcv.events.EventType;
+import cz.filipekt.jdcv.util.NumberParser;
+
+/**
+ * Common base of the handlers which collect the "event" elements of an event log.
+ * Besides being used as a SAX handler, each event element can be given to it piece by piece,
+ * which is how the {@link EventLogTokenizer} passes the event elements to it without
+ * going through the SAX engine.
+ */
+abstract class EventLogHandler extends DefaultHandler {
+
+	/**
+	 * Called whenever an event element is encountered, before any of its attributes is examined.
+	 * @throws SAXException When there are too many event elements
+	 */
+	abstract void countEvent() throws SAXException;
+
+	/**
+	 * @param timeVal Value of the time attribute of an event element
+	 * @return The parsed time value
+	 * @throws SAXException When the time attribute is missing or is not in the correct format
+	 */
+	abstract double parseTime(String timeVal) throws SAXException;
+	
+	/**
+	 * Parses the value of the time attribute directly from the document, without creating a string.
+	 * @param data Contains the document, encoded in a character set compatible with ASCII
+	 * @param from Position of the first byte of the value of the time attribute
+	 * @param to Position following the last byte of the value of the time attribute
+	 * @return The parsed time value
+	 * @throws SAXException When the time attribute is empty or is not in the correct format
+	 */
+	double parseTime(byte[] data, int from, int to) throws SAXException {
+		try {
+			return NumberParser.parseDouble(data, from, to);
+		} catch (NumberFormatException ex){
+			return parseTime(new String(data, from, to - from, StandardCharsets.ISO_8859_1));
+		}
+	}
+
+	/**
+	 * @param time Simulation time at which an event occurred
+	 * @return True if the event is inside the selected time interval, i.e. it should be processed
+	 */
+	abstract boolean isWithinSelection(double time);
+
+	/**
+	 * Processes an event element which is inside the selected time interval.
+	 * @param attributes Attributes of the event element
+	 * @param time Simulation time at which the event occurred
+	 * @param type Value of the type attribute of the event element. Null if the value is not recognized.
+	 * @throws SAXException When a mandatory attribute is missing or has an invalid value.
+	 */
+	abstract void processEvent(Attributes attributes, double time, EventType type) throws SAXException;
+
+}
@@ -0,0 +1,776 @@
+package cz.filipekt.jdcv.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import cz.filipekt.jdcv.events.EnsembleEvent;
+import cz.filipekt.jdcv.events.EventType;
+import cz.filipekt.jdcv.events.MatsimEvent;
+import cz.filipekt.jdcv.events.MatsimEventSink;
+import cz.filipekt.jdcv.network.MyLink;
+
+/**
+ * Specialized parser of the event logs (both the MATSim event log and the ensemble event log),
+ * which works directly on the raw bytes of the document instead of going through the SAX engine.
+ * The event logs are flat lists of event elements, so the tokenizer only recognizes the following
+ * subset of XML: an optional XML declaration, comments, a single root element containing only
+ * whitespace, comments and event elements, where each event element contains only attributes.
+ * The attribute names and the values of the type attribute are matched at the byte level,
+ * the attributes are given to the handlers through a reusable {@link ByteAttributes} view
+ * of the underlying bytes. The parsed events are the same as if the document was parsed
+ * by the SAX engine using the same handler. <br>
+ * Whenever a construct outside of the recognized subset is encountered (e.g. a document type
+ * declaration, an entity reference, a processing instruction or an unexpected element), the
+ * {@link UnsupportedSyntaxException} is thrown, and the document has to be parsed by the SAX
+ * engine instead. The static methods of this class take care of that automatically. <br>
+ * An instance of this class must not be used by more than one thread at the same time.
+ */
+public class EventLogTokenizer {
+
+	/**
+	 * Text encoding of the parsed document
+	 */
+	private final Charset charset;
+
+	/**
+	 * Reusable view of the attributes of the currently processed event element
+	 */
+	private final ByteAttributes attributes;
+
+	/**
+	 * @param charset Text encoding of the parsed documents. Must be compatible with ASCII.
+	 * @throws IllegalArgumentException When the text encoding is not compatible with ASCII
+	 */
+	public EventLogTokenizer(Charset charset) throws IllegalArgumentException {
+		if (!Utils.isAsciiCompatible(charset)){
+			throw new IllegalArgumentException("The text encoding must be compatible with ASCII.");
+		}
+		this.charset = charset;
+		this.attributes = new ByteAttributes(charset);
+	}
+
+	/**
+	 * Parses the given MATSim event log document. If the document can not be handled by the tokenizer,
+	 * it is parsed by the SAX engine instead.
+	 * @param document The whole MATSim event log document
+	 * @param charset Text encoding of the document
+	 * @param links Collection of parsed link elements, as extracted from a network source file.
+	 * @param onlyComponents If true, only the events of the people corresponding to the injected
+	 * JDEECo components will be taken into account. If false, all of the events will be parsed.
+	 * @param startAt Only events starting from this time on are taken into account. If null,
+	 * no such constraint is applied.
+	 * @param endAt Only the events ending before this time are taken into account. If null,
+	 * no such constraint is applied.
+	 * @return The parsed event elements, in the file order
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SAXException When there is any problem when parsing the XML document.
+	 * It is generally used as a wrapper for other kinds of exceptions.
+	 * @throws IOException Should never happen, the document is held in the memory
+	 */
+	public static List<MatsimEvent> parseMatsimEvents(byte[] document, Charset charset, Map<String,MyLink> links,
+			boolean onlyComponents, Double startAt, Double endAt)
+					throws ParserConfigurationException, SAXException, IOException {
+		final List<MatsimEvent> events = new ArrayList<>();
+		parseMatsimEvents(document, charset, links, onlyComponents, startAt, endAt, new MatsimEventSink() {
+			
+			@Override
+			public void add(MatsimEvent event) {
+				events.add(event);
+			}
+		});
+		return events;
+	}
+
+	/**
+	 * Parses the given MATSim event log document and gives the parsed events to the given sink, 
+	 * one by one. If the document can not be handled by the tokenizer, it is parsed by the SAX 
+	 * engine instead. In such case, the events that the sink has already received are not given 
+	 * to it again.
+	 * @param document The whole MATSim event log document
+	 * @param charset Text encoding of the document
+	 * @param links Collection of parsed link elements, as extracted from a network source file.
+	 * @param onlyComponents If true, only the events of the people corresponding to the injected
+	 * JDEECo components will be taken into account. If false, all of the events will be parsed.
+	 * @param startAt Only events starting from this time on are taken into account. If null,
+	 * no such constraint is applied.
+	 * @param endAt Only the events ending before this time are taken into account. If null,
+	 * no such constraint is applied.
+	 * @param sink Receives the parsed events, in the file order
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SAXException When there is any problem when parsing the XML document.
+	 * It is generally used as a wrapper for other kinds of exceptions.
+	 * @throws IOException Should never happen, the document is held in the memory
+	 */
+	public static void parseMatsimEvents(byte[] document, Charset charset, Map<String,MyLink> links,
+			boolean onlyComponents, Double startAt, Double endAt, MatsimEventSink sink)
+					throws ParserConfigurationException, SAXException, IOException {
+		long emittedCount = 0;
+		if (Utils.isAsciiCompatible(charset)){
+			MatsimEventHandler handler = new MatsimEventHandler(links, onlyComponents, startAt, endAt, sink);
+			try {
+				new EventLogTokenizer(charset).parseDocument(document, 0, document.length, handler);
+				return;
+			} catch (UnsupportedSyntaxException ex){
+				emittedCount = handler.getEmittedCount();
+			}
+		}
+		MatsimEventHandler handler = new MatsimEventHandler(links, onlyComponents, startAt, endAt, 
+				new SkippingSink(sink, emittedCount));
+		XMLextractor.run(new ByteArrayInputStream(document), charset.name(), handler);
+	}
+
+	/**
+	 * Parses the given ensemble event log document. If the document can not be handled by the tokenizer,
+	 * it is parsed by the SAX engine instead.
+	 * @param document The whole ensemble event log document
+	 * @param charset Text encoding of the document
+	 * @param startAt Only events starting from this time on are taken into account. If null,
+	 * no such constraint is applied.
+	 * @param endAt Only the events ending before this time are taken into account. If null,
+	 * no such constraint is applied.
+	 * @return The parsed event elements, in the file order
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SAXException When there is any problem when parsing the XML document.
+	 * It is generally used as a wrapper for other kinds of exceptions.
+	 * @throws IOException Should never happen, the document is held in the memory
+	 */
+	public static List<EnsembleEvent> parseEnsembleEvents(byte[] document, Charset charset,
+			Double startAt, Double endAt) throws ParserConfigurationException, SAXException, IOException {
+		if (Utils.isAsciiCompatible(charset)){
+			EnsembleHandler handler = new EnsembleHandler(startAt, endAt);
+			try {
+				new EventLogTokenizer(charset).parseDocument(document, 0, document.length, handler);
+				return handler.getEvents();
+			} catch (UnsupportedSyntaxException ex){
+				// parsed by the SAX engine below, using a new handler
+			}
+		}
+		EnsembleHandler handler = new EnsembleHandler(startAt, endAt);
+		XMLextractor.run(new ByteArrayInputStream(document), charset.name(), handler);
+		return handler.getEvents();
+	}
+
+	/**
+	 * Thrown when the parsed document contains a construct which is not supported by the
+	 * {@link EventLogTokenizer}. The document has to be parsed by the SAX engine instead.
+	 * The handler that has been given to the tokenizer may already contain some of the
+	 * events, so a new handler has to be used.
+	 */
+	@SuppressWarnings("serial")
+	static class UnsupportedSyntaxException extends Exception {}
+
+	/**
+	 * Parses the given document and gives each of the event elements to the given handler
+	 * @param data Contains the document
+	 * @param from Position of the beginning of the document in the data
+	 * @param to Position of the end of the document in the data
+	 * @param handler Receives the event elements
+	 * @throws SAXException When the handler refuses an event element
+	 * @throws UnsupportedSyntaxException When the document contains a construct not supported by the tokenizer
+	 */
+	void parseDocument(byte[] data, int from, int to, EventLogHandler handler)
+			throws SAXException, UnsupportedSyntaxException {
+		int position = parseProlog(data, from, to);
+		position = parseContent(data, position, to, handler, true);
+		parseEpilog(data, position, to);
+	}
+
+	/**
+	 * Position of the first byte of the root element name, as found by the last call to
+	 * {@link EventLogTokenizer#parseProlog(byte[], int, int)}
+	 */
+	private int rootNameFrom = -1;
+
+	/**
+	 * Position following the last byte of the root element name, as found by the last call to
+	 * {@link EventLogTokenizer#parseProlog(byte[], int, int)}
+	 */
+	private int rootNameTo = -1;
+
+	/**
+	 * The root element name is compared against this data
+	 */
+	private byte[] rootNameData = null;
+
+	/**
+	 * First few bytes of the XML declaration
+	 */
+	private static final byte[] declarationStart = "<?xml".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Last bytes of the XML declaration
+	 */
+	private static final byte[] declarationEnd = "?>".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * First few bytes of a comment
+	 */
+	private static final byte[] commentStart = "<!--".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Two dashes, which may appear in a comment only as a part of its end
+	 */
+	private static final byte[] doubleDash = "--".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * First few bytes of an end tag
+	 */
+	private static final byte[] endTagStart = "</".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Name of the event element
+	 */
+	private static final byte[] eventName = "event".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Name of the time attribute of the event element
+	 */
+	private static final byte[] timeName = "time".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Name of the type attribute of the event element
+	 */
+	private static final byte[] typeName = "type".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Parses the beginning of the document, i.e. the optional XML declaration, comments
+	 * and the start tag of the root element.
+	 * @param data Contains the document
+	 * @param from Position of the beginning of the document in the data
+	 * @param to Position of the end of the document in the data
+	 * @return Position following the start tag of the root element
+	 * @throws UnsupportedSyntaxException When the beginning of the document contains a
+	 * construct not supported by the tokenizer
+	 */
+	int parseProlog(byte[] data, int from, int to) throws UnsupportedSyntaxException {
+		int position = from;
+		if (startsWith(data, position, to, declarationStart)){
+			position += declarationStart.length;
+			if ((position >= to) || !isWhitespace(data[position])){
+				throw new UnsupportedSyntaxException();
+			}
+			position = indexOf(data, declarationEnd, position, to);
+			if (position == -1){
+				throw new UnsupportedSyntaxException();
+			}
+			position += declarationEnd.length;
+		}
+		while (true){
+			position = skipWhitespace(data, position, to);
+			if (startsWith(data, position, to, commentStart)){
+				position = skipComment(data, position, to);
+			} else if ((position < to) && (data[position] == '<')){
+				position += 1;
+				rootNameFrom = position;
+				position = skipName(data, position, to);
+				rootNameTo = position;
+				rootNameData = data;
+				position = parseAttributes(data, position, to);
+				if ((position < to) && (data[position] == '>')){
+					return position + 1;
+				} else {
+					throw new UnsupportedSyntaxException();
+				}
+			} else {
+				throw new UnsupportedSyntaxException();
+			}
+		}
+	}
+
+	/**
+	 * Parses the content of the root element, i.e. whitespace, comments and the event elements.
+	 * @param data Contains the document
+	 * @param from Position of the beginning of the content in the data
+	 * @param to Position of the end of the document in the data
+	 * @param handler Receives the event elements. If null, no event elements are allowed in the content.
+	 * @param untilEndTag If true, the content is parsed until an end tag is encountered.
+	 * If false, the content is parsed until the end of the data and no end tag is allowed.
+	 * @return Position of the end tag which follows the content, or the end of the data
+	 * @throws SAXException When the handler refuses an event element
+	 * @throws UnsupportedSyntaxException When the content contains a construct not supported by the tokenizer
+	 */
+	int parseContent(byte[] data, int from, int to, EventLogHandler handler, boolean untilEndTag)
+			throws SAXException, UnsupportedSyntaxException {
+		int position = from;
+		while (true){
+			position = skipWhitespace(data, position, to);
+			if (position >= to){
+				if (untilEndTag){
+					throw new UnsupportedSyntaxException();
+				} else {
+					return position;
+				}
+			}
+			if (data[position] != '<'){
+				throw new UnsupportedSyntaxException();
+			} else if (startsWith(data, position, to, commentStart)){
+				position = skipComment(data, position, to);
+			} else if (((position + 1) < to) && (data[position+1] == '/')){
+				if (untilEndTag){
+					return position;
+				} else {
+					throw new UnsupportedSyntaxException();
+				}
+			} else if ((handler != null) && isEventStart(data, position + 1, to)){
+				position = parseEvent(data, position + 1 + eventName.length, to, handler);
+			} else {
+				throw new UnsupportedSyntaxException();
+			}
+		}
+	}
+
+	/**
+	 * Parses the end of the document, i.e. the end tag of the root element followed by optional
+	 * whitespace and comments. The name in the end tag must be equal to the name of the root
+	 * element found by the preceding call to {@link EventLogTokenizer#parseProlog(byte[], int, int)}.
+	 * @param data Contains the document
+	 * @param from Position of the end tag of the root element
+	 * @param to Position of the end of the document in the data
+	 * @throws UnsupportedSyntaxException When the end of the document contains a construct not supported by the tokenizer
+	 */
+	void parseEpilog(byte[] data, int from, int to) throws UnsupportedSyntaxException {
+		if ((rootNameData == null) || ((from + 2) > to) || (data[from] != '<') || (data[from+1] != '/')){
+			throw new UnsupportedSyntaxException();
+		}
+		int position = from + 2;
+		int nameEnd = skipName(data, position, to);
+		int nameLength = rootNameTo - rootNameFrom;
+		if ((nameEnd - position) != nameLength){
+			throw new UnsupportedSyntaxException();
+		}
+		for (int i = 0; i < nameLength; i++){
+			if (data[position+i] != rootNameData[rootNameFrom+i]){
+				throw new UnsupportedSyntaxException();
+			}
+		}
+		position = skipWhitespace(data, nameEnd, to);
+		if ((position >= to) || (data[position] != '>')){
+			throw new UnsupportedSyntaxException();
+		}
+		position += 1;
+		while (true){
+			position = skipWhitespace(data, position, to);
+			if (position >= to){
+				return;
+			} else if (startsWith(data, position, to, commentStart)){
+				position = skipComment(data, position, to);
+			} else {
+				throw new UnsupportedSyntaxException();
+			}
+		}
+	}
+
+	/**
+	 * Parses a single event element and gives it to the handler
+	 * @param data Contains the document
+	 * @param from Position following the name of the event element
+	 * @param to Position of the end of the document in the data
+	 * @param handler Receives the event element
+	 * @return Position following the event element
+	 * @throws SAXException When the handler refuses the event element
+	 * @throws UnsupportedSyntaxException When the event element contains a construct not supported by the tokenizer
+	 */
+	private int parseEvent(byte[] data, int from, int to, EventLogHandler handler)
+			throws SAXException, UnsupportedSyntaxException {
+		int position = parseAttributes(data, from, to);
+		if (position >= to){
+			throw new UnsupportedSyntaxException();
+		}
+		if (data[position] == '/'){
+			position += 1;
+			if ((position >= to) || (data[position] != '>')){
+				throw new UnsupportedSyntaxException();
+			}
+			position += 1;
+		} else if (data[position] == '>'){
+			position = skipWhitespace(data, position + 1, to);
+			if (!startsWith(data, position, to, endTagStart) || !startsWith(data, position + 2, to, eventName)){
+				throw new UnsupportedSyntaxException();
+			}
+			position = skipWhitespace(data, position + 2 + eventName.length, to);
+			if ((position >= to) || (data[position] != '>')){
+				throw new UnsupportedSyntaxException();
+			}
+			position += 1;
+		} else {
+			throw new UnsupportedSyntaxException();
+		}
+		handler.countEvent();
+		int timeIndex = attributes.getIndex(timeName);
+		double time;
+		if (timeIndex == -1){
+			time = handler.parseTime(null);
+		} else {
+			time = handler.parseTime(data, attributes.valueFrom[timeIndex], attributes.valueTo[timeIndex]);
+		}
+		if (handler.isWithinSelection(time)){
+			int typeIndex = attributes.getIndex(typeName);
+			if (typeIndex == -1){
+				throw new UnsupportedSyntaxException();
+			}
+			EventType type = EventType.from(data, attributes.valueFrom[typeIndex],
+					attributes.valueTo[typeIndex] - attributes.valueFrom[typeIndex]);
+			handler.processEvent(attributes, time, type);
+		}
+		return position;
+	}
+
+	/**
+	 * Parses the attributes of an element into {@link EventLogTokenizer#attributes}
+	 * @param data Contains the document
+	 * @param from Position following the name of the element
+	 * @param to Position of the end of the document in the data
+	 * @return Position of the first non-whitespace character following the attributes
+	 * @throws UnsupportedSyntaxException When the attributes contain a construct not supported by the tokenizer
+	 */
+	private int parseAttributes(byte[] data, int from, int to) throws UnsupportedSyntaxException {
+		attributes.reset(data);
+		int position = from;
+		while (true){
+			int afterWhitespace = skipWhitespace(data, position, to);
+			if (afterWhitespace >= to){
+				throw new UnsupportedSyntaxException();
+			}
+			byte b = data[afterWhitespace];
+			if ((b == '/') || (b == '>')){
+				return afterWhitespace;
+			}
+			if (afterWhitespace == position){
+				throw new UnsupportedSyntaxException();
+			}
+			int nameFrom = afterWhitespace;
+			int nameTo = skipName(data, nameFrom, to);
+			position = skipWhitespace(data, nameTo, to);
+			if ((position >= to) || (data[position] != '=')){
+				throw new UnsupportedSyntaxException();
+			}
+			position = skipWhitespace(data, position + 1, to);
+			if (position >= to){
+				throw new UnsupportedSyntaxException();
+			}
+			byte quote = data[position];
+			if ((quote != '"') && (quote != '\'')){
+				throw new UnsupportedSyntaxException();
+			}
+			int valueFrom = position + 1;
+			int valueTo = valueFrom;
+			while (true){
+				if (valueTo >= to){
+					throw new UnsupportedSyntaxException();
+				}
+				byte c = data[valueTo];
+				if (c == quote){
+					break;
+				}
+				if ((c == '<') || (c == '&') || ((c >= 0) && (c < 0x20))){
+					throw new UnsupportedSyntaxException();
+				}
+				valueTo += 1;
+			}
+			if (attributes.getIndex(data, nameFrom, nameTo) != -1){
+				throw new UnsupportedSyntaxException();
+			}
+			attributes.add(nameFrom, nameTo, valueFrom, valueTo);
+			position = valueTo + 1;
+		}
+	}
+
+	/**
+	 * @return True if at the given position in the data, there is the name of the event
+	 * element followed by whitespace, "/" or "&gt;".
+	 */
+	private static boolean isEventStart(byte[] data, int position, int to){
+		if (!startsWith(data, position, to, eventName)){
+			return false;
+		}
+		int after = position + eventName.length;
+		if (after >= to){
+			return false;
+		}
+		byte b = data[after];
+		return isWhitespace(b) || (b == '/') || (b == '>');
+	}
+
+	/**
+	 * Skips a comment starting at the given position
+	 * @return Position following the comment
+	 * @throws UnsupportedSyntaxException If the comment is not terminated or contains "--"
+	 */
+	private static int skipComment(byte[] data, int from, int to) throws UnsupportedSyntaxException {
+		int dashes = indexOf(data, doubleDash, from + commentStart.length, to);
+		if ((dashes == -1) || ((dashes + 2) >= to) || (data[dashes+2] != '>')){
+			throw new UnsupportedSyntaxException();
+		}
+		return dashes + 3;
+	}
+
+	/**
+	 * Skips an element or attribute name starting at the given position. Only the ASCII
+	 * letters, digits and the characters "_", ":", "-", "." are supported in the names.
+	 * @return Position following the name
+	 * @throws UnsupportedSyntaxException If there is no name at the given position or
+	 * it contains unsupported characters
+	 */
+	private static int skipName(byte[] data, int from, int to) throws UnsupportedSyntaxException {
+		int position = from;
+		while (position < to){
+			byte b = data[position];
+			boolean letter = ((b >= 'a') && (b <= 'z')) || ((b >= 'A') && (b <= 'Z')) || (b == '_') || (b == ':');
+			boolean other = ((b >= '0') && (b <= '9')) || (b == '-') || (b == '.');
+			if (letter || ((position > from) && other)){
+				position += 1;
+			} else if ((b < 0) || ((position == from) && other)){
+				throw new UnsupportedSyntaxException();
+			} else {
+				break;
+			}
+		}
+		if (position == from){
+			throw new UnsupportedSyntaxException();
+		}
+		return position;
+	}
+
+	/**
+	 * @return Position of the first non-whitespace byte at or after the given position
+	 */
+	private static int skipWhitespace(byte[] data, int from, int to){
+		int position = from;
+		while ((position < to) && isWhitespace(data[position])){
+			position += 1;
+		}
+		return position;
+	}
+
+	/**
+	 * @return True if the given byte is a whitespace character, as defined by the XML specification
+	 */
+	private static boolean isWhitespace(byte b){
+		return (b == ' ') || (b == '\n') || (b == '\r') || (b == '\t');
+	}
+
+	/**
+	 * @return True if the data contains the given pattern at the given position
+	 */
+	private static boolean startsWith(byte[] data, int position, int to, byte[] pattern){
+		if ((position + pattern.length) > to){
+			return false;
+		}
+		for (int i = 0; i < pattern.length; i++){
+			if (data[position+i] != pattern[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return Position of the first occurrence of the pattern in the data, starting at
+	 * the position "from" and ending before the position "to". If there is no such
+	 * occurrence, -1 is returned.
+	 */
+	private static int indexOf(byte[] data, byte[] pattern, int from, int to){
+		for (int i = from; (i + pattern.length) <= to; i++){
+			if (startsWith(data, i, to, pattern)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reusable view of the attributes of an element, backed by the raw bytes of the document.
+	 * The attribute values are decoded only when they are requested.
+	 */
+	static class ByteAttributes implements Attributes {
+
+		/**
+		 * Text encoding of the document
+		 */
+		private final Charset charset;
+
+		/**
+		 * Contains the document
+		 */
+		private byte[] data;
+
+		/**
+		 * Number of the attributes
+		 */
+		private int length = 0;
+
+		/**
+		 * Positions of the first bytes of the attribute names
+		 */
+		private int[] nameFrom = new int[8];
+
+		/**
+		 * Positions following the last bytes of the attribute names
+		 */
+		private int[] nameTo = new int[8];
+
+		/**
+		 * Positions of the first bytes of the attribute values
+		 */
+		private int[] valueFrom = new int[8];
+
+		/**
+		 * Positions following the last bytes of the attribute values
+		 */
+		private int[] valueTo = new int[8];
+
+		/**
+		 * @param charset Text encoding of the document
+		 */
+		ByteAttributes(Charset charset) {
+			this.charset = charset;
+		}
+
+		/**
+		 * Removes all of the attributes, so that the attributes of the next element can be added
+		 * @param data Contains the document
+		 */
+		void reset(byte[] data){
+			this.data = data;
+			this.length = 0;
+		}
+
+		/**
+		 * Adds an attribute with the given name and value
+		 */
+		void add(int nameFrom, int nameTo, int valueFrom, int valueTo){
+			if (length == this.nameFrom.length){
+				int newSize = length * 2;
+				this.nameFrom = Arrays.copyOf(this.nameFrom, newSize);
+				this.nameTo = Arrays.copyOf(this.nameTo, newSize);
+				this.valueFrom = Arrays.copyOf(this.valueFrom, newSize);
+				this.valueTo = Arrays.copyOf(this.valueTo, newSize);
+			}
+			this.nameFrom[length] = nameFrom;
+			this.nameTo[length] = nameTo;
+			this.valueFrom[length] = valueFrom;
+			this.valueTo[length] = valueTo;
+			length += 1;
+		}
+
+		/**
+		 * @return Index of the attribute with the given name, which is given as ASCII bytes.
+		 * If there is no such attribute, -1 is returned.
+		 */
+		int getIndex(byte[] name){
+			return getIndex(name, 0, name.length);
+		}
+
+		/**
+		 * @return Index of the attribute with the given name, which is given as ASCII bytes
+		 * located in the given range of the given array. If there is no such attribute, -1 is returned.
+		 */
+		int getIndex(byte[] name, int from, int to){
+			int nameLength = to - from;
+			outer:
+			for (int i = 0; i < length; i++){
+				if ((nameTo[i] - nameFrom[i]) != nameLength){
+					continue;
+				}
+				for (int j = 0; j < nameLength; j++){
+					if (data[nameFrom[i]+j] != name[from+j]){
+						continue outer;
+					}
+				}
+				return i;
+			}
+			return -1;
+		}
+
+		@Override
+		public int getLength() {
+			return length;
+		}
+
+		@Override
+		public String getURI(int index) {
+			return ((index >= 0) && (index < length)) ? "" : null;
+		}
+
+		@Override
+		public String getLocalName(int index) {
+			return ((index >= 0) && (index < length)) ? "" : null;
+		}
+
+		@Override
+		public String getQName(int index) {
+			if ((index < 0) || (index >= length)){
+				return null;
+			}
+			return new String(data, nameFrom[index], nameTo[index] - nameFrom[index], StandardCharsets.US_ASCII);
+		}
+
+		@Override
+		public String getType(int index) {
+			return ((index >= 0) && (index < length)) ? "CDATA" : null;
+		}
+
+		@Override
+		public String getValue(int index) {
+			if ((index < 0) || (index >= length)){
+				return null;
+			}
+			return new String(data, valueFrom[index], valueTo[index] - valueFrom[index], charset);
+		}
+
+		@Override
+		public int getIndex(String uri, String localName) {
+			return -1;
+		}
+
+		@Override
+		public int getIndex(String qName) {
+			int nameLength = qName.length();
+			outer:
+			for (int i = 0; i < length; i++){
+				if ((nameTo[i] - nameFrom[i]) != nameLength){
+					continue;
+				}
+				for (int j = 0; j < nameLength; j++){
+					if (data[nameFrom[i]+j] != qName.charAt(j)){
+						continue outer;
+					}
+				}
+				return i;
+			}
+			return -1;
+		}
+
+		@Override
+		public String getType(String uri, String localName) {
+			return null;
+		}
+
+		@Override
+		public String getType(String qName) {
+			return getType(getIndex(qName));
+		}
+
+		@Override
+		public String getValue(String uri, String localName) {
+			return null;
+		}
+
+		@Override
+		public String getValue(String qName) {
+			return getValue(getIndex(qName));
+		}
+	}
+
+}
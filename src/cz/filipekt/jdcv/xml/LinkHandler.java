@@ -1,12 +1,15 @@
 package cz.filipekt.jdcv.xml;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
 import org.xml.sax.helpers.DefaultHandler;
 
 import cz.filipekt.jdcv.exceptions.InvalidAttributeValueException;
@@ -18,7 +21,8 @@ import cz.filipekt.jdcv.network.MyNode;
 /**
  * SAX handler used to parse the XML file containing the network(map) description.
  * Collects the "link" elements. 
- * Can only be used after the "node" elements have been collected.
+ * Can only be used after the "node" elements have been collected, unless the 
+ * resolution of the node references is deferred to the end of the document.
  * 
  * @author Tomas Filipek <tom.filipek@seznam.cz>
  */
@@ -90,6 +94,20 @@ public class LinkHandler extends DefaultHandler {
 	 * Contains the {@link MyNode} representations of all the "node" elements.
 	 */
 	private final Map<String,MyNode> nodes;
+	
+	/**
+	 * If true, the link elements referring to nodes that have not been collected yet
+	 * are put aside and processed at the end of the document. This allows the links to be
+	 * collected in the same parsing pass as the nodes, see {@link MultiplexingHandler}.
+	 */
+	private final boolean deferUnresolved;
+	
+	/**
+	 * Attributes of the link elements that refer to a node which had not been 
+	 * collected at the time the link element was encountered. 
+	 * Used only if {@link LinkHandler#deferUnresolved} holds.
+	 */
+	private final List<Attributes> pendingLinks = new ArrayList<>();
 
 	/**
 	 * The link elements of the network XML source contain mandatory attributes "from" and "to",
@@ -100,7 +118,19 @@ public class LinkHandler extends DefaultHandler {
 	 * Maps the node id to the {@link MyNode} representation of the node.
 	 */
 	public LinkHandler(Map<String, MyNode> nodes) {
+		this(nodes, false);
+	}
+	
+	/**
+	 * @param nodes Maps the node id to the {@link MyNode} representation of the node. If the second
+	 * parameter holds, this collection may still be being filled during the parsing, as long as
+	 * it is complete when the end of the document is reached.
+	 * @param deferUnresolved If true, the link elements referring to nodes that are not (yet) 
+	 * present in the node collection are processed at the end of the document.
+	 */
+	public LinkHandler(Map<String, MyNode> nodes, boolean deferUnresolved) {
 		this.nodes = nodes;
+		this.deferUnresolved = deferUnresolved;
 	}
 
 	/**
@@ -110,8 +140,26 @@ public class LinkHandler extends DefaultHandler {
 	public void startElement(String uri, String localName, String qName,
 			Attributes attributes) throws SAXException {
 		if (qName.equals(linkName)){
+			if (deferUnresolved && !(nodes.containsKey(attributes.getValue(fromName)) && 
+					nodes.containsKey(attributes.getValue(toName)))){
+				pendingLinks.add(new AttributesImpl(attributes));
+			} else {
+				processLink(attributes);
+			}
+		}
+	}
+	
+	/**
+	 * Called by the {@link XMLReader} at the end of the document. Processes the link
+	 * elements whose node references could not be resolved when they were encountered.
+	 * @throws SAXException When a link refers to a node that does not exist at all.
+	 */
+	@Override
+	public void endDocument() throws SAXException {
+		for (Attributes attributes : pendingLinks){
 			processLink(attributes);
 		}
+		pendingLinks.clear();
 	}
 	
 	/**
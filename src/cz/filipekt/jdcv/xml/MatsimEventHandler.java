@@ -6,18 +6,18 @@ import java.util.Map;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
 
 import cz.filipekt.jdcv.events.ActStartOrEnd;
 import cz.filipekt.jdcv.events.ArrivalOrDeparture;
 import cz.filipekt.jdcv.events.EnteredOrLeftLink;
 import cz.filipekt.jdcv.events.EntersOrLeavesVehicle;
 import cz.filipekt.jdcv.events.MatsimEvent;
+import cz.filipekt.jdcv.events.MatsimEventSink;
 import cz.filipekt.jdcv.events.EventType;
 import cz.filipekt.jdcv.exceptions.InvalidAttributeValueException;
 import cz.filipekt.jdcv.exceptions.LinkNotFoundException;
-import cz.filipekt.jdcv.exceptions.TooManyEvents;
 import cz.filipekt.jdcv.network.MyLink;
+import cz.filipekt.jdcv.util.NumberParser;
 
 /**
  * SAX handler used to parse the XML file containing the events.
@@ -25,7 +25,7 @@ import cz.filipekt.jdcv.network.MyLink;
  * 
  * @author Tomas Filipek <tom.filipek@seznam.cz>
  */
-public class MatsimEventHandler extends DefaultHandler {
+public class MatsimEventHandler extends EventLogHandler {
 	
 	/**
 	 * Local name of the event element
@@ -38,17 +38,50 @@ public class MatsimEventHandler extends DefaultHandler {
 	private final String typeName = "type";
 	
 	/**
-	 * The parsed event elements from the source file
+	 * The parsed event elements from the source file. Used only if no
+	 * {@link MatsimEventHandler#sink} has been specified.
 	 */
 	private final List<MatsimEvent> events = new ArrayList<>();
 	
 	/**
-	 * @return The parsed event elements from the source file
+	 * @return The parsed event elements from the source file. If the events are 
+	 * given to a {@link MatsimEventSink}, the returned list is empty.
 	 * @see {@link MatsimEventHandler#events}
 	 */
 	public List<MatsimEvent> getEvents() {
 		return events;
 	}
+	
+	/**
+	 * If not null, the parsed events are given to this sink one by one, 
+	 * instead of being stored in {@link MatsimEventHandler#events}
+	 */
+	private final MatsimEventSink sink;
+	
+	/**
+	 * Number of the parsed events that have been stored or given to the {@link MatsimEventHandler#sink}
+	 */
+	private long emittedCount = 0;
+	
+	/**
+	 * @return Number of the parsed events that have been stored or given to the {@link MatsimEventHandler#sink}
+	 */
+	long getEmittedCount() {
+		return emittedCount;
+	}
+	
+	/**
+	 * Stores the parsed event or gives it to the {@link MatsimEventHandler#sink}
+	 * @param event The parsed event
+	 */
+	private void emit(MatsimEvent event){
+		emittedCount += 1;
+		if (sink == null){
+			events.add(event);
+		} else {
+			sink.add(event);
+		}
+	}
 
 	/**
 	 * Name of the time attribute of the event element
@@ -128,10 +161,13 @@ public class MatsimEventHandler extends DefaultHandler {
 	 * no such constraint is applied.
 	 * @param endAt Only the events ending before this time are taken into account. If null,
 	 * no such constraint is applied.
+	 * @param sink If not null, the parsed events are given to this sink one by one, instead of being
+	 * stored and made available through {@link MatsimEventHandler#getEvents()}
 	 */
 	public MatsimEventHandler(Map<String, MyLink> links, boolean onlyComponents, Double startAt, 
-			Double endAt) {		
+			Double endAt, MatsimEventSink sink) {		
 		this.links = links;
+		this.sink = sink;
 		this.onlyComponents = onlyComponents;
 		if (startAt == null){
 			startAtConstraint = false;
@@ -150,23 +186,28 @@ public class MatsimEventHandler extends DefaultHandler {
 	}
 	
 	/**
-	 * @param personID An ID of a person that appears in the MATSIM event log
-	 * @return True if the person is an injected JDEECo component, false if it is
-	 * a regular MATSIM person.
+	 * @param links Collection of parsed link elements, as extracted from a network source file.
+	 * @param onlyComponents If true, only the events of the people corresponding to the injected 
+	 * JDEECo components will be taken into account. If false, all of the events will be parsed.
+	 * @param startAt Only events starting from this time on are taken into account. If null,
+	 * no such constraint is applied.
+	 * @param endAt Only the events ending before this time are taken into account. If null,
+	 * no such constraint is applied.
 	 */
-	private boolean isInjectedComponent(String personID){
-		return personID.startsWith("V");
+	public MatsimEventHandler(Map<String, MyLink> links, boolean onlyComponents, Double startAt, 
+			Double endAt) {
+		this(links, onlyComponents, startAt, endAt, null);
 	}
 	
 	/**
-	 * Number of event elements encountered
-	 */
-	private long count = 0;
-	
-	/**
-	 * Maximal allowed number of event elements in the selection
+	 * @param personID An ID of a person that appears in the MATSIM event log
+	 * @return True if the person is an injected JDEECo component, false if it is
+	 * a regular MATSIM person. The same rule is applied to the events loaded from
+	 * an {@link cz.filipekt.jdcv.checkpoints.EventLogCache}.
 	 */
-	private final long countLimit = 600_000L;
+	public static boolean isInjectedComponent(String personID){
+		return personID.startsWith("V");
+	}
 
 	/**
 	 * Makes sure that when an event element is encountered, correct parsing is carried out.
@@ -175,62 +216,82 @@ public class MatsimEventHandler extends DefaultHandler {
 	@Override
 	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
 		if (qName.equals(eventName)){
-			count += 1;
-			if (count > countLimit){
-				String message = "The selection contains too many <event> elements. \n" + 
-						"Please specify a selection of the log file which contains at most " +
-						countLimit + " elements.";
-				throw new SAXException(new TooManyEvents(message));
-			}
-			String timeVal = attributes.getValue(timeName);
-			Utils.ensureNonNullAndNonEmptyAttr(eventName, timeName, timeVal);
-			double time;
-			try {
-				time = Double.parseDouble(timeVal);
-			} catch (NumberFormatException ex){
-				throw new SAXException(new InvalidAttributeValueException(
-						"Time attribute of the event element must be in the \"double precision\" format"));
-			}
-			if (startAtConstraint && (startAtLimit > time)){
-				return;
-			}
-			if (endAtConstraint && (endAtLimit < time)){
-				return;
+			countEvent();
+			double time = parseTime(attributes.getValue(timeName));
+			if (isWithinSelection(time)){
+				String typeVal = attributes.getValue(typeName);
+				processEvent(attributes, time, EventType.from(typeVal));
 			}
-			String typeVal = attributes.getValue(typeName);
-			EventType type = EventType.from(typeVal);
-			if (type != null){
-				String personVal = attributes.getValue(personName);
-				Utils.ensureNonNullAndNonEmptyAttr(eventName, personName, personVal);
-				if (!onlyComponents || isInjectedComponent(personVal)){
-					switch(type){
-						case PERSON_ENTERS_VEHICLE:
-							processEnteredOrLVehicle(attributes, time, personVal, true);						
-							break;
-						case PERSON_LEAVES_VEHICLE:
-							processEnteredOrLVehicle(attributes, time, personVal, false);
-							break;
-						case ENTERED_LINK:
-							processEorLLink(attributes, time, personVal, true);
-							break;
-						case LEFT_LINK:
-							processEorLLink(attributes, time, personVal, false);
-							break;
-						case ARRIVAL:
-							processArrivalDeparture(attributes, time, personVal, false);
-							break;
-						case DEPARTURE:
-							processArrivalDeparture(attributes, time, personVal, true);
-							break;
-						case ACT_START:
-							processActStartEnd(attributes, time, personVal, true);
-							break;
-						case ACT_END:
-							processActStartEnd(attributes, time, personVal, false);
-							break;
-						default:
-							return;
-					}
+		}
+	}
+	
+	/**
+	 * The Matsim events are not limited here, but by the {@link cz.filipekt.jdcv.checkpoints.CheckPointBuilder}
+	 * receiving them, so that the parsed and the cached events are counted the same way
+	 */
+	@Override
+	void countEvent() {
+	}
+	
+	@Override
+	double parseTime(String timeVal) throws SAXException {
+		Utils.ensureNonNullAndNonEmptyAttr(eventName, timeName, timeVal);
+		try {
+			return NumberParser.parseDouble(timeVal);
+		} catch (NumberFormatException ex){
+			throw new SAXException(new InvalidAttributeValueException(
+					"Time attribute of the event element must be in the \"double precision\" format"));
+		}
+	}
+	
+	@Override
+	boolean isWithinSelection(double time) {
+		if (startAtConstraint && (startAtLimit > time)){
+			return false;
+		}
+		if (endAtConstraint && (endAtLimit < time)){
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Processes an event element which is inside the selected time interval.
+	 * For each event type, the parsing work is done by specialized methods.
+	 */
+	@Override
+	void processEvent(Attributes attributes, double time, EventType type) throws SAXException {
+		if (type != null){
+			String personVal = attributes.getValue(personName);
+			Utils.ensureNonNullAndNonEmptyAttr(eventName, personName, personVal);
+			if (!onlyComponents || isInjectedComponent(personVal)){
+				switch(type){
+					case PERSON_ENTERS_VEHICLE:
+						processEnteredOrLVehicle(attributes, time, personVal, true);						
+						break;
+					case PERSON_LEAVES_VEHICLE:
+						processEnteredOrLVehicle(attributes, time, personVal, false);
+						break;
+					case ENTERED_LINK:
+						processEorLLink(attributes, time, personVal, true);
+						break;
+					case LEFT_LINK:
+						processEorLLink(attributes, time, personVal, false);
+						break;
+					case ARRIVAL:
+						processArrivalDeparture(attributes, time, personVal, false);
+						break;
+					case DEPARTURE:
+						processArrivalDeparture(attributes, time, personVal, true);
+						break;
+					case ACT_START:
+						processActStartEnd(attributes, time, personVal, true);
+						break;
+					case ACT_END:
+						processActStartEnd(attributes, time, personVal, false);
+						break;
+					default:
+						return;
 				}
 			}
 		}
@@ -250,7 +311,7 @@ public class MatsimEventHandler extends DefaultHandler {
 		String vehicleVal = attributes.getValue(vehicleName);
 		Utils.ensureNonNullAndNonEmptyAttr("\"entered or left vehicle\" event", vehicleName, vehicleVal);
 		EntersOrLeavesVehicle elv = new EntersOrLeavesVehicle(entered, time, personVal, vehicleVal);
-		events.add(elv);
+		emit(elv);
 	}
 	
 	/**
@@ -272,7 +333,7 @@ public class MatsimEventHandler extends DefaultHandler {
 			throw new SAXException(new LinkNotFoundException());
 		}			
 		EnteredOrLeftLink ell = new EnteredOrLeftLink(entered, time, personVal, link, vehicleVal);
-		events.add(ell);
+		emit(ell);
 	}
 	
 	/**
@@ -296,7 +357,7 @@ public class MatsimEventHandler extends DefaultHandler {
 			throw new SAXException(new LinkNotFoundException());
 		}
 		ArrivalOrDeparture aod = new ArrivalOrDeparture(departure, time, personVal, link, legModeVal);
-		events.add(aod);
+		emit(aod);
 	}
 	
 	/**
@@ -318,7 +379,7 @@ public class MatsimEventHandler extends DefaultHandler {
 			throw new SAXException(new LinkNotFoundException());
 		}
 		ActStartOrEnd ase = new ActStartOrEnd(start, time, personVal, link, facilityVal, actTypeVal);
-		events.add(ase);
+		emit(ase);
 	}
 	
 }
@@ -0,0 +1,131 @@
+package cz.filipekt.jdcv.xml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * SAX handler that forwards every event of a single parsing pass to a list of
+ * other handlers. This makes it possible to collect e.g. the nodes, links, corridors
+ * and background of the network definition while reading and tokenizing the source
+ * file only once. The handlers are always notified in the order in which they have
+ * been given to the constructor, which also holds for {@link MultiplexingHandler#endDocument()}.
+ * Handlers that depend on data collected by the preceding handlers (such as
+ * {@link LinkHandler} depending on {@link NodeHandler}) should therefore be placed
+ * after them and should resolve any forward references in their endDocument method.
+ */
+public class MultiplexingHandler extends DefaultHandler {
+
+	/**
+	 * The handlers to which the SAX events are forwarded
+	 */
+	private final List<ContentHandler> handlers;
+
+	/**
+	 * @param handlers The handlers to which the SAX events will be forwarded, in the given order
+	 * @throws IllegalArgumentException When no handlers are given or some of them is null
+	 */
+	public MultiplexingHandler(ContentHandler... handlers) throws IllegalArgumentException {
+		if ((handlers == null) || (handlers.length == 0)){
+			throw new IllegalArgumentException("At least one handler must be specified.");
+		}
+		for (ContentHandler handler : handlers){
+			if (handler == null){
+				throw new IllegalArgumentException("The multiplexed handlers must be non-null.");
+			}
+		}
+		this.handlers = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(handlers)));
+	}
+
+	@Override
+	public void setDocumentLocator(Locator locator) {
+		for (ContentHandler handler : handlers){
+			handler.setDocumentLocator(locator);
+		}
+	}
+
+	@Override
+	public void startDocument() throws SAXException {
+		for (ContentHandler handler : handlers){
+			handler.startDocument();
+		}
+	}
+
+	/**
+	 * Called by the {@link XMLReader} when the whole document has been read.
+	 * The handlers are notified in the order given in the constructor, so that each of
+	 * them can resolve its forward references using the complete data of the preceding ones.
+	 */
+	@Override
+	public void endDocument() throws SAXException {
+		for (ContentHandler handler : handlers){
+			handler.endDocument();
+		}
+	}
+
+	@Override
+	public void startPrefixMapping(String prefix, String uri) throws SAXException {
+		for (ContentHandler handler : handlers){
+			handler.startPrefixMapping(prefix, uri);
+		}
+	}
+
+	@Override
+	public void endPrefixMapping(String prefix) throws SAXException {
+		for (ContentHandler handler : handlers){
+			handler.endPrefixMapping(prefix);
+		}
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName,
+			Attributes attributes) throws SAXException {
+		for (ContentHandler handler : handlers){
+			handler.startElement(uri, localName, qName, attributes);
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) throws SAXException {
+		for (ContentHandler handler : handlers){
+			handler.endElement(uri, localName, qName);
+		}
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) throws SAXException {
+		for (ContentHandler handler : handlers){
+			handler.characters(ch, start, length);
+		}
+	}
+
+	@Override
+	public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+		for (ContentHandler handler : handlers){
+			handler.ignorableWhitespace(ch, start, length);
+		}
+	}
+
+	@Override
+	public void processingInstruction(String target, String data) throws SAXException {
+		for (ContentHandler handler : handlers){
+			handler.processingInstruction(target, data);
+		}
+	}
+
+	@Override
+	public void skippedEntity(String name) throws SAXException {
+		for (ContentHandler handler : handlers){
+			handler.skippedEntity(name);
+		}
+	}
+
+}
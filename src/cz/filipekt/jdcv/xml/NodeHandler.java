@@ -10,6 +10,7 @@ import org.xml.sax.helpers.DefaultHandler;
 
 import cz.filipekt.jdcv.exceptions.InvalidAttributeValueException;
 import cz.filipekt.jdcv.network.MyNode;
+import cz.filipekt.jdcv.util.NumberParser;
 
 /**
  * SAX handler used to parse the XML file containing the network(map) description.
@@ -70,8 +71,8 @@ public class NodeHandler extends DefaultHandler {
 			String y = attributes.getValue(yName);
 			Utils.ensureNonNullAndNonEmptyAttr(nodeName, yName, y);
 			try {
-				double xd = Double.parseDouble(x);
-				double yd = Double.parseDouble(y);
+				double xd = NumberParser.parseDouble(x);
+				double yd = NumberParser.parseDouble(y);
 				MyNode node = new MyNode(id, xd, yd);
 				nodes.put(node.getId(), node);
 			} catch (NumberFormatException ex){
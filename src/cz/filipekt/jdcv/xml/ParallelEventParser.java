@@ -0,0 +1,486 @@
+package cz.filipekt.jdcv.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+import cz.filipekt.jdcv.events.MatsimEvent;
+import cz.filipekt.jdcv.events.MatsimEventSink;
+import cz.filipekt.jdcv.network.MyLink;
+
+/**
+ * Parses the MATSim event log using all of the available processors. The event log is split
+ * into chunks at the event element boundaries (i.e. at the occurrences of "&lt;event ").
+ * Each chunk is wrapped into the original beginning of the document (XML declaration and the
+ * root start tag) and its original end (the root end tag), so that it becomes a well formed
+ * XML document on its own. The chunks are then parsed on a fork-join pool, each of them by its
+ * own {@link MatsimEventHandler}, and the parsed events are merged in the file order. The result
+ * is therefore identical to {@link MatsimEventHandler#getEvents()} obtained by parsing the whole
+ * document sequentially. Alternatively, the events can be given to a {@link MatsimEventSink} as
+ * soon as a round of the chunks has been parsed. Unless disabled, the chunks are parsed by the {@link EventLogTokenizer},
+ * which does not need the chunks to be wrapped. If a chunk can not be handled by the tokenizer,
+ * it is wrapped and parsed by the SAX engine. <br>
+ * The document is parsed sequentially if it is too small to be split, if its character encoding
+ * is not compatible with ASCII, or if it contains a document type declaration. If a chunk
+ * contains a syntax error, the whole document is parsed sequentially again, so that the error
+ * is reported with the correct location.
+ */
+public class ParallelEventParser {
+
+	/**
+	 * Collection of parsed link elements, as extracted from a network source file.
+	 */
+	private final Map<String,MyLink> links;
+
+	/**
+	 * If true, only the events of the people corresponding to the injected JDEECo components will be
+	 * taken into account. If false, all of the events will be parsed.
+	 */
+	private final boolean onlyComponents;
+
+	/**
+	 * Only events starting from this time on are taken into account. If null,
+	 * no such constraint is applied.
+	 */
+	private final Double startAt;
+
+	/**
+	 * Only the events ending before this time are taken into account. If null,
+	 * no such constraint is applied.
+	 */
+	private final Double endAt;
+
+	/**
+	 * Text encoding of the event log
+	 */
+	private final Charset charset;
+
+	/**
+	 * Number of the threads parsing the chunks
+	 */
+	private final int parallelism;
+
+	/**
+	 * @param links Collection of parsed link elements, as extracted from a network source file.
+	 * @param onlyComponents If true, only the events of the people corresponding to the injected
+	 * JDEECo components will be taken into account. If false, all of the events will be parsed.
+	 * @param startAt Only events starting from this time on are taken into account. If null,
+	 * no such constraint is applied.
+	 * @param endAt Only the events ending before this time are taken into account. If null,
+	 * no such constraint is applied.
+	 * @param charset Text encoding of the event log
+	 * @param parallelism Number of the threads parsing the chunks
+	 * @throws IllegalArgumentException When the parallelism is not positive
+	 */
+	public ParallelEventParser(Map<String, MyLink> links, boolean onlyComponents, Double startAt,
+			Double endAt, Charset charset, int parallelism) throws IllegalArgumentException {
+		if (parallelism < 1){
+			throw new IllegalArgumentException("The parallelism must be positive.");
+		}
+		this.links = links;
+		this.onlyComponents = onlyComponents;
+		this.startAt = startAt;
+		this.endAt = endAt;
+		this.charset = charset;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @param links Collection of parsed link elements, as extracted from a network source file.
+	 * @param onlyComponents If true, only the events of the people corresponding to the injected
+	 * JDEECo components will be taken into account. If false, all of the events will be parsed.
+	 * @param startAt Only events starting from this time on are taken into account. If null,
+	 * no such constraint is applied.
+	 * @param endAt Only the events ending before this time are taken into account. If null,
+	 * no such constraint is applied.
+	 * @param charset Text encoding of the event log
+	 */
+	public ParallelEventParser(Map<String, MyLink> links, boolean onlyComponents, Double startAt,
+			Double endAt, Charset charset) {
+		this(links, onlyComponents, startAt, endAt, charset, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * First few characters of an event element
+	 */
+	private static final byte[] eventElementStart = "<event ".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * First few characters of the end tag of the root element
+	 */
+	private static final byte[] rootElementEnd = "</events".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * First few characters of a document type declaration
+	 */
+	private static final byte[] doctypeStart = "<!DOCTYPE".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * If true, the document and its chunks are parsed by the {@link EventLogTokenizer}
+	 * whenever possible. Otherwise, they are always parsed by the SAX engine.
+	 */
+	private boolean useTokenizer = true;
+
+	/**
+	 * @param useTokenizer If true, the document and its chunks are parsed by the {@link EventLogTokenizer}
+	 * whenever possible. Otherwise, they are always parsed by the SAX engine.
+	 */
+	public void setUseTokenizer(boolean useTokenizer) {
+		this.useTokenizer = useTokenizer;
+	}
+
+	/**
+	 * Minimal size of a chunk, in bytes. Smaller chunks would not pay off the
+	 * cost of the additional parser instances.
+	 */
+	private final int minChunkSize = 1024 * 1024;
+
+	/**
+	 * Each of the threads is given approximately this many chunks,
+	 * so that the work is evenly distributed among the threads.
+	 */
+	private final int chunksPerThread = 4;
+
+	/**
+	 * Parses the given MATSim event log document.
+	 * @param document The whole MATSim event log document, encoded in {@link ParallelEventParser#charset}
+	 * @return The parsed event elements, in the file order
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SAXException When there is any problem when parsing the XML document.
+	 * It is generally used as a wrapper for other kinds of exceptions.
+	 * @throws IOException Should never happen, the document is held in the memory
+	 */
+	public List<MatsimEvent> parse(byte[] document) throws ParserConfigurationException, SAXException, IOException {
+		final List<MatsimEvent> events = new ArrayList<>();
+		parse(document, new MatsimEventSink() {
+			
+			@Override
+			public void add(MatsimEvent event) {
+				events.add(event);
+			}
+		});
+		return events;
+	}
+
+	/**
+	 * Parses the given MATSim event log document and gives the parsed events to the given sink,
+	 * in the file order. The chunks are parsed in rounds, each round consisting of as many chunks
+	 * as there are threads. After each round, the events parsed in the round are given to the sink
+	 * and thrown away, so that the events of the whole document are never held in the memory at once.
+	 * @param document The whole MATSim event log document, encoded in {@link ParallelEventParser#charset}
+	 * @param sink Receives the parsed events, in the file order
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SAXException When there is any problem when parsing the XML document.
+	 * It is generally used as a wrapper for other kinds of exceptions.
+	 * @throws IOException Should never happen, the document is held in the memory
+	 */
+	public void parse(byte[] document, MatsimEventSink sink) throws ParserConfigurationException, SAXException, IOException {
+		int[] boundaries = findChunkBoundaries(document);
+		if ((boundaries == null) || (boundaries.length <= 2)){
+			parseSequentially(document, sink);
+			return;
+		}
+		byte[] head = Arrays.copyOfRange(document, 0, boundaries[0]);
+		byte[] tail = Arrays.copyOfRange(document, boundaries[boundaries.length-1], document.length);
+		boolean tokenizeChunks = useTokenizer && isFrameTokenizable(document, boundaries);
+		int chunksCount = boundaries.length - 1;
+		long emittedCount = 0;
+		MatsimEventHandler[] handlers = new MatsimEventHandler[chunksCount];
+		Exception[] failures = new Exception[chunksCount];
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for (int roundStart = 0; roundStart < chunksCount; roundStart += parallelism){
+				int roundEnd = Math.min(chunksCount, roundStart + parallelism);
+				pool.invoke(new ChunksParsing(document, head, tail, boundaries, roundStart, roundEnd, 
+						tokenizeChunks, handlers, failures));
+				for (int i = roundStart; i < roundEnd; i++){
+					Exception failure = failures[i];
+					if (failure == null){
+						continue;
+					}
+					if (failure instanceof SAXException){
+						SAXException ex = (SAXException)failure;
+						if (ex.getException() == null){
+							parseSequentially(document, new SkippingSink(sink, emittedCount));
+							return;
+						}
+						throw ex;
+					} else if (failure instanceof ParserConfigurationException){
+						throw (ParserConfigurationException)failure;
+					} else if (failure instanceof IOException){
+						throw (IOException)failure;
+					} else {
+						throw (RuntimeException)failure;
+					}
+				}
+				for (int i = roundStart; i < roundEnd; i++){
+					for (MatsimEvent event : handlers[i].getEvents()){
+						sink.add(event);
+					}
+					emittedCount += handlers[i].getEmittedCount();
+					handlers[i] = null;
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Parses the whole given document by a single {@link MatsimEventHandler}
+	 * @param document The whole MATSim event log document
+	 * @param sink Receives the parsed events, in the file order
+	 * @throws ParserConfigurationException Should never happen
+	 * @throws SAXException When there is any problem when parsing the XML document.
+	 * @throws IOException Should never happen, the document is held in the memory
+	 */
+	private void parseSequentially(byte[] document, MatsimEventSink sink)
+			throws ParserConfigurationException, SAXException, IOException {
+		if (useTokenizer){
+			EventLogTokenizer.parseMatsimEvents(document, charset, links, onlyComponents, startAt, endAt, sink);
+		} else {
+			MatsimEventHandler handler = new MatsimEventHandler(links, onlyComponents, startAt, endAt, sink);
+			XMLextractor.run(new ByteArrayInputStream(document), charset.name(), handler);
+		}
+	}
+
+	/**
+	 * Checks whether the beginning of the document (preceding the first chunk) and the end of
+	 * the document (following the last chunk) can be handled by the {@link EventLogTokenizer}
+	 * @param document The whole MATSim event log document
+	 * @param boundaries Positions of the chunk boundaries in the document
+	 * @return True if the beginning and the end of the document can be handled by the tokenizer
+	 */
+	private boolean isFrameTokenizable(byte[] document, int[] boundaries){
+		int first = boundaries[0];
+		int last = boundaries[boundaries.length-1];
+		EventLogTokenizer tokenizer = new EventLogTokenizer(charset);
+		try {
+			int position = tokenizer.parseProlog(document, 0, first);
+			tokenizer.parseContent(document, position, first, null, false);
+			tokenizer.parseEpilog(document, last, document.length);
+			return true;
+		} catch (EventLogTokenizer.UnsupportedSyntaxException | SAXException ex){
+			return false;
+		}
+	}
+
+	/**
+	 * Splits the given document into chunks. The first boundary is the position of the first
+	 * event element, the last boundary is the position of the root end tag, each of the
+	 * boundaries in between is the position of an event element.
+	 * @param document The whole MATSim event log document
+	 * @return Positions of the chunk boundaries, in the increasing order. Null if the document
+	 * can not be split safely.
+	 */
+	private int[] findChunkBoundaries(byte[] document){
+		if (!Utils.isAsciiCompatible(charset)){
+			return null;
+		}
+		int first = indexOf(document, eventElementStart, 0, document.length);
+		if (first == -1){
+			return null;
+		}
+		if (indexOf(document, doctypeStart, 0, first) != -1){
+			return null;
+		}
+		int last = lastIndexOf(document, rootElementEnd, first, document.length);
+		if (last == -1){
+			return null;
+		}
+		int chunkSize = Math.max(minChunkSize, (last - first) / (parallelism * chunksPerThread));
+		List<Integer> boundaries = new ArrayList<>();
+		boundaries.add(first);
+		int position = first + chunkSize;
+		while (position < last){
+			int next = indexOf(document, eventElementStart, position, last);
+			if (next == -1){
+				break;
+			}
+			boundaries.add(next);
+			position = next + chunkSize;
+		}
+		boundaries.add(last);
+		int[] res = new int[boundaries.size()];
+		for (int i = 0; i < res.length; i++){
+			res[i] = boundaries.get(i);
+		}
+		return res;
+	}
+
+	/**
+	 * @return Position of the first occurrence of the pattern in the data, starting at
+	 * the position "from" and ending before the position "to". If there is no such
+	 * occurrence, -1 is returned.
+	 */
+	private static int indexOf(byte[] data, byte[] pattern, int from, int to){
+		int limit = to - pattern.length;
+		outer:
+		for (int i = from; i <= limit; i++){
+			for (int j = 0; j < pattern.length; j++){
+				if (data[i+j] != pattern[j]){
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return Position of the last occurrence of the pattern in the data, starting at
+	 * the position "from" and ending before the position "to". If there is no such
+	 * occurrence, -1 is returned.
+	 */
+	private static int lastIndexOf(byte[] data, byte[] pattern, int from, int to){
+		outer:
+		for (int i = to - pattern.length; i >= from; i--){
+			for (int j = 0; j < pattern.length; j++){
+				if (data[i+j] != pattern[j]){
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Parses a range of chunks of the event log. The range is split into halves until
+	 * it contains a single chunk, which is then parsed by its own {@link MatsimEventHandler}.
+	 */
+	@SuppressWarnings("serial")
+	private class ChunksParsing extends RecursiveAction {
+
+		/**
+		 * The whole MATSim event log document
+		 */
+		private final byte[] document;
+
+		/**
+		 * Beginning of the document, preceding the first event element
+		 */
+		private final byte[] head;
+
+		/**
+		 * End of the document, starting with the root end tag
+		 */
+		private final byte[] tail;
+
+		/**
+		 * Positions of the chunk boundaries in the document
+		 */
+		private final int[] boundaries;
+
+		/**
+		 * Index of the first chunk in the range
+		 */
+		private final int fromChunk;
+
+		/**
+		 * Index of the chunk following the last chunk in the range
+		 */
+		private final int toChunk;
+
+		/**
+		 * If true, the chunks are parsed by the {@link EventLogTokenizer} whenever possible
+		 */
+		private final boolean tokenize;
+
+		/**
+		 * The handlers that have parsed the chunks, indexed by the chunk indices
+		 */
+		private final MatsimEventHandler[] handlers;
+
+		/**
+		 * The exceptions thrown when parsing the chunks, indexed by the chunk indices
+		 */
+		private final Exception[] failures;
+
+		/**
+		 * @param document The whole MATSim event log document
+		 * @param head Beginning of the document, preceding the first event element
+		 * @param tail End of the document, starting with the root end tag
+		 * @param boundaries Positions of the chunk boundaries in the document
+		 * @param fromChunk Index of the first chunk in the range
+		 * @param toChunk Index of the chunk following the last chunk in the range
+		 * @param tokenize If true, the chunks are parsed by the {@link EventLogTokenizer} whenever possible
+		 * @param handlers The handlers that have parsed the chunks, indexed by the chunk indices
+		 * @param failures The exceptions thrown when parsing the chunks, indexed by the chunk indices
+		 */
+		public ChunksParsing(byte[] document, byte[] head, byte[] tail, int[] boundaries, int fromChunk,
+				int toChunk, boolean tokenize, MatsimEventHandler[] handlers, Exception[] failures) {
+			this.document = document;
+			this.head = head;
+			this.tail = tail;
+			this.boundaries = boundaries;
+			this.fromChunk = fromChunk;
+			this.toChunk = toChunk;
+			this.tokenize = tokenize;
+			this.handlers = handlers;
+			this.failures = failures;
+		}
+
+		@Override
+		protected void compute() {
+			if ((toChunk - fromChunk) > 1){
+				int middle = (fromChunk + toChunk) / 2;
+				invokeAll(new ChunksParsing(document, head, tail, boundaries, fromChunk, middle, 
+								tokenize, handlers, failures),
+						new ChunksParsing(document, head, tail, boundaries, middle, toChunk, 
+								tokenize, handlers, failures));
+			} else {
+				parseChunk(fromChunk);
+			}
+		}
+
+		/**
+		 * Parses the chunk with the given index. The resulting handler or the thrown
+		 * exception is stored in {@link ChunksParsing#handlers} or {@link ChunksParsing#failures}.
+		 * @param index Index of the chunk
+		 */
+		private void parseChunk(int index){
+			int from = boundaries[index];
+			int to = boundaries[index+1];
+			if (tokenize){
+				MatsimEventHandler handler = new MatsimEventHandler(links, onlyComponents, startAt, endAt);
+				try {
+					new EventLogTokenizer(charset).parseContent(document, from, to, handler, false);
+					handlers[index] = handler;
+					return;
+				} catch (EventLogTokenizer.UnsupportedSyntaxException ex){
+					// parsed by the SAX engine below, using a new handler
+				} catch (SAXException | RuntimeException ex){
+					failures[index] = ex;
+					return;
+				}
+			}
+			Vector<InputStream> parts = new Vector<>(3);
+			parts.add(new ByteArrayInputStream(head));
+			parts.add(new ByteArrayInputStream(document, from, to - from));
+			parts.add(new ByteArrayInputStream(tail));
+			MatsimEventHandler handler = new MatsimEventHandler(links, onlyComponents, startAt, endAt);
+			try {
+				XMLextractor.run(new SequenceInputStream(parts.elements()), charset.name(), handler);
+				handlers[index] = handler;
+			} catch (ParserConfigurationException | SAXException | IOException | RuntimeException ex){
+				failures[index] = ex;
+			}
+		}
+	}
+
+}
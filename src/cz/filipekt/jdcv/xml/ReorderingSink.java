@@ -0,0 +1,108 @@
+package cz.filipekt.jdcv.xml;
+
+import java.util.PriorityQueue;
+
+import cz.filipekt.jdcv.events.MatsimEvent;
+import cz.filipekt.jdcv.events.MatsimEventSink;
+
+/**
+ * Forwards the events to another {@link MatsimEventSink} sorted by their times, given that they
+ * arrive in an order which is only approximately sorted, with a known maximum disorder (see
+ * {@link cz.filipekt.jdcv.util.BigFilesSearch#getMaxDisorder()}). An event is held back in a
+ * small buffer until an event later by more than the maximum disorder arrives, because no event
+ * arriving after that can precede it. The events with equal times are forwarded in the order
+ * of their arrival. When all of the events have been given, {@link ReorderingSink#flush()}
+ * has to be called to forward the events remaining in the buffer.
+ */
+public class ReorderingSink implements MatsimEventSink {
+
+	/**
+	 * An event held in the {@link ReorderingSink#buffer}
+	 */
+	private static class Entry implements Comparable<Entry> {
+
+		/**
+		 * The held event
+		 */
+		private final MatsimEvent event;
+
+		/**
+		 * Order of the arrival of the event
+		 */
+		private final long sequence;
+
+		/**
+		 * @param event The held event
+		 * @param sequence Order of the arrival of the event
+		 */
+		Entry(MatsimEvent event, long sequence) {
+			this.event = event;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int res = Double.compare(event.getTime(), other.event.getTime());
+			if (res == 0){
+				res = Long.compare(sequence, other.sequence);
+			}
+			return res;
+		}
+	}
+
+	/**
+	 * The events are forwarded to this sink
+	 */
+	private final MatsimEventSink target;
+
+	/**
+	 * Maximum amount of time by which an event can precede some of the events arriving before it
+	 */
+	private final double maxDisorder;
+
+	/**
+	 * The events held back, ordered by their times
+	 */
+	private final PriorityQueue<Entry> buffer = new PriorityQueue<>();
+
+	/**
+	 * The latest time of the events given so far
+	 */
+	private double maxTime = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Number of the events given so far
+	 */
+	private long arrived = 0;
+
+	/**
+	 * @param target The events are forwarded to this sink
+	 * @param maxDisorder Maximum amount of time by which an event can precede some of
+	 * the events arriving before it
+	 */
+	public ReorderingSink(MatsimEventSink target, double maxDisorder) {
+		this.target = target;
+		this.maxDisorder = maxDisorder;
+	}
+
+	@Override
+	public void add(MatsimEvent event) {
+		buffer.add(new Entry(event, arrived));
+		arrived += 1;
+		maxTime = Math.max(maxTime, event.getTime());
+		double safeTime = maxTime - maxDisorder;
+		while (!buffer.isEmpty() && (buffer.peek().event.getTime() <= safeTime)){
+			target.add(buffer.poll().event);
+		}
+	}
+
+	/**
+	 * Forwards all of the events remaining in the buffer. Called when all of the events have been given.
+	 */
+	public void flush(){
+		while (!buffer.isEmpty()){
+			target.add(buffer.poll().event);
+		}
+	}
+
+}
@@ -0,0 +1,249 @@
+package cz.filipekt.jdcv.xml;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import cz.filipekt.jdcv.events.MatsimEvent;
+import cz.filipekt.jdcv.events.MatsimEventSink;
+
+/**
+ * Merges the events of an event log written in several shards (e.g. one per partition of
+ * a distributed simulation) into a single sequence sorted by time, which is given to another
+ * {@link MatsimEventSink}. Each shard is parsed by its own producer thread into the sink returned
+ * by {@link ShardMerger#getShardSink(int)}, in the order of time, while the consumer thread runs
+ * {@link ShardMerger#merge()}. The events are passed between the threads in batches, through
+ * a bounded queue per shard, and they are merged by a k-way merge using a heap of the shards
+ * ordered by their next events. Since the merge needs the next event of every shard, all of the
+ * producers have to run at the same time.
+ */
+public class ShardMerger {
+
+	/**
+	 * The events are passed from the producers in batches of this size
+	 */
+	private static final int batchSize = 1024;
+
+	/**
+	 * Maximum number of the batches waiting in the queue of a shard
+	 */
+	private static final int queuedBatches = 16;
+
+	/**
+	 * How long the threads wait for each other before checking whether the merge has been aborted,
+	 * in milliseconds
+	 */
+	private static final long pollTimeout = 100;
+
+	/**
+	 * The merged events are given to this sink
+	 */
+	private final MatsimEventSink target;
+
+	/**
+	 * The batches of events passed from the producers of the individual shards.
+	 * An empty batch marks the end of a shard.
+	 */
+	private final List<BlockingQueue<List<MatsimEvent>>> queues = new ArrayList<>();
+
+	/**
+	 * The batches being filled by the producers of the individual shards
+	 */
+	private final List<List<MatsimEvent>> batches = new ArrayList<>();
+
+	/**
+	 * True if the merge has been aborted, e.g. because some of the shards could not be parsed
+	 */
+	private volatile boolean aborted = false;
+
+	/**
+	 * @param target The merged events are given to this sink
+	 * @param shardCount Number of the merged shards
+	 */
+	public ShardMerger(MatsimEventSink target, int shardCount) {
+		this.target = target;
+		for (int i = 0; i < shardCount; i++){
+			queues.add(new ArrayBlockingQueue<List<MatsimEvent>>(queuedBatches));
+			batches.add(new ArrayList<MatsimEvent>(batchSize));
+		}
+	}
+
+	/**
+	 * Returns the sink receiving the events of the given shard, sorted by time. It is to be used
+	 * by a single producer thread, which calls {@link ShardMerger#finish(int)} when it is done.
+	 * If the merge has been aborted, the sink throws a {@link CancellationException}.
+	 * @param shard Index of the shard
+	 * @return The sink receiving the events of the shard
+	 */
+	public MatsimEventSink getShardSink(final int shard){
+		return new MatsimEventSink() {
+
+			@Override
+			public void add(MatsimEvent event) {
+				List<MatsimEvent> batch = batches.get(shard);
+				batch.add(event);
+				if (batch.size() == batchSize){
+					put(shard, batch);
+					batches.set(shard, new ArrayList<MatsimEvent>(batchSize));
+				}
+			}
+		};
+	}
+
+	/**
+	 * Marks the end of the given shard. Has to be called by the producer of each shard,
+	 * even if the shard could not be parsed.
+	 * @param shard Index of the shard
+	 */
+	public void finish(int shard){
+		if (aborted){
+			return;
+		}
+		List<MatsimEvent> batch = batches.get(shard);
+		if (!batch.isEmpty()){
+			put(shard, batch);
+			batches.set(shard, new ArrayList<MatsimEvent>(0));
+		}
+		put(shard, new ArrayList<MatsimEvent>(0));
+	}
+
+	/**
+	 * Aborts the merge, e.g. because some of the shards could not be parsed. The producers
+	 * and the consumer stop as soon as they notice it.
+	 */
+	public void abort(){
+		aborted = true;
+	}
+
+	/**
+	 * Passes a batch of events to the consumer, waiting while the queue of the shard is full
+	 * @param shard Index of the shard
+	 * @param batch The batch of events
+	 * @throws CancellationException If the merge has been aborted
+	 */
+	private void put(int shard, List<MatsimEvent> batch){
+		try {
+			while (!queues.get(shard).offer(batch, pollTimeout, TimeUnit.MILLISECONDS)){
+				if (aborted){
+					throw new CancellationException();
+				}
+			}
+		} catch (InterruptedException ex){
+			Thread.currentThread().interrupt();
+			throw new CancellationException();
+		}
+	}
+
+	/**
+	 * Takes the next batch of events of the given shard, waiting until it is available
+	 * @param shard Index of the shard
+	 * @return The batch of events, empty if the end of the shard has been reached
+	 * @throws CancellationException If the merge has been aborted
+	 */
+	private List<MatsimEvent> take(int shard){
+		try {
+			List<MatsimEvent> batch;
+			while ((batch = queues.get(shard).poll(pollTimeout, TimeUnit.MILLISECONDS)) == null){
+				if (aborted){
+					throw new CancellationException();
+				}
+			}
+			return batch;
+		} catch (InterruptedException ex){
+			Thread.currentThread().interrupt();
+			throw new CancellationException();
+		}
+	}
+
+	/**
+	 * Position in the events of a shard, ordered by the time of the next event of the shard.
+	 * The shards with equal times are ordered by their indices.
+	 */
+	private class Cursor implements Comparable<Cursor> {
+
+		/**
+		 * Index of the shard
+		 */
+		private final int shard;
+
+		/**
+		 * The batch containing the next event of the shard
+		 */
+		private List<MatsimEvent> batch;
+
+		/**
+		 * Position of the next event of the shard in the {@link Cursor#batch}
+		 */
+		private int position = 0;
+
+		/**
+		 * @param shard Index of the shard
+		 */
+		Cursor(int shard) {
+			this.shard = shard;
+			this.batch = take(shard);
+		}
+
+		/**
+		 * @return True iff the shard has another event
+		 */
+		boolean hasNext(){
+			return position < batch.size();
+		}
+
+		/**
+		 * @return The next event of the shard
+		 */
+		MatsimEvent peek(){
+			return batch.get(position);
+		}
+
+		/**
+		 * Moves to the following event of the shard
+		 */
+		void advance(){
+			position += 1;
+			if (position == batch.size()){
+				batch = take(shard);
+				position = 0;
+			}
+		}
+
+		@Override
+		public int compareTo(Cursor other) {
+			int res = Double.compare(peek().getTime(), other.peek().getTime());
+			if (res == 0){
+				res = Integer.compare(shard, other.shard);
+			}
+			return res;
+		}
+	}
+
+	/**
+	 * Gives the events of all the shards to the target sink, sorted by time, as they are
+	 * passed from the producers. Returns when the end of each shard has been reached.
+	 * @throws CancellationException If the merge has been aborted
+	 */
+	public void merge(){
+		PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, queues.size()));
+		for (int shard = 0; shard < queues.size(); shard++){
+			Cursor cursor = new Cursor(shard);
+			if (cursor.hasNext()){
+				heap.add(cursor);
+			}
+		}
+		while (!heap.isEmpty()){
+			Cursor cursor = heap.poll();
+			target.add(cursor.peek());
+			cursor.advance();
+			if (cursor.hasNext()){
+				heap.add(cursor);
+			}
+		}
+	}
+
+}
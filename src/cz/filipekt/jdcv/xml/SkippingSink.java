@@ -0,0 +1,42 @@
+package cz.filipekt.jdcv.xml;
+
+import cz.filipekt.jdcv.events.MatsimEvent;
+import cz.filipekt.jdcv.events.MatsimEventSink;
+
+/**
+ * Forwards the events to another {@link MatsimEventSink}, except for a given number of the
+ * first events, which are thrown away. Used when the parsing of an event log is restarted 
+ * from its beginning (e.g. by the SAX engine, after the {@link EventLogTokenizer} has failed),
+ * and the target sink has already received some of the events.
+ */
+class SkippingSink implements MatsimEventSink {
+	
+	/**
+	 * The events are forwarded to this sink
+	 */
+	private final MatsimEventSink target;
+	
+	/**
+	 * This many events are still to be thrown away
+	 */
+	private long skippedCount;
+
+	/**
+	 * @param target The events are forwarded to this sink
+	 * @param skippedCount This many first events will be thrown away
+	 */
+	SkippingSink(MatsimEventSink target, long skippedCount) {
+		this.target = target;
+		this.skippedCount = skippedCount;
+	}
+
+	@Override
+	public void add(MatsimEvent event) {
+		if (skippedCount > 0){
+			skippedCount -= 1;
+		} else {
+			target.add(event);
+		}
+	}
+	
+}
@@ -1,5 +1,9 @@
 package cz.filipekt.jdcv.xml;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 import org.xml.sax.SAXException;
 
 import cz.filipekt.jdcv.exceptions.MandatoryAttributeNotFoundException;
@@ -37,4 +41,23 @@ public class Utils {
 		}
 	}
 	
-}
\ No newline at end of file
+	/**
+	 * An event element boundary can be found by a simple byte comparison only if the characters
+	 * used in the element names are encoded as single bytes with the ASCII values, and if these
+	 * values can not appear inside multibyte characters. This holds for UTF-8, the ISO-8859 family
+	 * and the other single byte encodings, and also for the legacy multibyte encodings, because
+	 * their trailing bytes never have the value of the "&lt;" character.
+	 * @param charset The examined character encoding
+	 * @return True if the event element boundaries can be found at byte level in text encoded in
+	 * the given character encoding
+	 */
+	static boolean isAsciiCompatible(Charset charset){
+		if (!charset.canEncode()){
+			return false;
+		}
+		byte[] probe = "<event </events>".getBytes(charset);
+		byte[] ascii = "<event </events>".getBytes(StandardCharsets.US_ASCII);
+		return Arrays.equals(probe, ascii);
+	}
+	
+}
@@ -5,7 +5,6 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Path;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -17,6 +16,8 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 
+import cz.filipekt.jdcv.util.InputFiles;
+
 /**
  * Takes care of loading and parsing the input XML files. 
  * 
@@ -69,19 +70,21 @@ public class XMLextractor {
 		SAXParser saxParser = spf.newSAXParser();
 		XMLReader xmlReader = saxParser.getXMLReader();
 		xmlReader.setContentHandler(handler);
-		Reader reader;
 		if (xmlStream == null){
-			reader = Files.newBufferedReader(xmlFile, charset);
+			try (InputStream fileStream = InputFiles.open(xmlFile)){
+				Reader reader = new InputStreamReader(fileStream, charset);
+				xmlReader.parse(new InputSource(reader));
+			}
 		} else {
-			reader = new InputStreamReader(xmlStream, charset);
+			Reader reader = new InputStreamReader(xmlStream, charset);
+			xmlReader.parse(new InputSource(reader));
 		}
-		InputSource source = new InputSource(reader);
-		xmlReader.parse(source);
 	}
 	
 	/**
 	 * Given an XML document and a {@link ContentHandler} it parses 
-	 * the input file using SAX, with the given handler. 
+	 * the input file using SAX, with the given handler. The file may be
+	 * compressed by gzip, see {@link InputFiles}.
 	 * @param xmlFile Input XML file
 	 * @param encoding Character encoding of the input XML document
 	 * @param handler SAX handler used during the parsing